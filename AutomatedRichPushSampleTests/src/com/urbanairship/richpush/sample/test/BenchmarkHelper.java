@@ -0,0 +1,153 @@
+package com.urbanairship.richpush.sample.test;
+
+import android.os.Bundle;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Helper class to drive the app from the shell for the benchmarks
+ *
+ */
+public class BenchmarkHelper {
+
+    public static final String PACKAGE_NAME = "com.urbanairship.richpush.sample";
+
+    // Must match the app's BenchmarkReceiver
+    public static final String INBOX_ACTIVITY = "inbox";
+    public static final String MESSAGE_ACTIVITY = "message";
+
+    private static final String SEED_INBOX_ACTION = "com.urbanairship.richpush.sample.SEED_BENCHMARK_INBOX";
+    private static final String LAUNCH_ACTIVITY_ACTION = "com.urbanairship.richpush.sample.LAUNCH_BENCHMARK_ACTIVITY";
+    private static final String BENCHMARK_RECEIVER = ".debug.BenchmarkReceiver";
+
+    // Intent.FLAG_INCLUDE_STOPPED_PACKAGES so the broadcast reaches a force stopped app
+    private static final String INCLUDE_STOPPED_PACKAGES_FLAG = "32";
+
+    private static final Pattern BROADCAST_RESULT_PATTERN = Pattern.compile("result=(-?\\d+)");
+
+    /**
+     * Reads an integer test parameter
+     * @param params The test parameters
+     * @param name The parameter name
+     * @param defaultValue Value used if the parameter is not set
+     * @return The parameter value
+     */
+    public static int getIntParam(Bundle params, String name, int defaultValue) {
+        String value = params.getString(name);
+        return value == null ? defaultValue : Integer.parseInt(value);
+    }
+
+    /**
+     * Replaces the app's inbox with the fake benchmark messages
+     * @param messageCount Number of messages to seed
+     * @return The number of messages seeded, or -1 if the broadcast failed
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public int seedInbox(int messageCount) throws IOException, InterruptedException {
+        String output = shell("am", "broadcast", "-f", INCLUDE_STOPPED_PACKAGES_FLAG,
+                "-a", SEED_INBOX_ACTION,
+                "-n", PACKAGE_NAME + "/" + BENCHMARK_RECEIVER,
+                "--ei", "count", String.valueOf(messageCount));
+
+        Matcher matcher = BROADCAST_RESULT_PATTERN.matcher(output);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Launches one of the app's unexported activities through the benchmark
+     * receiver, which starts it from the app's own uid
+     * @param activity Either <code>inbox</code> or <code>message</code>
+     * @param clearTask <code>true</code> to recreate the activity in a running process
+     * @param extras Extra <code>am broadcast</code> arguments passed on to the activity
+     * @return <code>true</code> if the activity was started
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public boolean launchActivity(String activity, boolean clearTask, String... extras) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<String>();
+        command.addAll(Arrays.asList("am", "broadcast", "-f", INCLUDE_STOPPED_PACKAGES_FLAG,
+                "-a", LAUNCH_ACTIVITY_ACTION,
+                "-n", PACKAGE_NAME + "/" + BENCHMARK_RECEIVER,
+                "--es", "activity", activity,
+                "--ez", "clear_task", String.valueOf(clearTask)));
+        command.addAll(Arrays.asList(extras));
+
+        Matcher matcher = BROADCAST_RESULT_PATTERN.matcher(shell(command.toArray(new String[command.size()])));
+        return matcher.find() && Integer.parseInt(matcher.group(1)) == 1;
+    }
+
+    /**
+     * Force stops the app
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public void forceStop() throws IOException, InterruptedException {
+        shell("am", "force-stop", PACKAGE_NAME);
+    }
+
+    /**
+     * Dumps the top activity with the given arguments
+     * @param args The dump arguments
+     * @return The dump output
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public String dumpTopActivity(String... args) throws IOException, InterruptedException {
+        String[] command = new String[args.length + 3];
+        command[0] = "dumpsys";
+        command[1] = "activity";
+        command[2] = "top";
+        System.arraycopy(args, 0, command, 3, args.length);
+        return shell(command);
+    }
+
+    /**
+     * Runs a shell command and returns its output
+     * @param command The command and its arguments
+     * @return The standard output and error
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    public String shell(String... command) throws IOException, InterruptedException {
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        StringBuilder output = new StringBuilder();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                output.append(line).append('\n');
+            }
+        } finally {
+            reader.close();
+        }
+
+        process.waitFor();
+        return output.toString();
+    }
+
+    /**
+     * Writes a results file
+     * @param path The file path
+     * @param contents The contents
+     * @throws IOException
+     */
+    public void writeFile(String path, String contents) throws IOException {
+        Writer writer = new FileWriter(new File(path));
+        try {
+            writer.write(contents);
+        } finally {
+            writer.close();
+        }
+    }
+}
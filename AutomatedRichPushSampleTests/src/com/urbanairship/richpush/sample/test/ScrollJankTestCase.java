@@ -0,0 +1,124 @@
+package com.urbanairship.richpush.sample.test;
+
+import android.os.Build;
+import android.os.Bundle;
+
+import com.android.uiautomator.core.UiObject;
+import com.android.uiautomator.core.UiScrollable;
+import com.android.uiautomator.core.UiSelector;
+import com.android.uiautomator.testrunner.UiAutomatorTestCase;
+import com.urbanairship.automatorutils.AutomatorUtils;
+
+import org.json.JSONObject;
+
+/**
+ * Flings the inbox list of the Rich Push Sample application and writes a
+ * jank report from the frame times the app records while the list scrolls.
+ *
+ * The inbox is replaced with a fixed set of fake messages first so every
+ * run flings through the same list.
+ *
+ * Parameters, passed with <code>-e NAME value</code>:
+ * <ul>
+ * <li>FLINGS - flings in each direction, defaults to 10</li>
+ * <li>MESSAGE_COUNT - messages in the fake inbox, defaults to 500</li>
+ * <li>BUILD_LABEL - label stored with the results to tell builds apart</li>
+ * <li>OUTPUT_FILE - JSON report, defaults to /data/local/tmp/scroll_jank.json,
+ * a text report is written next to it</li>
+ * </ul>
+ *
+ */
+public class ScrollJankTestCase extends UiAutomatorTestCase {
+
+    private static final int DEFAULT_FLINGS = 10;
+    private static final int DEFAULT_MESSAGE_COUNT = 500;
+    private static final String DEFAULT_OUTPUT_FILE = "/data/local/tmp/scroll_jank.json";
+
+    // Must match the app's InboxActivity dump
+    private static final String JSON_PREFIX = "ScrollJank: ";
+
+    private static int WINDOW_UPDATE_WAIT_TIME = 5000;  // 5 seconds
+    private static int UI_OBJECTS_WAIT_TIME = 10000;  // 10 seconds
+    private static int FLING_SETTLE_TIME = 1500; // 1.5 seconds
+
+    private int flings;
+    private int messageCount;
+    private String buildLabel;
+    private String outputFile;
+    private BenchmarkHelper helper;
+
+    /**
+     * Seeds the inbox and opens it on a fresh process
+     */
+    @Override
+    public void setUp() throws Exception {
+        helper = new BenchmarkHelper();
+
+        Bundle params = getParams();
+        flings = BenchmarkHelper.getIntParam(params, "FLINGS", DEFAULT_FLINGS);
+        messageCount = BenchmarkHelper.getIntParam(params, "MESSAGE_COUNT", DEFAULT_MESSAGE_COUNT);
+        buildLabel = params.getString("BUILD_LABEL");
+        outputFile = params.getString("OUTPUT_FILE");
+
+        if (outputFile == null) {
+            outputFile = DEFAULT_OUTPUT_FILE;
+        }
+
+        assertEquals("Failed to seed the benchmark inbox", messageCount, helper.seedInbox(messageCount));
+        helper.forceStop();
+        assertTrue("Failed to launch the inbox", helper.launchActivity(BenchmarkHelper.INBOX_ACTIVITY, false));
+        getUiDevice().waitForWindowUpdate(null, WINDOW_UPDATE_WAIT_TIME);
+    }
+
+    /**
+     * Flings the inbox up and down and writes the jank report
+     * @throws Exception
+     */
+    public void testInboxFling() throws Exception {
+        UiObject message = new UiObject(new UiSelector().text("Benchmark message 0"));
+        AutomatorUtils.waitForUiObjectsToExist(UI_OBJECTS_WAIT_TIME, message);
+        assertTrue("Benchmark inbox is not showing", message.exists());
+
+        UiScrollable list = new UiScrollable(new UiSelector().className("android.widget.ListView"));
+        list.setAsVerticalList();
+
+        // Only measure the flings
+        helper.dumpTopActivity("scroll-jank-reset");
+
+        for (int i = 0; i < flings; i++) {
+            list.flingForward();
+            Thread.sleep(FLING_SETTLE_TIME);
+        }
+
+        for (int i = 0; i < flings; i++) {
+            list.flingBackward();
+            Thread.sleep(FLING_SETTLE_TIME);
+        }
+
+        JSONObject stats = null;
+        for (String line : helper.dumpTopActivity("scroll-jank-json").split("\n")) {
+            int index = line.indexOf(JSON_PREFIX);
+            if (index >= 0) {
+                stats = new JSONObject(line.substring(index + JSON_PREFIX.length()));
+                break;
+            }
+        }
+
+        assertNotNull("Failed to read the scroll jank stats, is the inbox on top?", stats);
+
+        JSONObject report = new JSONObject();
+        report.put("build", buildLabel == null ? JSONObject.NULL : buildLabel);
+        report.put("device", Build.MODEL);
+        report.put("fingerprint", Build.FINGERPRINT);
+        report.put("sdk", Build.VERSION.SDK_INT);
+        report.put("flings", flings * 2);
+        report.put("messages", messageCount);
+        report.put("timestamp", System.currentTimeMillis());
+        report.put("stats", stats);
+
+        helper.writeFile(outputFile, report.toString(2));
+        helper.writeFile(outputFile.replaceAll("\\.json$", "") + ".txt", helper.dumpTopActivity("scroll-jank"));
+
+        assertTrue("No frames were recorded while flinging, Choreographer requires API 16", stats.getLong("frames") > 0);
+    }
+}
@@ -0,0 +1,299 @@
+package com.urbanairship.richpush.sample.test;
+
+import android.os.Build;
+import android.os.Bundle;
+import android.os.SystemClock;
+
+import com.android.uiautomator.testrunner.UiAutomatorTestCase;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Measures cold and warm startup of the Rich Push Sample application and
+ * writes the results as JSON.
+ *
+ * Each scenario launches an activity and measures the time until the app
+ * logs the scenario's marker: the first frame of the home screen, the inbox
+ * list being populated or a message being rendered. The markers are logged
+ * with the device uptime, so they are compared against the uptime just
+ * before the launch. The home screen is started with <code>am start</code>,
+ * the inbox and message activities are not exported and are started by the
+ * app's benchmark receiver. A cold start force stops the app first, a warm
+ * start reuses the running process and recreates the activity.
+ *
+ * The inbox is replaced with a fixed set of fake messages before each
+ * scenario so the benchmark runs offline and builds are measured against
+ * the same data.
+ *
+ * Parameters, passed with <code>-e NAME value</code>:
+ * <ul>
+ * <li>ITERATIONS - measured launches per scenario, defaults to 15</li>
+ * <li>MESSAGE_COUNT - messages in the fake inbox, defaults to 100</li>
+ * <li>BUILD_LABEL - label stored with the results to tell builds apart</li>
+ * <li>OUTPUT_FILE - results file, defaults to /data/local/tmp/startup_benchmark.json</li>
+ * </ul>
+ *
+ */
+public class StartupBenchmarkTestCase extends UiAutomatorTestCase {
+
+    private static final String PACKAGE_NAME = BenchmarkHelper.PACKAGE_NAME;
+    private static final String MAIN_ACTIVITY = ".MainActivity";
+
+    private static final String MESSAGE_ID_EXTRA = "com.urbanairship.richpush.sample.EXTRA_MESSAGE_ID_KEY";
+    private static final String FIRST_MESSAGE_ID = "benchmark-0000";
+
+    // Must match the app's StartupMarkers
+    private static final String MARKER_LOG_TAG = "RichPushStartup";
+    private static final String FIRST_FRAME = "first_frame";
+    private static final String INBOX_POPULATED = "inbox_populated";
+    private static final String MESSAGE_RENDERED = "message_rendered";
+
+    private static final String COLD = "cold";
+    private static final String WARM = "warm";
+
+    private static final int DEFAULT_ITERATIONS = 15;
+    private static final int DEFAULT_MESSAGE_COUNT = 100;
+    private static final String DEFAULT_OUTPUT_FILE = "/data/local/tmp/startup_benchmark.json";
+
+    private static int MARKER_WAIT_TIME = 20000; // 20 seconds
+    private static int MARKER_POLL_TIME = 200; // 200 milliseconds
+    private static int SETTLE_WAIT_TIME = 2000; // 2 seconds
+
+    private int iterations;
+    private int messageCount;
+    private String buildLabel;
+    private String outputFile;
+    private BenchmarkHelper helper;
+
+    /**
+     * Reads the benchmark parameters
+     */
+    @Override
+    public void setUp() throws Exception {
+        helper = new BenchmarkHelper();
+
+        Bundle params = getParams();
+        iterations = BenchmarkHelper.getIntParam(params, "ITERATIONS", DEFAULT_ITERATIONS);
+        messageCount = BenchmarkHelper.getIntParam(params, "MESSAGE_COUNT", DEFAULT_MESSAGE_COUNT);
+        buildLabel = params.getString("BUILD_LABEL");
+        outputFile = params.getString("OUTPUT_FILE");
+
+        if (outputFile == null) {
+            outputFile = DEFAULT_OUTPUT_FILE;
+        }
+    }
+
+    /**
+     * Runs every startup scenario and writes the results file
+     * @throws Exception
+     */
+    public void testStartup() throws Exception {
+        List<Scenario> scenarios = new ArrayList<Scenario>();
+        scenarios.add(new Scenario("MainActivity", null, FIRST_FRAME));
+        scenarios.add(new Scenario("InboxActivity", BenchmarkHelper.INBOX_ACTIVITY, INBOX_POPULATED));
+        scenarios.add(new Scenario("MessageActivity", BenchmarkHelper.MESSAGE_ACTIVITY, MESSAGE_RENDERED,
+                "--es", MESSAGE_ID_EXTRA, FIRST_MESSAGE_ID));
+
+        JSONArray results = new JSONArray();
+        for (Scenario scenario : scenarios) {
+            results.put(measure(scenario, COLD));
+            results.put(measure(scenario, WARM));
+        }
+
+        JSONObject report = new JSONObject();
+        report.put("package", PACKAGE_NAME);
+        report.put("build", buildLabel == null ? JSONObject.NULL : buildLabel);
+        report.put("device", Build.MODEL);
+        report.put("fingerprint", Build.FINGERPRINT);
+        report.put("sdk", Build.VERSION.SDK_INT);
+        report.put("iterations", iterations);
+        report.put("messages", messageCount);
+        report.put("timestamp", System.currentTimeMillis());
+        report.put("results", results);
+
+        helper.writeFile(outputFile, report.toString(2));
+
+        assertTrue("Startup benchmark had failed launches, see " + outputFile, countFailures(results) == 0);
+    }
+
+    /**
+     * Launches a scenario repeatedly and summarizes the timings
+     * @param scenario The scenario
+     * @param start Either cold or warm
+     * @return The summary
+     * @throws Exception
+     */
+    private JSONObject measure(Scenario scenario, String start) throws Exception {
+        // Reseed so earlier scenarios marking messages read do not change the inbox
+        assertEquals("Failed to seed the benchmark inbox", messageCount, helper.seedInbox(messageCount));
+
+        // Discard the first launch, it includes one time costs like dex optimization
+        launch(scenario, COLD);
+        if (WARM.equals(start)) {
+            launch(scenario, WARM);
+        }
+
+        List<Long> samples = new ArrayList<Long>();
+        int failures = 0;
+        for (int i = 0; i < iterations; i++) {
+            long time = launch(scenario, start);
+            if (time < 0) {
+                failures++;
+            } else {
+                samples.add(time);
+            }
+        }
+
+        Collections.sort(samples);
+
+        JSONArray sampleArray = new JSONArray();
+        long total = 0;
+        for (long sample : samples) {
+            sampleArray.put(sample);
+            total += sample;
+        }
+
+        JSONObject result = new JSONObject();
+        result.put("activity", scenario.screen);
+        result.put("start", start);
+        result.put("marker", scenario.marker);
+        result.put("failures", failures);
+        result.put("samples_ms", sampleArray);
+
+        if (!samples.isEmpty()) {
+            result.put("min_ms", samples.get(0));
+            result.put("median_ms", median(samples));
+            result.put("p90_ms", percentile(samples, 90));
+            result.put("p95_ms", percentile(samples, 95));
+            result.put("max_ms", samples.get(samples.size() - 1));
+            result.put("mean_ms", (double) total / samples.size());
+        }
+
+        return result;
+    }
+
+    /**
+     * Launches the scenario's activity once
+     * @param scenario The scenario
+     * @param start Either cold or warm
+     * @return Time from the launch to the scenario's marker in milliseconds, or -1 if the launch failed
+     * @throws Exception
+     */
+    private long launch(Scenario scenario, String start) throws Exception {
+        if (COLD.equals(start)) {
+            helper.forceStop();
+        }
+
+        helper.shell("logcat", "-c");
+
+        // Reuse the process but recreate the activity on a warm start
+        boolean clearTask = WARM.equals(start);
+        long launchTime = SystemClock.uptimeMillis();
+
+        if (scenario.benchmarkActivity == null) {
+            List<String> command = new ArrayList<String>();
+            command.addAll(Arrays.asList("am", "start", "-n", PACKAGE_NAME + "/" + MAIN_ACTIVITY));
+            if (clearTask) {
+                command.addAll(Arrays.asList("--activity-new-task", "--activity-clear-task"));
+            }
+            command.addAll(scenario.extras);
+            helper.shell(command.toArray(new String[command.size()]));
+        } else {
+            String[] extras = scenario.extras.toArray(new String[scenario.extras.size()]);
+            if (!helper.launchActivity(scenario.benchmarkActivity, clearTask, extras)) {
+                return -1;
+            }
+        }
+
+        long markerTime = -1;
+        long deadline = System.currentTimeMillis() + MARKER_WAIT_TIME;
+        while (System.currentTimeMillis() < deadline) {
+            markerTime = findMarker(helper.shell("logcat", "-d", "-s", MARKER_LOG_TAG + ":I"), scenario.screen, scenario.marker);
+            if (markerTime >= 0) {
+                break;
+            }
+
+            Thread.sleep(MARKER_POLL_TIME);
+        }
+
+        // Let the deferred startup work finish so it does not leak into the next launch
+        Thread.sleep(SETTLE_WAIT_TIME);
+
+        if (markerTime < 0) {
+            return -1;
+        }
+
+        return Math.max(0, markerTime - launchTime);
+    }
+
+    /**
+     * Finds the uptime of the first marker logged by a screen
+     * @param log The marker log
+     * @param screen The activity's simple name
+     * @param marker The marker
+     * @return The uptime in milliseconds, or -1 if the marker was not logged
+     */
+    private static long findMarker(String log, String screen, String marker) {
+        String prefix = screen + " " + marker + " ";
+        for (String line : log.split("\n")) {
+            int index = line.indexOf(prefix);
+            if (index >= 0) {
+                return Long.parseLong(line.substring(index + prefix.length()).trim());
+            }
+        }
+        return -1;
+    }
+
+    private static double median(List<Long> sorted) {
+        int middle = sorted.size() / 2;
+        if (sorted.size() % 2 == 1) {
+            return sorted.get(middle);
+        }
+        return (sorted.get(middle - 1) + sorted.get(middle)) / 2.0;
+    }
+
+    /**
+     * Nearest rank percentile
+     */
+    private static long percentile(List<Long> sorted, int percentile) {
+        int rank = (int) Math.ceil(percentile / 100.0 * sorted.size());
+        return sorted.get(Math.max(0, rank - 1));
+    }
+
+    private static int countFailures(JSONArray results) throws Exception {
+        int failures = 0;
+        for (int i = 0; i < results.length(); i++) {
+            failures += results.getJSONObject(i).getInt("failures");
+        }
+        return failures;
+    }
+
+    /**
+     * An activity to launch and the marker that ends its startup
+     */
+    private static class Scenario {
+        private final String screen;
+        private final String benchmarkActivity;
+        private final String marker;
+        private final List<String> extras;
+
+        /**
+         * @param screen The activity's simple name, as logged with its markers
+         * @param benchmarkActivity The benchmark receiver's name for the activity, or null for the home screen
+         * @param marker The marker that ends its startup
+         * @param extras Extra launch arguments
+         */
+        private Scenario(String screen, String benchmarkActivity, String marker, String... extras) {
+            this.screen = screen;
+            this.benchmarkActivity = benchmarkActivity;
+            this.marker = marker;
+            this.extras = Arrays.asList(extras);
+        }
+    }
+}
@@ -0,0 +1,110 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures {@link PointClusterer} insertion, full viewport clustering and
+ * incremental clustering while panning.
+ *
+ * Runs on the JVM with <code>java ClusterBenchmark [points]</code>,
+ * compiled together with the app sources.
+ *
+ */
+public class ClusterBenchmark {
+
+    /**
+     * Default number of points
+     */
+    public static final int DEFAULT_POINTS = 100000;
+
+    private static final int VIEWPORT_WIDTH_PX = 1080;
+    private static final int VIEWPORT_HEIGHT_PX = 1920;
+    private static final int PANS = 200;
+
+    public static void main(String[] args) {
+        System.out.println(run(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_POINTS));
+    }
+
+    /**
+     * Runs the benchmark
+     * @param points The number of points to cluster
+     * @return The report
+     */
+    public static String run(int points) {
+        Random random = new Random(42);
+        int centerLat = 45523100;
+        int centerLon = -122676500;
+
+        // Points spread over about 100 km, denser towards the center
+        PointClusterer<Integer> clusterer = new PointClusterer<Integer>();
+        long insertStart = System.nanoTime();
+        for (int i = 0; i < points; i++) {
+            clusterer.add(centerLat + (int) (random.nextGaussian() * 200000),
+                    centerLon + (int) (random.nextGaussian() * 300000), i);
+        }
+        long insertNs = System.nanoTime() - insertStart;
+
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("Clustering: %d points inserted in %.1f ms", points, insertNs / 1E6));
+
+        for (int zoom = 8; zoom <= 16; zoom += 4) {
+            int spanLat = spanE6(VIEWPORT_HEIGHT_PX, zoom);
+            int spanLon = spanE6(VIEWPORT_WIDTH_PX, zoom);
+
+            long fullStart = System.nanoTime();
+            int clusters = clusterer.getClusters(centerLat - spanLat / 2, centerLon - spanLon / 2,
+                    centerLat + spanLat / 2, centerLon + spanLon / 2, zoom).size();
+            long fullNs = System.nanoTime() - fullStart;
+
+            // Pan a tenth of the viewport at a time
+            long[] panNs = new long[PANS];
+            int computedBefore = clusterer.getCellsComputed();
+            int lat = centerLat;
+            int lon = centerLon;
+            for (int i = 0; i < PANS; i++) {
+                lat += (random.nextBoolean() ? 1 : -1) * spanLat / 10;
+                lon += (random.nextBoolean() ? 1 : -1) * spanLon / 10;
+                long panStart = System.nanoTime();
+                clusterer.getClusters(lat - spanLat / 2, lon - spanLon / 2, lat + spanLat / 2, lon + spanLon / 2, zoom);
+                panNs[i] = System.nanoTime() - panStart;
+            }
+            Arrays.sort(panNs);
+
+            report.append(String.format("; zoom %d: %d clusters in %.3f ms, pan median %.3f ms p95 %.3f ms (%d cells per pan)",
+                    zoom, clusters, fullNs / 1E6, panNs[PANS / 2] / 1E6, panNs[PANS * 95 / 100] / 1E6,
+                    (clusterer.getCellsComputed() - computedBefore) / PANS));
+        }
+
+        return report.toString();
+    }
+
+    private static int spanE6(int pixels, int zoom) {
+        return (int) (360000000L * pixels / (256L << zoom));
+    }
+}
@@ -0,0 +1,127 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures {@link GeofenceEngine} index build time and per fix evaluation
+ * latency with a large number of geofences.
+ *
+ * Runs on the JVM with <code>java GeofenceBenchmark [fences]</code>,
+ * compiled together with the app sources.
+ *
+ */
+public class GeofenceBenchmark {
+
+    /**
+     * Default number of geofences
+     */
+    public static final int DEFAULT_FENCES = 50000;
+
+    private static final int FIXES = 100000;
+
+    public static void main(String[] args) {
+        System.out.println(run(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FENCES));
+    }
+
+    /**
+     * Runs the benchmark
+     * @param fenceCount The number of geofences
+     * @return The report
+     */
+    public static String run(int fenceCount) {
+        Random random = new Random(42);
+        double centerLat = 45.5231;
+        double centerLon = -122.6765;
+
+        // A metro area of circles and polygons, about 100 km across
+        List<Geofence> fences = new ArrayList<Geofence>(fenceCount);
+        for (int i = 0; i < fenceCount; i++) {
+            double lat = centerLat + random.nextGaussian() * 0.2;
+            double lon = centerLon + random.nextGaussian() * 0.3;
+            if (i % 4 == 0) {
+                int vertices = 4 + random.nextInt(8);
+                double[] lats = new double[vertices];
+                double[] lons = new double[vertices];
+                double size = 0.0005 + random.nextDouble() * 0.003;
+                for (int v = 0; v < vertices; v++) {
+                    double angle = 2 * Math.PI * v / vertices;
+                    double radius = size * (0.6 + random.nextDouble() * 0.4);
+                    lats[v] = lat + Math.sin(angle) * radius;
+                    lons[v] = lon + Math.cos(angle) * radius * 1.4;
+                }
+                fences.add(Geofence.polygon("polygon-" + i, lats, lons, 60000));
+            } else {
+                fences.add(Geofence.circle("circle-" + i, lat, lon, 50 + random.nextDouble() * 450, 60000));
+            }
+        }
+
+        final int[] transitions = new int[3];
+        GeofenceEngine engine = new GeofenceEngine(new GeofenceEngine.Config());
+        engine.addListener(new GeofenceEngine.Listener() {
+            @Override
+            public void onGeofenceTransition(Geofence geofence, int transition, LocationFix fix) {
+                transitions[transition == GeofenceEngine.TRANSITION_ENTER ? 0
+                        : (transition == GeofenceEngine.TRANSITION_EXIT ? 1 : 2)]++;
+            }
+        });
+
+        long buildStart = System.nanoTime();
+        engine.setGeofences(fences);
+        long buildNs = System.nanoTime() - buildStart;
+
+        // Drive around the metro area at about 15 m/s with a fix every second
+        long[] evaluateNs = new long[FIXES];
+        double lat = centerLat;
+        double lon = centerLon;
+        double heading = 0;
+        long time = 1370000000000L;
+        for (int i = 0; i < FIXES; i++) {
+            heading += random.nextGaussian() * 0.1;
+            lat += Math.cos(heading) * 15 / 111320;
+            lon += Math.sin(heading) * 15 / (111320 * Math.cos(Math.toRadians(lat)));
+            if (Math.abs(lat - centerLat) > 0.5 || Math.abs(lon - centerLon) > 0.7) {
+                heading += Math.PI;
+            }
+            time += 1000;
+
+            LocationFix fix = new LocationFix(time, lat, lon, 10, "gps");
+            long start = System.nanoTime();
+            engine.evaluate(fix);
+            evaluateNs[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(evaluateNs);
+
+        return String.format("Geofences: %d fences indexed in %.1f ms; %d fixes evaluated: median %.1f us, "
+                + "p99 %.1f us, max %.1f us; %d enters, %d exits, %d dwells",
+                fenceCount, buildNs / 1E6, FIXES, evaluateNs[FIXES / 2] / 1E3, evaluateNs[FIXES * 99 / 100] / 1E3,
+                evaluateNs[FIXES - 1] / 1E3, transitions[0], transitions[1], transitions[2]);
+    }
+}
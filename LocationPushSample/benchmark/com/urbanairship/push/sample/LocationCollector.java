@@ -0,0 +1,179 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URL;
+
+/**
+ * A stand-in for a location collector that accepts batches from
+ * {@link HttpBatchUploader} on the loopback interface, decodes them and
+ * counts what it received. Used to exercise the upload path without a
+ * real collector.
+ *
+ */
+public class LocationCollector {
+
+    private final ServerSocket serverSocket;
+    private final Thread thread;
+
+    private volatile boolean failing;
+    private int requests;
+    private long bytes;
+    private long fixes;
+
+    /**
+     * Starts the collector on a free loopback port
+     */
+    public LocationCollector() throws IOException {
+        serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        Socket socket = serverSocket.accept();
+                        try {
+                            handle(socket);
+                        } finally {
+                            socket.close();
+                        }
+                    } catch (IOException e) {
+                        // Closed, or a bad request
+                    }
+                }
+            }
+        }, "LocationCollector");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * @return The URL to upload batches to
+     */
+    public URL getUrl() throws IOException {
+        return new URL("http", "127.0.0.1", serverSocket.getLocalPort(), "/locations");
+    }
+
+    /**
+     * Makes the collector answer with server errors, to simulate an outage
+     * @param failing <code>true</code> to fail requests
+     */
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    public synchronized int getRequests() {
+        return requests;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized long getFixes() {
+        return fixes;
+    }
+
+    /**
+     * Stops the collector
+     */
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void handle(Socket socket) throws IOException {
+        InputStream in = new BufferedInputStream(socket.getInputStream());
+
+        int contentLength = -1;
+        int declaredFixes = -1;
+        String line;
+        while ((line = readLine(in)).length() > 0) {
+            int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+
+            String name = line.substring(0, colon).trim();
+            String value = line.substring(colon + 1).trim();
+            if (name.equalsIgnoreCase("Content-Length")) {
+                contentLength = Integer.parseInt(value);
+            } else if (name.equalsIgnoreCase(HttpBatchUploader.FIX_COUNT_HEADER)) {
+                declaredFixes = Integer.parseInt(value);
+            }
+        }
+
+        int status;
+        if (failing) {
+            status = 503;
+        } else if (contentLength < 0) {
+            status = 411;
+        } else {
+            byte[] body = new byte[contentLength];
+            new DataInputStream(in).readFully(body);
+
+            int decoded;
+            try {
+                decoded = LocationBatchEncoder.decode(body).size();
+            } catch (IOException e) {
+                decoded = -1;
+            }
+
+            if (decoded < 0 || (declaredFixes >= 0 && decoded != declaredFixes)) {
+                status = 400;
+            } else {
+                synchronized (this) {
+                    requests++;
+                    bytes += body.length;
+                    fixes += decoded;
+                }
+                status = 204;
+            }
+        }
+
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 " + status + " Collector\r\nContent-Length: 0\r\nConnection: close\r\n\r\n").getBytes("US-ASCII"));
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder line = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (c != '\r') {
+                line.append((char) c);
+            }
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,116 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures {@link LocationHistory} append throughput and range query latency.
+ *
+ * Runs on the JVM with <code>java LocationHistoryBenchmark [directory] [fixes]</code>,
+ * compiled together with the app sources.
+ *
+ */
+public class LocationHistoryBenchmark {
+
+    /**
+     * Default number of fixes to append
+     */
+    public static final int DEFAULT_FIXES = 1000000;
+
+    private static final int QUERIES = 1000;
+    private static final long FIX_INTERVAL_MS = 1000;
+    private static final long QUERY_RANGE_MS = 60 * 60 * 1000; // 1 hour
+
+    public static void main(String[] args) throws IOException {
+        File directory = new File(args.length > 0 ? args[0] : "location_history_benchmark");
+        int fixes = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_FIXES;
+        System.out.println(run(directory, fixes));
+    }
+
+    /**
+     * Runs the benchmark in an empty directory, deleting its segments afterwards
+     * @param directory The directory to use
+     * @param fixes The number of fixes to append
+     * @return The report
+     * @throws IOException
+     */
+    public static String run(File directory, int fixes) throws IOException {
+        delete(directory);
+
+        Random random = new Random(42);
+        long start = 1370000000000L;
+        double lat = 45.5231;
+        double lon = -122.6765;
+
+        LocationHistory history = new LocationHistory(directory, Long.MAX_VALUE);
+        try {
+            long appendStart = System.nanoTime();
+            for (int i = 0; i < fixes; i++) {
+                lat += (random.nextDouble() - 0.5) * 0.0002;
+                lon += (random.nextDouble() - 0.5) * 0.0002;
+                history.append(new LocationFix(start + i * FIX_INTERVAL_MS, lat, lon,
+                        5 + random.nextInt(50), "gps"));
+            }
+            history.flush();
+            long appendNs = System.nanoTime() - appendStart;
+
+            long end = start + fixes * FIX_INTERVAL_MS;
+            long[] queryNs = new long[QUERIES];
+            long returned = 0;
+            for (int i = 0; i < QUERIES; i++) {
+                long from = start + (long) (random.nextDouble() * (end - start - QUERY_RANGE_MS));
+                long queryStart = System.nanoTime();
+                returned += history.query(from, from + QUERY_RANGE_MS).size();
+                queryNs[i] = System.nanoTime() - queryStart;
+            }
+            Arrays.sort(queryNs);
+
+            return String.format("LocationHistory: %d fixes in %.1f ms (%.0f fixes/s), %.2f bytes/fix; "
+                    + "%d one hour range queries (%d fixes each): median %.3f ms, p95 %.3f ms, max %.3f ms",
+                    fixes, appendNs / 1E6, fixes / (appendNs / 1E9),
+                    history.sizeOnDisk() / (double) fixes,
+                    QUERIES, returned / QUERIES,
+                    queryNs[QUERIES / 2] / 1E6, queryNs[QUERIES * 95 / 100] / 1E6, queryNs[QUERIES - 1] / 1E6);
+        } finally {
+            history.close();
+            delete(directory);
+        }
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
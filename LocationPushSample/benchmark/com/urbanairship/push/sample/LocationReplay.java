@@ -0,0 +1,145 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.List;
+
+/**
+ * Replays a recorded track through a {@link LocationPipeline} and reports
+ * how many fixes were accepted and how many consumer updates they caused.
+ *
+ * The track is CSV with one fix per line: time in milliseconds, latitude,
+ * longitude, accuracy in meters and an optional provider. Blank lines and
+ * lines starting with # are skipped. Dispatches are driven by the fix
+ * times, so a replay gives the same result every run.
+ *
+ * Runs on the JVM with <code>java LocationReplay [track]</code>, compiled
+ * together with the app sources. Replays <code>sample_track.csv</code>
+ * from the benchmark directory by default.
+ *
+ */
+public class LocationReplay {
+
+    /**
+     * The replay results
+     */
+    public static class Result {
+        public int fixes;
+        public int accepted;
+        public int updates;
+        public LocationPipeline.Stats stats;
+
+        @Override
+        public String toString() {
+            return String.format("Replayed %d fixes: %d accepted, %d UI updates (%s)",
+                    fixes, accepted, updates, stats);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        String track = args.length > 0 ? args[0] : "sample_track.csv";
+        FileReader reader = new FileReader(track);
+        try {
+            System.out.println(track + ": " + replay(reader, new LocationPipeline.Config()));
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Replays a track
+     * @param track The recorded track
+     * @param config The pipeline thresholds
+     * @return The replay results
+     * @throws IOException
+     */
+    public static Result replay(Reader track, LocationPipeline.Config config) throws IOException {
+        LocationPipeline pipeline = new LocationPipeline(config);
+        final Result result = new Result();
+
+        pipeline.addConsumer(new LocationPipeline.Consumer() {
+            @Override
+            public void onLocationUpdate(List<LocationFix> fixes) {
+                result.updates++;
+            }
+        });
+
+        BufferedReader reader = new BufferedReader(track);
+        long now = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            LocationFix fix = parseFix(line.trim());
+            if (fix == null) {
+                continue;
+            }
+
+            now = fix.time;
+            result.fixes++;
+            pipeline.offer(fix);
+            pipeline.dispatch(now);
+        }
+
+        // Dispatch the last batch once its interval has passed
+        long delay = pipeline.getDispatchDelay(now);
+        if (delay >= 0) {
+            pipeline.dispatch(now + delay);
+        }
+
+        result.stats = pipeline.getStats();
+        result.accepted = result.stats.accepted;
+        return result;
+    }
+
+    /**
+     * Parses a fix from a track line
+     * @param line The line
+     * @return The fix, or null if the line does not hold a fix
+     */
+    static LocationFix parseFix(String line) {
+        if (line.length() == 0 || line.startsWith("#")) {
+            return null;
+        }
+
+        String[] fields = line.split(",");
+        if (fields.length < 4) {
+            return null;
+        }
+
+        try {
+            return new LocationFix(Long.parseLong(fields[0].trim()),
+                    Double.parseDouble(fields[1].trim()),
+                    Double.parseDouble(fields[2].trim()),
+                    Float.parseFloat(fields[3].trim()),
+                    fields.length > 4 ? fields[4].trim() : null);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
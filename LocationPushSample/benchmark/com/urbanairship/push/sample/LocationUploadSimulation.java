@@ -0,0 +1,138 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * Drives a {@link LocationUploadQueue} through a simulated day of fixes
+ * against a local {@link LocationCollector}, with a connectivity loss,
+ * a collector outage and periodic pushes to piggyback on, and reports
+ * the bytes per fix and requests per hour.
+ *
+ * Runs on the JVM with <code>java LocationUploadSimulation [directory]</code>,
+ * compiled together with the app sources. It lives with the loopback
+ * collector in the benchmark sources so neither ships in the app.
+ *
+ */
+public class LocationUploadSimulation {
+
+    private static final long HOUR_MS = 60 * 60 * 1000;
+    private static final long DURATION_MS = 8 * HOUR_MS;
+    private static final long FIX_INTERVAL_MS = 10 * 1000;
+    private static final long PUSH_INTERVAL_MS = 20 * 60 * 1000;
+
+    private static final long OFFLINE_START_MS = 2 * HOUR_MS;
+    private static final long OFFLINE_END_MS = OFFLINE_START_MS + 45 * 60 * 1000;
+    private static final long OUTAGE_START_MS = 5 * HOUR_MS;
+    private static final long OUTAGE_END_MS = OUTAGE_START_MS + 20 * 60 * 1000;
+
+    /**
+     * Size of a fix sent on its own as a small JSON object, for comparison
+     */
+    private static final String SINGLE_FIX_JSON =
+            "{\"lat\":45.5231234,\"long\":-122.6765432,\"time\":1370000000000,\"accuracy\":12.5,\"provider\":\"gps\"}";
+
+    public static void main(String[] args) throws IOException {
+        System.out.println(run(new File(args.length > 0 ? args[0] : "location_upload_simulation")));
+    }
+
+    /**
+     * Runs the simulation in an empty directory, deleting its files afterwards
+     * @param directory The directory to use
+     * @return The report
+     */
+    public static String run(File directory) throws IOException {
+        delete(directory);
+
+        LocationCollector collector = new LocationCollector();
+        LocationUploadQueue queue = null;
+        try {
+            Random random = new Random(42);
+            long start = 1370000000000L;
+            double lat = 45.5231;
+            double lon = -122.6765;
+            double heading = 0;
+            int fixes = 0;
+
+            queue = new LocationUploadQueue(directory, new LocationUploadQueue.Config(),
+                    new HttpBatchUploader(collector.getUrl()), start);
+
+            for (long elapsed = 0; elapsed < DURATION_MS; elapsed += FIX_INTERVAL_MS) {
+                long now = start + elapsed;
+
+                queue.setConnected(elapsed < OFFLINE_START_MS || elapsed >= OFFLINE_END_MS, now);
+                collector.setFailing(elapsed >= OUTAGE_START_MS && elapsed < OUTAGE_END_MS);
+
+                // Walking with GPS jitter
+                heading += random.nextGaussian() * 0.2;
+                lat += Math.cos(heading) * 14 / 111320;
+                lon += Math.sin(heading) * 14 / (111320 * Math.cos(Math.toRadians(lat)));
+                LocationFix fix = new LocationFix(now, lat + random.nextGaussian() * 5 / 111320,
+                        lon + random.nextGaussian() * 5 / 111320, 5 + random.nextInt(20), "gps");
+                queue.add(Collections.singletonList(fix), now);
+                fixes++;
+
+                boolean pushed = elapsed % PUSH_INTERVAL_MS == 0;
+                if (queue.isFlushDue(now) || (pushed && queue.isPiggybackDue(now))) {
+                    queue.flush(now);
+                }
+            }
+
+            // Let the last batch go out
+            long end = start + DURATION_MS + queue.getFlushDelay(start + DURATION_MS);
+            queue.flush(end);
+
+            LocationUploadQueue.Stats stats = queue.getStats();
+            double hours = DURATION_MS / (double) HOUR_MS;
+            return String.format("Location upload: %d fixes over %.0f hours, %d received by the collector; "
+                    + "%.1f requests/hour (%.0f sending each fix), %.2f bytes/fix (%d as JSON); %s",
+                    fixes, hours, collector.getFixes(),
+                    stats.requests / hours, fixes / hours,
+                    stats.bytesSent / (double) Math.max(1, stats.fixesSent), SINGLE_FIX_JSON.length(),
+                    stats);
+        } finally {
+            if (queue != null) {
+                queue.close();
+            }
+            collector.close();
+            delete(directory);
+        }
+    }
+
+    private static void delete(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,206 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.Random;
+
+/**
+ * Drives a {@link SamplingController} with simulated movement and battery
+ * scenarios, checks its decisions and reports the estimated fixes saved per
+ * hour against fixed interval sampling.
+ *
+ * Moving devices are sampled more often than the fixed interval to keep
+ * the track, so walking, running and driving report extra fixes rather
+ * than savings. The savings come from the time spent stationary.
+ *
+ * Runs on the JVM with <code>java SamplingSimulation</code>, compiled
+ * together with the app sources, and throws an AssertionError on the
+ * first failed check.
+ *
+ */
+public class SamplingSimulation {
+
+    private static final long START_TIME = 1370000000000L;
+    private static final long MINUTE_MS = 60 * 1000;
+
+    public static void main(String[] args) {
+        System.out.println(run());
+    }
+
+    /**
+     * Runs the scenarios
+     * @return The report
+     */
+    public static String run() {
+        SamplingController.Config config = new SamplingController.Config();
+        StringBuilder report = new StringBuilder("Sampling:");
+
+        SamplingController desk = scenario(report, "desk day", new double[] { 0 }, 8 * 60, 0.8f, true);
+        expect(desk, SamplingController.MODE_STATIONARY, SamplingController.PROVIDER_NETWORK, config.maxStationaryIntervalMs);
+        check(desk.getEstimatedFixesSavedPerHour() > 0, "Desk day saves fixes");
+
+        SamplingController walk = scenario(report, "walk", new double[] { 1.4 }, 60, 0.8f, false);
+        expect(walk, SamplingController.MODE_WALKING, SamplingController.PROVIDER_NETWORK, config.walkingIntervalMs);
+
+        SamplingController run = scenario(report, "run", new double[] { 3.5 }, 60, 0.8f, false);
+        expect(run, SamplingController.MODE_RUNNING, SamplingController.PROVIDER_GPS, config.runningIntervalMs);
+
+        SamplingController drive = scenario(report, "drive", new double[] { 15 }, 60, 0.8f, false);
+        expect(drive, SamplingController.MODE_DRIVING, SamplingController.PROVIDER_GPS, config.drivingIntervalMs);
+        check(drive.getDecision().minDistanceMeters > 0, "Driving sets a minimum distance");
+
+        SamplingController lowDrive = scenario(report, "drive on low battery", new double[] { 15 }, 60, 0.1f, false);
+        expect(lowDrive, SamplingController.MODE_DRIVING, SamplingController.PROVIDER_NETWORK, config.drivingIntervalMs * 2);
+
+        SamplingController commute = scenario(report, "commute", new double[] { 0, 1.4, 15, 1.4, 0 }, 60, 0.6f, false);
+        check(commute.getDecision().mode == SamplingController.MODE_STATIONARY, "Commute ends stationary");
+
+        report.append(passiveRecovery(config));
+        return report.toString();
+    }
+
+    /**
+     * Simulates a sequence of movement phases, feeding the controller a
+     * fix at each of its chosen intervals
+     *
+     * @param report The report to append to
+     * @param name The scenario name
+     * @param speeds The speed in meters per second of each phase
+     * @param phaseMinutes The length of each phase
+     * @param battery The battery level
+     * @param charging Whether the device is charging
+     * @return The controller at the end of the scenario
+     */
+    static SamplingController scenario(StringBuilder report, String name, double[] speeds, int phaseMinutes,
+                                       float battery, boolean charging) {
+        Random random = new Random(42);
+        SamplingController controller = new SamplingController(new SamplingController.Config());
+        controller.setBatteryState(battery, charging);
+
+        long time = START_TIME;
+        double lat = 45.5231;
+        double lon = -122.6765;
+        double heading = 0;
+        int fixes = 0;
+
+        for (double speed : speeds) {
+            long phaseEnd = time + phaseMinutes * MINUTE_MS;
+            while (time < phaseEnd) {
+                long interval = controller.getDecision().intervalMs;
+                heading += random.nextGaussian() * 0.2;
+                double meters = speed * interval / 1000;
+                lat += Math.cos(heading) * meters / 111320;
+                lon += Math.sin(heading) * meters / (111320 * Math.cos(Math.toRadians(lat)));
+                time += interval;
+
+                // 15 m of jitter, like a network fix
+                double jitterLat = random.nextGaussian() * 15 / 111320;
+                double jitterLon = random.nextGaussian() * 15 / 111320;
+                controller.onFix(new LocationFix(time, lat + jitterLat, lon + jitterLon, 15, "network"));
+                fixes++;
+            }
+        }
+
+        report.append(String.format(" %s: %d fixes, ends %s, %s;", name, fixes,
+                controller.getDecision(), describeSavings(controller.getEstimatedFixesSavedPerHour())));
+        return controller;
+    }
+
+    /**
+     * Describes the fixes saved per hour, or the extra fixes taken when
+     * the controller sampled more often than the baseline
+     *
+     * @param saved The fixes saved per hour
+     * @return The description
+     */
+    static String describeSavings(double saved) {
+        if (saved < 0) {
+            return String.format("%.0f more fixes/hour than the baseline", -saved);
+        }
+        return String.format("%.0f fixes/hour saved", saved);
+    }
+
+    /**
+     * Checks that a stationary device on low battery does not stay passive
+     * once fixes stop arriving or the battery is charged
+     *
+     * @param config The controller settings
+     * @return The scenario report
+     */
+    static String passiveRecovery(SamplingController.Config config) {
+        SamplingController controller = new SamplingController(config);
+        controller.setBatteryState(0.1f, false);
+
+        // Other apps request fixes every minute for half an hour
+        long time = START_TIME;
+        for (int i = 0; i < 30; i++) {
+            time += MINUTE_MS;
+            controller.onFix(new LocationFix(time, 45.5231, -122.6765, 15, "network"));
+        }
+        check(SamplingController.PROVIDER_PASSIVE.equals(controller.getDecision().provider),
+                "Stationary on low battery listens passively");
+
+        // Nobody requests fixes any more
+        long lastFix = time;
+        while (SamplingController.PROVIDER_PASSIVE.equals(controller.getDecision().provider)) {
+            time += MINUTE_MS;
+            controller.refresh(time);
+            check(time - lastFix <= config.maxStationaryIntervalMs * 2, "Passive sampling never fell back");
+        }
+        long fallbackMs = time - lastFix;
+        check(SamplingController.PROVIDER_NETWORK.equals(controller.getDecision().provider),
+                "Falls back to a network fix");
+
+        // The fallback fix confirms the device is still put, so it listens passively again
+        controller.onFix(new LocationFix(time, 45.5231, -122.6765, 15, "network"));
+        check(SamplingController.PROVIDER_PASSIVE.equals(controller.getDecision().provider),
+                "Listens passively again after a fix");
+
+        // Charging is applied without waiting for a fix
+        controller.setBatteryState(0.1f, true);
+        check(SamplingController.PROVIDER_NETWORK.equals(controller.getDecision().provider),
+                "Charging stops passive sampling");
+        controller.setBatteryState(0.1f, false);
+        check(SamplingController.PROVIDER_PASSIVE.equals(controller.getDecision().provider),
+                "Unplugging resumes passive sampling");
+
+        return String.format(" passive recovery: falls back after %d minutes without fixes, checks passed;",
+                fallbackMs / MINUTE_MS);
+    }
+
+    private static void expect(SamplingController controller, int mode, String provider, long intervalMs) {
+        SamplingController.Decision decision = controller.getDecision();
+        check(decision.mode == mode, "Expected mode " + mode + ", got " + decision);
+        check(provider.equals(decision.provider), "Expected " + provider + ", got " + decision);
+        check(decision.intervalMs == intervalMs, "Expected every " + intervalMs + " ms, got " + decision);
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
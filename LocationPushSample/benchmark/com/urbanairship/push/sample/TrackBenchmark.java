@@ -0,0 +1,135 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Measures {@link LocationSmoother} and {@link TrackSimplifier} on a
+ * synthetic noisy track with outliers.
+ *
+ * Runs on the JVM with <code>java TrackBenchmark [points]</code>,
+ * compiled together with the app sources.
+ *
+ */
+public class TrackBenchmark {
+
+    /**
+     * Default number of track points
+     */
+    public static final int DEFAULT_POINTS = 100000;
+
+    /**
+     * Vertex limit for the simplified track
+     */
+    public static final int MAX_VERTICES = 500;
+
+    private static final double METERS_PER_DEGREE = 111320;
+
+    public static void main(String[] args) {
+        System.out.println(run(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_POINTS));
+    }
+
+    /**
+     * Runs the benchmark
+     * @param points The number of track points
+     * @return The report
+     */
+    public static String run(int points) {
+        Random random = new Random(42);
+
+        // A drive with a fix every second, 10 m of noise and 1% wild outliers
+        double[] trueLats = new double[points];
+        double[] trueLons = new double[points];
+        LocationFix[] fixes = new LocationFix[points];
+        double lat = 45.5231;
+        double lon = -122.6765;
+        double heading = 0;
+        double speed = 12;
+        int injectedOutliers = 0;
+        for (int i = 0; i < points; i++) {
+            heading += random.nextGaussian() * 0.05;
+            speed = Math.max(0, Math.min(30, speed + random.nextGaussian() * 0.5));
+            lat += Math.cos(heading) * speed / METERS_PER_DEGREE;
+            lon += Math.sin(heading) * speed / (METERS_PER_DEGREE * Math.cos(Math.toRadians(lat)));
+            trueLats[i] = lat;
+            trueLons[i] = lon;
+
+            double noise = random.nextDouble() < 0.01 ? 500 : 10;
+            if (noise > 10) {
+                injectedOutliers++;
+            }
+            fixes[i] = new LocationFix(1370000000000L + i * 1000L,
+                    lat + random.nextGaussian() * noise / METERS_PER_DEGREE,
+                    lon + random.nextGaussian() * noise / METERS_PER_DEGREE, 10, "gps");
+        }
+
+        LocationSmoother smoother = new LocationSmoother(new LocationSmoother.Config());
+        TrackSimplifier simplifier = new TrackSimplifier(MAX_VERTICES);
+
+        double rawError = 0;
+        double smoothedError = 0;
+        int smoothedCount = 0;
+
+        long smoothNs = 0;
+        long simplifyNs = 0;
+        for (int i = 0; i < points; i++) {
+            long start = System.nanoTime();
+            LocationFix smoothed = smoother.smooth(fixes[i]);
+            smoothNs += System.nanoTime() - start;
+
+            rawError += square(LocationFix.distanceBetween(trueLats[i], trueLons[i], fixes[i].latitude, fixes[i].longitude));
+            if (smoothed == null) {
+                continue;
+            }
+
+            smoothedError += square(LocationFix.distanceBetween(trueLats[i], trueLons[i], smoothed.latitude, smoothed.longitude));
+            smoothedCount++;
+
+            start = System.nanoTime();
+            simplifier.append(smoothed);
+            simplifyNs += System.nanoTime() - start;
+        }
+
+        // The simplified vertices should spread evenly along the track, not bunch up at either end
+        int[] tenths = new int[10];
+        for (LocationFix vertex : simplifier.getVertices()) {
+            long index = (vertex.time - fixes[0].time) / 1000;
+            tenths[(int) Math.min(9, index * 10 / points)]++;
+        }
+
+        return String.format("Track: %d points; smoothing %.2f us/fix, RMS error %.1f m raw vs %.1f m smoothed, "
+                + "%d outliers rejected (%d injected); simplification %.2f us/point to %d vertices, %s per tenth",
+                points, smoothNs / 1E3 / points, Math.sqrt(rawError / points), Math.sqrt(smoothedError / smoothedCount),
+                smoother.getOutlierCount(), injectedOutliers, simplifyNs / 1E3 / smoothedCount, simplifier.size(),
+                Arrays.toString(tenths));
+    }
+
+    private static double square(double value) {
+        return value * value;
+    }
+}
@@ -0,0 +1,204 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.location.Location;
+import android.location.LocationListener;
+import android.location.LocationManager;
+import android.os.BatteryManager;
+import android.os.Bundle;
+import android.os.Handler;
+
+import com.urbanairship.Logger;
+import com.urbanairship.sample.common.EventBus;
+
+import java.util.List;
+
+/**
+ * Requests location updates with the provider, interval and minimum distance
+ * chosen by a {@link SamplingController}, fed by the fixes dispatched from a
+ * {@link LocationPipeline}.
+ *
+ * The updates are requested from the platform {@link LocationManager}, which
+ * takes the minimum distance and accepts the passive provider, and are posted
+ * on the {@link EventBus} like the location service broadcasts. The controller
+ * is refreshed every minute so battery changes and the stationary back off
+ * take effect even when no fixes arrive.
+ *
+ */
+public class AdaptiveLocationSampler implements LocationPipeline.Consumer {
+
+    private static final long REFRESH_INTERVAL_MS = 60 * 1000; // 1 minute
+
+    private final Context context;
+    private final LocationManager locationManager;
+    private final SamplingController controller = new SamplingController(new SamplingController.Config());
+    private final Handler handler = new Handler();
+    private boolean started;
+    private SamplingController.Decision requested;
+
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+        }
+    };
+
+    private final LocationListener locationListener = new LocationListener() {
+        @Override
+        public void onLocationChanged(Location location) {
+            EventBus.shared().post(new LocationEvents.LocationUpdate(location));
+        }
+
+        @Override
+        public void onStatusChanged(String provider, int status, Bundle extras) {
+        }
+
+        @Override
+        public void onProviderEnabled(String provider) {
+        }
+
+        @Override
+        public void onProviderDisabled(String provider) {
+        }
+    };
+
+    /**
+     * Creates a new AdaptiveLocationSampler
+     * @param context The context
+     */
+    public AdaptiveLocationSampler(Context context) {
+        this.context = context;
+        this.locationManager = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
+    }
+
+    /**
+     * Starts sampling. Must be called on the main thread.
+     */
+    public void start() {
+        if (started) {
+            return;
+        }
+
+        started = true;
+        handler.post(refreshRunnable);
+    }
+
+    /**
+     * Stops sampling. Must be called on the main thread.
+     */
+    public void stop() {
+        if (!started) {
+            return;
+        }
+
+        started = false;
+        handler.removeCallbacks(refreshRunnable);
+        locationManager.removeUpdates(locationListener);
+        requested = null;
+        Logger.info(String.format("Adaptive sampling saved an estimated %.0f fixes per hour",
+                controller.getEstimatedFixesSavedPerHour()));
+    }
+
+    /**
+     * @return The sampling controller
+     */
+    public SamplingController getController() {
+        return controller;
+    }
+
+    @Override
+    public void onLocationUpdate(List<LocationFix> fixes) {
+        for (LocationFix fix : fixes) {
+            controller.onFix(fix);
+        }
+
+        if (started) {
+            request(controller.getDecision());
+        }
+    }
+
+    private void refresh() {
+        updateBatteryState();
+        request(controller.refresh(System.currentTimeMillis()));
+
+        if (started) {
+            handler.postDelayed(refreshRunnable, REFRESH_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Replaces the location request when the decision changed how fixes are requested
+     */
+    private void request(SamplingController.Decision decision) {
+        if (requested != null && requested.provider.equals(decision.provider)
+                && requested.intervalMs == decision.intervalMs
+                && requested.minDistanceMeters == decision.minDistanceMeters) {
+            return;
+        }
+
+        Logger.debug("Sampling decision: " + decision);
+
+        // The passive provider was added in API 8
+        String provider = decision.provider;
+        if (locationManager.getProvider(provider) == null) {
+            provider = SamplingController.PROVIDER_NETWORK;
+        }
+
+        locationManager.removeUpdates(locationListener);
+        try {
+            locationManager.requestLocationUpdates(provider, decision.intervalMs,
+                    decision.minDistanceMeters, locationListener);
+        } catch (IllegalArgumentException e) {
+            Logger.debug("Location provider " + provider + " is unavailable");
+        } catch (SecurityException e) {
+            Logger.error("Missing location permission", e);
+        }
+
+        requested = decision;
+    }
+
+    private void updateBatteryState() {
+        // The battery broadcast is sticky, so this returns the last state without registering
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return;
+        }
+
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        int status = battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING
+                || status == BatteryManager.BATTERY_STATUS_FULL;
+
+        if (level >= 0 && scale > 0) {
+            controller.setBatteryState((float) level / scale, charging);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+
+import com.urbanairship.sample.common.EventBus;
+
+/**
+ * Feeds every location update to the consumers that have to keep running
+ * while no activity is showing, through a {@link LocationPipeline} that
+ * lives as long as the app.
+ *
+ * {@link LocationActivity} keeps its own pipeline for the map, which only
+ * receives fixes while it is resumed.
+ *
+ */
+public class AppLocationPipeline {
+
+    private static AppLocationPipeline instance;
+
+    private final LocationPipeline pipeline = new LocationPipeline(new LocationPipeline.Config());
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    private final Runnable dispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            pipeline.dispatch(System.currentTimeMillis());
+            scheduleDispatch();
+        }
+    };
+
+    // Held here for the life of the app, the EventBus only holds it weakly
+    private final EventBus.Subscriber<LocationEvents.LocationUpdate> locationUpdateSubscriber =
+            new EventBus.Subscriber<LocationEvents.LocationUpdate>() {
+
+        @Override
+        public void onEvent(LocationEvents.LocationUpdate event) {
+            if (pipeline.offer(LocationFix.fromLocation(event.location))) {
+                scheduleDispatch();
+            }
+        }
+
+    };
+
+    private AppLocationPipeline(Context context) {
+        pipeline.addConsumer(LocationRecorder.shared(context));
+        pipeline.addConsumer(GeofenceMonitor.shared(context));
+        pipeline.addConsumer(LastKnownLocationCache.shared(context));
+
+        LocationUploader uploader = LocationUploader.shared(context);
+        if (uploader != null) {
+            pipeline.addConsumer(uploader);
+        }
+
+        EventBus.shared().subscribe(LocationEvents.LocationUpdate.class, locationUpdateSubscriber, EventBus.DELIVER_MAIN);
+    }
+
+    /**
+     * Starts the pipeline. Safe to call more than once.
+     * @param context Application context
+     */
+    public static synchronized void start(Context context) {
+        if (instance == null) {
+            instance = new AppLocationPipeline(context.getApplicationContext());
+        }
+    }
+
+    private void scheduleDispatch() {
+        handler.removeCallbacks(dispatchRunnable);
+
+        long delay = pipeline.getDispatchDelay(System.currentTimeMillis());
+        if (delay >= 0) {
+            handler.postDelayed(dispatchRunnable, delay);
+        }
+    }
+}
@@ -0,0 +1,218 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.app.AlertDialog;
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Point;
+import android.graphics.drawable.Drawable;
+
+import com.google.android.maps.GeoPoint;
+import com.google.android.maps.ItemizedOverlay;
+import com.google.android.maps.MapView;
+import com.google.android.maps.OverlayItem;
+import com.google.android.maps.Projection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An overlay that shows any number of location fixes as clusters.
+ *
+ * The items are only repopulated when the viewport, the zoom level or
+ * the fixes change, and then only from the clusters visible in the
+ * viewport. Tapping a cluster zooms in on it.
+ *
+ * Recorded history can be added from a background thread while live
+ * fixes are added on the main thread. The two are split by time so a fix
+ * that is both recorded and live is only shown once.
+ *
+ */
+public class ClusterOverlay extends ItemizedOverlay<OverlayItem> {
+
+    private final Context context;
+    private final PointClusterer<LocationFix> clusterer = new PointClusterer<LocationFix>();
+    private final Paint countPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Point screenPoint = new Point();
+
+    private List<PointClusterer.Cluster<LocationFix>> clusters = new ArrayList<PointClusterer.Cluster<LocationFix>>();
+    private MapView mapView;
+    private volatile boolean dirty;
+
+    // Guards the time split between live fixes and history
+    private final Object splitLock = new Object();
+    private long liveStart = Long.MAX_VALUE;
+    private long historyEnd = Long.MIN_VALUE;
+    private int lastZoom = -1;
+    private int lastCenterLat;
+    private int lastCenterLon;
+    private int lastLatSpan;
+    private int lastLonSpan;
+
+    public ClusterOverlay(Drawable defaultMarker, Context context) {
+        super(boundCenterBottom(defaultMarker));
+        this.context = context;
+
+        countPaint.setColor(Color.WHITE);
+        countPaint.setTextAlign(Paint.Align.CENTER);
+        countPaint.setTextSize(12 * context.getResources().getDisplayMetrics().density);
+        countPaint.setShadowLayer(2, 0, 0, Color.BLACK);
+
+        populate();
+    }
+
+    /**
+     * Adds live fixes to the overlay, skipping any already added from the
+     * history. Must be called on the main thread.
+     * @param fixes The fixes
+     */
+    public void addFixes(List<LocationFix> fixes) {
+        synchronized (splitLock) {
+            for (LocationFix fix : fixes) {
+                if (fix.time <= historyEnd) {
+                    continue;
+                }
+
+                liveStart = Math.min(liveStart, fix.time);
+                clusterer.add((int) (fix.latitude * 1E6), (int) (fix.longitude * 1E6), fix);
+            }
+        }
+        dirty = true;
+    }
+
+    /**
+     * Adds recorded fixes to the overlay, stopping at the first live fix.
+     * Can be called on any thread. The fixes are added one at a time, so
+     * drawing on the main thread is not blocked while a large history is
+     * indexed. Invalidate the map once it returns.
+     *
+     * @param fixes The fixes, oldest first
+     */
+    public void addHistory(List<LocationFix> fixes) {
+        for (LocationFix fix : fixes) {
+            synchronized (splitLock) {
+                if (fix.time >= liveStart) {
+                    break;
+                }
+                historyEnd = Math.max(historyEnd, fix.time);
+            }
+
+            clusterer.add((int) (fix.latitude * 1E6), (int) (fix.longitude * 1E6), fix);
+        }
+        dirty = true;
+    }
+
+    @Override
+    public void draw(Canvas canvas, MapView mapView, boolean shadow) {
+        if (!shadow) {
+            refresh(mapView);
+        }
+
+        super.draw(canvas, mapView, shadow);
+
+        if (!shadow) {
+            drawCounts(canvas, mapView.getProjection());
+        }
+    }
+
+    @Override
+    protected OverlayItem createItem(int i) {
+        PointClusterer.Cluster<LocationFix> cluster = clusters.get(i);
+        GeoPoint point = new GeoPoint(cluster.latE6, cluster.lonE6);
+
+        if (cluster.item != null) {
+            return new OverlayItem(point, "Location history",
+                    String.format("I was at latitude %s, longitude %s",
+                            cluster.item.latitude, cluster.item.longitude));
+        }
+
+        return new OverlayItem(point, cluster.count + " locations", null);
+    }
+
+    @Override
+    public int size() {
+        return clusters.size();
+    }
+
+    @Override
+    protected boolean onTap(int index) {
+        PointClusterer.Cluster<LocationFix> cluster = clusters.get(index);
+        if (cluster.count > 1 && mapView != null) {
+            mapView.getController().animateTo(new GeoPoint(cluster.latE6, cluster.lonE6));
+            mapView.getController().zoomIn();
+            return true;
+        }
+
+        OverlayItem item = getItem(index);
+        AlertDialog.Builder dialog = new AlertDialog.Builder(context);
+        dialog.setTitle(item.getTitle());
+        dialog.setMessage(item.getSnippet());
+        dialog.show();
+        return true;
+    }
+
+    /**
+     * Repopulates the items from the visible clusters if the viewport or the fixes changed
+     */
+    private void refresh(MapView mapView) {
+        this.mapView = mapView;
+
+        GeoPoint center = mapView.getMapCenter();
+        int zoom = mapView.getZoomLevel();
+        int latSpan = mapView.getLatitudeSpan();
+        int lonSpan = mapView.getLongitudeSpan();
+
+        if (!dirty && zoom == lastZoom && center.getLatitudeE6() == lastCenterLat
+                && center.getLongitudeE6() == lastCenterLon && latSpan == lastLatSpan && lonSpan == lastLonSpan) {
+            return;
+        }
+
+        dirty = false;
+        lastZoom = zoom;
+        lastCenterLat = center.getLatitudeE6();
+        lastCenterLon = center.getLongitudeE6();
+        lastLatSpan = latSpan;
+        lastLonSpan = lonSpan;
+
+        clusters = clusterer.getClusters(lastCenterLat - latSpan / 2, lastCenterLon - lonSpan / 2,
+                lastCenterLat + latSpan / 2, lastCenterLon + lonSpan / 2, zoom);
+
+        setLastFocusedIndex(-1);
+        populate();
+    }
+
+    private void drawCounts(Canvas canvas, Projection projection) {
+        for (PointClusterer.Cluster<LocationFix> cluster : clusters) {
+            if (cluster.count > 1) {
+                projection.toPixels(new GeoPoint(cluster.latE6, cluster.lonE6), screenPoint);
+                canvas.drawText(String.valueOf(cluster.count), screenPoint.x, screenPoint.y, countPaint);
+            }
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+/**
+ * An immutable circular or polygonal geofence.
+ *
+ */
+public final class Geofence {
+
+    private static final double METERS_PER_DEGREE = 111320;
+
+    public final String id;
+
+    /**
+     * Time in milliseconds a fix has to stay inside before a dwell transition, or 0 for no dwell
+     */
+    public final long dwellMs;
+
+    // Circle
+    private final double centerLat;
+    private final double centerLon;
+    private final double radiusMeters;
+
+    // Polygon, null for a circle
+    private final double[] lats;
+    private final double[] lons;
+
+    // Radius of a circle, or half the shorter side of a polygon's bounding box, in meters
+    final double innerSizeMeters;
+
+    // Bounding box in degrees
+    final double minLat;
+    final double minLon;
+    final double maxLat;
+    final double maxLon;
+
+    private Geofence(String id, long dwellMs, double centerLat, double centerLon, double radiusMeters,
+            double[] lats, double[] lons, double minLat, double minLon, double maxLat, double maxLon) {
+        this.id = id;
+        this.dwellMs = dwellMs;
+        this.centerLat = centerLat;
+        this.centerLon = centerLon;
+        this.radiusMeters = radiusMeters;
+        this.lats = lats;
+        this.lons = lons;
+        this.minLat = minLat;
+        this.minLon = minLon;
+        this.maxLat = maxLat;
+        this.maxLon = maxLon;
+
+        if (lats == null) {
+            innerSizeMeters = radiusMeters;
+        } else {
+            double height = (maxLat - minLat) * METERS_PER_DEGREE;
+            double width = (maxLon - minLon) * METERS_PER_DEGREE * Math.cos(Math.toRadians(centerLat));
+            innerSizeMeters = Math.min(height, width) / 2;
+        }
+    }
+
+    /**
+     * Creates a circular geofence
+     * @param id The geofence id
+     * @param latitude The center latitude in degrees
+     * @param longitude The center longitude in degrees
+     * @param radiusMeters The radius in meters
+     * @param dwellMs Time inside before a dwell transition, or 0 for no dwell
+     * @return The geofence
+     */
+    public static Geofence circle(String id, double latitude, double longitude, double radiusMeters, long dwellMs) {
+        double latDelta = radiusMeters / METERS_PER_DEGREE;
+        double lonDelta = radiusMeters / (METERS_PER_DEGREE * Math.max(0.01, Math.cos(Math.toRadians(latitude))));
+        return new Geofence(id, dwellMs, latitude, longitude, radiusMeters, null, null,
+                latitude - latDelta, longitude - lonDelta, latitude + latDelta, longitude + lonDelta);
+    }
+
+    /**
+     * Creates a polygonal geofence
+     * @param id The geofence id
+     * @param latitudes The vertex latitudes in degrees
+     * @param longitudes The vertex longitudes in degrees
+     * @param dwellMs Time inside before a dwell transition, or 0 for no dwell
+     * @return The geofence
+     */
+    public static Geofence polygon(String id, double[] latitudes, double[] longitudes, long dwellMs) {
+        if (latitudes.length < 3 || latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("A polygon needs at least 3 vertices");
+        }
+
+        double minLat = Double.MAX_VALUE;
+        double minLon = Double.MAX_VALUE;
+        double maxLat = -Double.MAX_VALUE;
+        double maxLon = -Double.MAX_VALUE;
+        for (int i = 0; i < latitudes.length; i++) {
+            minLat = Math.min(minLat, latitudes[i]);
+            maxLat = Math.max(maxLat, latitudes[i]);
+            minLon = Math.min(minLon, longitudes[i]);
+            maxLon = Math.max(maxLon, longitudes[i]);
+        }
+
+        return new Geofence(id, dwellMs, (minLat + maxLat) / 2, (minLon + maxLon) / 2, 0,
+                latitudes.clone(), longitudes.clone(), minLat, minLon, maxLat, maxLon);
+    }
+
+    /**
+     * @return <code>true</code> if the geofence is a polygon
+     */
+    public boolean isPolygon() {
+        return lats != null;
+    }
+
+    /**
+     * Gets the signed distance from a point to the geofence boundary
+     * @param latitude The latitude in degrees
+     * @param longitude The longitude in degrees
+     * @return The distance in meters, negative inside the geofence
+     */
+    public double signedDistance(double latitude, double longitude) {
+        if (lats == null) {
+            return LocationFix.distanceBetween(centerLat, centerLon, latitude, longitude) - radiusMeters;
+        }
+
+        // Project onto a local plane around the point, fine at geofence scales
+        double lonScale = METERS_PER_DEGREE * Math.cos(Math.toRadians(latitude));
+        boolean inside = false;
+        double minDistanceSquared = Double.MAX_VALUE;
+
+        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+            double ay = (lats[j] - latitude) * METERS_PER_DEGREE;
+            double ax = (lons[j] - longitude) * lonScale;
+            double by = (lats[i] - latitude) * METERS_PER_DEGREE;
+            double bx = (lons[i] - longitude) * lonScale;
+
+            // Ray cast along +x from the origin
+            if ((ay > 0) != (by > 0) && 0 < ax + (bx - ax) * (0 - ay) / (by - ay)) {
+                inside = !inside;
+            }
+
+            // Distance from the origin to the edge
+            double dx = bx - ax;
+            double dy = by - ay;
+            double lengthSquared = dx * dx + dy * dy;
+            double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1, -(ax * dx + ay * dy) / lengthSquared));
+            double px = ax + t * dx;
+            double py = ay + t * dy;
+            minDistanceSquared = Math.min(minDistanceSquared, px * px + py * py);
+        }
+
+        double distance = Math.sqrt(minDistanceSquared);
+        return inside ? -distance : distance;
+    }
+
+    @Override
+    public String toString() {
+        return "Geofence[" + id + "]";
+    }
+}
@@ -0,0 +1,294 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Evaluates location fixes against a set of geofences and emits enter,
+ * exit and dwell transitions.
+ *
+ * The fences are indexed in a uniform grid of their bounding boxes, so a
+ * fix is only tested against the fences in its grid cell and the fences it
+ * is currently inside. A fix has to be {@link Config#hysteresisMeters}
+ * inside a fence to enter it and the same distance outside to exit it,
+ * so jitter along a boundary does not produce a stream of transitions.
+ *
+ * The engine is not thread safe, evaluate fixes from a single thread.
+ *
+ */
+public class GeofenceEngine {
+
+    public static final int TRANSITION_ENTER = 1;
+    public static final int TRANSITION_EXIT = 2;
+    public static final int TRANSITION_DWELL = 4;
+
+    /**
+     * Receives the geofence transitions
+     */
+    public interface Listener {
+        /**
+         * Called when a fix causes a transition
+         * @param geofence The geofence
+         * @param transition One of the transition constants
+         * @param fix The fix that caused the transition
+         */
+        void onGeofenceTransition(Geofence geofence, int transition, LocationFix fix);
+    }
+
+    /**
+     * The engine settings
+     */
+    public static class Config {
+        /**
+         * Distance in meters past the boundary needed to enter or exit
+         */
+        public double hysteresisMeters = 20;
+
+        /**
+         * Grid cell size in degrees
+         */
+        public double cellSizeDegrees = 0.01;
+
+        /**
+         * Fences that cover more cells than this are tested against every fix instead
+         */
+        public int maxCellsPerFence = 1024;
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    private final Config config;
+    private final List<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    private Geofence[] fences = new Geofence[0];
+    private Map<Long, int[]> grid = new HashMap<Long, int[]>();
+    private int[] largeFences = EMPTY;
+
+    // Entered fence indexes to the time they were entered, and the entered fences that have dwelled
+    private final Map<Integer, Long> entered = new HashMap<Integer, Long>();
+    private final Set<Integer> dwelling = new HashSet<Integer>();
+
+    private int[] visitedStamp = new int[0];
+    private int stamp;
+
+    /**
+     * Creates a new GeofenceEngine
+     * @param config The settings
+     */
+    public GeofenceEngine(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * @param listener The listener to add
+     */
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener The listener to remove
+     */
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Replaces the geofences and rebuilds the index. The state of the
+     * fences the device is in is reset without emitting transitions.
+     *
+     * @param geofences The geofences
+     */
+    public void setGeofences(List<Geofence> geofences) {
+        Geofence[] newFences = geofences.toArray(new Geofence[geofences.size()]);
+        Map<Long, List<Integer>> cells = new HashMap<Long, List<Integer>>();
+        List<Integer> large = new ArrayList<Integer>();
+
+        double margin = config.hysteresisMeters / 111320;
+        for (int i = 0; i < newFences.length; i++) {
+            Geofence fence = newFences[i];
+
+            // Pad by the hysteresis so fixes just outside still reach an entered fence
+            int minY = cell(fence.minLat - margin);
+            int maxY = cell(fence.maxLat + margin);
+            int minX = cell(fence.minLon - margin);
+            int maxX = cell(fence.maxLon + margin);
+
+            if ((long) (maxY - minY + 1) * (maxX - minX + 1) > config.maxCellsPerFence) {
+                large.add(i);
+                continue;
+            }
+
+            for (int y = minY; y <= maxY; y++) {
+                for (int x = minX; x <= maxX; x++) {
+                    Long key = key(y, x);
+                    List<Integer> cell = cells.get(key);
+                    if (cell == null) {
+                        cell = new ArrayList<Integer>(2);
+                        cells.put(key, cell);
+                    }
+                    cell.add(i);
+                }
+            }
+        }
+
+        // Freeze the cells into arrays to keep lookups allocation free
+        Map<Long, int[]> newGrid = new HashMap<Long, int[]>(cells.size() * 2);
+        for (Map.Entry<Long, List<Integer>> entry : cells.entrySet()) {
+            newGrid.put(entry.getKey(), toArray(entry.getValue()));
+        }
+
+        fences = newFences;
+        grid = newGrid;
+        largeFences = toArray(large);
+        visitedStamp = new int[newFences.length];
+        entered.clear();
+        dwelling.clear();
+    }
+
+    /**
+     * @return The number of geofences
+     */
+    public int size() {
+        return fences.length;
+    }
+
+    /**
+     * Evaluates a fix and emits any transitions
+     * @param fix The fix
+     * @return The number of transitions emitted
+     */
+    public int evaluate(LocationFix fix) {
+        int transitions = 0;
+        if (++stamp == Integer.MAX_VALUE) {
+            stamp = 1;
+            visitedStamp = new int[fences.length];
+        }
+
+        // Fences the fix is already in are always tested so exits are never missed
+        if (!entered.isEmpty()) {
+            Iterator<Map.Entry<Integer, Long>> iterator = entered.entrySet().iterator();
+            List<Integer> exited = null;
+            while (iterator.hasNext()) {
+                Map.Entry<Integer, Long> entry = iterator.next();
+                int index = entry.getKey();
+                visitedStamp[index] = stamp;
+
+                Geofence fence = fences[index];
+                double distance = fence.signedDistance(fix.latitude, fix.longitude);
+                if (distance > config.hysteresisMeters) {
+                    iterator.remove();
+                    dwelling.remove(index);
+                    if (exited == null) {
+                        exited = new ArrayList<Integer>();
+                    }
+                    exited.add(index);
+                } else if (fence.dwellMs > 0 && !dwelling.contains(index)
+                        && fix.time - entry.getValue() >= fence.dwellMs) {
+                    dwelling.add(index);
+                    notifyListeners(fence, TRANSITION_DWELL, fix);
+                    transitions++;
+                }
+            }
+
+            if (exited != null) {
+                for (int index : exited) {
+                    notifyListeners(fences[index], TRANSITION_EXIT, fix);
+                    transitions++;
+                }
+            }
+        }
+
+        int[] candidates = grid.get(key(cell(fix.latitude), cell(fix.longitude)));
+        transitions += evaluateCandidates(candidates == null ? EMPTY : candidates, fix);
+        transitions += evaluateCandidates(largeFences, fix);
+        return transitions;
+    }
+
+    /**
+     * @return The number of fences the device is currently inside
+     */
+    public int getEnteredCount() {
+        return entered.size();
+    }
+
+    private int evaluateCandidates(int[] candidates, LocationFix fix) {
+        int transitions = 0;
+        for (int index : candidates) {
+            if (visitedStamp[index] == stamp) {
+                continue;
+            }
+            visitedStamp[index] = stamp;
+
+            Geofence fence = fences[index];
+
+            // Cheap bounding box rejection before the exact test
+            if (fix.latitude < fence.minLat || fix.latitude > fence.maxLat
+                    || fix.longitude < fence.minLon || fix.longitude > fence.maxLon) {
+                continue;
+            }
+
+            // Small fences need less hysteresis or they could never be entered
+            double threshold = Math.min(config.hysteresisMeters, fence.innerSizeMeters / 2);
+            if (fence.signedDistance(fix.latitude, fix.longitude) <= -threshold) {
+                entered.put(index, fix.time);
+                notifyListeners(fence, TRANSITION_ENTER, fix);
+                transitions++;
+            }
+        }
+        return transitions;
+    }
+
+    private void notifyListeners(Geofence fence, int transition, LocationFix fix) {
+        for (Listener listener : listeners) {
+            listener.onGeofenceTransition(fence, transition, fix);
+        }
+    }
+
+    private int cell(double degrees) {
+        return (int) Math.floor(degrees / config.cellSizeDegrees);
+    }
+
+    private static Long key(int y, int x) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+
+    private static int[] toArray(List<Integer> list) {
+        int[] array = new int[list.size()];
+        for (int i = 0; i < array.length; i++) {
+            array[i] = list.get(i);
+        }
+        return array;
+    }
+}
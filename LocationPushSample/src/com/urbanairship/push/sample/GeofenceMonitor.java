@@ -0,0 +1,188 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.app.Notification;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.urbanairship.Logger;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Evaluates the fixes dispatched by a {@link LocationPipeline} against the
+ * geofences in the <code>geofences.csv</code> asset, and posts a local
+ * notification when the user enters or dwells in one.
+ *
+ * Each line of the asset is either
+ * <code>circle,id,latitude,longitude,radius_meters,dwell_ms</code> or
+ * <code>polygon,id,dwell_ms,lat lon;lat lon;lat lon...</code>.
+ *
+ */
+public class GeofenceMonitor implements LocationPipeline.Consumer, GeofenceEngine.Listener {
+
+    private static final String GEOFENCES_ASSET = "geofences.csv";
+    private static final int NOTIFICATION_ID = 2000;
+
+    private static GeofenceMonitor instance;
+
+    private final Context context;
+    private final Handler workerQueue;
+    private final GeofenceEngine engine = new GeofenceEngine(new GeofenceEngine.Config());
+
+    private GeofenceMonitor(Context context) {
+        this.context = context;
+
+        HandlerThread workerThread = new HandlerThread("LocationPushSample-Geofences");
+        workerThread.start();
+        workerQueue = new Handler(workerThread.getLooper());
+
+        engine.addListener(this);
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                engine.setGeofences(loadGeofences());
+                Logger.info("Monitoring " + engine.size() + " geofences");
+            }
+        });
+    }
+
+    /**
+     * @param context Application context
+     * @return The shared GeofenceMonitor
+     */
+    public static synchronized GeofenceMonitor shared(Context context) {
+        if (instance == null) {
+            instance = new GeofenceMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onLocationUpdate(final List<LocationFix> fixes) {
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                for (LocationFix fix : fixes) {
+                    engine.evaluate(fix);
+                }
+            }
+        });
+    }
+
+    @SuppressWarnings("deprecation")
+    @Override
+    public void onGeofenceTransition(Geofence geofence, int transition, LocationFix fix) {
+        Logger.info("Geofence " + geofence.id + " transition " + transition);
+        if (transition == GeofenceEngine.TRANSITION_EXIT) {
+            return;
+        }
+
+        String title = context.getString(R.string.app_name);
+        String text = context.getString(transition == GeofenceEngine.TRANSITION_ENTER ?
+                R.string.geofence_entered : R.string.geofence_dwelled, geofence.id);
+
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0,
+                new Intent(context, LocationActivity.class), PendingIntent.FLAG_UPDATE_CURRENT);
+
+        Notification notification = new Notification(R.drawable.icon_small, text, System.currentTimeMillis());
+        notification.flags |= Notification.FLAG_AUTO_CANCEL;
+        notification.setLatestEventInfo(context, title, text, contentIntent);
+
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        manager.notify(geofence.id, NOTIFICATION_ID, notification);
+    }
+
+    private List<Geofence> loadGeofences() {
+        List<Geofence> geofences = new ArrayList<Geofence>();
+        BufferedReader reader = null;
+        try {
+            reader = new BufferedReader(new InputStreamReader(context.getAssets().open(GEOFENCES_ASSET)));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Geofence geofence = parseGeofence(line.trim());
+                if (geofence != null) {
+                    geofences.add(geofence);
+                }
+            }
+        } catch (IOException e) {
+            Logger.info("No geofences loaded: " + e.getMessage());
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    // Ignore
+                }
+            }
+        }
+        return geofences;
+    }
+
+    /**
+     * Parses a geofence from an asset line
+     * @param line The line
+     * @return The geofence, or null if the line does not hold a geofence
+     */
+    static Geofence parseGeofence(String line) {
+        if (line.length() == 0 || line.startsWith("#")) {
+            return null;
+        }
+
+        String[] fields = line.split(",");
+        try {
+            if ("circle".equals(fields[0]) && fields.length == 6) {
+                return Geofence.circle(fields[1], Double.parseDouble(fields[2]), Double.parseDouble(fields[3]),
+                        Double.parseDouble(fields[4]), Long.parseLong(fields[5]));
+            }
+
+            if ("polygon".equals(fields[0]) && fields.length == 4) {
+                String[] vertices = fields[3].split(";");
+                double[] lats = new double[vertices.length];
+                double[] lons = new double[vertices.length];
+                for (int i = 0; i < vertices.length; i++) {
+                    String[] coordinates = vertices[i].trim().split(" ");
+                    lats[i] = Double.parseDouble(coordinates[0]);
+                    lons[i] = Double.parseDouble(coordinates[1]);
+                }
+                return Geofence.polygon(fields[1], lats, lons, Long.parseLong(fields[2]));
+            }
+        } catch (RuntimeException e) {
+            Logger.error("Invalid geofence: " + line);
+        }
+
+        return null;
+    }
+}
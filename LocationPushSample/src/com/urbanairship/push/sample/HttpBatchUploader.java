@@ -0,0 +1,85 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Posts encoded location batches to a collector over HTTP
+ *
+ */
+public class HttpBatchUploader implements LocationUploadQueue.Uploader {
+
+    /**
+     * Header with the number of fixes in the batch
+     */
+    public static final String FIX_COUNT_HEADER = "X-Fix-Count";
+
+    public static final String CONTENT_TYPE = "application/x-location-batch";
+
+    private static final int TIMEOUT_MS = 30000;
+
+    private final URL url;
+
+    /**
+     * Creates a new HttpBatchUploader
+     * @param url The collector URL
+     */
+    public HttpBatchUploader(URL url) {
+        this.url = url;
+    }
+
+    @Override
+    public boolean upload(byte[] batch, int fixes) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        try {
+            connection.setDoOutput(true);
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(TIMEOUT_MS);
+            connection.setReadTimeout(TIMEOUT_MS);
+            connection.setFixedLengthStreamingMode(batch.length);
+            connection.setRequestProperty("Content-Type", CONTENT_TYPE);
+            connection.setRequestProperty(FIX_COUNT_HEADER, String.valueOf(fixes));
+
+            OutputStream out = connection.getOutputStream();
+            try {
+                out.write(batch);
+            } finally {
+                out.close();
+            }
+
+            int status = connection.getResponseCode();
+
+            // Retry server errors, throttling and timeouts, drop batches the collector will never accept
+            return status / 100 == 2 || (status / 100 == 4 && status != 408 && status != 429);
+        } finally {
+            connection.disconnect();
+        }
+    }
+}
@@ -25,76 +25,60 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.urbanairship.push.sample;
 
-import java.util.Arrays;
-import java.util.List;
-import java.util.Set;
-
 import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import android.util.Log;
 
-import com.urbanairship.UAirship;
 import com.urbanairship.push.PushManager;
+import com.urbanairship.sample.common.PushActionDispatcher;
+import com.urbanairship.sample.common.PushIntakeQueue;
 
 public class IntentReceiver extends BroadcastReceiver {
 
-    private static final String logTag = "PushSample";
+    // Maximum number of pushes waiting to be handled
+    private static final int INTAKE_QUEUE_CAPACITY = 64;
+
+    private static PushIntakeQueue<PushPayload> intakeQueue;
 
     @Override
     public void onReceive(Context context, Intent intent) {
-        Log.i(logTag, "Received intent: " + intent.toString());
+        // Parse the push once, the handlers and the event log share the payload
+        PushPayload payload = null;
         String action = intent.getAction();
+        if (PushManager.ACTION_PUSH_RECEIVED.equals(action) || PushManager.ACTION_NOTIFICATION_OPENED.equals(action)) {
+            payload = PushPayload.fromBundle(intent.getExtras());
+        }
 
-        if (action.equals(PushManager.ACTION_PUSH_RECEIVED)) {
-
-            int id = intent.getIntExtra(PushManager.EXTRA_NOTIFICATION_ID, 0);
-
-            Log.i(logTag, "Received push notification. Alert: "
-                    + intent.getStringExtra(PushManager.EXTRA_ALERT)
-                    + " [NotificationID="+id+"]");
-
-            logPushExtras(intent);
-
-        } else if (action.equals(PushManager.ACTION_NOTIFICATION_OPENED)) {
-
-            Log.i(logTag, "User clicked notification. Message: " + intent.getStringExtra(PushManager.EXTRA_ALERT));
-
-            logPushExtras(intent);
-
-            Intent launch = new Intent(Intent.ACTION_MAIN);
-            launch.setClass(UAirship.shared().getApplicationContext(), MainActivity.class);
-            launch.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-
-            UAirship.shared().getApplicationContext().startActivity(launch);
+        // Hand the push off to the worker thread
+        getIntakeQueue().enqueue(this, context, intent, payload);
+    }
 
-        } else if (action.equals(PushManager.ACTION_REGISTRATION_FINISHED)) {
-            Log.i(logTag, "Registration complete. APID:" + intent.getStringExtra(PushManager.EXTRA_APID)
-                    + ". Valid: " + intent.getBooleanExtra(PushManager.EXTRA_REGISTRATION_VALID, false));
+    /**
+     * @return The queue handling pushes off the main thread
+     */
+    public static synchronized PushIntakeQueue<PushPayload> getIntakeQueue() {
+        if (intakeQueue == null) {
+            intakeQueue = new PushIntakeQueue<PushPayload>("PushSample-Intake", new PushHandler(), INTAKE_QUEUE_CAPACITY);
         }
-
+        return intakeQueue;
     }
 
     /**
-     * Log the values sent in the payload's "extra" dictionary.
-     * 
-     * @param intent A PushManager.ACTION_NOTIFICATION_OPENED or ACTION_PUSH_RECEIVED intent.
+     * Handles the pushes on the intake queue's worker thread with the
+     * actions registered in {@link MyApplication}
      */
-    private void logPushExtras(Intent intent) {
-        Set<String> keys = intent.getExtras().keySet();
-        for (String key : keys) {
-
-            //ignore standard C2DM extra keys
-            List<String> ignoredKeys = (List<String>)Arrays.asList(
-                    "collapse_key",//c2dm collapse key
-                    "from",//c2dm sender
-                    PushManager.EXTRA_NOTIFICATION_ID,//int id of generated notification (ACTION_PUSH_RECEIVED only)
-                    PushManager.EXTRA_PUSH_ID,//internal UA push id
-                    PushManager.EXTRA_ALERT);//ignore alert
-            if (ignoredKeys.contains(key)) {
-                continue;
-            }
-            Log.i(logTag, "Push Notification Extra: ["+key+" : " + intent.getStringExtra(key) + "]");
+    private static class PushHandler implements PushIntakeQueue.IntakeHandler<PushPayload> {
+
+        @Override
+        public String getMergeId(PushPayload payload) {
+            return payload.pushId;
+        }
+
+        @Override
+        public void handle(Context context, Intent intent, PushPayload payload) {
+            PushEventLog.shared(context).record(Log.VERBOSE, PushEventLog.TYPE_INTENT, 0, intent.getAction());
+            PushActionDispatcher.<PushPayload>shared().dispatch(context, intent, payload, null);
         }
     }
 }
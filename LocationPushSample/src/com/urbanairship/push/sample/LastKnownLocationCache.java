@@ -0,0 +1,246 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Persists the last fix dispatched by a {@link LocationPipeline} so the map
+ * can show it as soon as it opens, before the location service is bound or
+ * a fresh fix arrives.
+ *
+ * The fix is loaded once in the background and kept in memory. A fix older
+ * than the time to live is treated as missing and removed.
+ *
+ */
+public class LastKnownLocationCache implements LocationPipeline.Consumer {
+
+    /**
+     * Default time a cached fix is shown for
+     */
+    public static final long DEFAULT_TTL_MS = 6L * 60 * 60 * 1000; // 6 hours
+
+    /**
+     * Receives the cached fix on the main thread
+     */
+    public interface Callback {
+        /**
+         * @param fix The last known fix, or null if there is none or it is stale
+         */
+        void onLastKnownLocation(LocationFix fix);
+    }
+
+    private static final String PREFERENCES_NAME = "com.urbanairship.push.sample.last_known_location";
+    private static final String TIME_KEY = "time";
+    private static final String LATITUDE_KEY = "latitude";
+    private static final String LONGITUDE_KEY = "longitude";
+    private static final String ACCURACY_KEY = "accuracy";
+    private static final String PROVIDER_KEY = "provider";
+
+    private static LastKnownLocationCache instance;
+
+    private final SharedPreferences preferences;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Handler workerQueue;
+    private final List<Callback> pendingCallbacks = new ArrayList<Callback>();
+
+    private long ttlMs = DEFAULT_TTL_MS;
+    private LocationFix fix;
+    private boolean loaded;
+    private boolean loading;
+
+    private LastKnownLocationCache(Context context) {
+        this.preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+
+        HandlerThread workerThread = new HandlerThread("LocationPushSample-LastKnownLocation");
+        workerThread.start();
+        workerQueue = new Handler(workerThread.getLooper());
+    }
+
+    /**
+     * @param context Application context
+     * @return The shared LastKnownLocationCache
+     */
+    public static synchronized LastKnownLocationCache shared(Context context) {
+        if (instance == null) {
+            instance = new LastKnownLocationCache(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Sets how long a cached fix stays valid
+     * @param ttlMs The time to live in milliseconds
+     */
+    public synchronized void setTtl(long ttlMs) {
+        this.ttlMs = ttlMs;
+    }
+
+    /**
+     * Loads the cached fix in the background if it is not already loaded
+     */
+    public synchronized void load() {
+        if (loaded || loading) {
+            return;
+        }
+
+        loading = true;
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                LocationFix stored = read();
+                synchronized (LastKnownLocationCache.this) {
+                    loading = false;
+                    loaded = true;
+
+                    // A fix recorded while loading is newer than the stored one
+                    if (fix == null) {
+                        fix = stored;
+                    }
+                }
+                deliverPendingCallbacks();
+            }
+        });
+    }
+
+    /**
+     * Gets the cached fix. The callback is called immediately if the cache
+     * is loaded, otherwise on the main thread once it is.
+     *
+     * @param callback The callback
+     */
+    public void get(Callback callback) {
+        LocationFix current;
+        synchronized (this) {
+            if (!loaded) {
+                pendingCallbacks.add(callback);
+                load();
+                return;
+            }
+            current = getFresh(System.currentTimeMillis());
+        }
+
+        callback.onLastKnownLocation(current);
+    }
+
+    /**
+     * Removes a callback that is waiting for the cache to load
+     * @param callback The callback
+     */
+    public synchronized void cancel(Callback callback) {
+        pendingCallbacks.remove(callback);
+    }
+
+    /**
+     * Caches a fix if it is newer than the cached one
+     * @param fix The fix
+     */
+    public void update(final LocationFix fix) {
+        synchronized (this) {
+            if (this.fix != null && this.fix.time >= fix.time) {
+                return;
+            }
+            this.fix = fix;
+        }
+
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                write(fix);
+            }
+        });
+    }
+
+    @Override
+    public void onLocationUpdate(List<LocationFix> fixes) {
+        update(fixes.get(fixes.size() - 1));
+    }
+
+    /**
+     * Gets the cached fix if it has not expired, removing it if it has
+     */
+    private LocationFix getFresh(long now) {
+        if (fix != null && now - fix.time > ttlMs) {
+            fix = null;
+            workerQueue.post(new Runnable() {
+                @Override
+                public void run() {
+                    preferences.edit().clear().commit();
+                }
+            });
+        }
+        return fix;
+    }
+
+    private void deliverPendingCallbacks() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                List<Callback> callbacks;
+                LocationFix current;
+                synchronized (LastKnownLocationCache.this) {
+                    current = getFresh(System.currentTimeMillis());
+                    callbacks = new ArrayList<Callback>(pendingCallbacks);
+                    pendingCallbacks.clear();
+                }
+
+                for (Callback callback : callbacks) {
+                    callback.onLastKnownLocation(current);
+                }
+            }
+        });
+    }
+
+    private LocationFix read() {
+        if (!preferences.contains(TIME_KEY)) {
+            return null;
+        }
+
+        return new LocationFix(preferences.getLong(TIME_KEY, 0),
+                Double.longBitsToDouble(preferences.getLong(LATITUDE_KEY, 0)),
+                Double.longBitsToDouble(preferences.getLong(LONGITUDE_KEY, 0)),
+                preferences.getFloat(ACCURACY_KEY, LocationFix.UNKNOWN_ACCURACY),
+                preferences.getString(PROVIDER_KEY, null));
+    }
+
+    private void write(LocationFix fix) {
+        // Doubles are stored as their bits, preferences only hold floats
+        preferences.edit()
+        .putLong(TIME_KEY, fix.time)
+        .putLong(LATITUDE_KEY, Double.doubleToLongBits(fix.latitude))
+        .putLong(LONGITUDE_KEY, Double.doubleToLongBits(fix.longitude))
+        .putFloat(ACCURACY_KEY, fix.accuracy)
+        .putString(PROVIDER_KEY, fix.provider)
+        .commit();
+    }
+}
@@ -1,13 +1,10 @@
 package com.urbanairship.push.sample;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.graphics.drawable.Drawable;
 import android.location.Criteria;
 import android.location.Location;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.RemoteException;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -24,25 +21,67 @@ import com.google.android.maps.OverlayItem;
 import com.urbanairship.Logger;
 import com.urbanairship.UAirship;
 import com.urbanairship.location.UALocationManager;
+import com.urbanairship.sample.common.EventBus;
 import com.urbanairship.util.ServiceNotBoundException;
 
+import java.io.IOException;
+import java.util.List;
+
 public class LocationActivity extends MapActivity {
 
+    /**
+     * How much of the location history to show on the map
+     */
+    private static final long HISTORY_DISPLAY_MS = 7L * 24 * 60 * 60 * 1000; // 7 days
+
+    /**
+     * Maximum number of vertices drawn for the current track
+     */
+    private static final int MAX_TRACK_VERTICES = 500;
+
     Button networkUpdateButton;
     Button gpsUpdateButton;
     Criteria newCriteria;
     Drawable mapIcon;
-    IntentFilter locationFilter;
     LinearLayout mapLayout;
     LocationItemizedOverlay overlay;
+    ClusterOverlay historyOverlay;
+    TrackOverlay trackOverlay;
     MapView mapView;
 
+    LocationPipeline pipeline;
+    AdaptiveLocationSampler sampler;
+    TrackProcessor trackProcessor;
+    LastKnownLocationCache lastKnownLocation;
+    LocationFix displayedFix;
+    Handler handler = new Handler();
+
+    private final LastKnownLocationCache.Callback lastKnownLocationCallback = new LastKnownLocationCache.Callback() {
+        @Override
+        public void onLastKnownLocation(LocationFix fix) {
+            // Only a starting point, anything shown already is newer
+            if (fix != null && displayedFix == null) {
+                setNewLocationOnMap(fix);
+            }
+        }
+    };
+
+    private final Runnable dispatchRunnable = new Runnable() {
+        @Override
+        public void run() {
+            pipeline.dispatch(System.currentTimeMillis());
+            scheduleDispatch();
+        }
+    };
+
     @Override
     public void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
 
         setContentView(R.layout.location);
 
+        lastKnownLocation = LastKnownLocationCache.shared(this);
+
         networkUpdateButton = (Button) findViewById(R.id.network_update_button);
         gpsUpdateButton = (Button) findViewById(R.id.gps_update_button);
 
@@ -58,12 +97,34 @@ public class LocationActivity extends MapActivity {
 
             mapIcon = this.getResources().getDrawable(R.drawable.icon_small);
             overlay = new LocationItemizedOverlay(mapIcon, this);
+            historyOverlay = new ClusterOverlay(mapIcon, this);
+            trackOverlay = new TrackOverlay();
+            mapView.getOverlays().add(historyOverlay);
+            mapView.getOverlays().add(trackOverlay);
+            mapView.getOverlays().add(overlay);
 
             initializeMap();
         }
 
-        locationFilter = new IntentFilter();
-        locationFilter.addAction(UALocationManager.getLocationIntentAction(UALocationManager.ACTION_SUFFIX_LOCATION_UPDATE));
+        // Only filtered fixes reach the map, at most once per dispatch interval, and
+        // they are smoothed in the background so jitter and outliers are not drawn
+        trackProcessor = new TrackProcessor(MAX_TRACK_VERTICES, new TrackProcessor.Listener() {
+            @Override
+            public void onTrackUpdated(List<LocationFix> smoothed, List<LocationFix> track) {
+                if (mapView != null) {
+                    historyOverlay.addFixes(smoothed);
+                    trackOverlay.setTrack(track);
+                }
+                showLocation(smoothed.get(smoothed.size() - 1));
+            }
+        });
+
+        pipeline = new LocationPipeline(new LocationPipeline.Config());
+        pipeline.addConsumer(trackProcessor);
+
+        // Sample while the map is showing, at a rate that follows how fast the device moves
+        sampler = new AdaptiveLocationSampler(this);
+        pipeline.addConsumer(sampler);
 
         newCriteria = new Criteria();
         newCriteria.setAccuracy(Criteria.ACCURACY_FINE);
@@ -117,36 +178,60 @@ public class LocationActivity extends MapActivity {
     @Override
     public void onResume() {
         super.onResume();
-        registerReceiver(locationUpdateReceiver, locationFilter);
+        EventBus.shared().subscribe(LocationEvents.LocationUpdate.class, locationUpdateSubscriber, EventBus.DELIVER_MAIN);
+        sampler.start();
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        trackProcessor.quit();
+        lastKnownLocation.cancel(lastKnownLocationCallback);
     }
 
     @Override
     public void onPause() {
         super.onPause();
-        unregisterReceiver(locationUpdateReceiver);
+        EventBus.shared().unsubscribe(LocationEvents.LocationUpdate.class, locationUpdateSubscriber);
+        handler.removeCallbacks(dispatchRunnable);
+        sampler.stop();
     }
 
-    BroadcastReceiver locationUpdateReceiver = new BroadcastReceiver() {
+    EventBus.Subscriber<LocationEvents.LocationUpdate> locationUpdateSubscriber =
+            new EventBus.Subscriber<LocationEvents.LocationUpdate>() {
 
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (UALocationManager.getLocationIntentAction(UALocationManager.ACTION_SUFFIX_LOCATION_UPDATE)
-                    .equals(intent.getAction())) {
-                Location newLocation = (Location) intent.getExtras().get(UALocationManager.LOCATION_KEY);
-                if (mapView != null) {
-                    setNewLocationOnMap(newLocation);
-                } else {
-                    String text = String.format("lat: %s, lon: %s", newLocation.getLatitude(),
-                            newLocation.getLongitude());
-                    Toast.makeText(UAirship.shared().getApplicationContext(),
-                            text, Toast.LENGTH_LONG).show();
-                }
+        public void onEvent(LocationEvents.LocationUpdate event) {
+            if (pipeline.offer(LocationFix.fromLocation(event.location))) {
+                scheduleDispatch();
             }
         }
 
     };
 
+    private void scheduleDispatch() {
+        handler.removeCallbacks(dispatchRunnable);
+
+        long delay = pipeline.getDispatchDelay(System.currentTimeMillis());
+        if (delay >= 0) {
+            handler.postDelayed(dispatchRunnable, delay);
+        }
+    }
+
+    private void showLocation(LocationFix fix) {
+        if (mapView != null) {
+            setNewLocationOnMap(fix);
+        } else {
+            String text = String.format("lat: %s, lon: %s", fix.latitude, fix.longitude);
+            Toast.makeText(UAirship.shared().getApplicationContext(),
+                    text, Toast.LENGTH_LONG).show();
+        }
+    }
+
     private void initializeMap() {
+        // Show the cached fix right away, then refine it with the service's fix if it is bound
+        lastKnownLocation.get(lastKnownLocationCallback);
+
         Location currentLocation = null;
         try {
             currentLocation = UALocationManager.shared().getLocation();
@@ -156,20 +241,61 @@ public class LocationActivity extends MapActivity {
             Logger.debug(e.getMessage());
         }
 
-        if (currentLocation != null)
-            setNewLocationOnMap(currentLocation);
+        if (currentLocation != null) {
+            LocationFix fix = LocationFix.fromLocation(currentLocation);
+            if (displayedFix == null || fix.time > displayedFix.time) {
+                setNewLocationOnMap(fix);
+            }
+            lastKnownLocation.update(fix);
+        }
+
+        loadHistory();
+    }
+
+    /**
+     * Loads the recorded location history and indexes it for the history overlay in the background
+     */
+    private void loadHistory() {
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                LocationHistory history = LocationRecorder.shared(getApplicationContext()).getHistory();
+                if (history == null) {
+                    return;
+                }
+
+                List<LocationFix> fixes;
+                try {
+                    long now = System.currentTimeMillis();
+                    fixes = history.query(now - HISTORY_DISPLAY_MS, now);
+                } catch (IOException e) {
+                    Logger.error("Unable to load location history", e);
+                    return;
+                }
+
+                // Index the fixes here, a week of fixes takes too long for the main thread
+                historyOverlay.addHistory(fixes);
+
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        mapView.invalidate();
+                    }
+                });
+            }
+        }, "LocationHistoryLoader").start();
     }
 
-    private void setNewLocationOnMap(Location location) {
-        GeoPoint point = new GeoPoint((int)(location.getLatitude() * 1E6),
-                (int)(location.getLongitude() * 1E6));
+    private void setNewLocationOnMap(LocationFix location) {
+        GeoPoint point = new GeoPoint((int)(location.latitude * 1E6),
+                (int)(location.longitude * 1E6));
         OverlayItem overlayItem = new OverlayItem(point, "Oh haiiii!",
                 String.format("I'm at latitude %s, longitude %s",
-                        location.getLatitude(), location.getLongitude()));
+                        location.latitude, location.longitude));
 
         overlay.setItem(overlayItem);
-        mapView.getOverlays().clear();
-        mapView.getOverlays().add(overlay);
+        displayedFix = location;
+        mapView.invalidate();
 
         mapView.getController().animateTo(point);
     }
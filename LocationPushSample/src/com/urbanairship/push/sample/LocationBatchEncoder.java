@@ -0,0 +1,183 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes batches of fixes for upload.
+ *
+ * A batch starts with the providers used in it, followed by each fix as
+ * zigzag varint deltas from the previous fix: time in milliseconds,
+ * latitude and longitude in 1E-7 degrees, accuracy in decimeters and an
+ * index into the providers. Consecutive fixes differ by small amounts, so
+ * most fields take one or two bytes, and the result is gzipped.
+ *
+ */
+public class LocationBatchEncoder {
+
+    private static final int MAGIC = 0x4c42; // "LB"
+    private static final int VERSION = 1;
+
+    private LocationBatchEncoder() {}
+
+    /**
+     * Encodes a batch
+     * @param fixes The fixes, oldest first
+     * @return The gzipped batch
+     */
+    public static byte[] encode(List<LocationFix> fixes) throws IOException {
+        List<String> providers = new ArrayList<String>();
+        for (LocationFix fix : fixes) {
+            String provider = fix.provider == null ? "" : fix.provider;
+            if (!providers.contains(provider)) {
+                providers.add(provider);
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(new GZIPOutputStream(bytes));
+
+        out.writeShort(MAGIC);
+        out.writeByte(VERSION);
+        writeVarint(out, providers.size());
+        for (String provider : providers) {
+            out.writeUTF(provider);
+        }
+
+        writeVarint(out, fixes.size());
+        long time = 0;
+        long lat = 0;
+        long lon = 0;
+        long accuracy = 0;
+        for (LocationFix fix : fixes) {
+            long fixLat = Math.round(fix.latitude * 1E7);
+            long fixLon = Math.round(fix.longitude * 1E7);
+            long fixAccuracy = fix.hasAccuracy() ? Math.round(fix.accuracy * 10) + 1 : 0;
+
+            writeVarint(out, zigzag(fix.time - time));
+            writeVarint(out, zigzag(fixLat - lat));
+            writeVarint(out, zigzag(fixLon - lon));
+            writeVarint(out, zigzag(fixAccuracy - accuracy));
+            writeVarint(out, providers.indexOf(fix.provider == null ? "" : fix.provider));
+
+            time = fix.time;
+            lat = fixLat;
+            lon = fixLon;
+            accuracy = fixAccuracy;
+        }
+
+        out.close();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a batch
+     * @param batch The gzipped batch
+     * @return The fixes
+     * @throws IOException if the batch is malformed
+     */
+    public static List<LocationFix> decode(byte[] batch) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new ByteArrayInputStream(batch)));
+        try {
+            if (in.readUnsignedShort() != MAGIC || in.readUnsignedByte() != VERSION) {
+                throw new IOException("Not a location batch");
+            }
+
+            String[] providers = new String[(int) readVarint(in)];
+            for (int i = 0; i < providers.length; i++) {
+                providers[i] = in.readUTF();
+            }
+
+            int count = (int) readVarint(in);
+            List<LocationFix> fixes = new ArrayList<LocationFix>(count);
+            long time = 0;
+            long lat = 0;
+            long lon = 0;
+            long accuracy = 0;
+            for (int i = 0; i < count; i++) {
+                time += unzigzag(readVarint(in));
+                lat += unzigzag(readVarint(in));
+                lon += unzigzag(readVarint(in));
+                accuracy += unzigzag(readVarint(in));
+
+                int index = (int) readVarint(in);
+                if (index >= providers.length) {
+                    throw new IOException("Unknown provider " + index);
+                }
+                String provider = providers[index].length() == 0 ? null : providers[index];
+
+                fixes.add(new LocationFix(time, lat / 1E7, lon / 1E7,
+                        accuracy == 0 ? LocationFix.UNKNOWN_ACCURACY : (accuracy - 1) / 10f, provider));
+            }
+            return fixes;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeVarint(OutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.write((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    private static long readVarint(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
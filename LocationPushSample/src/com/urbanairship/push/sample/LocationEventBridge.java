@@ -0,0 +1,85 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.location.Location;
+
+import com.urbanairship.location.UALocationManager;
+import com.urbanairship.sample.common.EventBus;
+
+/**
+ * Receives the location service broadcasts once for the whole app and
+ * republishes them on the {@link EventBus}, so activities subscribe
+ * in-process instead of each registering a receiver with the system.
+ *
+ */
+public class LocationEventBridge extends BroadcastReceiver {
+
+    private static LocationEventBridge instance;
+
+    private final String updateAction = UALocationManager.getLocationIntentAction(UALocationManager.ACTION_SUFFIX_LOCATION_UPDATE);
+    private final String boundAction = UALocationManager.getLocationIntentAction(UALocationManager.ACTION_SUFFIX_LOCATION_SERVICE_BOUND);
+    private final String unboundAction = UALocationManager.getLocationIntentAction(UALocationManager.ACTION_SUFFIX_LOCATION_SERVICE_UNBOUND);
+
+    /**
+     * Registers the bridge. Safe to call more than once.
+     * @param context Application context
+     */
+    public static synchronized void register(Context context) {
+        if (instance != null) {
+            return;
+        }
+
+        instance = new LocationEventBridge();
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(instance.updateAction);
+        filter.addAction(instance.boundAction);
+        filter.addAction(instance.unboundAction);
+        context.getApplicationContext().registerReceiver(instance, filter);
+    }
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        String action = intent.getAction();
+
+        if (updateAction.equals(action)) {
+            Location location = intent.getExtras() == null ? null
+                    : (Location) intent.getExtras().get(UALocationManager.LOCATION_KEY);
+            if (location != null) {
+                EventBus.shared().post(new LocationEvents.LocationUpdate(location));
+            }
+        } else if (boundAction.equals(action)) {
+            EventBus.shared().post(new LocationEvents.ServiceBindState(true));
+        } else if (unboundAction.equals(action)) {
+            EventBus.shared().post(new LocationEvents.ServiceBindState(false));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.location.Location;
+
+/**
+ * An immutable location fix.
+ *
+ * Unlike {@link Location} this has no Android dependencies, so the location
+ * processing code can be exercised with recorded or simulated tracks.
+ *
+ */
+public final class LocationFix {
+
+    /**
+     * Accuracy of a fix that does not report one
+     */
+    public static final float UNKNOWN_ACCURACY = -1;
+
+    private static final double EARTH_RADIUS_METERS = 6371009;
+
+    public final long time;
+    public final double latitude;
+    public final double longitude;
+    public final float accuracy;
+    public final String provider;
+
+    /**
+     * Creates a new LocationFix
+     * @param time The UTC time of the fix in milliseconds
+     * @param latitude The latitude in degrees
+     * @param longitude The longitude in degrees
+     * @param accuracy The accuracy in meters, or {@link #UNKNOWN_ACCURACY}
+     * @param provider The provider name, or null
+     */
+    public LocationFix(long time, double latitude, double longitude, float accuracy, String provider) {
+        this.time = time;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.provider = provider;
+    }
+
+    /**
+     * Creates a fix from an Android location
+     * @param location The location
+     * @return The fix
+     */
+    public static LocationFix fromLocation(Location location) {
+        return new LocationFix(location.getTime(), location.getLatitude(), location.getLongitude(),
+                location.hasAccuracy() ? location.getAccuracy() : UNKNOWN_ACCURACY, location.getProvider());
+    }
+
+    /**
+     * @return <code>true</code> if the fix reports its accuracy
+     */
+    public boolean hasAccuracy() {
+        return accuracy >= 0;
+    }
+
+    /**
+     * Gets the great circle distance to another fix
+     * @param other The other fix
+     * @return The distance in meters
+     */
+    public double distanceTo(LocationFix other) {
+        return distanceBetween(latitude, longitude, other.latitude, other.longitude);
+    }
+
+    /**
+     * Gets the great circle distance between two points
+     * @return The distance in meters
+     */
+    public static double distanceBetween(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LocationFix[time=%d, lat=%f, lon=%f, accuracy=%.1f, provider=%s]",
+                time, latitude, longitude, accuracy, provider);
+    }
+}
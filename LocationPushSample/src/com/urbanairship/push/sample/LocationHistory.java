@@ -0,0 +1,708 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * An append-only on-disk history of location fixes.
+ *
+ * Fixes are appended to segment files, named by the time of their first
+ * fix, and a segment is sealed once it holds {@link #SEGMENT_CAPACITY}
+ * fixes. Each fix is stored as zigzag varint deltas from the previous fix
+ * in the segment, usually 7 to 10 bytes per fix.
+ *
+ * Range queries pick the segments by time and read them through memory
+ * mapped buffers, starting from the closest sparse checkpoint so only the
+ * fixes around the range are decoded. Sealed segments are expired and
+ * small neighbors are merged on a background thread.
+ *
+ * Timestamps are expected to be mostly increasing. A fix older than the
+ * last fix is stored, but queries assume segments are in time order. A
+ * segment started after the wall clock went backwards is kept, it is
+ * ordered by its start time like any other segment.
+ *
+ */
+public class LocationHistory {
+
+    /**
+     * Number of fixes in a full segment
+     */
+    public static final int SEGMENT_CAPACITY = 65536;
+
+    /**
+     * Fixes between checkpoints that a query can start decoding from
+     */
+    static final int CHECKPOINT_INTERVAL = 128;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final String MERGE_SUFFIX = ".merge";
+
+    private static final String[] PROVIDERS = new String[] { null, "gps", "network", "passive", "fused" };
+    private static final int OTHER_PROVIDER = PROVIDERS.length;
+    private static final String OTHER_PROVIDER_NAME = "other";
+
+    private final File directory;
+    private final long maxAgeMs;
+    private final List<Segment> segments = new ArrayList<Segment>();
+    private final ExecutorService maintenanceExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "LocationHistory-Maintenance");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private Segment active;
+    private OutputStream activeOutput;
+    private final byte[] encodeBuffer = new byte[48];
+
+    /**
+     * Opens a location history, loading any existing segments
+     * @param directory The directory to keep the segments in
+     * @param maxAgeMs Fixes older than this are expired during maintenance
+     * @throws IOException
+     */
+    public LocationHistory(File directory, long maxAgeMs) throws IOException {
+        this.directory = directory;
+        this.maxAgeMs = maxAgeMs;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        load();
+    }
+
+    /**
+     * Appends a fix
+     * @param fix The fix
+     * @throws IOException
+     */
+    public synchronized void append(LocationFix fix) throws IOException {
+        if (active == null || active.count >= SEGMENT_CAPACITY) {
+            roll(fix.time);
+        }
+
+        int length = active.encode(fix, encodeBuffer);
+        activeOutput.write(encodeBuffer, 0, length);
+    }
+
+    /**
+     * Flushes appended fixes to disk
+     * @throws IOException
+     */
+    public synchronized void flush() throws IOException {
+        if (activeOutput != null) {
+            activeOutput.flush();
+        }
+    }
+
+    /**
+     * Closes the history
+     * @throws IOException
+     */
+    public synchronized void close() throws IOException {
+        maintenanceExecutor.shutdown();
+        if (activeOutput != null) {
+            activeOutput.close();
+            activeOutput = null;
+        }
+    }
+
+    /**
+     * Gets the fixes in a time range
+     * @param from The start of the range in milliseconds, inclusive
+     * @param to The end of the range in milliseconds, inclusive
+     * @return The fixes in the range, oldest first
+     * @throws IOException
+     */
+    public List<LocationFix> query(long from, long to) throws IOException {
+        List<Segment> matches = new ArrayList<Segment>();
+        List<MappedByteBuffer> buffers = new ArrayList<MappedByteBuffer>();
+
+        // Map the segments under the lock, a mapping keeps its data even if
+        // maintenance replaces or deletes the file while it is being decoded
+        synchronized (this) {
+            flush();
+            for (Segment segment : segments) {
+                if (segment.length > 0 && segment.startTime <= to && segment.lastTime >= from) {
+                    matches.add(segment.copy());
+                    buffers.add(segment.map());
+                }
+            }
+        }
+
+        List<LocationFix> results = new ArrayList<LocationFix>();
+        for (int i = 0; i < matches.size(); i++) {
+            matches.get(i).read(buffers.get(i), from, to, results);
+        }
+        return results;
+    }
+
+    /**
+     * @return The number of fixes in the history
+     */
+    public synchronized long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    /**
+     * @return The size of the segment files in bytes
+     */
+    public synchronized long sizeOnDisk() throws IOException {
+        flush();
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.file.length();
+        }
+        return size;
+    }
+
+    /**
+     * Expires old segments and merges small sealed segments in the background
+     */
+    public void scheduleMaintenance() {
+        maintenanceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    maintain(System.currentTimeMillis());
+                } catch (IOException e) {
+                    // Maintenance is retried after the next roll
+                }
+            }
+        });
+    }
+
+    /**
+     * Expires the fixes in sealed segments that are older than the max age,
+     * then merges neighboring sealed segments that fit in a single segment.
+     *
+     * @param now The current time in milliseconds
+     * @throws IOException
+     */
+    void maintain(long now) throws IOException {
+        long cutoff = now - maxAgeMs;
+
+        List<Segment> sealed = new ArrayList<Segment>();
+        synchronized (this) {
+            for (Segment segment : segments) {
+                if (segment != active) {
+                    sealed.add(segment);
+                }
+            }
+        }
+
+        // Expire whole segments, and compact segments that are partly expired
+        List<Segment> kept = new ArrayList<Segment>();
+        for (Segment segment : sealed) {
+            if (segment.lastTime < cutoff) {
+                remove(segment);
+            } else if (segment.count > 0 && segment.firstTime < cutoff) {
+                kept.add(rewrite(Collections.singletonList(segment), cutoff));
+            } else {
+                kept.add(segment);
+            }
+        }
+
+        // Merge runs of neighbors that fit in one segment
+        int i = 0;
+        while (i < kept.size()) {
+            int end = i;
+            int count = kept.get(i).count;
+            while (end + 1 < kept.size() && count + kept.get(end + 1).count <= SEGMENT_CAPACITY) {
+                end++;
+                count += kept.get(end).count;
+            }
+
+            if (end > i) {
+                rewrite(kept.subList(i, end + 1), cutoff);
+            }
+            i = end + 1;
+        }
+    }
+
+    /**
+     * Rewrites a run of sealed segments into the first segment's file
+     * @param run The segments, in time order
+     * @param from Fixes older than this are dropped
+     * @return The rewritten segment
+     * @throws IOException
+     */
+    private Segment rewrite(List<Segment> run, long from) throws IOException {
+        Segment first = run.get(0);
+        File temp = new File(directory, first.startTime + TEMP_SUFFIX);
+        Segment merged = new Segment(first.file, first.startTime);
+
+        OutputStream output = new BufferedOutputStream(new FileOutputStream(temp));
+        byte[] buffer = new byte[48];
+        try {
+            List<LocationFix> fixes = new ArrayList<LocationFix>();
+            for (Segment segment : run) {
+                fixes.clear();
+                segment.read(segment.map(), from, Long.MAX_VALUE, fixes);
+                for (LocationFix fix : fixes) {
+                    output.write(buffer, 0, merged.encode(fix, buffer));
+                }
+            }
+        } finally {
+            output.close();
+        }
+
+        // List the segments the merge replaces, so load() can finish the merge
+        // if the process dies after the rename but before they are deleted
+        File journal = new File(directory, first.startTime + MERGE_SUFFIX);
+        if (run.size() > 1) {
+            Writer writer = new FileWriter(journal);
+            try {
+                for (int i = 1; i < run.size(); i++) {
+                    writer.write(run.get(i).file.getName() + "\n");
+                }
+            } finally {
+                writer.close();
+            }
+        }
+
+        synchronized (this) {
+            // Replacing the first segment is atomic, it commits the merge
+            if (!temp.renameTo(first.file)) {
+                temp.delete();
+                journal.delete();
+                throw new IOException("Unable to replace " + first.file);
+            }
+
+            int index = segments.indexOf(first);
+            segments.set(index, merged);
+            for (int i = 1; i < run.size(); i++) {
+                segments.remove(run.get(i));
+                run.get(i).file.delete();
+            }
+            journal.delete();
+        }
+
+        return merged;
+    }
+
+    private synchronized void remove(Segment segment) {
+        segments.remove(segment);
+        segment.file.delete();
+    }
+
+    private void roll(long time) throws IOException {
+        boolean sealed = active != null;
+        if (activeOutput != null) {
+            activeOutput.close();
+        }
+
+        // Segments are named by start time, so a colliding name gets the next free millisecond
+        long startTime = time;
+        File file = new File(directory, startTime + SEGMENT_SUFFIX);
+        while (file.exists()) {
+            file = new File(directory, ++startTime + SEGMENT_SUFFIX);
+        }
+
+        active = new Segment(file, startTime);
+        activeOutput = new BufferedOutputStream(new FileOutputStream(file), 8192);
+
+        // Keep the segments in start time order in case the clock went backwards
+        int index = segments.size();
+        while (index > 0 && segments.get(index - 1).startTime > startTime) {
+            index--;
+        }
+        segments.add(index, active);
+
+        if (sealed) {
+            scheduleMaintenance();
+        }
+    }
+
+    private void load() throws IOException {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        // Finish merges that were committed but did not delete the merged segments
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(MERGE_SUFFIX)) {
+                String startTime = name.substring(0, name.length() - MERGE_SUFFIX.length());
+                if (!new File(directory, startTime + TEMP_SUFFIX).exists()) {
+                    deleteMerged(file);
+                }
+                file.delete();
+            }
+        }
+
+        files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        List<Segment> loaded = new ArrayList<Segment>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TEMP_SUFFIX)) {
+                // An interrupted merge
+                file.delete();
+            } else if (name.endsWith(SEGMENT_SUFFIX)) {
+                try {
+                    long startTime = Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+                    loaded.add(new Segment(file, startTime));
+                } catch (NumberFormatException e) {
+                    // Not a segment
+                }
+            }
+        }
+
+        Segment[] sorted = loaded.toArray(new Segment[loaded.size()]);
+        Arrays.sort(sorted);
+
+        for (Segment segment : sorted) {
+            segment.scan();
+            segments.add(segment);
+        }
+
+        // Keep appending to the last segment if it has room
+        if (!segments.isEmpty()) {
+            Segment last = segments.get(segments.size() - 1);
+            if (last.count < SEGMENT_CAPACITY) {
+                active = last;
+                activeOutput = new BufferedOutputStream(new FileOutputStream(last.file, true), 8192);
+            }
+        }
+    }
+
+    /**
+     * Deletes the segments listed in a merge journal
+     * @param journal The journal
+     * @throws IOException
+     */
+    private void deleteMerged(File journal) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(journal));
+        try {
+            String name;
+            while ((name = reader.readLine()) != null) {
+                if (name.endsWith(SEGMENT_SUFFIX)) {
+                    new File(directory, name).delete();
+                }
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static int providerCode(String provider) {
+        for (int i = 0; i < PROVIDERS.length; i++) {
+            if (provider == null ? PROVIDERS[i] == null : provider.equals(PROVIDERS[i])) {
+                return i;
+            }
+        }
+        return OTHER_PROVIDER;
+    }
+
+    private static String providerName(int code) {
+        return code < PROVIDERS.length ? PROVIDERS[code] : OTHER_PROVIDER_NAME;
+    }
+
+    private static int writeVarint(long value, byte[] buffer, int offset) {
+        while ((value & ~0x7FL) != 0) {
+            buffer[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buffer[offset++] = (byte) value;
+        return offset;
+    }
+
+    private static long readVarint(MappedByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * A segment file and the decoder state needed to append to it and query it
+     */
+    private static class Segment implements Comparable<Segment> {
+        final File file;
+        final long startTime;
+
+        int count;
+        long firstTime;
+        long lastTime;
+        int lastLat;
+        int lastLon;
+        long length;
+
+        // Sparse checkpoints: the byte offset of a fix and the decoder state before it
+        int checkpointCount;
+        long[] checkpointOffsets = new long[16];
+        long[] checkpointTimes = new long[16];
+        int[] checkpointLats = new int[16];
+        int[] checkpointLons = new int[16];
+
+        Segment(File file, long startTime) {
+            this.file = file;
+            this.startTime = startTime;
+            this.lastTime = startTime;
+        }
+
+        /**
+         * Encodes a fix as deltas from the last fix
+         * @return The encoded length
+         */
+        int encode(LocationFix fix, byte[] buffer) {
+            if (count % CHECKPOINT_INTERVAL == 0) {
+                addCheckpoint();
+            }
+
+            int lat = (int) Math.round(fix.latitude * 1E7);
+            int lon = (int) Math.round(fix.longitude * 1E7);
+            long accuracy = fix.hasAccuracy() ? Math.round(fix.accuracy * 10) + 1 : 0;
+            if (count == 0) {
+                firstTime = fix.time;
+            }
+
+            int offset = writeVarint(zigzag(fix.time - lastTime), buffer, 0);
+            offset = writeVarint(zigzag((long) lat - lastLat), buffer, offset);
+            offset = writeVarint(zigzag((long) lon - lastLon), buffer, offset);
+            offset = writeVarint(accuracy, buffer, offset);
+            buffer[offset++] = (byte) providerCode(fix.provider);
+
+            lastTime = fix.time;
+            lastLat = lat;
+            lastLon = lon;
+            length += offset;
+            count++;
+            return offset;
+        }
+
+        /**
+         * Rebuilds the checkpoints and decoder state from the segment file
+         */
+        void scan() throws IOException {
+            count = 0;
+            length = 0;
+            checkpointCount = 0;
+            lastTime = startTime;
+            lastLat = 0;
+            lastLon = 0;
+
+            long fileLength = file.length();
+            if (fileLength == 0) {
+                return;
+            }
+
+            MappedByteBuffer buffer = map(fileLength);
+            try {
+                while (buffer.hasRemaining()) {
+                    if (count % CHECKPOINT_INTERVAL == 0) {
+                        addCheckpoint();
+                    }
+
+                    long time = lastTime + unzigzag(readVarint(buffer));
+                    int lat = (int) (lastLat + unzigzag(readVarint(buffer)));
+                    int lon = (int) (lastLon + unzigzag(readVarint(buffer)));
+                    readVarint(buffer);
+                    buffer.get();
+
+                    if (count == 0) {
+                        firstTime = time;
+                    }
+                    lastTime = time;
+                    lastLat = lat;
+                    lastLon = lon;
+                    length = buffer.position();
+                    count++;
+                }
+            } catch (BufferUnderflowException e) {
+                // A fix was only partly written before the process died, drop it
+                if (checkpointCount > 0 && checkpointOffsets[checkpointCount - 1] >= length) {
+                    checkpointCount--;
+                }
+                truncate(length);
+            }
+        }
+
+        /**
+         * Decodes the fixes in a time range
+         */
+        void read(MappedByteBuffer buffer, long from, long to, List<LocationFix> results) {
+            if (length == 0) {
+                return;
+            }
+
+            // Start from the last checkpoint that comes after a fix older than the range
+            int checkpoint = 0;
+            int low = 0;
+            int high = checkpointCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (checkpointTimes[mid] < from) {
+                    checkpoint = mid;
+                    low = mid + 1;
+                } else {
+                    high = mid - 1;
+                }
+            }
+
+            buffer.position((int) checkpointOffsets[checkpoint]);
+            long time = checkpointTimes[checkpoint];
+            int lat = checkpointLats[checkpoint];
+            int lon = checkpointLons[checkpoint];
+
+            while (buffer.position() < length) {
+                time += unzigzag(readVarint(buffer));
+                lat += (int) unzigzag(readVarint(buffer));
+                lon += (int) unzigzag(readVarint(buffer));
+                long accuracy = readVarint(buffer);
+                int provider = buffer.get();
+
+                if (time > to) {
+                    break;
+                }
+
+                if (time >= from) {
+                    results.add(new LocationFix(time, lat / 1E7, lon / 1E7,
+                            accuracy == 0 ? LocationFix.UNKNOWN_ACCURACY : (accuracy - 1) / 10f,
+                            providerName(provider)));
+                }
+            }
+        }
+
+        /**
+         * @return A copy that can be read outside of the history lock
+         */
+        Segment copy() {
+            Segment copy = new Segment(file, startTime);
+            copy.count = count;
+            copy.firstTime = firstTime;
+            copy.lastTime = lastTime;
+            copy.lastLat = lastLat;
+            copy.lastLon = lastLon;
+            copy.length = length;
+            copy.checkpointCount = checkpointCount;
+            copy.checkpointOffsets = checkpointOffsets;
+            copy.checkpointTimes = checkpointTimes;
+            copy.checkpointLats = checkpointLats;
+            copy.checkpointLons = checkpointLons;
+            return copy;
+        }
+
+        private void addCheckpoint() {
+            if (checkpointCount == checkpointOffsets.length) {
+                int capacity = checkpointCount * 2;
+                long[] offsets = new long[capacity];
+                long[] times = new long[capacity];
+                int[] lats = new int[capacity];
+                int[] lons = new int[capacity];
+                System.arraycopy(checkpointOffsets, 0, offsets, 0, checkpointCount);
+                System.arraycopy(checkpointTimes, 0, times, 0, checkpointCount);
+                System.arraycopy(checkpointLats, 0, lats, 0, checkpointCount);
+                System.arraycopy(checkpointLons, 0, lons, 0, checkpointCount);
+                checkpointOffsets = offsets;
+                checkpointTimes = times;
+                checkpointLats = lats;
+                checkpointLons = lons;
+            }
+
+            checkpointOffsets[checkpointCount] = length;
+            checkpointTimes[checkpointCount] = lastTime;
+            checkpointLats[checkpointCount] = lastLat;
+            checkpointLons[checkpointCount] = lastLon;
+            checkpointCount++;
+        }
+
+        MappedByteBuffer map() throws IOException {
+            return map(length);
+        }
+
+        private MappedByteBuffer map(long size) throws IOException {
+            FileInputStream input = new FileInputStream(file);
+            try {
+                // The mapping stays valid after the channel is closed
+                return input.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+            } finally {
+                input.close();
+            }
+        }
+
+        private void truncate(long size) throws IOException {
+            RandomAccessFile raf = new RandomAccessFile(file, "rw");
+            try {
+                raf.setLength(size);
+            } finally {
+                raf.close();
+            }
+        }
+
+        @Override
+        public int compareTo(Segment other) {
+            return startTime < other.startTime ? -1 : (startTime == other.startTime ? 0 : 1);
+        }
+    }
+}
@@ -15,6 +15,9 @@ public class LocationItemizedOverlay extends ItemizedOverlay<OverlayItem> {
     public LocationItemizedOverlay(Drawable defaultMarker, Context context) {
         super(boundCenterBottom(defaultMarker));
         mContext = context;
+
+        // Populate the empty overlay so it can be added to the map before it has an item
+        populate();
     }
 
     @Override
@@ -0,0 +1,217 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Filters and batches location fixes before they reach the consumers.
+ *
+ * Fixes that are less accurate than the accuracy threshold, or that arrive
+ * sooner or closer than the time and distance thresholds after the last
+ * accepted fix, are dropped. Accepted fixes are batched, and the consumers
+ * receive at most one batch per dispatch interval.
+ *
+ * The pipeline does not keep its own clock. The caller decides when to
+ * dispatch, so the same pipeline can be driven by a Handler for live fixes
+ * or by the fix times when replaying a recorded track.
+ *
+ */
+public class LocationPipeline {
+
+    /**
+     * Receives the batched location fixes
+     */
+    public interface Consumer {
+        /**
+         * Called with the fixes accepted since the last dispatch
+         * @param fixes The fixes, oldest first. The last fix is the latest location.
+         */
+        void onLocationUpdate(List<LocationFix> fixes);
+    }
+
+    /**
+     * The pipeline thresholds
+     */
+    public static class Config {
+        /**
+         * Minimum distance in meters from the last accepted fix
+         */
+        public float minDistanceMeters = 10;
+
+        /**
+         * Minimum time in milliseconds since the last accepted fix
+         */
+        public long minTimeMs = 1000;
+
+        /**
+         * Maximum accuracy radius in meters, fixes without an accuracy are accepted
+         */
+        public float maxAccuracyMeters = 100;
+
+        /**
+         * Minimum time in milliseconds between dispatches to the consumers
+         */
+        public long dispatchIntervalMs = 5000;
+    }
+
+    /**
+     * Counts of the fixes that went through the pipeline
+     */
+    public static class Stats {
+        public int received;
+        public int rejectedAccuracy;
+        public int rejectedTime;
+        public int rejectedDistance;
+        public int accepted;
+        public int dispatches;
+
+        @Override
+        public String toString() {
+            return String.format("received=%d accepted=%d rejected(accuracy=%d, time=%d, distance=%d) dispatches=%d",
+                    received, accepted, rejectedAccuracy, rejectedTime, rejectedDistance, dispatches);
+        }
+    }
+
+    private final Config config;
+    private final List<Consumer> consumers = new CopyOnWriteArrayList<Consumer>();
+    private final Stats stats = new Stats();
+
+    private List<LocationFix> batch = new ArrayList<LocationFix>();
+    private LocationFix lastAccepted;
+    private long lastDispatchTime = Long.MIN_VALUE;
+
+    /**
+     * Creates a new LocationPipeline
+     * @param config The thresholds
+     */
+    public LocationPipeline(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * @param consumer The consumer to add
+     */
+    public void addConsumer(Consumer consumer) {
+        consumers.add(consumer);
+    }
+
+    /**
+     * @param consumer The consumer to remove
+     */
+    public void removeConsumer(Consumer consumer) {
+        consumers.remove(consumer);
+    }
+
+    /**
+     * Filters a fix and adds it to the batch if it is accepted
+     * @param fix The fix
+     * @return <code>true</code> if the fix was accepted
+     */
+    public synchronized boolean offer(LocationFix fix) {
+        stats.received++;
+
+        if (fix.hasAccuracy() && fix.accuracy > config.maxAccuracyMeters) {
+            stats.rejectedAccuracy++;
+            return false;
+        }
+
+        if (lastAccepted != null) {
+            if (fix.time - lastAccepted.time < config.minTimeMs) {
+                stats.rejectedTime++;
+                return false;
+            }
+
+            if (fix.distanceTo(lastAccepted) < config.minDistanceMeters) {
+                stats.rejectedDistance++;
+                return false;
+            }
+        }
+
+        lastAccepted = fix;
+        batch.add(fix);
+        stats.accepted++;
+        return true;
+    }
+
+    /**
+     * Gets the time until the pending batch can be dispatched
+     * @param now The current time in milliseconds
+     * @return The delay in milliseconds, or -1 if there is nothing to dispatch
+     */
+    public synchronized long getDispatchDelay(long now) {
+        if (batch.isEmpty()) {
+            return -1;
+        }
+
+        if (lastDispatchTime == Long.MIN_VALUE) {
+            return 0;
+        }
+
+        return Math.max(0, lastDispatchTime + config.dispatchIntervalMs - now);
+    }
+
+    /**
+     * Dispatches the pending batch if the dispatch interval has passed
+     * @param now The current time in milliseconds
+     * @return <code>true</code> if a batch was dispatched
+     */
+    public boolean dispatch(long now) {
+        List<LocationFix> fixes;
+        synchronized (this) {
+            if (getDispatchDelay(now) != 0) {
+                return false;
+            }
+
+            fixes = Collections.unmodifiableList(batch);
+            batch = new ArrayList<LocationFix>();
+            lastDispatchTime = now;
+            stats.dispatches++;
+        }
+
+        for (Consumer consumer : consumers) {
+            consumer.onLocationUpdate(fixes);
+        }
+        return true;
+    }
+
+    /**
+     * @return A copy of the pipeline counts
+     */
+    public synchronized Stats getStats() {
+        Stats copy = new Stats();
+        copy.received = stats.received;
+        copy.rejectedAccuracy = stats.rejectedAccuracy;
+        copy.rejectedTime = stats.rejectedTime;
+        copy.rejectedDistance = stats.rejectedDistance;
+        copy.accepted = stats.accepted;
+        copy.dispatches = stats.dispatches;
+        return copy;
+    }
+}
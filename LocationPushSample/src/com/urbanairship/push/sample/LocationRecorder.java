@@ -0,0 +1,126 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.urbanairship.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Records the fixes dispatched by a {@link LocationPipeline} into the
+ * on-device {@link LocationHistory}, on a background thread.
+ *
+ */
+public class LocationRecorder implements LocationPipeline.Consumer {
+
+    /**
+     * Fixes older than this are expired from the history
+     */
+    public static final long MAX_AGE_MS = 30L * 24 * 60 * 60 * 1000; // 30 days
+
+    private static final String HISTORY_DIRECTORY = "location_history";
+
+    private static LocationRecorder instance;
+
+    private final Context context;
+    private final Handler workerQueue;
+    private LocationHistory history;
+
+    private LocationRecorder(Context context) {
+        this.context = context;
+
+        HandlerThread workerThread = new HandlerThread("LocationPushSample-Recorder");
+        workerThread.start();
+        workerQueue = new Handler(workerThread.getLooper());
+
+        // Open the history and expire old fixes in the background
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                LocationHistory history = getHistory();
+                if (history != null) {
+                    history.scheduleMaintenance();
+                }
+            }
+        });
+    }
+
+    /**
+     * @param context Application context
+     * @return The shared LocationRecorder
+     */
+    public static synchronized LocationRecorder shared(Context context) {
+        if (instance == null) {
+            instance = new LocationRecorder(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    @Override
+    public void onLocationUpdate(final List<LocationFix> fixes) {
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                LocationHistory history = getHistory();
+                if (history == null) {
+                    return;
+                }
+
+                try {
+                    for (LocationFix fix : fixes) {
+                        history.append(fix);
+                    }
+                    history.flush();
+                } catch (IOException e) {
+                    Logger.error("Unable to record location history", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Gets the location history. Must not be called on the main thread
+     * because the history is opened on first use.
+     *
+     * @return The location history, or null if it can not be opened
+     */
+    public synchronized LocationHistory getHistory() {
+        if (history == null) {
+            try {
+                history = new LocationHistory(new File(context.getFilesDir(), HISTORY_DIRECTORY), MAX_AGE_MS);
+            } catch (IOException e) {
+                Logger.error("Unable to open location history", e);
+            }
+        }
+        return history;
+    }
+}
@@ -0,0 +1,216 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+/**
+ * A streaming Kalman filter that smooths location fixes and rejects outliers.
+ *
+ * Positions are tracked in meters on a local plane around the first fix,
+ * with a constant velocity model for each axis. Each fix is weighted by its
+ * reported accuracy. A fix whose innovation is too unlikely under the
+ * current estimate is rejected, unless several fixes in a row disagree with
+ * the estimate, in which case the filter restarts from the new fix.
+ *
+ * Not thread safe, smooth fixes from a single thread.
+ *
+ */
+public class LocationSmoother {
+
+    private static final double METERS_PER_DEGREE = 111320;
+
+    /**
+     * The filter settings
+     */
+    public static class Config {
+        /**
+         * Standard deviation of the acceleration the model allows, in m/s^2
+         */
+        public double accelerationNoise = 2;
+
+        /**
+         * Accuracy in meters assumed for fixes that do not report one
+         */
+        public double defaultAccuracy = 30;
+
+        /**
+         * Squared Mahalanobis distance above which a fix is an outlier,
+         * 13.8 is the 99.9% point for two degrees of freedom
+         */
+        public double outlierThreshold = 13.8;
+
+        /**
+         * Consecutive outliers after which the filter restarts
+         */
+        public int maxConsecutiveOutliers = 3;
+    }
+
+    private final Config config;
+
+    private boolean initialized;
+    private double originLat;
+    private double originLon;
+    private double lonScale;
+    private long lastTime;
+
+    // State and covariance per axis: position, velocity, and [pp, pv, vv]
+    private final double[] x = new double[2];
+    private final double[] y = new double[2];
+    private final double[] px = new double[3];
+    private final double[] py = new double[3];
+
+    private int consecutiveOutliers;
+    private int outliers;
+
+    /**
+     * Creates a new LocationSmoother
+     * @param config The settings
+     */
+    public LocationSmoother(Config config) {
+        this.config = config;
+    }
+
+    /**
+     * Smooths a fix
+     * @param fix The fix
+     * @return The smoothed fix, or null if the fix was rejected as an outlier
+     */
+    public LocationFix smooth(LocationFix fix) {
+        double variance = fix.hasAccuracy() ? fix.accuracy * fix.accuracy : config.defaultAccuracy * config.defaultAccuracy;
+        variance = Math.max(variance, 1);
+
+        if (!initialized) {
+            reset(fix, variance);
+            return fix;
+        }
+
+        double mx = (fix.longitude - originLon) * lonScale;
+        double my = (fix.latitude - originLat) * METERS_PER_DEGREE;
+
+        double dt = Math.max(0, (fix.time - lastTime) / 1000.0);
+        predict(x, px, dt);
+        predict(y, py, dt);
+
+        // Squared Mahalanobis distance of the innovation, the axes are independent
+        double sx = px[0] + variance;
+        double sy = py[0] + variance;
+        double ix = mx - x[0];
+        double iy = my - y[0];
+        double distance = ix * ix / sx + iy * iy / sy;
+
+        if (distance > config.outlierThreshold) {
+            outliers++;
+            if (++consecutiveOutliers <= config.maxConsecutiveOutliers) {
+                // Keep the prediction so the next fix is compared against the elapsed time
+                lastTime = fix.time;
+                return null;
+            }
+
+            // The estimate is lost, start again from this fix
+            reset(fix, variance);
+            return fix;
+        }
+
+        consecutiveOutliers = 0;
+        lastTime = fix.time;
+        update(x, px, ix, sx);
+        update(y, py, iy, sy);
+
+        double accuracy = Math.sqrt((px[0] + py[0]) / 2);
+        return new LocationFix(fix.time, originLat + y[0] / METERS_PER_DEGREE, originLon + x[0] / lonScale,
+                (float) accuracy, fix.provider);
+    }
+
+    /**
+     * @return The estimated speed in meters per second
+     */
+    public double getSpeed() {
+        return Math.sqrt(x[1] * x[1] + y[1] * y[1]);
+    }
+
+    /**
+     * @return The number of fixes rejected as outliers
+     */
+    public int getOutlierCount() {
+        return outliers;
+    }
+
+    private void reset(LocationFix fix, double variance) {
+        initialized = true;
+        originLat = fix.latitude;
+        originLon = fix.longitude;
+        lonScale = METERS_PER_DEGREE * Math.cos(Math.toRadians(fix.latitude));
+        lastTime = fix.time;
+        consecutiveOutliers = 0;
+
+        x[0] = 0;
+        x[1] = 0;
+        y[0] = 0;
+        y[1] = 0;
+
+        // Unknown velocity, up to about 30 m/s
+        px[0] = variance;
+        px[1] = 0;
+        px[2] = 900;
+        py[0] = variance;
+        py[1] = 0;
+        py[2] = 900;
+    }
+
+    /**
+     * Constant velocity prediction with white noise acceleration
+     */
+    private void predict(double[] state, double[] p, double dt) {
+        double q = config.accelerationNoise * config.accelerationNoise;
+        double dt2 = dt * dt;
+
+        state[0] += state[1] * dt;
+
+        double pp = p[0] + 2 * dt * p[1] + dt2 * p[2] + q * dt2 * dt2 / 4;
+        double pv = p[1] + dt * p[2] + q * dt2 * dt / 2;
+        double vv = p[2] + q * dt2;
+        p[0] = pp;
+        p[1] = pv;
+        p[2] = vv;
+    }
+
+    /**
+     * Position measurement update
+     */
+    private void update(double[] state, double[] p, double innovation, double s) {
+        double kp = p[0] / s;
+        double kv = p[1] / s;
+
+        state[0] += kp * innovation;
+        state[1] += kv * innovation;
+
+        double pp = (1 - kp) * p[0];
+        double pv = (1 - kp) * p[1];
+        double vv = p[2] - kv * p[1];
+        p[0] = pp;
+        p[1] = pv;
+        p[2] = vv;
+    }
+}
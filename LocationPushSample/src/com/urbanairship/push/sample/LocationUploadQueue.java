@@ -0,0 +1,432 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Buffers fixes on disk and uploads them in batches.
+ *
+ * Fixes are appended to a spool file, which is closed off as a batch once
+ * it holds a full batch or its oldest fix has waited long enough. An
+ * upload may also be started early when the radio is already awake for
+ * other network activity. Batches are encoded with
+ * {@link LocationBatchEncoder} when they are sent.
+ *
+ * Nothing is attempted while offline. Failed uploads are retried with an
+ * exponential backoff, which is reset when connectivity returns since
+ * failures while switching networks say nothing about the collector. A
+ * batch file that can not be read would fail the same way on every retry,
+ * so it is dropped and counted instead.
+ *
+ * Not thread safe, calls must be made from a single thread. Times are
+ * passed in so the queue can be driven by a simulation.
+ *
+ */
+public class LocationUploadQueue {
+
+    /**
+     * Sends an encoded batch
+     */
+    public interface Uploader {
+        /**
+         * @param batch The encoded batch
+         * @param fixes The number of fixes in the batch
+         * @return <code>true</code> if the batch was accepted or permanently rejected
+         * and should be discarded, <code>false</code> to retry it later
+         */
+        boolean upload(byte[] batch, int fixes) throws IOException;
+    }
+
+    /**
+     * Queue configuration
+     */
+    public static class Config {
+        /**
+         * Number of fixes in a full batch
+         */
+        public int batchSize = 200;
+
+        /**
+         * Longest time a fix waits before its batch is sent
+         */
+        public long maxDelayMs = 30 * 60 * 1000; // 30 minutes
+
+        /**
+         * Shortest time between uploads piggybacked on other network activity
+         */
+        public long piggybackIntervalMs = 5 * 60 * 1000; // 5 minutes
+
+        public long initialBackoffMs = 30 * 1000; // 30 seconds
+        public long maxBackoffMs = 60 * 60 * 1000; // 1 hour
+
+        /**
+         * Maximum number of batches kept while uploads fail, the oldest are dropped first
+         */
+        public int maxBatches = 50;
+    }
+
+    /**
+     * Upload counters
+     */
+    public static class Stats {
+        public int requests;
+        public int failures;
+        public long fixesSent;
+        public long bytesSent;
+        public long fixesDropped;
+        public int corruptBatches;
+
+        @Override
+        public String toString() {
+            return String.format("%d requests (%d failed), %d fixes in %d bytes, %d fixes dropped, %d corrupt batches",
+                    requests, failures, fixesSent, bytesSent, fixesDropped, corruptBatches);
+        }
+    }
+
+    private static final String SPOOL_FILE = "pending.spool";
+    private static final String BATCH_SUFFIX = ".batch";
+
+    private final File directory;
+    private final Config config;
+    private final Uploader uploader;
+    private final Random random = new Random();
+    private final Stats stats = new Stats();
+
+    private DataOutputStream spool;
+    private int spoolCount;
+    private long spoolStartTime;
+    private long nextSequence;
+
+    private boolean connected = true;
+    private int attempts;
+    private long nextAttemptTime;
+    private long lastUploadTime = Long.MIN_VALUE / 2;
+
+    /**
+     * Opens the queue, picking up any fixes left from a previous run
+     * @param directory The directory to keep the fixes in
+     * @param config The configuration
+     * @param uploader The uploader
+     * @param now The current time
+     */
+    public LocationUploadQueue(File directory, Config config, Uploader uploader, long now) throws IOException {
+        this.directory = directory;
+        this.config = config;
+        this.uploader = uploader;
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+
+        File[] batches = listBatches();
+        if (batches.length > 0) {
+            nextSequence = sequenceOf(batches[batches.length - 1]) + 1;
+        }
+
+        // Close off fixes left in the spool so new fixes are not appended after a partly written one
+        File spoolFile = new File(directory, SPOOL_FILE);
+        if (spoolFile.length() > 0) {
+            closeBatch();
+        }
+    }
+
+    /**
+     * Adds fixes to the queue
+     * @param fixes The fixes
+     * @param now The current time
+     */
+    public void add(List<LocationFix> fixes, long now) throws IOException {
+        for (LocationFix fix : fixes) {
+            if (spool == null) {
+                spool = new DataOutputStream(new BufferedOutputStream(
+                        new FileOutputStream(new File(directory, SPOOL_FILE), true)));
+            }
+
+            if (spoolCount == 0) {
+                spoolStartTime = now;
+            }
+
+            spool.writeLong(fix.time);
+            spool.writeDouble(fix.latitude);
+            spool.writeDouble(fix.longitude);
+            spool.writeFloat(fix.accuracy);
+            spool.writeUTF(fix.provider == null ? "" : fix.provider);
+            spoolCount++;
+
+            if (spoolCount >= config.batchSize) {
+                closeBatch();
+            }
+        }
+
+        if (spool != null) {
+            spool.flush();
+        }
+    }
+
+    /**
+     * @return The number of fixes waiting to be sent
+     */
+    public int getPendingCount() throws IOException {
+        int count = spoolCount;
+        for (File batch : listBatches()) {
+            count += countFixes(batch);
+        }
+        return count;
+    }
+
+    /**
+     * Updates the connectivity state
+     * @param connected <code>true</code> if the device is online
+     * @param now The current time
+     */
+    public void setConnected(boolean connected, long now) {
+        if (connected && !this.connected) {
+            attempts = 0;
+            nextAttemptTime = now;
+        }
+        this.connected = connected;
+    }
+
+    /**
+     * @param now The current time
+     * @return <code>true</code> if a batch is ready and an upload may be attempted
+     */
+    public boolean isFlushDue(long now) {
+        return getFlushDelay(now) == 0;
+    }
+
+    /**
+     * Called when the device is already using the network for something else
+     * @param now The current time
+     * @return <code>true</code> if pending fixes should be sent now
+     */
+    public boolean isPiggybackDue(long now) {
+        return connected && now >= nextAttemptTime
+                && now - lastUploadTime >= config.piggybackIntervalMs
+                && (spoolCount > 0 || listBatches().length > 0);
+    }
+
+    /**
+     * Gets the time until the next upload should be attempted
+     * @param now The current time
+     * @return The delay in milliseconds, or -1 if there is nothing to send or the device is offline
+     */
+    public long getFlushDelay(long now) {
+        if (!connected) {
+            return -1;
+        }
+
+        long due;
+        if (listBatches().length > 0) {
+            due = now;
+        } else if (spoolCount > 0) {
+            due = spoolStartTime + config.maxDelayMs;
+        } else {
+            return -1;
+        }
+
+        return Math.max(0, Math.max(due, nextAttemptTime) - now);
+    }
+
+    /**
+     * Sends the pending fixes, oldest batch first, stopping at the first failure
+     * @param now The current time
+     * @return <code>true</code> if everything pending was sent
+     */
+    public boolean flush(long now) throws IOException {
+        if (!connected) {
+            return false;
+        }
+
+        if (spoolCount > 0) {
+            closeBatch();
+        }
+
+        for (File batch : listBatches()) {
+            List<LocationFix> fixes;
+            try {
+                fixes = readFixes(batch);
+            } catch (IOException e) {
+                stats.corruptBatches++;
+                batch.delete();
+                continue;
+            }
+
+            boolean sent = false;
+            if (fixes.isEmpty()) {
+                sent = true;
+            } else {
+                byte[] encoded = LocationBatchEncoder.encode(fixes);
+                stats.requests++;
+                try {
+                    sent = uploader.upload(encoded, fixes.size());
+                } catch (IOException e) {
+                    sent = false;
+                }
+
+                if (sent) {
+                    stats.fixesSent += fixes.size();
+                    stats.bytesSent += encoded.length;
+                } else {
+                    stats.failures++;
+                }
+            }
+
+            if (!sent) {
+                nextAttemptTime = now + getBackoff(attempts++);
+                return false;
+            }
+
+            batch.delete();
+            attempts = 0;
+            lastUploadTime = now;
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The upload counters
+     */
+    public Stats getStats() {
+        return stats;
+    }
+
+    /**
+     * Closes the spool file
+     */
+    public void close() throws IOException {
+        if (spool != null) {
+            spool.close();
+            spool = null;
+        }
+    }
+
+    /**
+     * Turns the spool into a batch file and drops the oldest batches over the limit
+     */
+    private void closeBatch() throws IOException {
+        close();
+
+        File spoolFile = new File(directory, SPOOL_FILE);
+        if (!spoolFile.renameTo(new File(directory, String.format("%019d%s", nextSequence++, BATCH_SUFFIX)))) {
+            throw new IOException("Unable to close batch " + spoolFile);
+        }
+        spoolCount = 0;
+
+        File[] batches = listBatches();
+        for (int i = 0; i < batches.length - config.maxBatches; i++) {
+            stats.fixesDropped += countFixes(batches[i]);
+            batches[i].delete();
+        }
+    }
+
+    private long getBackoff(int attempts) {
+        long backoff = config.initialBackoffMs << Math.min(attempts, 16);
+        backoff = Math.min(backoff, config.maxBackoffMs);
+
+        // Spread retries out so devices do not retry in lock step
+        return backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+    }
+
+    /**
+     * @return The number of fixes in a batch file, or 0 if it can not be read
+     */
+    private static int countFixes(File file) {
+        try {
+            return readFixes(file).size();
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Reads the fixes in a spool or batch file, ignoring a partly written last fix
+     * @throws IOException If the file can not be read or is corrupt
+     */
+    private static List<LocationFix> readFixes(File file) throws IOException {
+        List<LocationFix> fixes = new ArrayList<LocationFix>();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+        try {
+            while (true) {
+                long time = in.readLong();
+                double latitude = in.readDouble();
+                double longitude = in.readDouble();
+                float accuracy = in.readFloat();
+                String provider = in.readUTF();
+                fixes.add(new LocationFix(time, latitude, longitude, accuracy,
+                        provider.length() == 0 ? null : provider));
+            }
+        } catch (EOFException e) {
+            return fixes;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * @return The batch files, oldest first
+     */
+    private File[] listBatches() {
+        File[] batches = directory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(BATCH_SUFFIX);
+            }
+        });
+
+        if (batches == null) {
+            return new File[0];
+        }
+
+        // Names are zero padded so they sort by sequence number
+        Arrays.sort(batches);
+        return batches;
+    }
+
+    private static long sequenceOf(File batch) {
+        String name = batch.getName();
+        try {
+            return Long.parseLong(name.substring(0, name.length() - BATCH_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
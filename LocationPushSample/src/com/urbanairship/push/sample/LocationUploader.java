@@ -0,0 +1,202 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.urbanairship.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.List;
+
+/**
+ * Uploads the fixes dispatched by a {@link LocationPipeline} to the
+ * collector at {@link MyApplication#LOCATION_COLLECTOR_URL} through a
+ * {@link LocationUploadQueue}, on a background thread.
+ *
+ */
+public class LocationUploader implements LocationPipeline.Consumer {
+
+    private static final String QUEUE_DIRECTORY = "location_uploads";
+
+    private static LocationUploader instance;
+
+    private final Context context;
+    private final URL url;
+    private final Handler workerQueue;
+    private LocationUploadQueue queue;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush(false);
+        }
+    };
+
+    private final BroadcastReceiver connectivityReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            workerQueue.post(new Runnable() {
+                @Override
+                public void run() {
+                    LocationUploadQueue queue = getQueue();
+                    if (queue != null) {
+                        queue.setConnected(isConnected(), System.currentTimeMillis());
+                        schedule();
+                    }
+                }
+            });
+        }
+    };
+
+    private LocationUploader(Context context, URL url) {
+        this.context = context;
+        this.url = url;
+
+        HandlerThread workerThread = new HandlerThread("LocationPushSample-Uploader");
+        workerThread.start();
+        workerQueue = new Handler(workerThread.getLooper());
+
+        context.registerReceiver(connectivityReceiver, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION),
+                null, workerQueue);
+
+        // Send anything left from the last run
+        workerQueue.post(flushRunnable);
+    }
+
+    /**
+     * @param context Application context
+     * @return The shared LocationUploader, or null if no collector is configured
+     */
+    public static synchronized LocationUploader shared(Context context) {
+        if (instance == null) {
+            URL url;
+            try {
+                url = new URL(MyApplication.LOCATION_COLLECTOR_URL);
+            } catch (MalformedURLException e) {
+                return null;
+            }
+            instance = new LocationUploader(context.getApplicationContext(), url);
+        }
+        return instance;
+    }
+
+    @Override
+    public void onLocationUpdate(final List<LocationFix> fixes) {
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                LocationUploadQueue queue = getQueue();
+                if (queue == null) {
+                    return;
+                }
+
+                try {
+                    queue.add(fixes, System.currentTimeMillis());
+                } catch (IOException e) {
+                    Logger.error("Unable to queue locations for upload", e);
+                }
+                schedule();
+            }
+        });
+    }
+
+    /**
+     * Sends pending fixes early while the radio is already awake, for
+     * example after a push is received
+     */
+    public void onNetworkActivity() {
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                flush(true);
+            }
+        });
+    }
+
+    private void flush(boolean piggyback) {
+        LocationUploadQueue queue = getQueue();
+        if (queue == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        queue.setConnected(isConnected(), now);
+
+        boolean due = piggyback ? queue.isPiggybackDue(now) : queue.isFlushDue(now);
+        if (due) {
+            try {
+                if (!queue.flush(now)) {
+                    Logger.debug("Location upload incomplete: " + queue.getStats());
+                }
+            } catch (IOException e) {
+                Logger.error("Unable to upload locations", e);
+            }
+        }
+        schedule();
+    }
+
+    /**
+     * Schedules the next upload attempt, nothing is scheduled while offline
+     * since the connectivity receiver starts it again
+     */
+    private void schedule() {
+        workerQueue.removeCallbacks(flushRunnable);
+
+        long delay = queue.getFlushDelay(System.currentTimeMillis());
+        if (delay >= 0) {
+            workerQueue.postDelayed(flushRunnable, delay);
+        }
+    }
+
+    private LocationUploadQueue getQueue() {
+        if (queue == null) {
+            try {
+                queue = new LocationUploadQueue(new File(context.getFilesDir(), QUEUE_DIRECTORY),
+                        new LocationUploadQueue.Config(), new HttpBatchUploader(url), System.currentTimeMillis());
+            } catch (IOException e) {
+                Logger.error("Unable to open location upload queue", e);
+            }
+        }
+        return queue;
+    }
+
+    private boolean isConnected() {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo info = cm.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
+}
@@ -25,10 +25,7 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.urbanairship.push.sample;
 
-import android.content.BroadcastReceiver;
-import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
 import android.os.Bundle;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -37,11 +34,16 @@ import android.widget.Button;
 import com.urbanairship.Logger;
 import com.urbanairship.analytics.InstrumentedActivity;
 import com.urbanairship.location.UALocationManager;
+import com.urbanairship.sample.common.EventBus;
+import com.urbanairship.sample.common.PushActionDispatcher;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
 
 public class MainActivity extends InstrumentedActivity {
 
     Button launchButton, locationButton;
-    IntentFilter boundServiceFilter;
 
     @Override
     public void onCreate(Bundle savedInstanceState) {
@@ -51,10 +53,6 @@ public class MainActivity extends InstrumentedActivity {
         launchButton = (Button) findViewById(R.id.push_preferences_button);
         locationButton = (Button) findViewById(R.id.location_button);
 
-        boundServiceFilter = new IntentFilter();
-        boundServiceFilter.addAction(UALocationManager.getLocationIntentAction(UALocationManager.ACTION_SUFFIX_LOCATION_SERVICE_BOUND));
-        boundServiceFilter.addAction(UALocationManager.getLocationIntentAction(UALocationManager.ACTION_SUFFIX_LOCATION_SERVICE_UNBOUND));
-
         launchButton.setOnClickListener(new OnClickListener() {
 
             @Override
@@ -74,13 +72,33 @@ public class MainActivity extends InstrumentedActivity {
         });
     }
 
+    /**
+     * Prints the push action handler stats when dumped with the <code>push-actions</code> argument
+     * and the recent push events with the <code>push-events</code> argument:
+     * <code>adb shell dumpsys activity top push-actions push-events</code>
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+
+        if (args != null && Arrays.asList(args).contains("push-actions")) {
+            for (PushActionDispatcher.HandlerStats stats : PushActionDispatcher.shared().getStats()) {
+                writer.println(prefix + stats);
+            }
+        }
+
+        if (args != null && Arrays.asList(args).contains("push-events")) {
+            PushEventLog.shared(this).dump(writer);
+        }
+    }
+
     @Override
     public void onResume() {
         super.onResume();
 
         handleLocationButton();
 
-        registerReceiver(boundServiceReceiver, boundServiceFilter);
+        EventBus.shared().subscribe(LocationEvents.ServiceBindState.class, boundServiceSubscriber, EventBus.DELIVER_MAIN);
     }
 
     private void handleLocationButton() {
@@ -96,22 +114,14 @@ public class MainActivity extends InstrumentedActivity {
     @Override
     public void onPause() {
         super.onPause();
-        try {
-            unregisterReceiver(boundServiceReceiver);
-        } catch (IllegalArgumentException e) {
-            Logger.error(e.getMessage());
-        }
+        EventBus.shared().unsubscribe(LocationEvents.ServiceBindState.class, boundServiceSubscriber);
     }
 
-    private BroadcastReceiver boundServiceReceiver = new BroadcastReceiver() {
+    private EventBus.Subscriber<LocationEvents.ServiceBindState> boundServiceSubscriber =
+            new EventBus.Subscriber<LocationEvents.ServiceBindState>() {
         @Override
-        public void onReceive(Context context, Intent intent) {
-            if (UALocationManager.getLocationIntentAction(UALocationManager.ACTION_SUFFIX_LOCATION_SERVICE_BOUND)
-                    .equals(intent.getAction())) {
-                locationButton.setEnabled(true);
-            } else {
-                locationButton.setEnabled(false);
-            }
+        public void onEvent(LocationEvents.ServiceBindState event) {
+            locationButton.setEnabled(event.bound);
         }
     };
 
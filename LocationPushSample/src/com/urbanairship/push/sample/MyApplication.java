@@ -26,6 +26,8 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.urbanairship.push.sample;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
 import android.util.Log;
 
 import com.urbanairship.AirshipConfigOptions;
@@ -33,43 +35,179 @@ import com.urbanairship.Logger;
 import com.urbanairship.UAirship;
 import com.urbanairship.push.CustomPushNotificationBuilder;
 import com.urbanairship.push.PushManager;
+import com.urbanairship.sample.common.PushActionDispatcher;
+import com.urbanairship.sample.common.StartupGraph;
 
 public class MyApplication extends Application {
 
     public static String GOOGLE_MAPS_API_KEY = "ENTER YOUR GOOGLE MAPS API KEY HERE";
 
-    @Override
-    public void onCreate() {
-
-        super.onCreate();
-
-        AirshipConfigOptions options = AirshipConfigOptions.loadDefaultOptions(this);
+    // Recorded locations are uploaded in batches to this URL when it is set
+    public static String LOCATION_COLLECTOR_URL = "ENTER YOUR LOCATION COLLECTOR URL HERE";
 
-        // Optionally, customize your config at runtime:
-        //
-        // options.inProduction = false;
-        // options.developmentAppKey = "Your Development App Key";
-        // options.developmentAppSecret "Your Development App Secret";
+    /**
+     * Threads running the background and deferred startup tasks
+     */
+    private static final int STARTUP_POOL_SIZE = 2;
 
-        UAirship.takeOff(this, options);
-        Logger.logLevel = Log.VERBOSE;
+    private static StartupGraph startupGraph;
 
-        //use CustomPushNotificationBuilder to specify a custom layout
-        CustomPushNotificationBuilder nb = new CustomPushNotificationBuilder();
+    private AirshipConfigOptions options;
 
-        nb.statusBarIconDrawableId = R.drawable.icon_small;//custom status bar icon
+    @Override
+    public void onCreate() {
 
-        nb.layout = R.layout.notification;
-        nb.layoutIconDrawableId = R.drawable.icon;//custom layout icon
-        nb.layoutIconId = R.id.icon;
-        nb.layoutSubjectId = R.id.subject;
-        nb.layoutMessageId = R.id.message;
+        super.onCreate();
 
-        // customize the sound played when a push is received
-        //nb.soundUri = Uri.parse("android.resource://"+this.getPackageName()+"/" +R.raw.cat);
+        final Context context = this;
+
+        // Only what a push or the first activity needs runs before the first frame
+        startupGraph = new StartupGraph(STARTUP_POOL_SIZE)
+        .add("config", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                // Loaded inline, on the pool the main thread would only sit waiting for takeoff
+                options = AirshipConfigOptions.loadDefaultOptions(context);
+
+                // Optionally, customize your config at runtime:
+                //
+                // options.inProduction = false;
+                // options.developmentAppKey = "Your Development App Key";
+                // options.developmentAppSecret "Your Development App Secret";
+            }
+        })
+        .add("takeoff", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                UAirship.takeOff(MyApplication.this, options);
+                Logger.logLevel = Log.VERBOSE;
+            }
+        }, "config")
+        .add("notification builder", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                //use CustomPushNotificationBuilder to specify a custom layout
+                CustomPushNotificationBuilder nb = new CustomPushNotificationBuilder();
+
+                nb.statusBarIconDrawableId = R.drawable.icon_small;//custom status bar icon
+
+                nb.layout = R.layout.notification;
+                nb.layoutIconDrawableId = R.drawable.icon;//custom layout icon
+                nb.layoutIconId = R.id.icon;
+                nb.layoutSubjectId = R.id.subject;
+                nb.layoutMessageId = R.id.message;
+
+                // customize the sound played when a push is received
+                //nb.soundUri = Uri.parse("android.resource://"+this.getPackageName()+"/" +R.raw.cat);
+
+                PushManager.shared().setNotificationBuilder(nb);
+            }
+        }, "takeoff")
+        .add("intent receiver", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                PushManager.shared().setIntentReceiver(IntentReceiver.class);
+                registerPushActions();
+            }
+        }, "takeoff")
+        .add("push event log", StartupGraph.BACKGROUND, new Runnable() {
+            @Override
+            public void run() {
+                // Keep one in ten of the per-intent trace events, push events are always kept
+                PushEventLog.shared(context).setSampleRate(Log.VERBOSE, 10);
+            }
+        })
+        .add("location events", StartupGraph.BACKGROUND, new Runnable() {
+            @Override
+            public void run() {
+                // Receive the location service broadcasts once and deliver them in-process
+                LocationEventBridge.register(context);
+
+                // Record, geofence, cache and upload the fixes whether or not the map is showing
+                AppLocationPipeline.start(context);
+            }
+        }, "takeoff")
+        .add("last known location", StartupGraph.BACKGROUND, new Runnable() {
+            @Override
+            public void run() {
+                // Load the last known location early so the map can show it as soon as it opens
+                LastKnownLocationCache.shared(context).load();
+            }
+        })
+        .add("preferences", StartupGraph.DEFERRED_MAIN, new Runnable() {
+            @Override
+            public void run() {
+                // The load already runs on the repository's worker, this only holds its disk reads
+                // back until after the first frame so the preferences screen later binds without them
+                PreferenceRepository.shared().load();
+            }
+        }, "takeoff");
+
+        startupGraph.start();
+    }
 
-        PushManager.shared().setNotificationBuilder(nb);
-        PushManager.shared().setIntentReceiver(IntentReceiver.class);
+    /**
+     * @return The startup graph, for reading the task timings
+     */
+    public static StartupGraph getStartupGraph() {
+        return startupGraph;
+    }
 
+    /**
+     * Registers the handlers the intent receiver dispatches to
+     */
+    private void registerPushActions() {
+        PushActionDispatcher<PushPayload> dispatcher = PushActionDispatcher.shared();
+
+        dispatcher.register(PushManager.ACTION_PUSH_RECEIVED, null, 0, "log push",
+                new PushActionDispatcher.ActionHandler<PushPayload>() {
+            @Override
+            public void handle(Context context, Intent intent, PushPayload payload) {
+                PushEventLog.shared(context).recordPush(Log.INFO, PushEventLog.TYPE_PUSH_RECEIVED, payload);
+            }
+        });
+
+        dispatcher.register(PushManager.ACTION_NOTIFICATION_OPENED, null, 0, "log open",
+                new PushActionDispatcher.ActionHandler<PushPayload>() {
+            @Override
+            public void handle(Context context, Intent intent, PushPayload payload) {
+                PushEventLog.shared(context).recordPush(Log.INFO, PushEventLog.TYPE_NOTIFICATION_OPENED, payload);
+            }
+        });
+
+        dispatcher.register(PushManager.ACTION_NOTIFICATION_OPENED, null, 10, "launch main",
+                new PushActionDispatcher.ActionHandler<PushPayload>() {
+            @Override
+            public void handle(Context context, Intent intent, PushPayload payload) {
+                Intent launch = new Intent(Intent.ACTION_MAIN);
+                launch.setClass(UAirship.shared().getApplicationContext(), MainActivity.class);
+                launch.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+
+                UAirship.shared().getApplicationContext().startActivity(launch);
+            }
+        });
+
+        dispatcher.register(PushManager.ACTION_REGISTRATION_FINISHED, null, 0, "log registration",
+                new PushActionDispatcher.ActionHandler<PushPayload>() {
+            @Override
+            public void handle(Context context, Intent intent, PushPayload payload) {
+                PushEventLog.shared(context).record(Log.INFO, PushEventLog.TYPE_REGISTRATION_FINISHED,
+                        intent.getBooleanExtra(PushManager.EXTRA_REGISTRATION_VALID, false) ? 1 : 0,
+                        intent.getStringExtra(PushManager.EXTRA_APID));
+            }
+        });
+
+        // Send queued locations while the radio is awake
+        PushActionDispatcher.ActionHandler<PushPayload> uploadLocations = new PushActionDispatcher.ActionHandler<PushPayload>() {
+            @Override
+            public void handle(Context context, Intent intent, PushPayload payload) {
+                LocationUploader uploader = LocationUploader.shared(context);
+                if (uploader != null) {
+                    uploader.onNetworkActivity();
+                }
+            }
+        };
+        dispatcher.register(PushManager.ACTION_PUSH_RECEIVED, null, 10, "upload locations", uploadLocations);
+        dispatcher.register(PushManager.ACTION_REGISTRATION_FINISHED, null, 10, "upload locations", uploadLocations);
     }
 }
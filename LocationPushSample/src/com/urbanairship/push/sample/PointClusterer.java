@@ -0,0 +1,187 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Clusters points on a grid for each map zoom level.
+ *
+ * The grid cells are about {@link #CLUSTER_SIZE_PX} pixels wide at the zoom
+ * level. Each cell's cluster is computed from the quadtree the first time the
+ * cell is visible and then cached, so panning only computes the cells that
+ * scroll into view and adding a point only invalidates the cell it falls in.
+ * The cache is dropped when the zoom level changes.
+ *
+ * The grid uses equal degree cells, which is close enough to square on
+ * screen at the latitudes and zoom levels where clusters matter.
+ *
+ * @param <T> The type of item stored with each point
+ */
+public class PointClusterer<T> {
+
+    /**
+     * Approximate cluster cell size in pixels
+     */
+    public static final int CLUSTER_SIZE_PX = 64;
+
+    private static final int TILE_SIZE_PX = 256;
+    private static final int MAX_CACHED_CELLS = 8192;
+
+    /**
+     * The points in a grid cell
+     */
+    public static class Cluster<T> {
+        public final int latE6;
+        public final int lonE6;
+        public final int count;
+
+        /**
+         * The item when the cluster is a single point, otherwise null
+         */
+        public final T item;
+
+        Cluster(int latE6, int lonE6, int count, T item) {
+            this.latE6 = latE6;
+            this.lonE6 = lonE6;
+            this.count = count;
+            this.item = item;
+        }
+    }
+
+    private final PointQuadtree<T> tree = new PointQuadtree<T>();
+    private final Map<Long, Cluster<T>> cells = new HashMap<Long, Cluster<T>>();
+
+    private int cachedZoom = -1;
+    private int cellSize;
+    private int cellsComputed;
+
+    /**
+     * Adds a point
+     * @param latE6 The latitude in microdegrees
+     * @param lonE6 The longitude in microdegrees
+     * @param item The item
+     */
+    public synchronized void add(int latE6, int lonE6, T item) {
+        tree.insert(latE6, lonE6, item);
+        if (cachedZoom >= 0) {
+            cells.remove(cellKey(cellIndex(latE6, PointQuadtree.MIN_LAT), cellIndex(lonE6, PointQuadtree.MIN_LON)));
+        }
+    }
+
+    /**
+     * @return The number of points
+     */
+    public synchronized int size() {
+        return tree.size();
+    }
+
+    /**
+     * Removes all the points
+     */
+    public synchronized void clear() {
+        tree.clear();
+        cells.clear();
+    }
+
+    /**
+     * @return The number of cells computed from the quadtree, for measuring cache efficiency
+     */
+    public synchronized int getCellsComputed() {
+        return cellsComputed;
+    }
+
+    /**
+     * Gets the clusters in a viewport
+     * @param minLatE6 The minimum latitude of the viewport
+     * @param minLonE6 The minimum longitude of the viewport
+     * @param maxLatE6 The maximum latitude of the viewport
+     * @param maxLonE6 The maximum longitude of the viewport
+     * @param zoom The map zoom level, 1 shows the whole world in 512 pixels
+     * @return The clusters of the cells that intersect the viewport
+     */
+    public synchronized List<Cluster<T>> getClusters(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6, int zoom) {
+        if (zoom != cachedZoom) {
+            cachedZoom = zoom;
+            cellSize = (int) Math.max(1, 360000000L * CLUSTER_SIZE_PX / ((long) TILE_SIZE_PX << Math.min(zoom, 30)));
+            cells.clear();
+        }
+
+        int minY = cellIndex(Math.max(minLatE6, PointQuadtree.MIN_LAT), PointQuadtree.MIN_LAT);
+        int maxY = cellIndex(Math.min(maxLatE6, PointQuadtree.MAX_LAT - 1), PointQuadtree.MIN_LAT);
+        int minX = cellIndex(Math.max(minLonE6, PointQuadtree.MIN_LON), PointQuadtree.MIN_LON);
+        int maxX = cellIndex(Math.min(maxLonE6, PointQuadtree.MAX_LON - 1), PointQuadtree.MIN_LON);
+
+        if (cells.size() + (long) (maxY - minY + 1) * (maxX - minX + 1) > MAX_CACHED_CELLS) {
+            cells.clear();
+        }
+
+        List<Cluster<T>> clusters = new ArrayList<Cluster<T>>();
+        for (int y = minY; y <= maxY; y++) {
+            for (int x = minX; x <= maxX; x++) {
+                Long key = cellKey(y, x);
+                Cluster<T> cluster = cells.get(key);
+                if (cluster == null && !cells.containsKey(key)) {
+                    cluster = computeCluster(y, x);
+                    cells.put(key, cluster);
+                }
+
+                if (cluster != null) {
+                    clusters.add(cluster);
+                }
+            }
+        }
+        return clusters;
+    }
+
+    private Cluster<T> computeCluster(int y, int x) {
+        cellsComputed++;
+
+        int minLat = (int) Math.min(PointQuadtree.MAX_LAT, PointQuadtree.MIN_LAT + (long) y * cellSize);
+        int minLon = (int) Math.min(PointQuadtree.MAX_LON, PointQuadtree.MIN_LON + (long) x * cellSize);
+        int maxLat = (int) Math.min(PointQuadtree.MAX_LAT, (long) minLat + cellSize);
+        int maxLon = (int) Math.min(PointQuadtree.MAX_LON, (long) minLon + cellSize);
+
+        PointQuadtree.Aggregate<T> aggregate = tree.aggregate(minLat, minLon, maxLat, maxLon);
+        if (aggregate.count == 0) {
+            return null;
+        }
+
+        return new Cluster<T>((int) (aggregate.latSum / aggregate.count), (int) (aggregate.lonSum / aggregate.count),
+                aggregate.count, aggregate.item);
+    }
+
+    private int cellIndex(int valueE6, int minE6) {
+        return (int) (((long) valueE6 - minE6) / cellSize);
+    }
+
+    private static Long cellKey(int y, int x) {
+        return ((long) y << 32) | (x & 0xFFFFFFFFL);
+    }
+}
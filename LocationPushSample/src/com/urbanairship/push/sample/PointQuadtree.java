@@ -0,0 +1,265 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+/**
+ * A point region quadtree over microdegree coordinates.
+ *
+ * Every node keeps the count and coordinate sums of the points below it,
+ * so the number and centroid of the points in a region can be found
+ * without visiting the points of nodes that lie entirely inside it.
+ *
+ * @param <T> The type of item stored with each point
+ */
+public class PointQuadtree<T> {
+
+    /**
+     * Receives the points found by a query
+     */
+    public interface Visitor<T> {
+        void visit(int latE6, int lonE6, T item);
+    }
+
+    /**
+     * The count, coordinate sums and, for a single point, the item in a region
+     */
+    public static class Aggregate<T> {
+        public int count;
+        public long latSum;
+        public long lonSum;
+        public T item;
+    }
+
+    public static final int MIN_LAT = -90000000;
+    public static final int MAX_LAT = 90000001;
+    public static final int MIN_LON = -180000000;
+    public static final int MAX_LON = 180000001;
+
+    private static final int NODE_CAPACITY = 16;
+    private static final int MAX_DEPTH = 24;
+
+    private Node<T> root = new Node<T>(MIN_LAT, MIN_LON, MAX_LAT, MAX_LON, 0);
+
+    /**
+     * Inserts a point
+     * @param latE6 The latitude in microdegrees
+     * @param lonE6 The longitude in microdegrees
+     * @param item The item to store with the point
+     */
+    public void insert(int latE6, int lonE6, T item) {
+        latE6 = Math.max(MIN_LAT, Math.min(MAX_LAT - 1, latE6));
+        lonE6 = Math.max(MIN_LON, Math.min(MAX_LON - 1, lonE6));
+        root.insert(latE6, lonE6, item);
+    }
+
+    /**
+     * Visits the points in a region
+     * @param minLatE6 The minimum latitude, inclusive
+     * @param minLonE6 The minimum longitude, inclusive
+     * @param maxLatE6 The maximum latitude, exclusive
+     * @param maxLonE6 The maximum longitude, exclusive
+     * @param visitor The visitor
+     */
+    public void query(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6, Visitor<T> visitor) {
+        root.query(minLatE6, minLonE6, maxLatE6, maxLonE6, visitor);
+    }
+
+    /**
+     * Aggregates the points in a region
+     * @param minLatE6 The minimum latitude, inclusive
+     * @param minLonE6 The minimum longitude, inclusive
+     * @param maxLatE6 The maximum latitude, exclusive
+     * @param maxLonE6 The maximum longitude, exclusive
+     * @return The aggregate
+     */
+    public Aggregate<T> aggregate(int minLatE6, int minLonE6, int maxLatE6, int maxLonE6) {
+        Aggregate<T> aggregate = new Aggregate<T>();
+        root.aggregate(minLatE6, minLonE6, maxLatE6, maxLonE6, aggregate);
+        return aggregate;
+    }
+
+    /**
+     * @return The number of points
+     */
+    public int size() {
+        return root.count;
+    }
+
+    /**
+     * Removes all the points
+     */
+    public void clear() {
+        root = new Node<T>(MIN_LAT, MIN_LON, MAX_LAT, MAX_LON, 0);
+    }
+
+    private static class Node<T> {
+        final int minLat;
+        final int minLon;
+        final int maxLat;
+        final int maxLon;
+        final int depth;
+
+        int count;
+        long latSum;
+        long lonSum;
+
+        // Leaf points, null once the node is split
+        int[] lats = new int[NODE_CAPACITY];
+        int[] lons = new int[NODE_CAPACITY];
+        Object[] items = new Object[NODE_CAPACITY];
+
+        Node<T>[] children;
+
+        Node(int minLat, int minLon, int maxLat, int maxLon, int depth) {
+            this.minLat = minLat;
+            this.minLon = minLon;
+            this.maxLat = maxLat;
+            this.maxLon = maxLon;
+            this.depth = depth;
+        }
+
+        void insert(int lat, int lon, T item) {
+            count++;
+            latSum += lat;
+            lonSum += lon;
+
+            if (children != null) {
+                child(lat, lon).insert(lat, lon, item);
+                return;
+            }
+
+            int index = count - 1;
+            if (index == lats.length) {
+                if (depth < MAX_DEPTH) {
+                    split();
+                    child(lat, lon).insert(lat, lon, item);
+                    return;
+                }
+
+                // Too deep to split, the points are (nearly) the same so just grow the leaf
+                int[] newLats = new int[lats.length * 2];
+                int[] newLons = new int[lats.length * 2];
+                Object[] newItems = new Object[lats.length * 2];
+                System.arraycopy(lats, 0, newLats, 0, index);
+                System.arraycopy(lons, 0, newLons, 0, index);
+                System.arraycopy(items, 0, newItems, 0, index);
+                lats = newLats;
+                lons = newLons;
+                items = newItems;
+            }
+
+            lats[index] = lat;
+            lons[index] = lon;
+            items[index] = item;
+        }
+
+        @SuppressWarnings("unchecked")
+        private void split() {
+            int midLat = (int) (((long) minLat + maxLat) / 2);
+            int midLon = (int) (((long) minLon + maxLon) / 2);
+
+            // Generic arrays can not be created directly, the cast is safe because
+            // the array is private and only ever holds Node<T>
+            children = (Node<T>[]) new Node<?>[4];
+            children[0] = new Node<T>(minLat, minLon, midLat, midLon, depth + 1);
+            children[1] = new Node<T>(minLat, midLon, midLat, maxLon, depth + 1);
+            children[2] = new Node<T>(midLat, minLon, maxLat, midLon, depth + 1);
+            children[3] = new Node<T>(midLat, midLon, maxLat, maxLon, depth + 1);
+
+            for (int i = 0; i < lats.length; i++) {
+                child(lats[i], lons[i]).insert(lats[i], lons[i], (T) items[i]);
+            }
+
+            lats = null;
+            lons = null;
+            items = null;
+        }
+
+        private Node<T> child(int lat, int lon) {
+            int index = 0;
+            if (lat >= children[0].maxLat) {
+                index += 2;
+            }
+            if (lon >= children[0].maxLon) {
+                index += 1;
+            }
+            return children[index];
+        }
+
+        @SuppressWarnings("unchecked")
+        void query(int qMinLat, int qMinLon, int qMaxLat, int qMaxLon, Visitor<T> visitor) {
+            if (count == 0 || qMinLat >= maxLat || qMaxLat <= minLat || qMinLon >= maxLon || qMaxLon <= minLon) {
+                return;
+            }
+
+            if (children != null) {
+                for (Node<T> child : children) {
+                    child.query(qMinLat, qMinLon, qMaxLat, qMaxLon, visitor);
+                }
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (lats[i] >= qMinLat && lats[i] < qMaxLat && lons[i] >= qMinLon && lons[i] < qMaxLon) {
+                    visitor.visit(lats[i], lons[i], (T) items[i]);
+                }
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        void aggregate(int qMinLat, int qMinLon, int qMaxLat, int qMaxLon, Aggregate<T> aggregate) {
+            if (count == 0 || qMinLat >= maxLat || qMaxLat <= minLat || qMinLon >= maxLon || qMaxLon <= minLon) {
+                return;
+            }
+
+            // Use the sums of nodes inside the region, unless the item of a single point is needed
+            boolean contained = qMinLat <= minLat && qMaxLat >= maxLat && qMinLon <= minLon && qMaxLon >= maxLon;
+            if (contained && (count > 1 || aggregate.count > 0)) {
+                aggregate.count += count;
+                aggregate.latSum += latSum;
+                aggregate.lonSum += lonSum;
+                aggregate.item = null;
+                return;
+            }
+
+            if (children != null) {
+                for (Node<T> child : children) {
+                    child.aggregate(qMinLat, qMinLon, qMaxLat, qMaxLon, aggregate);
+                }
+                return;
+            }
+
+            for (int i = 0; i < count; i++) {
+                if (lats[i] >= qMinLat && lats[i] < qMaxLat && lons[i] >= qMinLon && lons[i] < qMaxLon) {
+                    aggregate.item = aggregate.count == 0 ? (T) items[i] : null;
+                    aggregate.count++;
+                    aggregate.latSum += lats[i];
+                    aggregate.lonSum += lons[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,70 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tracks which preference values changed while a preference screen was open.
+ *
+ * Take a snapshot of the values when the screen starts, then diff the
+ * values when it stops so only the changed preferences are applied.
+ */
+public class PreferenceChangeTracker {
+
+    private final Map<String, Object> snapshot = new HashMap<String, Object>();
+
+    /**
+     * Records the current preference values
+     * @param values The preference values by key
+     */
+    public void snapshot(Map<String, Object> values) {
+        snapshot.clear();
+        snapshot.putAll(values);
+    }
+
+    /**
+     * Finds the preferences that changed since the snapshot
+     * @param values The current preference values by key
+     * @return The keys of the changed preferences
+     */
+    public Set<String> getChangedKeys(Map<String, Object> values) {
+        Set<String> changed = new HashSet<String>();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            Object previous = snapshot.get(entry.getKey());
+            Object current = entry.getValue();
+
+            if (!snapshot.containsKey(entry.getKey())
+                    || (previous == null ? current != null : !previous.equals(current))) {
+                changed.add(entry.getKey());
+            }
+        }
+        return changed;
+    }
+}
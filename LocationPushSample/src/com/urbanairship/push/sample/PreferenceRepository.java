@@ -0,0 +1,243 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import com.urbanairship.UAirship;
+import com.urbanairship.location.LocationPreferences;
+import com.urbanairship.location.UALocationManager;
+import com.urbanairship.push.PushManager;
+import com.urbanairship.push.PushPreferences;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Loads the push and location preferences on a background thread and
+ * caches them as an immutable snapshot, so the preferences screen can bind
+ * without reading from disk on the main thread.
+ *
+ */
+public class PreferenceRepository {
+
+    /**
+     * Receives the preference snapshot on the main thread
+     */
+    public interface Callback {
+        void onPreferencesLoaded(Snapshot snapshot);
+    }
+
+    private static final PreferenceRepository instance = new PreferenceRepository();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Callback> pendingCallbacks = new ArrayList<Callback>();
+
+    private Handler workerQueue;
+    private Snapshot snapshot;
+    private boolean loading;
+
+    // Bumped by every write so a load that started before it is discarded
+    private int generation;
+
+    private PreferenceRepository() {}
+
+    /**
+     * @return The shared PreferenceRepository
+     */
+    public static PreferenceRepository shared() {
+        return instance;
+    }
+
+    /**
+     * Loads the preferences in the background if they are not already loaded
+     */
+    public synchronized void load() {
+        if (snapshot != null || loading) {
+            return;
+        }
+
+        loading = true;
+        final int loadGeneration = generation;
+        getWorkerQueue().post(new Runnable() {
+            @Override
+            public void run() {
+                finishLoad(loadGeneration);
+            }
+        });
+    }
+
+    /**
+     * Writes preferences on the worker thread, then reloads them. Callers
+     * that get the preferences in the meantime receive the reloaded snapshot,
+     * never the one from before the write.
+     *
+     * @param write Writes the preferences, must not touch the UI
+     */
+    public synchronized void write(final Runnable write) {
+        snapshot = null;
+        loading = true;
+        final int loadGeneration = ++generation;
+        getWorkerQueue().post(new Runnable() {
+            @Override
+            public void run() {
+                write.run();
+                finishLoad(loadGeneration);
+            }
+        });
+    }
+
+    /**
+     * Gets the preference snapshot. The callback is called immediately
+     * if the preferences are loaded, otherwise on the main thread once
+     * they are.
+     *
+     * @param callback The callback
+     */
+    public void get(Callback callback) {
+        Snapshot current;
+        synchronized (this) {
+            current = snapshot;
+            if (current == null) {
+                pendingCallbacks.add(callback);
+                load();
+                return;
+            }
+        }
+
+        callback.onPreferencesLoaded(current);
+    }
+
+    /**
+     * Removes a callback that is waiting for the preferences to load
+     * @param callback The callback
+     */
+    public synchronized void cancel(Callback callback) {
+        pendingCallbacks.remove(callback);
+    }
+
+    private void finishLoad(int loadGeneration) {
+        Snapshot loaded = Snapshot.load();
+        synchronized (this) {
+            if (loadGeneration != generation) {
+                // A write was queued behind this load and reloads when it is done
+                return;
+            }
+
+            loading = false;
+            snapshot = loaded;
+        }
+        deliverPendingCallbacks();
+    }
+
+    private void deliverPendingCallbacks() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                List<Callback> callbacks;
+                Snapshot current;
+                synchronized (PreferenceRepository.this) {
+                    current = snapshot;
+                    if (current == null) {
+                        return;
+                    }
+
+                    callbacks = new ArrayList<Callback>(pendingCallbacks);
+                    pendingCallbacks.clear();
+                }
+
+                for (Callback callback : callbacks) {
+                    callback.onPreferencesLoaded(current);
+                }
+            }
+        });
+    }
+
+    private Handler getWorkerQueue() {
+        if (workerQueue == null) {
+            HandlerThread workerThread = new HandlerThread("LocationPushSample-Preferences");
+            workerThread.start();
+            workerQueue = new Handler(workerThread.getLooper());
+        }
+        return workerQueue;
+    }
+
+    /**
+     * An immutable snapshot of the push and location preferences
+     *
+     */
+    public static final class Snapshot {
+
+        public final boolean pushEnabled;
+        public final boolean soundEnabled;
+        public final boolean vibrateEnabled;
+        public final boolean quietTimeEnabled;
+        public final boolean locationEnabled;
+        public final boolean backgroundLocationEnabled;
+
+        private final long quietTimeStart;
+        private final long quietTimeEnd;
+
+        private Snapshot(PushPreferences pushPrefs, LocationPreferences locPrefs) {
+            pushEnabled = pushPrefs.isPushEnabled();
+            soundEnabled = pushPrefs.isSoundEnabled();
+            vibrateEnabled = pushPrefs.isVibrateEnabled();
+            quietTimeEnabled = pushPrefs.isQuietTimeEnabled();
+            locationEnabled = locPrefs != null && locPrefs.isLocationEnabled();
+            backgroundLocationEnabled = locPrefs != null && locPrefs.isBackgroundLocationEnabled();
+
+            Date[] interval = pushPrefs.getQuietTimeInterval();
+            quietTimeStart = interval == null ? -1 : interval[0].getTime();
+            quietTimeEnd = interval == null ? -1 : interval[1].getTime();
+        }
+
+        /**
+         * Reads the preferences. Must not be called on the main thread.
+         * @return The snapshot
+         */
+        static Snapshot load() {
+            LocationPreferences locPrefs = null;
+            if (UAirship.shared().getAirshipConfigOptions().locationOptions.locationServiceEnabled) {
+                locPrefs = UALocationManager.shared().getPreferences();
+            }
+
+            return new Snapshot(PushManager.shared().getPreferences(), locPrefs);
+        }
+
+        /**
+         * @return The quiet time interval, or null if a quiet time interval hasn't been set
+         */
+        public Date[] getQuietTimeInterval() {
+            if (quietTimeStart == -1) {
+                return null;
+            }
+            return new Date[] { new Date(quietTimeStart), new Date(quietTimeEnd) };
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.urbanairship.Logger;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A structured log of push events.
+ *
+ * Events are recorded as typed fields into preallocated ring buffer slots,
+ * without building any strings, and the oldest events are overwritten
+ * once the buffer is full. They are only formatted when dumped or when a
+ * background writer appends new events to a log file a few seconds after
+ * they are recorded. Each level can be sampled to keep one in every n
+ * events.
+ *
+ */
+public class PushEventLog {
+
+    public static final int TYPE_INTENT = 0;
+    public static final int TYPE_PUSH_RECEIVED = 1;
+    public static final int TYPE_NOTIFICATION_OPENED = 2;
+    public static final int TYPE_REGISTRATION_FINISHED = 3;
+
+    private static final String[] TYPE_NAMES = new String[] {
+        "intent", "push_received", "notification_opened", "registration_finished"
+    };
+
+    private static final String LEVELS = "??VDIWEA";
+
+    private static final String LOG_FILE = "push_events.log";
+    private static final long MAX_LOG_FILE_BYTES = 256 * 1024;
+    private static final long WRITE_DELAY_MS = 5000; // 5 seconds
+    private static final int DEFAULT_CAPACITY = 256;
+
+    private static PushEventLog instance;
+
+    private final int capacity;
+    private final long[] times;
+    private final int[] levels;
+    private final int[] types;
+    private final int[] numbers;
+    private final String[] texts;
+    private final PushPayload[] payloads;
+
+    private final int[] sampleRates = new int[Log.ASSERT + 1];
+    private final long[] levelCounts = new long[Log.ASSERT + 1];
+
+    private final File logFile;
+    private final Handler writerQueue;
+    private boolean writeScheduled;
+
+    private long recorded;
+    private long written;
+    private long sampledOut;
+
+    private final Runnable writeRunnable = new Runnable() {
+        @Override
+        public void run() {
+            write();
+        }
+    };
+
+    /**
+     * Creates a new PushEventLog
+     * @param capacity Number of events kept in memory
+     * @param logFile The file new events are appended to, or null to only keep them in memory
+     */
+    public PushEventLog(int capacity, File logFile) {
+        this.capacity = capacity;
+        this.times = new long[capacity];
+        this.levels = new int[capacity];
+        this.types = new int[capacity];
+        this.numbers = new int[capacity];
+        this.texts = new String[capacity];
+        this.payloads = new PushPayload[capacity];
+        this.logFile = logFile;
+
+        Arrays.fill(sampleRates, 1);
+
+        HandlerThread writerThread = new HandlerThread("PushSample-EventLog");
+        writerThread.start();
+        writerQueue = new Handler(writerThread.getLooper());
+    }
+
+    /**
+     * @param context Application context
+     * @return The shared PushEventLog
+     */
+    public static synchronized PushEventLog shared(Context context) {
+        if (instance == null) {
+            instance = new PushEventLog(DEFAULT_CAPACITY, new File(context.getFilesDir(), LOG_FILE));
+        }
+        return instance;
+    }
+
+    /**
+     * Keeps one in every n events at a level
+     * @param level The level, one of the <code>android.util.Log</code> levels
+     * @param oneIn Keep one event in this many, 1 keeps them all
+     */
+    public synchronized void setSampleRate(int level, int oneIn) {
+        sampleRates[level] = Math.max(1, oneIn);
+    }
+
+    /**
+     * Records an event
+     * @param level The level, one of the <code>android.util.Log</code> levels
+     * @param type The event type
+     * @param number 1 or 0 for the registration result
+     * @param text The action or APID
+     * @return <code>true</code> if the event was recorded, <code>false</code> if it was sampled out
+     */
+    public boolean record(int level, int type, int number, String text) {
+        return record(level, type, number, text, null);
+    }
+
+    /**
+     * Records a push event
+     * @param level The level, one of the <code>android.util.Log</code> levels
+     * @param type The event type
+     * @param payload The push payload, only read when the event is formatted
+     * @return <code>true</code> if the event was recorded, <code>false</code> if it was sampled out
+     */
+    public boolean recordPush(int level, int type, PushPayload payload) {
+        return record(level, type, payload.notificationId, payload.alert, payload);
+    }
+
+    private synchronized boolean record(int level, int type, int number, String text, PushPayload payload) {
+        if (levelCounts[level]++ % sampleRates[level] != 0) {
+            sampledOut++;
+            return false;
+        }
+
+        int slot = (int) (recorded % capacity);
+        times[slot] = System.currentTimeMillis();
+        levels[slot] = level;
+        types[slot] = type;
+        numbers[slot] = number;
+        texts[slot] = text;
+        payloads[slot] = payload;
+        recorded++;
+
+        if (logFile != null && !writeScheduled) {
+            writeScheduled = true;
+            writerQueue.postDelayed(writeRunnable, WRITE_DELAY_MS);
+        }
+        return true;
+    }
+
+    /**
+     * Formats the events in memory, oldest first
+     * @param writer The writer
+     */
+    public void dump(Writer writer) {
+        List<Entry> entries;
+        long dropped;
+        synchronized (this) {
+            entries = copy(Math.max(0, recorded - capacity));
+            dropped = sampledOut;
+        }
+
+        PrintWriter out = new PrintWriter(writer);
+        SimpleDateFormat format = createDateFormat();
+        for (Entry entry : entries) {
+            out.println(entry.format(format));
+        }
+        out.println(entries.size() + " events, " + dropped + " sampled out");
+        out.flush();
+    }
+
+    /**
+     * Appends the events recorded since the last write to the log file
+     */
+    private void write() {
+        List<Entry> entries;
+        long lost;
+        synchronized (this) {
+            writeScheduled = false;
+            long first = Math.max(written, recorded - capacity);
+            lost = first - written;
+            entries = copy(first);
+            written = recorded;
+        }
+
+        if (logFile.length() > MAX_LOG_FILE_BYTES) {
+            logFile.renameTo(new File(logFile.getPath() + ".1"));
+        }
+
+        SimpleDateFormat format = createDateFormat();
+        try {
+            PrintWriter out = new PrintWriter(new FileWriter(logFile, true));
+            try {
+                if (lost > 0) {
+                    out.println(lost + " events overwritten before they were written");
+                }
+                for (Entry entry : entries) {
+                    out.println(entry.format(format));
+                }
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            Logger.error("Unable to write push events", e);
+        }
+    }
+
+    /**
+     * Copies the events from a sequence number to the end of the ring buffer
+     */
+    private List<Entry> copy(long from) {
+        List<Entry> entries = new ArrayList<Entry>((int) (recorded - from));
+        for (long seq = from; seq < recorded; seq++) {
+            int slot = (int) (seq % capacity);
+            entries.add(new Entry(times[slot], levels[slot], types[slot], numbers[slot],
+                    texts[slot], payloads[slot]));
+        }
+        return entries;
+    }
+
+    private static SimpleDateFormat createDateFormat() {
+        return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS", Locale.US);
+    }
+
+    /**
+     * A copy of an event taken for formatting
+     */
+    private static class Entry {
+        final long time;
+        final int level;
+        final int type;
+        final int number;
+        final String text;
+        final PushPayload payload;
+
+        Entry(long time, int level, int type, int number, String text, PushPayload payload) {
+            this.time = time;
+            this.level = level;
+            this.type = type;
+            this.number = number;
+            this.text = text;
+            this.payload = payload;
+        }
+
+        String format(SimpleDateFormat dateFormat) {
+            StringBuilder builder = new StringBuilder();
+            builder.append(dateFormat.format(new Date(time)))
+            .append(' ').append(LEVELS.charAt(level))
+            .append(' ').append(TYPE_NAMES[type]);
+
+            switch (type) {
+                case TYPE_PUSH_RECEIVED:
+                case TYPE_NOTIFICATION_OPENED:
+                    builder.append(" id=").append(number)
+                    .append(" push=").append(payload == null ? null : payload.pushId)
+                    .append(" alert=\"").append(text).append('"');
+                    break;
+
+                case TYPE_REGISTRATION_FINISHED:
+                    builder.append(" apid=").append(text).append(" valid=").append(number != 0);
+                    break;
+
+                default:
+                    builder.append(' ').append(text);
+                    break;
+            }
+
+            if (payload != null) {
+                for (Map.Entry<String, String> extra : payload.getExtras().entrySet()) {
+                    builder.append(' ').append(extra.getKey()).append("=\"").append(extra.getValue()).append('"');
+                }
+            }
+
+            return builder.toString();
+        }
+    }
+}
@@ -0,0 +1,101 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.os.Bundle;
+
+import com.urbanairship.push.PushManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable push payload, parsed once from the push intent at intake
+ * and passed to the handlers and the event log.
+ *
+ */
+public final class PushPayload {
+
+    /**
+     * Extras exposed as fields or only used by GCM
+     */
+    private static final Set<String> STANDARD_EXTRAS = new HashSet<String>(Arrays.asList(
+            "collapse_key", // GCM collapse key
+            "from", // GCM sender
+            PushManager.EXTRA_NOTIFICATION_ID,
+            PushManager.EXTRA_PUSH_ID,
+            PushManager.EXTRA_ALERT));
+
+    public final String alert;
+    public final String pushId;
+
+    /**
+     * Id of the posted notification, or 0 if it is not known
+     */
+    public final int notificationId;
+
+    private final Map<String, String> extras;
+
+    private PushPayload(String alert, String pushId, int notificationId, Map<String, String> extras) {
+        this.alert = alert;
+        this.pushId = pushId;
+        this.notificationId = notificationId;
+        this.extras = Collections.unmodifiableMap(extras);
+    }
+
+    /**
+     * Parses the extras of a push intent
+     * @param extras The intent extras, may be null
+     * @return The payload
+     */
+    public static PushPayload fromBundle(Bundle extras) {
+        if (extras == null) {
+            return new PushPayload(null, null, 0, new HashMap<String, String>());
+        }
+
+        Map<String, String> custom = new HashMap<String, String>();
+        for (String key : extras.keySet()) {
+            Object value = extras.get(key);
+            if (value instanceof String && !STANDARD_EXTRAS.contains(key)) {
+                custom.put(key, (String) value);
+            }
+        }
+
+        return new PushPayload(extras.getString(PushManager.EXTRA_ALERT), extras.getString(PushManager.EXTRA_PUSH_ID),
+                extras.getInt(PushManager.EXTRA_NOTIFICATION_ID, 0), custom);
+    }
+
+    /**
+     * @return The custom extras sent with the push, without the standard ones
+     */
+    public Map<String, String> getExtras() {
+        return extras;
+    }
+}
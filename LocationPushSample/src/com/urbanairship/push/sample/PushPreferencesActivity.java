@@ -25,8 +25,12 @@ ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 
 package com.urbanairship.push.sample;
 
+import android.annotation.SuppressLint;
+import android.content.pm.ApplicationInfo;
 import android.content.res.Configuration;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.StrictMode;
 import android.text.format.DateFormat;
 import android.view.View;
 import android.view.View.OnClickListener;
@@ -37,19 +41,30 @@ import android.widget.TimePicker;
 
 import com.urbanairship.UAirship;
 import com.urbanairship.analytics.InstrumentedActivity;
-import com.urbanairship.location.LocationPreferences;
 import com.urbanairship.location.UALocationManager;
 import com.urbanairship.push.PushManager;
 import com.urbanairship.push.PushPreferences;
 
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
 
 // This class represents the UI and implementation of the activity enabling users
 // to set Quiet Time preferences.
 
 public class PushPreferencesActivity extends InstrumentedActivity {
 
+    private static final String PUSH_ENABLED_KEY = "push_enabled";
+    private static final String SOUND_ENABLED_KEY = "sound_enabled";
+    private static final String VIBRATE_ENABLED_KEY = "vibrate_enabled";
+    private static final String QUIET_TIME_ENABLED_KEY = "quiet_time_enabled";
+    private static final String QUIET_TIME_START_KEY = "quiet_time_start";
+    private static final String QUIET_TIME_END_KEY = "quiet_time_end";
+    private static final String LOCATION_ENABLED_KEY = "location_enabled";
+    private static final String BACKGROUND_LOCATION_ENABLED_KEY = "background_location_enabled";
+
     CheckBox pushEnabled;
     CheckBox soundEnabled;
     CheckBox vibrateEnabled;
@@ -63,8 +78,21 @@ public class PushPreferencesActivity extends InstrumentedActivity {
     TimePicker startTime;
     TimePicker endTime;
 
-    PushPreferences pushPrefs = PushManager.shared().getPreferences();
-    LocationPreferences locPrefs = UALocationManager.shared().getPreferences();
+    PreferenceChangeTracker changeTracker = new PreferenceChangeTracker();
+
+    // Set once the screen has been bound to the loaded preferences
+    private boolean bound;
+
+    // The thread policy before StrictMode was enabled, a StrictMode.ThreadPolicy
+    // kept as an Object so the activity still loads before Gingerbread
+    private Object previousThreadPolicy;
+
+    private final PreferenceRepository.Callback bindCallback = new PreferenceRepository.Callback() {
+        @Override
+        public void onPreferencesLoaded(PreferenceRepository.Snapshot snapshot) {
+            bind(snapshot);
+        }
+    };
 
     private void pushSettingsActive(boolean active) {
         soundEnabled.setEnabled(active);
@@ -83,6 +111,7 @@ public class PushPreferencesActivity extends InstrumentedActivity {
     @Override
     public void onCreate(Bundle icicle) {
         super.onCreate(icicle);
+        enableStrictMode();
 
         Window w = getWindow();
         w.requestFeature(Window.FEATURE_LEFT_ICON);
@@ -130,18 +159,24 @@ public class PushPreferencesActivity extends InstrumentedActivity {
     }
 
     // When the activity starts, we need to fetch and display the user's current
-    // Push preferences in the view, if applicable.
+    // Push preferences in the view, if applicable. The preferences are loaded
+    // in the background, so the view is bound once they are available.
     @Override
     public void onStart() {
         super.onStart();
 
-        boolean isPushEnabled = pushPrefs.isPushEnabled();
+        bound = false;
+        PreferenceRepository.shared().get(bindCallback);
+    }
+
+    private void bind(PreferenceRepository.Snapshot snapshot) {
+        boolean isPushEnabled = snapshot.pushEnabled;
         pushEnabled.setChecked(isPushEnabled);
-        soundEnabled.setChecked(pushPrefs.isSoundEnabled());
-        vibrateEnabled.setChecked(pushPrefs.isVibrateEnabled());
+        soundEnabled.setChecked(snapshot.soundEnabled);
+        vibrateEnabled.setChecked(snapshot.vibrateEnabled);
         pushSettingsActive(isPushEnabled);
 
-        boolean isQuietTimeEnabled = pushPrefs.isQuietTimeEnabled();
+        boolean isQuietTimeEnabled = snapshot.quietTimeEnabled;
         quietTimeEnabled.setChecked(isQuietTimeEnabled);
         quietTimeSettingsActive(isQuietTimeEnabled);
 
@@ -152,76 +187,164 @@ public class PushPreferencesActivity extends InstrumentedActivity {
             backgroundLocationEnabledLabel.setVisibility(View.GONE);
 
         } else {
-            locationEnabled.setChecked(locPrefs.isLocationEnabled());
-            backgroundLocationEnabled.setChecked(locPrefs.isBackgroundLocationEnabled());
+            locationEnabled.setChecked(snapshot.locationEnabled);
+            backgroundLocationEnabled.setChecked(snapshot.backgroundLocationEnabled);
         }
 
         //this will be null if a quiet time interval hasn't been set
-        Date[] interval = pushPrefs.getQuietTimeInterval();
+        Date[] interval = snapshot.getQuietTimeInterval();
         if(interval != null) {
             startTime.setCurrentHour(interval[0].getHours());
             startTime.setCurrentMinute(interval[0].getMinutes());
             endTime.setCurrentHour(interval[1].getHours());
             endTime.setCurrentMinute(interval[1].getMinutes());
         }
+
+        changeTracker.snapshot(readPreferenceValues());
+        bound = true;
     }
 
-    // When the activity is closed, save the user's Push preferences
+    // When the activity is closed, save any of the user's Push preferences that changed
     @Override
     public void onStop() {
         super.onStop();
 
-        boolean isPushEnabledInActivity = pushEnabled.isChecked();
-        boolean isQuietTimeEnabledInActivity = quietTimeEnabled.isChecked();
+        // Nothing could have been changed if the preferences never loaded
+        PreferenceRepository.shared().cancel(bindCallback);
+        if (!bound) {
+            return;
+        }
 
-        if(isPushEnabledInActivity) {
-            PushManager.enablePush();
+        final Map<String, Object> values = readPreferenceValues();
+        final Set<String> changedKeys = changeTracker.getChangedKeys(values);
+        if (changedKeys.isEmpty()) {
+            return;
         }
-        else {
-            PushManager.disablePush();
+
+        // The PushManager and UALocationManager setters stay on the main thread,
+        // only the preference writes and the reload go to the background. The
+        // repository queues them ahead of the next bind, so reopening the screen
+        // before they finish still shows the new values.
+        applyManagerPreferences(values, changedKeys);
+        PreferenceRepository.shared().write(new Runnable() {
+            @Override
+            public void run() {
+                writePushPreferences(values, changedKeys);
+            }
+        });
+    }
+
+    /**
+     * Reads the preference values from the screen
+     * @return The preference values by key
+     */
+    private Map<String, Object> readPreferenceValues() {
+        Map<String, Object> values = new HashMap<String, Object>();
+        values.put(PUSH_ENABLED_KEY, pushEnabled.isChecked());
+        values.put(SOUND_ENABLED_KEY, soundEnabled.isChecked());
+        values.put(VIBRATE_ENABLED_KEY, vibrateEnabled.isChecked());
+        values.put(QUIET_TIME_ENABLED_KEY, quietTimeEnabled.isChecked());
+        values.put(QUIET_TIME_START_KEY, startTime.getCurrentHour() * 60 + startTime.getCurrentMinute());
+        values.put(QUIET_TIME_END_KEY, endTime.getCurrentHour() * 60 + endTime.getCurrentMinute());
+
+        if (UAirship.shared().getAirshipConfigOptions().locationOptions.locationServiceEnabled) {
+            values.put(LOCATION_ENABLED_KEY, locationEnabled.isChecked());
+            values.put(BACKGROUND_LOCATION_ENABLED_KEY, backgroundLocationEnabled.isChecked());
         }
 
-        pushPrefs.setSoundEnabled(soundEnabled.isChecked());
-        pushPrefs.setVibrateEnabled(vibrateEnabled.isChecked());
+        return values;
+    }
 
-        pushPrefs.setQuietTimeEnabled(isQuietTimeEnabledInActivity);
+    /**
+     * Enables or disables push and location for the changed preferences.
+     * Must be called on the main thread. Push enablement is the only change
+     * that triggers a registration update, so there is at most one update.
+     *
+     * @param values The preference values by key
+     * @param changedKeys The keys of the preferences that changed
+     */
+    private void applyManagerPreferences(Map<String, Object> values, Set<String> changedKeys) {
+        if (changedKeys.contains(PUSH_ENABLED_KEY)) {
+            if ((Boolean) values.get(PUSH_ENABLED_KEY)) {
+                PushManager.enablePush();
+            } else {
+                PushManager.disablePush();
+            }
+        }
 
-        if(isQuietTimeEnabledInActivity) {
+        this.handleLocation(values, changedKeys);
+    }
 
-            // Grab the start date.
-            Calendar cal = Calendar.getInstance();
-            cal.set(Calendar.HOUR_OF_DAY, startTime.getCurrentHour());
-            cal.set(Calendar.MINUTE, startTime.getCurrentMinute());
-            Date startDate = cal.getTime();
+    /**
+     * Writes the changed sound, vibrate and quiet time preferences.
+     * Must not be called on the main thread.
+     *
+     * @param values The preference values by key
+     * @param changedKeys The keys of the preferences that changed
+     */
+    private static void writePushPreferences(Map<String, Object> values, Set<String> changedKeys) {
+        PushPreferences pushPrefs = PushManager.shared().getPreferences();
+
+        if (changedKeys.contains(SOUND_ENABLED_KEY)) {
+            pushPrefs.setSoundEnabled((Boolean) values.get(SOUND_ENABLED_KEY));
+        }
 
-            // Prepare the end date.
-            cal = Calendar.getInstance();
-            cal.set(Calendar.HOUR_OF_DAY, endTime.getCurrentHour());
-            cal.set(Calendar.MINUTE, endTime.getCurrentMinute());
-            Date endDate = cal.getTime();
+        if (changedKeys.contains(VIBRATE_ENABLED_KEY)) {
+            pushPrefs.setVibrateEnabled((Boolean) values.get(VIBRATE_ENABLED_KEY));
+        }
 
-            pushPrefs.setQuietTimeInterval(startDate, endDate);
+        boolean isQuietTimeEnabled = (Boolean) values.get(QUIET_TIME_ENABLED_KEY);
+        if (changedKeys.contains(QUIET_TIME_ENABLED_KEY)) {
+            pushPrefs.setQuietTimeEnabled(isQuietTimeEnabled);
         }
 
-        this.handleLocation();
+        if (isQuietTimeEnabled && (changedKeys.contains(QUIET_TIME_ENABLED_KEY)
+                || changedKeys.contains(QUIET_TIME_START_KEY)
+                || changedKeys.contains(QUIET_TIME_END_KEY))) {
+
+            pushPrefs.setQuietTimeInterval(createDate((Integer) values.get(QUIET_TIME_START_KEY)),
+                    createDate((Integer) values.get(QUIET_TIME_END_KEY)));
+        }
+    }
 
+    /**
+     * Creates a date for today at a minute of the day
+     * @param minuteOfDay The minute of the day
+     * @return The date
+     */
+    private static Date createDate(int minuteOfDay) {
+        Calendar cal = Calendar.getInstance();
+        cal.set(Calendar.HOUR_OF_DAY, minuteOfDay / 60);
+        cal.set(Calendar.MINUTE, minuteOfDay % 60);
+        return cal.getTime();
     }
 
-    private void handleLocation() {
+    private void handleLocation(Map<String, Object> values, Set<String> changedKeys) {
         if (!UAirship.shared().getAirshipConfigOptions().locationOptions.locationServiceEnabled) {
             return;
         }
-        boolean isLocationEnabledInActivity = locationEnabled.isChecked();
-        boolean isBackgroundLocationEnabledInActivity = backgroundLocationEnabled.isChecked();
 
-        if (isLocationEnabledInActivity) {
-            UALocationManager.enableLocation();
-            handleBackgroundLocationPreference(isBackgroundLocationEnabledInActivity);
+        boolean locationChanged = changedKeys.contains(LOCATION_ENABLED_KEY);
+        boolean backgroundLocationChanged = changedKeys.contains(BACKGROUND_LOCATION_ENABLED_KEY);
+        boolean isBackgroundLocationEnabledInActivity = (Boolean) values.get(BACKGROUND_LOCATION_ENABLED_KEY);
+
+        if ((Boolean) values.get(LOCATION_ENABLED_KEY)) {
+            if (locationChanged) {
+                UALocationManager.enableLocation();
+            }
+
+            if (locationChanged || backgroundLocationChanged) {
+                handleBackgroundLocationPreference(isBackgroundLocationEnabledInActivity);
+            }
         } else {
-            handleBackgroundLocationPreference(isBackgroundLocationEnabledInActivity);
-            UALocationManager.disableLocation();
-        }
+            if (locationChanged || backgroundLocationChanged) {
+                handleBackgroundLocationPreference(isBackgroundLocationEnabledInActivity);
+            }
 
+            if (locationChanged) {
+                UALocationManager.disableLocation();
+            }
+        }
     }
 
     private void handleBackgroundLocationPreference(boolean backgroundLocationEnabled) {
@@ -232,6 +355,42 @@ public class PushPreferencesActivity extends InstrumentedActivity {
         }
     }
 
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        restoreStrictMode();
+    }
+
+    /**
+     * Logs any disk reads or writes on the main thread in debug builds,
+     * until the activity is destroyed. Builds on the current policy, so the
+     * penaltyDeath the instrumentation tests set still applies.
+     */
+    @SuppressLint("NewApi")
+    private void enableStrictMode() {
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        if (debuggable && Build.VERSION.SDK_INT >= 9) {
+            previousThreadPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder(
+                    (StrictMode.ThreadPolicy) previousThreadPolicy)
+            .detectDiskReads()
+            .detectDiskWrites()
+            .penaltyLog()
+            .build());
+        }
+    }
+
+    /**
+     * Puts back the thread policy from before {@link #enableStrictMode()}
+     */
+    @SuppressLint("NewApi")
+    private void restoreStrictMode() {
+        if (previousThreadPolicy != null) {
+            StrictMode.setThreadPolicy((StrictMode.ThreadPolicy) previousThreadPolicy);
+            previousThreadPolicy = null;
+        }
+    }
+
     @Override
     public void onConfigurationChanged(Configuration newConfig) {
         super.onConfigurationChanged(newConfig);
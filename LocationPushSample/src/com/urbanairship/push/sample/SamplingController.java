@@ -0,0 +1,350 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.LinkedList;
+
+/**
+ * Picks the location provider, accuracy and sampling interval from recent
+ * movement speed, fix spread and battery state.
+ *
+ * The speed is the net displacement over a window of recent fixes and the
+ * spread is how far the fixes scatter around a constant speed path.
+ *
+ * Sampling backs off the longer the device stays stationary and tightens
+ * as it moves faster. A low battery that is not charging doubles the
+ * interval and avoids GPS. A stationary device on low battery only listens
+ * to the fixes other apps request, and falls back to a network fix when none
+ * arrived for a whole interval.
+ *
+ * Decisions are made when a fix arrives, when the battery state changes and
+ * when {@link #refresh(long)} is called, so a device that gets no fixes is
+ * still re-evaluated. The controller has no Android dependencies and is
+ * driven by the fix times, so it can be exercised with simulated input.
+ *
+ */
+public class SamplingController {
+
+    public static final String PROVIDER_GPS = "gps";
+    public static final String PROVIDER_NETWORK = "network";
+    public static final String PROVIDER_PASSIVE = "passive";
+
+    public static final int ACCURACY_FINE = 1;
+    public static final int ACCURACY_COARSE = 2;
+
+    public static final int MODE_STATIONARY = 0;
+    public static final int MODE_WALKING = 1;
+    public static final int MODE_RUNNING = 2;
+    public static final int MODE_DRIVING = 3;
+
+    private static final String[] MODE_NAMES = new String[] { "stationary", "walking", "running", "driving" };
+
+    /**
+     * The controller settings
+     */
+    public static class Config {
+        /**
+         * Fixed interval the savings are estimated against
+         */
+        public long baselineIntervalMs = 60 * 1000;
+
+        /**
+         * How far back fixes are used to estimate movement
+         */
+        public long windowMs = 2 * 60 * 1000;
+
+        /**
+         * Speed in meters per second below which the device may be stationary
+         */
+        public double stationarySpeed = 0.5;
+
+        /**
+         * Fix spread in meters above which walking switches to GPS
+         */
+        public double noisySpreadMeters = 40;
+
+        public double walkingSpeed = 2.5;
+        public double runningSpeed = 7;
+
+        public long stationaryIntervalMs = 5 * 60 * 1000;
+        public long maxStationaryIntervalMs = 20 * 60 * 1000;
+        public long walkingIntervalMs = 30 * 1000;
+        public long runningIntervalMs = 10 * 1000;
+        public long drivingIntervalMs = 5 * 1000;
+
+        /**
+         * Battery level, from 0 to 1, below which sampling is relaxed when not charging
+         */
+        public float lowBattery = 0.2f;
+    }
+
+    /**
+     * A sampling decision
+     */
+    public static final class Decision {
+        public final int mode;
+        public final String provider;
+        public final int accuracy;
+        public final long intervalMs;
+        public final float minDistanceMeters;
+
+        Decision(int mode, String provider, int accuracy, long intervalMs, float minDistanceMeters) {
+            this.mode = mode;
+            this.provider = provider;
+            this.accuracy = accuracy;
+            this.intervalMs = intervalMs;
+            this.minDistanceMeters = minDistanceMeters;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %s %s every %ds, %.0fm", MODE_NAMES[mode], provider,
+                    accuracy == ACCURACY_FINE ? "fine" : "coarse", intervalMs / 1000, minDistanceMeters);
+        }
+    }
+
+    private final Config config;
+    private final LinkedList<LocationFix> window = new LinkedList<LocationFix>();
+
+    private float batteryLevel = 1;
+    private boolean charging;
+    private long stationarySince = -1;
+
+    private Decision decision;
+    private long decisionTime = -1;
+    private double elapsedMs;
+    private double fixesTaken;
+
+    /**
+     * Creates a new SamplingController
+     * @param config The settings
+     */
+    public SamplingController(Config config) {
+        this.config = config;
+        this.decision = new Decision(MODE_WALKING, PROVIDER_NETWORK, ACCURACY_COARSE, config.walkingIntervalMs, 0);
+    }
+
+    /**
+     * Updates the battery state
+     * @param level The battery level from 0 to 1
+     * @param charging <code>true</code> if the device is charging
+     */
+    public synchronized void setBatteryState(float level, boolean charging) {
+        boolean wasLow = isLowBattery();
+        this.batteryLevel = level;
+        this.charging = charging;
+
+        // Re-decide now instead of waiting for a fix that passive sampling may never get
+        if (wasLow != isLowBattery() && decisionTime >= 0) {
+            decision = decide(decisionTime);
+        }
+    }
+
+    /**
+     * Adds a fix and updates the decision
+     * @param fix The fix
+     * @return The new decision
+     */
+    public synchronized Decision onFix(LocationFix fix) {
+        window.addLast(fix);
+        while (window.size() > 2 && fix.time - window.getFirst().time > config.windowMs) {
+            window.removeFirst();
+        }
+
+        account(fix.time);
+        decision = decide(fix.time);
+        return decision;
+    }
+
+    /**
+     * Updates the decision without a new fix. Called periodically so the
+     * stationary back off and the passive fallback advance when no fixes arrive.
+     *
+     * @param now The current time in milliseconds
+     * @return The new decision
+     */
+    public synchronized Decision refresh(long now) {
+        account(now);
+        decision = decide(now);
+        return decision;
+    }
+
+    /**
+     * @return The current decision
+     */
+    public synchronized Decision getDecision() {
+        return decision;
+    }
+
+    /**
+     * Estimates the fixes saved per hour compared to sampling at the baseline interval,
+     * from the decisions made so far. Negative while the device moves, since moving
+     * devices are sampled more often than the baseline.
+     *
+     * @return The fixes saved per hour
+     */
+    public synchronized double getEstimatedFixesSavedPerHour() {
+        if (elapsedMs <= 0) {
+            return 0;
+        }
+
+        double baselineFixes = elapsedMs / config.baselineIntervalMs;
+        return (baselineFixes - fixesTaken) * (60 * 60 * 1000) / elapsedMs;
+    }
+
+    /**
+     * @return The net speed over the window in meters per second. Using the
+     * net displacement instead of the path length keeps jitter from looking
+     * like movement.
+     */
+    public synchronized double getSpeed() {
+        if (window.size() < 2) {
+            return 0;
+        }
+
+        long duration = window.getLast().time - window.getFirst().time;
+        return duration > 0 ? window.getFirst().distanceTo(window.getLast()) * 1000 / duration : 0;
+    }
+
+    /**
+     * @return The root mean square distance of the window fixes from a constant
+     * speed path between the first and last fix, in meters
+     */
+    public synchronized double getSpread() {
+        if (window.size() < 3) {
+            return 0;
+        }
+
+        LocationFix first = window.getFirst();
+        LocationFix last = window.getLast();
+        long duration = Math.max(1, last.time - first.time);
+
+        double sum = 0;
+        for (LocationFix fix : window) {
+            double progress = (double) (fix.time - first.time) / duration;
+            double lat = first.latitude + (last.latitude - first.latitude) * progress;
+            double lon = first.longitude + (last.longitude - first.longitude) * progress;
+            double distance = LocationFix.distanceBetween(lat, lon, fix.latitude, fix.longitude);
+            sum += distance * distance;
+        }
+        return Math.sqrt(sum / window.size());
+    }
+
+    private Decision decide(long now) {
+        double speed = getSpeed();
+        double spread = getSpread();
+
+        int mode;
+        if (speed < config.stationarySpeed) {
+            mode = MODE_STATIONARY;
+        } else if (speed < config.walkingSpeed) {
+            mode = MODE_WALKING;
+        } else if (speed < config.runningSpeed) {
+            mode = MODE_RUNNING;
+        } else {
+            mode = MODE_DRIVING;
+        }
+
+        String provider;
+        int accuracy;
+        long interval;
+        float minDistance;
+
+        switch (mode) {
+            case MODE_STATIONARY:
+                if (stationarySince < 0) {
+                    stationarySince = now;
+                }
+
+                // Back off further the longer the device stays put, doubling every 15 minutes
+                long stationaryMs = now - stationarySince;
+                interval = config.stationaryIntervalMs << Math.min(4, stationaryMs / (15 * 60 * 1000));
+                interval = Math.min(interval, config.maxStationaryIntervalMs);
+                provider = PROVIDER_NETWORK;
+                accuracy = ACCURACY_COARSE;
+                minDistance = 100;
+                break;
+
+            case MODE_WALKING:
+                interval = config.walkingIntervalMs;
+                // Noisy fixes need GPS to tell real movement from jitter
+                provider = spread > config.noisySpreadMeters ? PROVIDER_GPS : PROVIDER_NETWORK;
+                accuracy = ACCURACY_FINE;
+                minDistance = 20;
+                break;
+
+            case MODE_RUNNING:
+                interval = config.runningIntervalMs;
+                provider = PROVIDER_GPS;
+                accuracy = ACCURACY_FINE;
+                minDistance = 20;
+                break;
+
+            default:
+                interval = config.drivingIntervalMs;
+                provider = PROVIDER_GPS;
+                accuracy = ACCURACY_FINE;
+                minDistance = 50;
+                break;
+        }
+
+        if (mode != MODE_STATIONARY) {
+            stationarySince = -1;
+        }
+
+        if (isLowBattery()) {
+            interval *= 2;
+            if (PROVIDER_GPS.equals(provider)) {
+                provider = PROVIDER_NETWORK;
+            } else if (mode == MODE_STATIONARY && !window.isEmpty() && now - window.getLast().time < interval) {
+                // Listen passively while fixes keep arriving, otherwise nothing would tell that the device moved
+                provider = PROVIDER_PASSIVE;
+            }
+        }
+
+        return new Decision(mode, provider, accuracy, interval, minDistance);
+    }
+
+    private boolean isLowBattery() {
+        return !charging && batteryLevel < config.lowBattery;
+    }
+
+    /**
+     * Accounts the time since the last decision at that decision's interval
+     */
+    private void account(long now) {
+        if (decisionTime >= 0 && now > decisionTime) {
+            long elapsed = now - decisionTime;
+            elapsedMs += elapsed;
+
+            // Passive sampling only uses fixes other apps paid for
+            if (!PROVIDER_PASSIVE.equals(decision.provider)) {
+                fixesTaken += (double) elapsed / decision.intervalMs;
+            }
+        }
+        decisionTime = now;
+    }
+}
@@ -0,0 +1,90 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.graphics.Point;
+
+import com.google.android.maps.GeoPoint;
+import com.google.android.maps.MapView;
+import com.google.android.maps.Overlay;
+import com.google.android.maps.Projection;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Draws a simplified track as a polyline.
+ *
+ */
+public class TrackOverlay extends Overlay {
+
+    private final Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path path = new Path();
+    private final Point screenPoint = new Point();
+    private List<GeoPoint> points = new ArrayList<GeoPoint>();
+
+    public TrackOverlay() {
+        paint.setColor(Color.argb(180, 0, 102, 204));
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(4);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+    }
+
+    /**
+     * Replaces the track. Must be called on the main thread.
+     * @param track The track, oldest first
+     */
+    public void setTrack(List<LocationFix> track) {
+        List<GeoPoint> newPoints = new ArrayList<GeoPoint>(track.size());
+        for (LocationFix fix : track) {
+            newPoints.add(new GeoPoint((int) (fix.latitude * 1E6), (int) (fix.longitude * 1E6)));
+        }
+        points = newPoints;
+    }
+
+    @Override
+    public void draw(Canvas canvas, MapView mapView, boolean shadow) {
+        if (shadow || points.size() < 2) {
+            return;
+        }
+
+        Projection projection = mapView.getProjection();
+        path.rewind();
+        for (int i = 0; i < points.size(); i++) {
+            projection.toPixels(points.get(i), screenPoint);
+            if (i == 0) {
+                path.moveTo(screenPoint.x, screenPoint.y);
+            } else {
+                path.lineTo(screenPoint.x, screenPoint.y);
+            }
+        }
+        canvas.drawPath(path, paint);
+    }
+}
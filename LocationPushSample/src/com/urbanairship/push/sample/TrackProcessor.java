@@ -0,0 +1,119 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Smooths the fixes dispatched by a {@link LocationPipeline} and keeps a
+ * simplified track, on a background thread, then hands the results to a
+ * listener on the main thread. Nothing is handed to the listener after
+ * {@link #quit()}.
+ *
+ */
+public class TrackProcessor implements LocationPipeline.Consumer {
+
+    /**
+     * Receives the processed track on the main thread
+     */
+    public interface Listener {
+        /**
+         * Called after a batch of fixes is processed
+         * @param smoothed The smoothed fixes in the batch, outliers removed
+         * @param track The simplified track, oldest first
+         */
+        void onTrackUpdated(List<LocationFix> smoothed, List<LocationFix> track);
+    }
+
+    private final LocationSmoother smoother = new LocationSmoother(new LocationSmoother.Config());
+    private final TrackSimplifier simplifier;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final HandlerThread workerThread;
+    private final Handler workerQueue;
+    private volatile boolean quit;
+
+    /**
+     * Creates a new TrackProcessor
+     * @param maxVertices The maximum number of vertices in the simplified track
+     * @param listener The listener
+     */
+    public TrackProcessor(int maxVertices, Listener listener) {
+        this.simplifier = new TrackSimplifier(maxVertices);
+        this.listener = listener;
+
+        workerThread = new HandlerThread("LocationPushSample-Track");
+        workerThread.start();
+        workerQueue = new Handler(workerThread.getLooper());
+    }
+
+    @Override
+    public void onLocationUpdate(final List<LocationFix> fixes) {
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                final List<LocationFix> smoothed = new ArrayList<LocationFix>(fixes.size());
+                for (LocationFix fix : fixes) {
+                    LocationFix result = smoother.smooth(fix);
+                    if (result != null) {
+                        smoothed.add(result);
+                        simplifier.append(result);
+                    }
+                }
+
+                if (quit || smoothed.isEmpty()) {
+                    return;
+                }
+
+                final List<LocationFix> track = simplifier.getVertices();
+                mainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        // Checked again on the main thread, where quit is called
+                        if (!quit) {
+                            listener.onTrackUpdated(smoothed, track);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Stops the background thread and drops the updates that were not
+     * delivered yet. Must be called on the main thread.
+     */
+    public void quit() {
+        quit = true;
+        workerThread.quit();
+        mainHandler.removeCallbacksAndMessages(null);
+    }
+}
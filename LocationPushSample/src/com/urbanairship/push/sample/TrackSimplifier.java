@@ -0,0 +1,273 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incrementally simplifies a growing track to a bounded number of vertices.
+ *
+ * Uses Visvalingam-Whyatt simplification: once the track is over the
+ * vertex limit, the vertices whose triangles with their neighbors have the
+ * smallest areas are removed, and their neighbors' areas are updated. The
+ * vertices are kept in a linked list with a binary heap on the areas, so
+ * each append costs amortized O(log n) no matter how long the track gets.
+ * The first and last vertices are never removed.
+ *
+ * The track is trimmed a tenth below the limit at a time instead of one
+ * vertex per append. Removing a vertex on every append thins the newest
+ * fixes before the fixes that follow show which of them matter, which
+ * leaves the recent part of a long track much sparser than the old part.
+ *
+ * Not thread safe, append from a single thread and copy the vertices out.
+ *
+ */
+public class TrackSimplifier {
+
+    private static final double METERS_PER_DEGREE = 111320;
+
+    private final int maxVertices;
+    private final int trimmedVertices;
+
+    // Vertex slots, recycled through a free list
+    private double[] xs;
+    private double[] ys;
+    private LocationFix[] fixes;
+    private int[] previous;
+    private int[] next;
+    private double[] areas;
+    private int[] heapIndex;
+
+    private int[] heap;
+    private int heapSize;
+
+    private int freeHead = -1;
+    private int slotCount;
+    private int first = -1;
+    private int last = -1;
+    private int size;
+
+    private double lonScale;
+
+    /**
+     * Creates a new TrackSimplifier
+     * @param maxVertices The maximum number of vertices to keep, at least 3
+     */
+    public TrackSimplifier(int maxVertices) {
+        this.maxVertices = Math.max(3, maxVertices);
+        this.trimmedVertices = this.maxVertices - Math.max(1, this.maxVertices / 10);
+
+        int capacity = this.maxVertices + 1;
+        xs = new double[capacity];
+        ys = new double[capacity];
+        fixes = new LocationFix[capacity];
+        previous = new int[capacity];
+        next = new int[capacity];
+        areas = new double[capacity];
+        heapIndex = new int[capacity];
+        heap = new int[capacity];
+    }
+
+    /**
+     * Appends a fix to the track
+     * @param fix The fix
+     */
+    public void append(LocationFix fix) {
+        if (size == 0) {
+            lonScale = METERS_PER_DEGREE * Math.cos(Math.toRadians(fix.latitude));
+        }
+
+        int slot = allocate();
+        xs[slot] = fix.longitude * lonScale;
+        ys[slot] = fix.latitude * METERS_PER_DEGREE;
+        fixes[slot] = fix;
+        previous[slot] = last;
+        next[slot] = -1;
+        heapIndex[slot] = -1;
+
+        if (last >= 0) {
+            next[last] = slot;
+        } else {
+            first = slot;
+        }
+        last = slot;
+        size++;
+
+        // The old last vertex is now an interior vertex that can be removed
+        int interior = previous[slot];
+        if (interior >= 0 && interior != first) {
+            areas[interior] = area(interior);
+            heapPush(interior);
+        }
+
+        if (size > maxVertices) {
+            while (size > trimmedVertices) {
+                removeSmallest();
+            }
+        }
+    }
+
+    /**
+     * @return The number of vertices
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return A copy of the simplified track, oldest first
+     */
+    public List<LocationFix> getVertices() {
+        List<LocationFix> vertices = new ArrayList<LocationFix>(size);
+        for (int slot = first; slot >= 0; slot = next[slot]) {
+            vertices.add(fixes[slot]);
+        }
+        return vertices;
+    }
+
+    /**
+     * Removes all the vertices
+     */
+    public void clear() {
+        for (int i = 0; i < fixes.length; i++) {
+            fixes[i] = null;
+        }
+        freeHead = -1;
+        slotCount = 0;
+        first = -1;
+        last = -1;
+        size = 0;
+        heapSize = 0;
+    }
+
+    private void removeSmallest() {
+        int slot = heapPop();
+        int before = previous[slot];
+        int after = next[slot];
+
+        next[before] = after;
+        previous[after] = before;
+        size--;
+
+        fixes[slot] = null;
+        next[slot] = freeHead;
+        freeHead = slot;
+
+        // The neighbors' areas are recomputed without clamping them to the
+        // removed area. Batch Visvalingam-Whyatt clamps to keep its removal
+        // order monotonic, but on a growing track that carries old removals
+        // forward and makes old vertices stick while recent ones are thinned.
+        if (before != first) {
+            areas[before] = area(before);
+            heapUpdate(before);
+        }
+        if (after != last) {
+            areas[after] = area(after);
+            heapUpdate(after);
+        }
+    }
+
+    private double area(int slot) {
+        int a = previous[slot];
+        int c = next[slot];
+        return Math.abs((xs[a] - xs[c]) * (ys[slot] - ys[a]) - (xs[a] - xs[slot]) * (ys[c] - ys[a])) / 2;
+    }
+
+    private int allocate() {
+        if (freeHead >= 0) {
+            int slot = freeHead;
+            freeHead = next[slot];
+            return slot;
+        }
+        return slotCount++;
+    }
+
+    private void heapPush(int slot) {
+        heap[heapSize] = slot;
+        heapIndex[slot] = heapSize;
+        heapSize++;
+        siftUp(heapSize - 1);
+    }
+
+    private int heapPop() {
+        int top = heap[0];
+        heapSize--;
+        if (heapSize > 0) {
+            heap[0] = heap[heapSize];
+            heapIndex[heap[0]] = 0;
+            siftDown(0);
+        }
+        heapIndex[top] = -1;
+        return top;
+    }
+
+    private void heapUpdate(int slot) {
+        int index = heapIndex[slot];
+        if (index < 0) {
+            heapPush(slot);
+            return;
+        }
+        siftUp(index);
+        siftDown(heapIndex[slot]);
+    }
+
+    private void siftUp(int index) {
+        int slot = heap[index];
+        while (index > 0) {
+            int parent = (index - 1) / 2;
+            if (areas[heap[parent]] <= areas[slot]) {
+                break;
+            }
+            heap[index] = heap[parent];
+            heapIndex[heap[index]] = index;
+            index = parent;
+        }
+        heap[index] = slot;
+        heapIndex[slot] = index;
+    }
+
+    private void siftDown(int index) {
+        int slot = heap[index];
+        while (true) {
+            int child = index * 2 + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && areas[heap[child + 1]] < areas[heap[child]]) {
+                child++;
+            }
+            if (areas[heap[child]] >= areas[slot]) {
+                break;
+            }
+            heap[index] = heap[child];
+            heapIndex[heap[index]] = index;
+            index = child;
+        }
+        heap[index] = slot;
+        heapIndex[slot] = index;
+    }
+}
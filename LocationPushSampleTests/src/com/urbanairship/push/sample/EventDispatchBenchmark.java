@@ -0,0 +1,167 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.test.InstrumentationTestCase;
+
+import com.urbanairship.Logger;
+import com.urbanairship.sample.common.EventBus;
+
+import java.util.Arrays;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Compares the latency of delivering an event to a background thread in the
+ * same process through a system broadcast and through the {@link EventBus}.
+ *
+ * Runs on a device with the instrumentation tests and logs the report, or
+ * on its own with
+ * <code>adb shell am instrument -w -e class com.urbanairship.push.sample.EventDispatchBenchmark
+ * com.urbanairship.push.sample.tests/android.test.InstrumentationTestRunner</code>
+ *
+ */
+public class EventDispatchBenchmark extends InstrumentationTestCase {
+
+    /**
+     * Default number of events sent on each path
+     */
+    public static final int DEFAULT_EVENTS = 1000;
+
+    private static final String ACTION = "com.urbanairship.push.sample.EVENT_DISPATCH_BENCHMARK";
+    private static final String SENT_KEY = "sent";
+    private static final long TIMEOUT_MS = 5000;
+
+    public void testDispatch() throws InterruptedException, TimeoutException {
+        Logger.info(run(getInstrumentation().getTargetContext(), DEFAULT_EVENTS));
+    }
+
+    /**
+     * Runs the benchmark. Must not be called on the main thread.
+     * @param context Application context
+     * @param events The number of events sent on each path
+     * @return The report
+     * @throws InterruptedException
+     * @throws TimeoutException If an event was not delivered in time
+     */
+    public static String run(Context context, int events) throws InterruptedException, TimeoutException {
+        HandlerThread thread = new HandlerThread("EventDispatchBenchmark");
+        thread.start();
+        Handler handler = new Handler(thread.getLooper());
+
+        try {
+            long[] broadcastNs = runBroadcast(context, handler, events);
+            long[] busNs = runBus(events);
+
+            return String.format("Event dispatch: %d events, broadcast median %.1f us p95 %.1f us, "
+                    + "event bus median %.1f us p95 %.1f us",
+                    events, broadcastNs[events / 2] / 1E3, broadcastNs[events * 95 / 100] / 1E3,
+                    busNs[events / 2] / 1E3, busNs[events * 95 / 100] / 1E3);
+        } finally {
+            thread.quit();
+        }
+    }
+
+    private static long[] runBroadcast(Context context, Handler handler, int events)
+            throws InterruptedException, TimeoutException {
+        final SynchronousQueue<Long> received = new SynchronousQueue<Long>();
+        BroadcastReceiver receiver = new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                handOff(received, System.nanoTime() - intent.getLongExtra(SENT_KEY, 0));
+            }
+        };
+
+        context.registerReceiver(receiver, new IntentFilter(ACTION), null, handler);
+        try {
+            long[] latencies = new long[events];
+            for (int i = 0; i < events; i++) {
+                Intent intent = new Intent(ACTION);
+                intent.putExtra(SENT_KEY, System.nanoTime());
+                context.sendBroadcast(intent);
+                latencies[i] = take(received);
+            }
+            Arrays.sort(latencies);
+            return latencies;
+        } finally {
+            context.unregisterReceiver(receiver);
+        }
+    }
+
+    private static long[] runBus(int events) throws InterruptedException, TimeoutException {
+        final SynchronousQueue<Long> received = new SynchronousQueue<Long>();
+        EventBus.Subscriber<BenchmarkEvent> subscriber = new EventBus.Subscriber<BenchmarkEvent>() {
+            @Override
+            public void onEvent(BenchmarkEvent event) {
+                handOff(received, System.nanoTime() - event.sent);
+            }
+        };
+
+        EventBus.shared().subscribe(BenchmarkEvent.class, subscriber, EventBus.DELIVER_BACKGROUND);
+        try {
+            long[] latencies = new long[events];
+            for (int i = 0; i < events; i++) {
+                EventBus.shared().post(new BenchmarkEvent(System.nanoTime()));
+                latencies[i] = take(received);
+            }
+            Arrays.sort(latencies);
+            return latencies;
+        } finally {
+            EventBus.shared().unsubscribe(BenchmarkEvent.class, subscriber);
+        }
+    }
+
+    private static void handOff(SynchronousQueue<Long> queue, long latency) {
+        try {
+            queue.offer(latency, TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static long take(SynchronousQueue<Long> queue) throws InterruptedException, TimeoutException {
+        Long latency = queue.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (latency == null) {
+            throw new TimeoutException("Event was not delivered within " + TIMEOUT_MS + "ms");
+        }
+        return latency;
+    }
+
+    private static class BenchmarkEvent {
+        final long sent;
+
+        BenchmarkEvent(long sent) {
+            this.sent = sent;
+        }
+    }
+}
@@ -0,0 +1,182 @@
+/*
+Copyright 2009-2011 Urban Airship Inc. All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions are met:
+
+1. Redistributions of source code must retain the above copyright notice, this
+list of conditions and the following disclaimer.
+
+2. Redistributions in binary form must reproduce the above copyright notice,
+this list of conditions and the following disclaimer in the documentation
+and/or other materials provided with the distribution.
+
+THIS SOFTWARE IS PROVIDED BY THE URBAN AIRSHIP INC ``AS IS'' AND ANY EXPRESS OR
+IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF
+MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO
+EVENT SHALL URBAN AIRSHIP INC OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT,
+INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING,
+BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE,
+DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE
+OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF
+ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package com.urbanairship.push.sample;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.os.StrictMode;
+import android.test.ActivityInstrumentationTestCase2;
+import android.widget.CheckBox;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the preferences screen with StrictMode set to kill the process on
+ * any disk read or write on the main thread. The activity builds its own
+ * policy on top of this one, so binding, clicking the checkboxes and closing
+ * the screen must all stay off the disk on the main thread.
+ *
+ */
+@SuppressLint("NewApi")
+public class PushPreferencesActivityTest extends ActivityInstrumentationTestCase2<PushPreferencesActivity> {
+
+    private static final long BIND_TIMEOUT_MS = 10000; // 10 seconds
+
+    private static final int[] CHECK_BOX_IDS = new int[] {
+        R.id.push_enabled,
+        R.id.sound_enabled,
+        R.id.vibrate_enabled,
+        R.id.quiet_time_enabled,
+        R.id.location_enabled,
+        R.id.background_location_enabled
+    };
+
+    private StrictMode.ThreadPolicy previousThreadPolicy;
+
+    // The package constructor still works on the API 4 devices the app supports
+    @SuppressWarnings("deprecation")
+    public PushPreferencesActivityTest() {
+        super("com.urbanairship.push.sample", PushPreferencesActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        if (Build.VERSION.SDK_INT >= 9) {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    previousThreadPolicy = StrictMode.getThreadPolicy();
+                    StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+
+        if (previousThreadPolicy != null) {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    StrictMode.setThreadPolicy(previousThreadPolicy);
+                }
+            });
+            previousThreadPolicy = null;
+        }
+    }
+
+    public void testClickEveryCheckBox() throws InterruptedException {
+        PushPreferencesActivity activity = getActivity();
+        awaitBind();
+
+        for (int id : CHECK_BOX_IDS) {
+            CheckBox checkBox = (CheckBox) activity.findViewById(id);
+            if (checkBox.isShown() && checkBox.isEnabled()) {
+                // Click twice so the test leaves the preferences as it found them
+                click(checkBox);
+                click(checkBox);
+            }
+        }
+
+        // Closing the screen applies the changed preferences
+        activity.finish();
+        getInstrumentation().waitForIdleSync();
+    }
+
+    /**
+     * Restarting the screen before the preferences from the stop are written
+     * must bind the written values, not the snapshot from before the stop.
+     */
+    public void testRestartShowsChangedPreferences() throws InterruptedException {
+        final PushPreferencesActivity activity = getActivity();
+        awaitBind();
+
+        CheckBox quietTime = (CheckBox) activity.findViewById(R.id.quiet_time_enabled);
+        boolean wasEnabled = quietTime.isChecked();
+
+        click(quietTime);
+        restart(activity);
+        awaitBind();
+        assertEquals("Restart shows the changed preference", !wasEnabled, quietTime.isChecked());
+
+        click(quietTime);
+        restart(activity);
+        awaitBind();
+        assertEquals("Restart shows the restored preference", wasEnabled, quietTime.isChecked());
+    }
+
+    /**
+     * Stops and starts the activity in one pass of the main thread, so the start
+     * asks for the preferences before the stop's write has run
+     */
+    private void restart(final PushPreferencesActivity activity) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                getInstrumentation().callActivityOnStop(activity);
+                getInstrumentation().callActivityOnRestart(activity);
+                getInstrumentation().callActivityOnStart(activity);
+            }
+        });
+    }
+
+    /**
+     * Waits for the screen to be bound. The activity asks the repository for the
+     * preferences when it starts, so they have been bound once this callback is called.
+     */
+    private void awaitBind() throws InterruptedException {
+        final CountDownLatch bound = new CountDownLatch(1);
+        PreferenceRepository.shared().get(new PreferenceRepository.Callback() {
+            @Override
+            public void onPreferencesLoaded(PreferenceRepository.Snapshot snapshot) {
+                bound.countDown();
+            }
+        });
+
+        assertTrue("Preferences loaded", bound.await(BIND_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void click(final CheckBox checkBox) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                checkBox.performClick();
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+}
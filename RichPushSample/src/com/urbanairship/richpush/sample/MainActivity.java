@@ -15,11 +15,20 @@ import com.actionbarsherlock.view.MenuItem;
 import com.urbanairship.UAirship;
 import com.urbanairship.richpush.RichPushManager;
 import com.urbanairship.richpush.RichPushUser;
+import com.urbanairship.richpush.sample.debug.PushTrace;
+import com.urbanairship.richpush.sample.debug.StartupMarkers;
 import com.urbanairship.richpush.sample.inbox.InboxActivity;
 import com.urbanairship.richpush.sample.inbox.RichPushMessageDialogFragment;
 import com.urbanairship.richpush.sample.preference.PushPreferencesActivity;
+import com.urbanairship.sample.common.PushActionDispatcher;
 import com.urbanairship.util.UAStringUtil;
 
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+
 /**
  * An empty activity used for the home.
  *
@@ -35,6 +44,8 @@ ActionBar.OnNavigationListener {
     static final String ALIAS_KEY = "com.urbanairship.richpush.sample.ALIAS";
     static final int aliasType = 1;
 
+    static final String PUSH_TRACE_FILE_NAME = "push_trace.json";
+
     ArrayAdapter<String> navAdapter;
     RichPushUser user;
 
@@ -46,6 +57,8 @@ ActionBar.OnNavigationListener {
         this.setContentView(R.layout.main);
         this.configureActionBar();
 
+        StartupMarkers.markFirstFrame(this);
+
         this.user = RichPushManager.shared().getRichPushUser();
 
         // If we have a message id and its the first create, set the pending message id if available
@@ -104,6 +117,32 @@ ActionBar.OnNavigationListener {
         }
     }
 
+    /**
+     * Exports the push trace when dumped with the <code>push-trace</code> argument:
+     * <code>adb shell dumpsys activity top push-trace</code>, and prints the push
+     * action handler stats with the <code>push-actions</code> argument
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+
+        if (args != null && Arrays.asList(args).contains("push-trace")) {
+            File file = new File(getFilesDir(), PUSH_TRACE_FILE_NAME);
+            try {
+                PushTrace.shared().writeChromeTrace(file);
+                writer.println(prefix + "Push trace written to " + file.getAbsolutePath());
+            } catch (IOException e) {
+                writer.println(prefix + "Failed to write push trace: " + e.getMessage());
+            }
+        }
+
+        if (args != null && Arrays.asList(args).contains("push-actions")) {
+            for (PushActionDispatcher.HandlerStats stats : PushActionDispatcher.shared().getStats()) {
+                writer.println(prefix + stats);
+            }
+        }
+    }
+
     @Override
     public boolean onNavigationItemSelected(int itemPosition, long itemId) {
         String navName = this.navAdapter.getItem(itemPosition);
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample;
+
+import android.os.Bundle;
+
+import com.urbanairship.push.PushManager;
+import com.urbanairship.richpush.RichPushManager;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An immutable push payload, parsed once when the push comes in and passed
+ * to the notification builder and the receivers so none of them inspect
+ * the raw extras again.
+ *
+ */
+public final class PushPayload {
+
+    /**
+     * Extras exposed as fields or only used by GCM and the library
+     */
+    private static final Set<String> STANDARD_EXTRAS = new HashSet<String>(Arrays.asList(
+            "collapse_key", // GCM collapse key
+            "from", // GCM sender
+            PushManager.EXTRA_NOTIFICATION_ID,
+            PushManager.EXTRA_PUSH_ID,
+            PushManager.EXTRA_ALERT,
+            PushReceiver.EXTRA_MESSAGE_ID_KEY,
+            PushReceiver.ACTIVITY_NAME_KEY));
+
+    public final String alert;
+    public final String pushId;
+    public final String messageId;
+    public final String activity;
+    public final boolean richPushMessage;
+
+    /**
+     * Id of the posted notification, or 0 if it is not known
+     */
+    public final int notificationId;
+
+    private final Map<String, String> extras;
+
+    private PushPayload(String alert, Map<String, String> extras, int notificationId) {
+        this.alert = alert;
+        this.pushId = extras.get(PushManager.EXTRA_PUSH_ID);
+        this.messageId = extras.get(PushReceiver.EXTRA_MESSAGE_ID_KEY);
+        this.activity = extras.get(PushReceiver.ACTIVITY_NAME_KEY);
+        this.richPushMessage = RichPushManager.isRichPushMessage(extras);
+        this.notificationId = notificationId;
+
+        Map<String, String> custom = new HashMap<String, String>();
+        for (Map.Entry<String, String> entry : extras.entrySet()) {
+            if (!STANDARD_EXTRAS.contains(entry.getKey())) {
+                custom.put(entry.getKey(), entry.getValue());
+            }
+        }
+        this.extras = Collections.unmodifiableMap(custom);
+    }
+
+    /**
+     * Parses the extras handed to a notification builder
+     * @param alert The alert
+     * @param extras The extras, may be null
+     * @return The payload
+     */
+    public static PushPayload fromMap(String alert, Map<String, String> extras) {
+        return new PushPayload(alert, extras == null ? Collections.<String, String>emptyMap() : extras, 0);
+    }
+
+    /**
+     * Parses the extras of a push intent
+     * @param extras The intent extras, may be null
+     * @return The payload
+     */
+    public static PushPayload fromBundle(Bundle extras) {
+        Map<String, String> values = new HashMap<String, String>();
+        int notificationId = 0;
+
+        if (extras != null) {
+            for (String key : extras.keySet()) {
+                Object value = extras.get(key);
+                if (value instanceof String) {
+                    values.put(key, (String) value);
+                }
+            }
+            notificationId = extras.getInt(PushManager.EXTRA_NOTIFICATION_ID, 0);
+        }
+
+        return new PushPayload(values.get(PushManager.EXTRA_ALERT), values, notificationId);
+    }
+
+    /**
+     * @return The custom extras sent with the push, without the standard ones
+     */
+    public Map<String, String> getExtras() {
+        return extras;
+    }
+}
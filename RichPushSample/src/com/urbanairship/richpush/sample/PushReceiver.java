@@ -10,9 +10,9 @@ import android.content.Intent;
 
 import com.urbanairship.Logger;
 import com.urbanairship.push.PushManager;
-import com.urbanairship.richpush.RichPushManager;
-import com.urbanairship.richpush.sample.inbox.InboxActivity;
-import com.urbanairship.richpush.sample.widget.RichPushWidgetUtils;
+import com.urbanairship.richpush.sample.debug.PushTrace;
+import com.urbanairship.sample.common.PushActionDispatcher;
+import com.urbanairship.sample.common.PushIntakeQueue;
 
 /**
  * Broadcast receiver to handle all push notifications
@@ -22,47 +22,90 @@ public class PushReceiver extends BroadcastReceiver {
 
     public static final String ACTIVITY_NAME_KEY = "activity";
 
+    /**
+     * Activity name that opens a message on the home screen instead of the inbox
+     */
+    public static final String HOME_ACTIVITY_NAME = "home";
+
     public static final String EXTRA_MESSAGE_ID_KEY = "_uamid";
 
     /**
-     * Delay to refresh widget to give time to fetch the rich push message
+     * Maximum number of pushes waiting to be handled
      */
-    private static final long WIDGET_REFRESH_DELAY_MS = 5000; //5 Seconds
+    private static final int INTAKE_QUEUE_CAPACITY = 64;
 
+    private static PushIntakeQueue<PushPayload> intakeQueue;
 
     @Override
     public void onReceive(Context context, Intent intent) {
-
-        // Refresh the widget after a push comes in
-        if (PushManager.ACTION_PUSH_RECEIVED.equals(intent.getAction())) {
-            RichPushWidgetUtils.refreshWidget(context, WIDGET_REFRESH_DELAY_MS);
+        String action = intent.getAction();
+        PushPayload payload = null;
+
+        if (PushManager.ACTION_PUSH_RECEIVED.equals(action)) {
+            payload = PushPayload.fromBundle(intent.getExtras());
+            PushTrace.shared().record(PushTrace.PUSH_RECEIVED, payload.messageId);
+        } else if (PushManager.ACTION_NOTIFICATION_OPENED.equals(action)) {
+            payload = PushPayload.fromBundle(intent.getExtras());
+            PushTrace.shared().record(PushTrace.NOTIFICATION_OPENED, payload.messageId);
         }
 
-        // Only takes action when a notification is opened
-        if (!PushManager.ACTION_NOTIFICATION_OPENED.equals(intent.getAction())) {
-            return;
+        // Hand the push off to the worker thread
+        getIntakeQueue().enqueue(this, context, intent, payload);
+    }
+
+    /**
+     * @return The queue handling pushes off the main thread
+     */
+    public static synchronized PushIntakeQueue<PushPayload> getIntakeQueue() {
+        if (intakeQueue == null) {
+            intakeQueue = new PushIntakeQueue<PushPayload>("RichPushSample-Intake", new PushHandler(), INTAKE_QUEUE_CAPACITY);
         }
+        return intakeQueue;
+    }
 
+    /**
+     * Opens a rich push message from a notification
+     * @param context Application context
+     * @param payload The opened push
+     * @param activity The activity to show the message in
+     */
+    public static void openMessage(Context context, PushPayload payload, Class<?> activity) {
         // Ignore any non rich push notifications
-        if (!RichPushManager.isRichPushMessage(intent.getExtras())) {
+        if (!payload.richPushMessage) {
             return;
         }
 
-        String messageId = intent.getStringExtra(EXTRA_MESSAGE_ID_KEY);
-        Logger.debug("Notified of a notification opened with id " + messageId);
+        Logger.debug("Notified of a notification opened with id " + payload.messageId);
+
+        Intent messageIntent = new Intent(context, activity);
+        messageIntent.putExtra(RichPushApplication.MESSAGE_ID_RECEIVED_KEY, payload.messageId);
+        messageIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
+        context.startActivity(messageIntent);
+    }
 
-        Intent messageIntent = null;
+    /**
+     * Handles the pushes on the intake queue's worker thread with the
+     * actions registered in {@link RichPushApplication}
+     */
+    private static class PushHandler implements PushIntakeQueue.IntakeHandler<PushPayload> {
 
-        // Set the activity to receive the intent
-        if ("home".equals(intent.getStringExtra(ACTIVITY_NAME_KEY))) {
-            messageIntent = new Intent(context, MainActivity.class);
-        } else {
-            // default to the Inbox
-            messageIntent =  new Intent(context, InboxActivity.class);
+        @Override
+        public String getMergeId(PushPayload payload) {
+            // Rich pushes for the same message are the same work
+            return payload.messageId != null ? payload.messageId : payload.pushId;
         }
 
-        messageIntent.putExtra(RichPushApplication.MESSAGE_ID_RECEIVED_KEY, messageId);
-        messageIntent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
-        context.startActivity(messageIntent);
+        @Override
+        public void handle(Context context, Intent intent, PushPayload payload) {
+            // Drop duplicate deliveries of a rich push message before doing any work. The
+            // filter may still be loading, so this waits here instead of in onReceive.
+            if (PushManager.ACTION_PUSH_RECEIVED.equals(intent.getAction())
+                    && !RecentPushFilter.shared(context).add(payload.messageId)) {
+                Logger.debug("Ignoring duplicate push for message " + payload.messageId);
+                return;
+            }
+
+            PushActionDispatcher.<PushPayload>shared().dispatch(context, intent, payload, payload == null ? null : payload.activity);
+        }
     }
 }
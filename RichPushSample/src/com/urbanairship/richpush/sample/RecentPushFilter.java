@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A bounded, persisted LRU of recently received rich push message ids.
+ *
+ * Upstream retries and re-registration can deliver the same message twice.
+ * The filter is checked at intake so duplicates are dropped before the
+ * widget is refreshed or the inbox notification is rebuilt. The ids are
+ * written to shared preferences so the filter survives process restarts.
+ *
+ * The stored ids are loaded on a worker thread, and <code>contains</code>
+ * and <code>add</code> wait for the load to finish, so they must not be
+ * called on the main thread. Saves are batched and written on the worker
+ * thread a few seconds after the last new id.
+ *
+ * The library builds the notification before it broadcasts the push, so
+ * {@link RichNotificationBuilder} only checks <code>contains</code> and
+ * {@link PushReceiver} records the id with <code>add</code> afterwards.
+ * Adding the id in the builder would make the receiver drop every push.
+ *
+ * The filter is exact, so there are no false positives, and its memory use
+ * is bounded by <code>MAX_IDS</code> message ids.
+ *
+ */
+public class RecentPushFilter {
+
+    /**
+     * Maximum number of message ids to remember
+     */
+    public static final int MAX_IDS = 200;
+
+    private static final String PREFERENCES_NAME = "com.urbanairship.richpush.sample.recent_pushes";
+    private static final String IDS_KEY = "ids";
+    private static final String SEPARATOR = "\n";
+
+    private static final long SAVE_DELAY_MS = 5000; // 5 seconds
+
+    private static RecentPushFilter instance;
+
+    private final SharedPreferences preferences;
+    private final LinkedHashMap<String, Boolean> ids;
+    private final Handler workerQueue;
+    private boolean loaded;
+
+    private final Runnable saveRunnable = new Runnable() {
+        @Override
+        public void run() {
+            save();
+        }
+    };
+
+    /**
+     * Creates a new RecentPushFilter and starts loading the stored ids
+     * @param context Application context
+     * @param preferencesName Name of the shared preferences the ids are stored in
+     */
+    RecentPushFilter(Context context, String preferencesName) {
+        this.preferences = context.getSharedPreferences(preferencesName, Context.MODE_PRIVATE);
+        this.ids = new LinkedHashMap<String, Boolean>(MAX_IDS, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > MAX_IDS;
+            }
+        };
+
+        HandlerThread workerThread = new HandlerThread("RichPushSample-RecentPushes");
+        workerThread.start();
+        this.workerQueue = new Handler(workerThread.getLooper());
+
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                load();
+            }
+        });
+    }
+
+    /**
+     * @param context Application context
+     * @return The shared RecentPushFilter
+     */
+    public static synchronized RecentPushFilter shared(Context context) {
+        if (instance == null) {
+            instance = new RecentPushFilter(context.getApplicationContext(), PREFERENCES_NAME);
+        }
+        return instance;
+    }
+
+    /**
+     * Checks if a message id has already been received. Waits for the stored
+     * ids to load.
+     * @param messageId The message id
+     * @return <code>true</code> if the message id was already received
+     */
+    public synchronized boolean contains(String messageId) {
+        awaitLoaded();
+        return messageId != null && ids.containsKey(messageId);
+    }
+
+    /**
+     * Records a message id as received. Waits for the stored ids to load.
+     * @param messageId The message id
+     * @return <code>true</code> if the message id is new, <code>false</code> if
+     * it is a duplicate
+     */
+    public synchronized boolean add(String messageId) {
+        if (messageId == null) {
+            return true;
+        }
+
+        awaitLoaded();
+        if (ids.put(messageId, Boolean.TRUE) != null) {
+            return false;
+        }
+
+        // Batch the ids received in a burst into a single write
+        workerQueue.removeCallbacks(saveRunnable);
+        workerQueue.postDelayed(saveRunnable, SAVE_DELAY_MS);
+        return true;
+    }
+
+    private void awaitLoaded() {
+        while (!loaded) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void load() {
+        String stored = preferences.getString(IDS_KEY, null);
+
+        synchronized (this) {
+            if (stored != null) {
+                // Ids added while loading are newer than the stored ones
+                List<String> added = new ArrayList<String>(ids.keySet());
+                ids.clear();
+
+                for (String id : stored.split(SEPARATOR)) {
+                    if (id.length() > 0) {
+                        ids.put(id, Boolean.TRUE);
+                    }
+                }
+
+                for (String id : added) {
+                    ids.put(id, Boolean.TRUE);
+                }
+            }
+
+            loaded = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Stops the worker thread. Pending saves are dropped, so call
+     * <code>save</code> first to keep them. Only used by the tests, the
+     * shared filter lives as long as the process.
+     */
+    void quit() {
+        workerQueue.getLooper().quit();
+    }
+
+    /**
+     * Writes the ids to shared preferences. Called on the worker thread.
+     * @return The number of characters written
+     */
+    int save() {
+        StringBuilder builder = new StringBuilder();
+        synchronized (this) {
+            for (String id : ids.keySet()) {
+                builder.append(id).append(SEPARATOR);
+            }
+        }
+
+        preferences.edit().putString(IDS_KEY, builder.toString()).commit();
+        return builder.length();
+    }
+}
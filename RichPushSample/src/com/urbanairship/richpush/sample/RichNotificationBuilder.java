@@ -7,7 +7,9 @@ package com.urbanairship.richpush.sample;
 import android.app.Notification;
 import android.app.Notification.InboxStyle;
 import android.app.NotificationManager;
+import android.app.PendingIntent;
 import android.content.Context;
+import android.content.Intent;
 import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
@@ -18,8 +20,10 @@ import com.urbanairship.push.BasicPushNotificationBuilder;
 import com.urbanairship.push.PushManager;
 import com.urbanairship.push.PushPreferences;
 import com.urbanairship.richpush.RichPushInbox;
-import com.urbanairship.richpush.RichPushManager;
 import com.urbanairship.richpush.RichPushMessage;
+import com.urbanairship.richpush.sample.debug.PushTrace;
+import com.urbanairship.richpush.sample.inbox.InboxActivity;
+import com.urbanairship.richpush.sample.quiettime.QuietTimeManager;
 
 import java.util.List;
 import java.util.Map;
@@ -35,10 +39,30 @@ public class RichNotificationBuilder extends BasicPushNotificationBuilder {
     private static final int EXTRA_MESSAGES_TO_SHOW = 2;
     private static final int INBOX_NOTIFICATION_ID = 9000000;
 
+    // The payload parsed for the last push, which is passed to both getNextId and buildNotification
+    private PushPayload parsedPayload;
+
     @Override
     public Notification buildNotification(String alert, Map<String, String> extras) {
-        if (extras != null && RichPushManager.isRichPushMessage(extras)) {
-            return createInboxNotification(alert);
+        PushPayload payload = getPayload(alert, extras);
+
+        // Skip duplicate deliveries of a message that was already notified. This runs before
+        // the push is broadcast, so the receiver has not recorded this delivery yet.
+        if (RecentPushFilter.shared(UAirship.shared().getApplicationContext()).contains(payload.messageId)) {
+            return null;
+        }
+
+        // Hold the notification back until the quiet window ends
+        long quietEnd = QuietTimeManager.shared().getQuietEnd(System.currentTimeMillis());
+        if (quietEnd != -1) {
+            QuietTimeManager.shared().suppress(alert, quietEnd);
+            return null;
+        }
+
+        if (payload.richPushMessage) {
+            Notification notification = createInboxNotification(alert);
+            PushTrace.shared().record(PushTrace.NOTIFICATION_POSTED, payload.messageId);
+            return notification;
         } else {
             return super.buildNotification(alert, extras);
         }
@@ -46,13 +70,35 @@ public class RichNotificationBuilder extends BasicPushNotificationBuilder {
 
     @Override
     public int getNextId(String alert, Map<String, String> extras) {
-        if (extras != null && extras.containsKey(PushReceiver.EXTRA_MESSAGE_ID_KEY)) {
+        if (getPayload(alert, extras).messageId != null) {
             return INBOX_NOTIFICATION_ID;
         } else {
             return super.getNextId(alert, extras);
         }
     }
 
+    /**
+     * Gets the payload for the extras, parsing them only once per push. The
+     * cache is keyed on the push id and alert rather than on the extras map,
+     * so it neither depends on the library passing the same map to both calls
+     * nor keeps the map alive. Pushes without an id are parsed every time.
+     */
+    private synchronized PushPayload getPayload(String alert, Map<String, String> extras) {
+        String pushId = extras == null ? null : extras.get(PushManager.EXTRA_PUSH_ID);
+        if (pushId == null) {
+            return PushPayload.fromMap(alert, extras);
+        }
+
+        if (parsedPayload == null || !pushId.equals(parsedPayload.pushId) || !isEqual(alert, parsedPayload.alert)) {
+            parsedPayload = PushPayload.fromMap(alert, extras);
+        }
+        return parsedPayload;
+    }
+
+    private static boolean isEqual(String first, String second) {
+        return first == null ? second == null : first.equals(second);
+    }
+
     /**
      * Creates an inbox style notification summarizing the unread messages
      * in the inbox
@@ -101,6 +147,47 @@ public class RichNotificationBuilder extends BasicPushNotificationBuilder {
         return style.build();
     }
 
+    /**
+     * Shows a single inbox style notification summarizing the alerts
+     * that were held back during quiet time
+     *
+     * @param alerts The suppressed alert messages, oldest first
+     */
+    public static void showQuietTimeSummary(List<String> alerts) {
+        Context context = UAirship.shared().getApplicationContext();
+        Resources res = context.getResources();
+
+        String title = res.getQuantityString(R.plurals.quiet_time_summary_title, alerts.size(), alerts.size());
+        String latestAlert = alerts.get(alerts.size() - 1);
+
+        Intent intent = new Intent(context, InboxActivity.class);
+        intent.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TOP | Intent.FLAG_ACTIVITY_SINGLE_TOP | Intent.FLAG_ACTIVITY_NEW_TASK);
+
+        InboxStyle style = new Notification.InboxStyle(
+                new Notification.Builder(context)
+                .setDefaults(getNotificationDefaults())
+                .setContentTitle(title)
+                .setContentText(latestAlert)
+                .setContentIntent(PendingIntent.getActivity(context, 0, intent, 0))
+                .setLargeIcon(BitmapFactory.decodeResource(res, R.drawable.ua_launcher))
+                .setSmallIcon(R.drawable.ua_notification_icon)
+                .setAutoCancel(true)
+                .setNumber(alerts.size()));
+
+        // Add the most recent alerts first
+        int linesToShow = Math.min(EXTRA_MESSAGES_TO_SHOW + 1, alerts.size());
+        for (int i = 0; i < linesToShow; i++) {
+            style.addLine(alerts.get(alerts.size() - 1 - i));
+        }
+
+        if (alerts.size() > linesToShow) {
+            style.setSummaryText(context.getString(R.string.inbox_summary, alerts.size() - linesToShow));
+        }
+
+        NotificationManager manager = (NotificationManager) context.getSystemService(Context.NOTIFICATION_SERVICE);
+        manager.notify(INBOX_NOTIFICATION_ID, style.build());
+    }
+
     /**
      * Dismisses the inbox style notification if it exists
      */
@@ -113,23 +200,23 @@ public class RichNotificationBuilder extends BasicPushNotificationBuilder {
 
     /**
      * Gets the notification defaults based on
-     * the PushPreferences for quiet time, vibration enabled,
-     * and sound enabled.
+     * the PushPreferences for vibration enabled and sound enabled.
+     *
+     * Notifications are not built during quiet time, so it does not
+     * need to be checked here.
      *
      * @return Notification defaults
      */
-    private int getNotificationDefaults() {
+    private static int getNotificationDefaults() {
         PushPreferences prefs = PushManager.shared().getPreferences();
         int defaults = Notification.DEFAULT_LIGHTS;
 
-        if (!prefs.isInQuietTime()) {
-            if (prefs.isVibrateEnabled()) {
-                defaults |= Notification.DEFAULT_VIBRATE;
-            }
+        if (prefs.isVibrateEnabled()) {
+            defaults |= Notification.DEFAULT_VIBRATE;
+        }
 
-            if (prefs.isSoundEnabled()) {
-                defaults |= Notification.DEFAULT_SOUND;
-            }
+        if (prefs.isSoundEnabled()) {
+            defaults |= Notification.DEFAULT_SOUND;
         }
 
         return defaults;
@@ -5,12 +5,21 @@
 package com.urbanairship.richpush.sample;
 
 import android.app.Application;
+import android.content.Context;
+import android.content.Intent;
 import android.os.Build;
 
 import com.urbanairship.UAirship;
 import com.urbanairship.push.PushManager;
 import com.urbanairship.richpush.RichPushManager;
 import com.urbanairship.richpush.RichPushMessageJavaScript;
+import com.urbanairship.richpush.sample.debug.PushTraceListener;
+import com.urbanairship.richpush.sample.inbox.InboxActivity;
+import com.urbanairship.richpush.sample.preference.PreferenceRepository;
+import com.urbanairship.richpush.sample.registration.RegistrationCoalescer;
+import com.urbanairship.richpush.sample.widget.RichPushWidgetUtils;
+import com.urbanairship.sample.common.PushActionDispatcher;
+import com.urbanairship.sample.common.StartupGraph;
 
 public class RichPushApplication extends Application {
 
@@ -21,15 +30,123 @@ public class RichPushApplication extends Application {
         HOME_ACTIVITY, INBOX_ACTIVITY
     };
 
+    /**
+     * Delay to refresh widget to give time to fetch the rich push message
+     */
+    private static final long WIDGET_REFRESH_DELAY_MS = 5000; //5 Seconds
+
+    private static StartupGraph startupGraph;
+
     @Override
     public void onCreate() {
-        UAirship.takeOff(this);
-        PushManager.shared().setIntentReceiver(PushReceiver.class);
-        RichPushManager.setJavascriptInterface(RichPushMessageJavaScript.class, "urbanairship");
-
-        // If running on Jelly Bean or higher, then use the inbox style notification builder
-        if (Build.VERSION.SDK_INT >= 16) {
-            PushManager.shared().setNotificationBuilder(new RichNotificationBuilder());
-        }
+        final Context context = this;
+
+        // Only what a push or the first activity needs runs before the first frame. None of
+        // it can leave the main thread: takeoff has to run here, and the rest are library
+        // setters and in-memory registrations that must be in place before the first push is
+        // handled and take well under a millisecond. The deferred tasks already hand their
+        // disk and network work to their own worker threads, so no startup pool is started.
+        startupGraph = new StartupGraph()
+        .add("takeoff", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                UAirship.takeOff(RichPushApplication.this);
+            }
+        })
+        .add("push receiver", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                PushManager.shared().setIntentReceiver(PushReceiver.class);
+                registerPushActions();
+            }
+        }, "takeoff")
+        .add("notification builder", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                // If running on Jelly Bean or higher, then use the inbox style notification builder
+                if (Build.VERSION.SDK_INT >= 16) {
+                    PushManager.shared().setNotificationBuilder(new RichNotificationBuilder());
+                }
+            }
+        }, "takeoff")
+        .add("javascript interface", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                RichPushManager.setJavascriptInterface(RichPushMessageJavaScript.class, "urbanairship");
+            }
+        }, "takeoff")
+        .add("widget refresh", StartupGraph.MAIN, new Runnable() {
+            @Override
+            public void run() {
+                // Refresh the inbox widget in-process instead of broadcasting to ourselves
+                RichPushWidgetUtils.registerRefreshSubscriber(context);
+            }
+        })
+        .add("preferences", StartupGraph.DEFERRED_MAIN, new Runnable() {
+            @Override
+            public void run() {
+                // The load already runs on the repository's worker, this only holds its disk reads
+                // back until after the first frame so the settings screen later binds without them
+                PreferenceRepository.shared().load();
+            }
+        }, "takeoff")
+        .add("registration replay", StartupGraph.DEFERRED_MAIN, new Runnable() {
+            @Override
+            public void run() {
+                // Send any registration changes that were pending when the app was last stopped. The
+                // replay runs on the coalescer's worker, this only keeps it from starting before the
+                // first frame
+                RegistrationCoalescer.shared(context).replay();
+            }
+        }, "takeoff")
+        .add("push trace", StartupGraph.DEFERRED_MAIN, new Runnable() {
+            @Override
+            public void run() {
+                // Record message fetches for push latency tracing
+                RichPushManager.shared().addListener(new PushTraceListener());
+            }
+        }, "takeoff");
+
+        startupGraph.start();
+    }
+
+    /**
+     * @return The startup graph, for reading the task timings
+     */
+    public static StartupGraph getStartupGraph() {
+        return startupGraph;
+    }
+
+    /**
+     * Registers the handlers the push receiver dispatches to
+     */
+    private void registerPushActions() {
+        PushActionDispatcher<PushPayload> dispatcher = PushActionDispatcher.shared();
+
+        // Refresh the widget after a push comes in
+        dispatcher.register(PushManager.ACTION_PUSH_RECEIVED, null, 0, "refresh widget",
+                new PushActionDispatcher.ActionHandler<PushPayload>() {
+            @Override
+            public void handle(Context context, Intent intent, PushPayload payload) {
+                RichPushWidgetUtils.refreshWidget(context, WIDGET_REFRESH_DELAY_MS);
+            }
+        });
+
+        // Open rich push messages on the screen the push names, defaulting to the inbox
+        dispatcher.register(PushManager.ACTION_NOTIFICATION_OPENED, PushReceiver.HOME_ACTIVITY_NAME, 0, "open on home",
+                new PushActionDispatcher.ActionHandler<PushPayload>() {
+            @Override
+            public void handle(Context context, Intent intent, PushPayload payload) {
+                PushReceiver.openMessage(context, payload, MainActivity.class);
+            }
+        });
+
+        dispatcher.register(PushManager.ACTION_NOTIFICATION_OPENED, PushActionDispatcher.OTHER_TARGETS, 0, "open in inbox",
+                new PushActionDispatcher.ActionHandler<PushPayload>() {
+            @Override
+            public void handle(Context context, Intent intent, PushPayload payload) {
+                PushReceiver.openMessage(context, payload, InboxActivity.class);
+            }
+        });
     }
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.debug;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.content.Context;
+import android.net.Uri;
+
+import com.urbanairship.Logger;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Seeds the rich push inbox with a fixed set of fake messages so the startup
+ * benchmark runs offline and every build is measured against the same inbox.
+ *
+ * The messages are written straight into the rich push table of the Urban
+ * Airship provider, replacing whatever the inbox held. Their bodies point at
+ * a bundled asset so opening one does not touch the network.
+ *
+ */
+public class BenchmarkInbox {
+
+    public static final String MESSAGE_ID_PREFIX = "benchmark-";
+
+    /**
+     * Sent time of the newest message, fixed so the list order never changes
+     */
+    private static final long BASE_SENT_TIME_MS = 1356998400000L; // 2013-01-01 00:00 UTC
+    private static final long SENT_INTERVAL_MS = 60 * 60 * 1000; // 1 hour
+
+    private static final String BODY_URL = "file:///android_asset/benchmark_message.html";
+
+    // Columns of the library's rich push table
+    private static final String COLUMN_MESSAGE_ID = "message_id";
+    private static final String COLUMN_MESSAGE_URL = "message_url";
+    private static final String COLUMN_MESSAGE_BODY_URL = "message_body_url";
+    private static final String COLUMN_MESSAGE_READ_URL = "message_read_url";
+    private static final String COLUMN_TITLE = "title";
+    private static final String COLUMN_EXTRA = "extra";
+    private static final String COLUMN_UNREAD = "unread";
+    private static final String COLUMN_UNREAD_ORIG = "unread_orig";
+    private static final String COLUMN_DELETED = "deleted";
+    private static final String COLUMN_TIMESTAMP = "timestamp";
+    private static final String COLUMN_RAW_MESSAGE_OBJECT = "raw_message_object";
+
+    private BenchmarkInbox() {}
+
+    /**
+     * Replaces the inbox with the fake messages
+     * @param context Application context
+     * @param count Number of messages to seed
+     * @return The number of messages written
+     */
+    public static int seed(Context context, int count) {
+        ContentResolver resolver = context.getContentResolver();
+        Uri uri = getRichPushUri(context);
+
+        resolver.delete(uri, null, null);
+
+        ContentValues[] values = new ContentValues[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = createMessage(i);
+        }
+
+        return resolver.bulkInsert(uri, values);
+    }
+
+    /**
+     * @param index Position of the message in the inbox, newest first
+     * @return The id of the fake message at that position
+     */
+    public static String getMessageId(int index) {
+        return String.format(Locale.US, "%s%04d", MESSAGE_ID_PREFIX, index);
+    }
+
+    private static ContentValues createMessage(int index) {
+        String messageId = getMessageId(index);
+        String title = "Benchmark message " + index;
+        String messageUrl = "https://device-api.urbanairship.com/api/user/benchmark/messages/message/" + messageId + "/";
+        long sentTime = BASE_SENT_TIME_MS - index * SENT_INTERVAL_MS;
+
+        // Every third message is unread so the list shows both states
+        boolean unread = index % 3 == 0;
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+
+        JSONObject raw = new JSONObject();
+        try {
+            raw.put(COLUMN_MESSAGE_ID, messageId);
+            raw.put(COLUMN_MESSAGE_URL, messageUrl);
+            raw.put(COLUMN_MESSAGE_BODY_URL, BODY_URL);
+            raw.put(COLUMN_MESSAGE_READ_URL, messageUrl + "read/");
+            raw.put(COLUMN_TITLE, title);
+            raw.put(COLUMN_EXTRA, new JSONObject());
+            raw.put(COLUMN_UNREAD, unread);
+            raw.put("message_sent", dateFormat.format(new Date(sentTime)));
+        } catch (JSONException e) {
+            Logger.error("Failed to create benchmark message " + messageId, e);
+        }
+
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_MESSAGE_ID, messageId);
+        values.put(COLUMN_MESSAGE_URL, messageUrl);
+        values.put(COLUMN_MESSAGE_BODY_URL, BODY_URL);
+        values.put(COLUMN_MESSAGE_READ_URL, messageUrl + "read/");
+        values.put(COLUMN_TITLE, title);
+        values.put(COLUMN_EXTRA, "{}");
+        values.put(COLUMN_UNREAD, unread);
+        values.put(COLUMN_UNREAD_ORIG, unread);
+        values.put(COLUMN_DELETED, false);
+        values.put(COLUMN_TIMESTAMP, sentTime);
+        values.put(COLUMN_RAW_MESSAGE_OBJECT, raw.toString());
+        return values;
+    }
+
+    private static Uri getRichPushUri(Context context) {
+        return Uri.parse("content://" + context.getPackageName() + ".urbanairship.provider/richpush");
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.debug;
+
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.urbanairship.Logger;
+import com.urbanairship.richpush.sample.inbox.InboxActivity;
+import com.urbanairship.richpush.sample.inbox.MessageActivity;
+
+/**
+ * Seeds the benchmark inbox when the startup benchmark asks for it:
+ * <code>adb shell am broadcast -a com.urbanairship.richpush.sample.SEED_BENCHMARK_INBOX --ei count 100</code>
+ *
+ * Launches the inbox or message activity for the benchmarks. They are not
+ * exported, so the shell can not start them directly, but the app can:
+ * <code>adb shell am broadcast -a com.urbanairship.richpush.sample.LAUNCH_BENCHMARK_ACTIVITY --es activity inbox</code>
+ *
+ * The receiver is protected by the DUMP permission so only the shell and
+ * system can trigger it.
+ *
+ */
+public class BenchmarkReceiver extends BroadcastReceiver {
+
+    public static final String ACTION_SEED_INBOX = "com.urbanairship.richpush.sample.SEED_BENCHMARK_INBOX";
+    public static final String ACTION_LAUNCH_ACTIVITY = "com.urbanairship.richpush.sample.LAUNCH_BENCHMARK_ACTIVITY";
+    public static final String EXTRA_COUNT = "count";
+
+    /**
+     * Activity to launch, either <code>inbox</code> or <code>message</code>
+     */
+    public static final String EXTRA_ACTIVITY = "activity";
+
+    /**
+     * Set to clear the task first, recreating the activity in the running process
+     */
+    public static final String EXTRA_CLEAR_TASK = "clear_task";
+
+    public static final String INBOX_ACTIVITY = "inbox";
+    public static final String MESSAGE_ACTIVITY = "message";
+
+    private static final int DEFAULT_MESSAGE_COUNT = 100;
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (ACTION_LAUNCH_ACTIVITY.equals(intent.getAction())) {
+            setResultCode(launchActivity(context, intent) ? 1 : 0);
+            return;
+        }
+
+        if (!ACTION_SEED_INBOX.equals(intent.getAction())) {
+            return;
+        }
+
+        int count = intent.getIntExtra(EXTRA_COUNT, DEFAULT_MESSAGE_COUNT);
+        int seeded = BenchmarkInbox.seed(context, count);
+        Logger.info("Seeded the benchmark inbox with " + seeded + " messages");
+
+        setResultCode(seeded);
+    }
+
+    /**
+     * Starts the requested activity from the app's own uid
+     * @return <code>true</code> if the activity was started
+     */
+    @SuppressLint("InlinedApi")
+    private boolean launchActivity(Context context, Intent intent) {
+        String name = intent.getStringExtra(EXTRA_ACTIVITY);
+
+        Intent launch;
+        if (INBOX_ACTIVITY.equals(name)) {
+            launch = new Intent(context, InboxActivity.class);
+        } else if (MESSAGE_ACTIVITY.equals(name)) {
+            launch = new Intent(context, MessageActivity.class);
+            launch.putExtra(MessageActivity.EXTRA_MESSAGE_ID_KEY, intent.getStringExtra(MessageActivity.EXTRA_MESSAGE_ID_KEY));
+        } else {
+            Logger.error("Unknown benchmark activity " + name);
+            return false;
+        }
+
+        launch.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        if (intent.getBooleanExtra(EXTRA_CLEAR_TASK, false)) {
+            // Ignored before Honeycomb
+            launch.addFlags(Intent.FLAG_ACTIVITY_CLEAR_TASK);
+        }
+
+        context.startActivity(launch);
+        return true;
+    }
+}
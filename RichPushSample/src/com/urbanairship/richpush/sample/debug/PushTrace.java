@@ -0,0 +1,165 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.debug;
+
+import org.json.JSONObject;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Records timestamped push events into a fixed-size ring buffer so the time
+ * between a push arriving and the user seeing its content can be traced.
+ *
+ * Recording an event does not allocate, so it is safe to call on the
+ * push path. Once the buffer is full the oldest events are overwritten.
+ * The buffer can be exported in the Chrome trace event format and loaded
+ * into a trace viewer such as chrome://tracing.
+ *
+ */
+public class PushTrace {
+
+    public static final int PUSH_RECEIVED = 0;
+    public static final int MESSAGE_FETCHED = 1;
+    public static final int NOTIFICATION_POSTED = 2;
+    public static final int NOTIFICATION_OPENED = 3;
+    public static final int MESSAGE_RENDERED = 4;
+
+    private static final String[] EVENT_NAMES = new String[] {
+        "push_received", "message_fetched", "notification_posted", "notification_opened", "message_rendered"
+    };
+
+    private static final int DEFAULT_CAPACITY = 1024;
+
+    private static final PushTrace instance = new PushTrace(DEFAULT_CAPACITY);
+
+    private final long[] timestamps;
+    private final long[] threadIds;
+    private final int[] events;
+    private final String[] messageIds;
+
+    private int next;
+    private int count;
+
+    /**
+     * Creates a new PushTrace
+     * @param capacity Maximum number of events to keep
+     */
+    public PushTrace(int capacity) {
+        timestamps = new long[capacity];
+        threadIds = new long[capacity];
+        events = new int[capacity];
+        messageIds = new String[capacity];
+    }
+
+    /**
+     * @return The shared PushTrace
+     */
+    public static PushTrace shared() {
+        return instance;
+    }
+
+    /**
+     * Records an event
+     * @param event The event, one of the event constants
+     * @param messageId The message id the event is for, or null
+     */
+    public synchronized void record(int event, String messageId) {
+        timestamps[next] = System.nanoTime();
+        threadIds[next] = Thread.currentThread().getId();
+        events[next] = event;
+        messageIds[next] = messageId;
+
+        next = (next + 1) % timestamps.length;
+        if (count < timestamps.length) {
+            count++;
+        }
+    }
+
+    /**
+     * Clears all the recorded events
+     */
+    public synchronized void clear() {
+        next = 0;
+        count = 0;
+        for (int i = 0; i < messageIds.length; i++) {
+            messageIds[i] = null;
+        }
+    }
+
+    /**
+     * Exports the recorded events to a Chrome trace event JSON file
+     * @param file The file to write
+     * @throws IOException
+     */
+    public void writeChromeTrace(File file) throws IOException {
+        Writer writer = new BufferedWriter(new FileWriter(file));
+        try {
+            writeChromeTrace(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Writes the recorded events, oldest first, as a Chrome trace event JSON document
+     * @param writer The writer
+     * @throws IOException
+     */
+    public void writeChromeTrace(Writer writer) throws IOException {
+        long[] timestamps;
+        long[] threadIds;
+        int[] events;
+        String[] messageIds;
+        int count;
+
+        // Copy the events so the writer does not block recording
+        synchronized (this) {
+            count = this.count;
+            timestamps = new long[count];
+            threadIds = new long[count];
+            events = new int[count];
+            messageIds = new String[count];
+
+            int start = (next - count + this.timestamps.length) % this.timestamps.length;
+            for (int i = 0; i < count; i++) {
+                int index = (start + i) % this.timestamps.length;
+                timestamps[i] = this.timestamps[index];
+                threadIds[i] = this.threadIds[index];
+                events[i] = this.events[index];
+                messageIds[i] = this.messageIds[index];
+            }
+        }
+
+        long origin = count > 0 ? timestamps[0] : 0;
+
+        writer.write("{\"traceEvents\":[");
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                writer.write(',');
+            }
+
+            writer.write("\n{\"name\":\"");
+            writer.write(EVENT_NAMES[events[i]]);
+            writer.write("\",\"cat\":\"push\",\"ph\":\"i\",\"s\":\"g\",\"pid\":1,\"tid\":");
+            writer.write(String.valueOf(threadIds[i]));
+            writer.write(",\"ts\":");
+            writer.write(String.valueOf((timestamps[i] - origin) / 1000));
+
+            if (messageIds[i] != null) {
+                writer.write(",\"args\":{\"message_id\":");
+                writer.write(JSONObject.quote(messageIds[i]));
+                writer.write('}');
+            }
+
+            writer.write('}');
+        }
+        writer.write("\n],\"displayTimeUnit\":\"ms\"}\n");
+        writer.flush();
+    }
+}
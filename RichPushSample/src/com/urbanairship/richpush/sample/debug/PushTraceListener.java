@@ -0,0 +1,33 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.debug;
+
+import com.urbanairship.richpush.RichPushManager;
+
+/**
+ * Rich push listener that records message fetches in the PushTrace
+ *
+ */
+public class PushTraceListener implements RichPushManager.Listener {
+
+    @Override
+    public void onUpdateMessages(boolean success) {
+        if (success) {
+            PushTrace.shared().record(PushTrace.MESSAGE_FETCHED, null);
+        }
+    }
+
+    @Override
+    public void onUpdateUser(boolean success) {
+        // no-op
+    }
+
+    @Override
+    public void onRetrieveMessage(boolean success, String messageId) {
+        if (success) {
+            PushTrace.shared().record(PushTrace.MESSAGE_FETCHED, messageId);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.debug;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.view.Choreographer;
+import android.widget.AbsListView;
+
+/**
+ * Records frame times into {@link ScrollFrameStats} while a list is scrolling.
+ *
+ * A Choreographer frame callback runs from the moment the list starts
+ * scrolling until it comes to rest, and the time between frames is recorded
+ * for that scroll session. Choreographer requires Jelly Bean, on older
+ * devices nothing is recorded.
+ *
+ */
+public class ScrollFrameCollector implements AbsListView.OnScrollListener {
+
+    private final String screen;
+    private final ScrollFrameStats stats;
+    private FrameCallback frameCallback;
+
+    /**
+     * Creates a new ScrollFrameCollector recording into the shared stats
+     * @param screen Name of the screen the list is on
+     */
+    public ScrollFrameCollector(String screen) {
+        this(screen, ScrollFrameStats.shared());
+    }
+
+    /**
+     * Creates a new ScrollFrameCollector
+     * @param screen Name of the screen the list is on
+     * @param stats The stats to record into
+     */
+    public ScrollFrameCollector(String screen, ScrollFrameStats stats) {
+        this.screen = screen;
+        this.stats = stats;
+    }
+
+    @Override
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+        if (scrollState == SCROLL_STATE_IDLE) {
+            stop();
+        } else {
+            start();
+        }
+    }
+
+    @Override
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount, int totalItemCount) {
+        // no-op
+    }
+
+    /**
+     * Ends the scroll session if one is being recorded, for example when the
+     * screen is paused in the middle of a fling
+     */
+    public void stop() {
+        if (frameCallback != null && frameCallback.running) {
+            frameCallback.stop();
+            stats.endSession(System.nanoTime());
+        }
+    }
+
+    private void start() {
+        if (Build.VERSION.SDK_INT < 16) {
+            return;
+        }
+
+        if (frameCallback == null) {
+            frameCallback = new FrameCallback(stats);
+        }
+
+        // Touch scroll to fling is the same session
+        if (!frameCallback.running) {
+            stats.beginSession(screen, System.nanoTime());
+            frameCallback.start();
+        }
+    }
+
+    /**
+     * Records the time between frames. Kept separate so the collector can be
+     * loaded on devices without Choreographer.
+     */
+    @SuppressLint("NewApi")
+    private static class FrameCallback implements Choreographer.FrameCallback {
+        private final ScrollFrameStats stats;
+        private boolean running;
+        private long lastFrameTimeNs;
+
+        private FrameCallback(ScrollFrameStats stats) {
+            this.stats = stats;
+        }
+
+        private void start() {
+            running = true;
+            lastFrameTimeNs = 0;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+
+        private void stop() {
+            running = false;
+            Choreographer.getInstance().removeFrameCallback(this);
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            if (!running) {
+                return;
+            }
+
+            if (lastFrameTimeNs != 0) {
+                stats.recordFrame(frameTimeNanos - lastFrameTimeNs);
+            }
+
+            lastFrameTimeNs = frameTimeNanos;
+            Choreographer.getInstance().postFrameCallback(this);
+        }
+    }
+}
@@ -0,0 +1,326 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.debug;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+/**
+ * Frame times recorded while a list is scrolling.
+ *
+ * Frames go into a histogram with one millisecond buckets, and each scroll,
+ * from the finger going down until the list comes to rest, is a session
+ * that counts its own slow frames. The most recent sessions are kept in a
+ * ring buffer. Recording a frame does not allocate, so it is safe to call
+ * from a frame callback.
+ *
+ */
+public class ScrollFrameStats {
+
+    /**
+     * A frame of 17 ms or more, over the 16.7 ms budget allowing for vsync jitter
+     */
+    public static final long SLOW_FRAME_NS = 17 * 1000 * 1000;
+
+    /**
+     * A frame of 33 ms or more, one that missed at least two vsyncs
+     */
+    public static final long VERY_SLOW_FRAME_NS = 33 * 1000 * 1000;
+
+    /**
+     * Frames this long or longer share the last histogram bucket
+     */
+    private static final int HISTOGRAM_MAX_MS = 250;
+
+    private static final int DEFAULT_SESSION_CAPACITY = 32;
+
+    private static final long NANOS_PER_MS = 1000 * 1000;
+
+    private static final ScrollFrameStats instance = new ScrollFrameStats(DEFAULT_SESSION_CAPACITY);
+
+    private final long[] histogram = new long[HISTOGRAM_MAX_MS + 1];
+    private long frames;
+    private long slowFrames;
+    private long verySlowFrames;
+    private long maxFrameNs;
+    private int totalSessions;
+
+    // Recent sessions, as parallel arrays
+    private final String[] sessionScreens;
+    private final long[] sessionStarts;
+    private final long[] sessionDurations;
+    private final int[] sessionFrames;
+    private final int[] sessionSlowFrames;
+    private final int[] sessionVerySlowFrames;
+    private final long[] sessionMaxFrames;
+    private int nextSession;
+    private int sessionCount;
+
+    // The session being recorded
+    private boolean recording;
+    private String currentScreen;
+    private long currentStart;
+    private int currentFrames;
+    private int currentSlowFrames;
+    private int currentVerySlowFrames;
+    private long currentMaxFrame;
+
+    /**
+     * Creates a new ScrollFrameStats
+     * @param sessionCapacity Number of recent sessions to keep
+     */
+    public ScrollFrameStats(int sessionCapacity) {
+        sessionScreens = new String[sessionCapacity];
+        sessionStarts = new long[sessionCapacity];
+        sessionDurations = new long[sessionCapacity];
+        sessionFrames = new int[sessionCapacity];
+        sessionSlowFrames = new int[sessionCapacity];
+        sessionVerySlowFrames = new int[sessionCapacity];
+        sessionMaxFrames = new long[sessionCapacity];
+    }
+
+    /**
+     * @return The shared ScrollFrameStats
+     */
+    public static ScrollFrameStats shared() {
+        return instance;
+    }
+
+    /**
+     * Starts a scroll session, ending any session still being recorded
+     * @param screen Name of the screen being scrolled
+     * @param startNs Start of the session in nanoseconds
+     */
+    public synchronized void beginSession(String screen, long startNs) {
+        if (recording) {
+            endSession(startNs);
+        }
+
+        recording = true;
+        currentScreen = screen;
+        currentStart = startNs;
+        currentFrames = 0;
+        currentSlowFrames = 0;
+        currentVerySlowFrames = 0;
+        currentMaxFrame = 0;
+    }
+
+    /**
+     * Records a frame in the current session
+     * @param durationNs Time since the previous frame in nanoseconds
+     */
+    public synchronized void recordFrame(long durationNs) {
+        if (!recording || durationNs <= 0) {
+            return;
+        }
+
+        histogram[(int) Math.min(durationNs / NANOS_PER_MS, HISTOGRAM_MAX_MS)]++;
+        frames++;
+        currentFrames++;
+
+        if (durationNs >= SLOW_FRAME_NS) {
+            slowFrames++;
+            currentSlowFrames++;
+        }
+
+        if (durationNs >= VERY_SLOW_FRAME_NS) {
+            verySlowFrames++;
+            currentVerySlowFrames++;
+        }
+
+        maxFrameNs = Math.max(maxFrameNs, durationNs);
+        currentMaxFrame = Math.max(currentMaxFrame, durationNs);
+    }
+
+    /**
+     * Ends the current session
+     * @param endNs End of the session in nanoseconds
+     */
+    public synchronized void endSession(long endNs) {
+        if (!recording) {
+            return;
+        }
+
+        recording = false;
+
+        // Taps that never scrolled a frame are not sessions
+        if (currentFrames == 0) {
+            return;
+        }
+
+        sessionScreens[nextSession] = currentScreen;
+        sessionStarts[nextSession] = currentStart;
+        sessionDurations[nextSession] = endNs - currentStart;
+        sessionFrames[nextSession] = currentFrames;
+        sessionSlowFrames[nextSession] = currentSlowFrames;
+        sessionVerySlowFrames[nextSession] = currentVerySlowFrames;
+        sessionMaxFrames[nextSession] = currentMaxFrame;
+
+        nextSession = (nextSession + 1) % sessionStarts.length;
+        if (sessionCount < sessionStarts.length) {
+            sessionCount++;
+        }
+        totalSessions++;
+    }
+
+    /**
+     * Clears all the recorded frames and sessions
+     */
+    public synchronized void clear() {
+        for (int i = 0; i < histogram.length; i++) {
+            histogram[i] = 0;
+        }
+        for (int i = 0; i < sessionScreens.length; i++) {
+            sessionScreens[i] = null;
+        }
+
+        frames = 0;
+        slowFrames = 0;
+        verySlowFrames = 0;
+        maxFrameNs = 0;
+        totalSessions = 0;
+        nextSession = 0;
+        sessionCount = 0;
+        recording = false;
+    }
+
+    /**
+     * @return Number of recorded frames
+     */
+    public synchronized long getFrameCount() {
+        return frames;
+    }
+
+    /**
+     * @return Number of frames of 17 ms or more
+     */
+    public synchronized long getSlowFrameCount() {
+        return slowFrames;
+    }
+
+    /**
+     * @return Number of frames of 33 ms or more
+     */
+    public synchronized long getVerySlowFrameCount() {
+        return verySlowFrames;
+    }
+
+    /**
+     * Gets a frame time percentile from the histogram
+     * @param percentile The percentile, from 0 to 100
+     * @return The frame time in milliseconds, or 0 if no frames were recorded
+     */
+    public synchronized int getPercentile(double percentile) {
+        if (frames == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * frames));
+        long seen = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return i;
+            }
+        }
+        return HISTOGRAM_MAX_MS;
+    }
+
+    /**
+     * @return A human readable report with the histogram and the recent sessions
+     */
+    public synchronized String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format(Locale.US, "Scroll frames: %d in %d sessions, %d of 17+ ms (%.1f%%), %d of 33+ ms (%.1f%%)\n",
+                frames, totalSessions, slowFrames, percentOf(slowFrames), verySlowFrames, percentOf(verySlowFrames)));
+        report.append(String.format(Locale.US, "Frame time: p50 %d ms, p90 %d ms, p99 %d ms, max %d ms\n",
+                getPercentile(50), getPercentile(90), getPercentile(99), maxFrameNs / NANOS_PER_MS));
+
+        report.append("\nHistogram:\n");
+        int[] bounds = new int[] { 0, 8, 16, 17, 24, 33, 50, 100, HISTOGRAM_MAX_MS, HISTOGRAM_MAX_MS + 1 };
+        for (int i = 0; i < bounds.length - 1; i++) {
+            long count = 0;
+            for (int ms = bounds[i]; ms < bounds[i + 1]; ms++) {
+                count += histogram[ms];
+            }
+
+            String range;
+            if (i == bounds.length - 2) {
+                range = String.format(Locale.US, "%d+ ms", bounds[i]);
+            } else if (bounds[i + 1] - bounds[i] == 1) {
+                range = String.format(Locale.US, "%d ms", bounds[i]);
+            } else {
+                range = String.format(Locale.US, "%d-%d ms", bounds[i], bounds[i + 1] - 1);
+            }
+            report.append(String.format(Locale.US, "%10s %7d %s\n", range, count, bar(count)));
+        }
+
+        report.append("\nRecent sessions, newest first:\n");
+        for (int i = 0; i < sessionCount; i++) {
+            int index = (nextSession - 1 - i + sessionStarts.length) % sessionStarts.length;
+            report.append(String.format(Locale.US, "%s: %d ms, %d frames, %d of 17+ ms, %d of 33+ ms, max %d ms\n",
+                    sessionScreens[index], sessionDurations[index] / NANOS_PER_MS, sessionFrames[index],
+                    sessionSlowFrames[index], sessionVerySlowFrames[index], sessionMaxFrames[index] / NANOS_PER_MS));
+        }
+
+        return report.toString();
+    }
+
+    /**
+     * @return The stats as JSON, with the non-empty histogram buckets keyed by milliseconds
+     * @throws JSONException
+     */
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("frames", frames);
+        json.put("sessions", totalSessions);
+        json.put("slow_17ms", slowFrames);
+        json.put("very_slow_33ms", verySlowFrames);
+        json.put("p50_ms", getPercentile(50));
+        json.put("p90_ms", getPercentile(90));
+        json.put("p99_ms", getPercentile(99));
+        json.put("max_ms", maxFrameNs / NANOS_PER_MS);
+
+        JSONObject buckets = new JSONObject();
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                buckets.put(String.valueOf(i), histogram[i]);
+            }
+        }
+        json.put("histogram_ms", buckets);
+
+        JSONArray sessions = new JSONArray();
+        for (int i = sessionCount - 1; i >= 0; i--) {
+            int index = (nextSession - 1 - i + sessionStarts.length) % sessionStarts.length;
+            JSONObject session = new JSONObject();
+            session.put("screen", sessionScreens[index]);
+            session.put("duration_ms", sessionDurations[index] / NANOS_PER_MS);
+            session.put("frames", sessionFrames[index]);
+            session.put("slow_17ms", sessionSlowFrames[index]);
+            session.put("very_slow_33ms", sessionVerySlowFrames[index]);
+            session.put("max_ms", sessionMaxFrames[index] / NANOS_PER_MS);
+            sessions.put(session);
+        }
+        json.put("recent_sessions", sessions);
+
+        return json;
+    }
+
+    private double percentOf(long count) {
+        return frames == 0 ? 0 : 100.0 * count / frames;
+    }
+
+    private String bar(long count) {
+        int length = frames == 0 ? 0 : (int) Math.ceil(40.0 * count / frames);
+        StringBuilder bar = new StringBuilder();
+        for (int i = 0; i < length; i++) {
+            bar.append('#');
+        }
+        return bar.toString();
+    }
+}
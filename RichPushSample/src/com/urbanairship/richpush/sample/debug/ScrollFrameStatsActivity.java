@@ -0,0 +1,80 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.debug;
+
+import android.graphics.Typeface;
+import android.os.Bundle;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import com.actionbarsherlock.app.SherlockActivity;
+import com.actionbarsherlock.view.Menu;
+import com.actionbarsherlock.view.MenuItem;
+import com.urbanairship.richpush.sample.R;
+
+/**
+ * Debug screen that shows the inbox scroll frame stats
+ *
+ */
+public class ScrollFrameStatsActivity extends SherlockActivity {
+
+    private static final int MENU_REFRESH = 1;
+    private static final int MENU_RESET = 2;
+
+    private TextView reportView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        reportView = new TextView(this);
+        reportView.setTypeface(Typeface.MONOSPACE);
+        reportView.setTextSize(12);
+
+        int padding = (int) (8 * getResources().getDisplayMetrics().density);
+        reportView.setPadding(padding, padding, padding, padding);
+
+        ScrollView scrollView = new ScrollView(this);
+        scrollView.addView(reportView);
+        setContentView(scrollView);
+
+        getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        showReport();
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        menu.add(Menu.NONE, MENU_REFRESH, Menu.NONE, R.string.refresh).setShowAsAction(MenuItem.SHOW_AS_ACTION_IF_ROOM);
+        menu.add(Menu.NONE, MENU_RESET, Menu.NONE, R.string.reset).setShowAsAction(MenuItem.SHOW_AS_ACTION_IF_ROOM);
+        return true;
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        switch (item.getItemId()) {
+        case android.R.id.home:
+            finish();
+            return true;
+        case MENU_RESET:
+            ScrollFrameStats.shared().clear();
+            showReport();
+            return true;
+        case MENU_REFRESH:
+            showReport();
+            return true;
+        default:
+            return super.onOptionsItemSelected(item);
+        }
+    }
+
+    private void showReport() {
+        reportView.setText(ScrollFrameStats.shared().getReport());
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.debug;
+
+import android.app.Activity;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewTreeObserver;
+import android.webkit.WebView;
+
+/**
+ * Logs the moments a screen becomes useful during startup so the startup
+ * benchmark in AutomatedRichPushSampleTests can time them.
+ *
+ * Each marker is logged once per call as
+ * <code>&lt;activity&gt; &lt;marker&gt; &lt;uptime ms&gt;</code> under the
+ * {@link #LOG_TAG} tag. The markers use <code>android.util.Log</code> directly
+ * so the tag stays fixed for the benchmark to filter on.
+ *
+ */
+public class StartupMarkers {
+
+    public static final String LOG_TAG = "RichPushStartup";
+
+    public static final String FIRST_FRAME = "first_frame";
+    public static final String INBOX_POPULATED = "inbox_populated";
+    public static final String MESSAGE_RENDERED = "message_rendered";
+
+    private StartupMarkers() {}
+
+    /**
+     * Logs the first frame of an activity. Call from <code>onCreate</code>
+     * after the content view is set.
+     * @param activity The activity
+     */
+    public static void markFirstFrame(Activity activity) {
+        markOnNextDraw(activity.getWindow().getDecorView(), activity.getClass().getSimpleName(), FIRST_FRAME);
+    }
+
+    /**
+     * Logs a marker when a view is next drawn
+     * @param view The view
+     * @param screen The screen name to log the marker for
+     * @param marker The marker
+     */
+    public static void markOnNextDraw(final View view, final String screen, final String marker) {
+        view.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                view.getViewTreeObserver().removeOnPreDrawListener(this);
+                mark(screen, marker);
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Logs a marker once a web view has finished loading and has content to draw
+     * @param webView The web view
+     * @param screen The screen name to log the marker for
+     * @param marker The marker
+     */
+    public static void markWhenLoaded(WebView webView, final String screen, final String marker) {
+        runWhenLoaded(webView, new Runnable() {
+            @Override
+            public void run() {
+                mark(screen, marker);
+            }
+        });
+    }
+
+    /**
+     * Runs a task once a web view has finished loading and has content to
+     * draw, just before that content is first drawn
+     * @param webView The web view
+     * @param task The task, run on the main thread
+     */
+    public static void runWhenLoaded(final WebView webView, final Runnable task) {
+        webView.getViewTreeObserver().addOnPreDrawListener(new ViewTreeObserver.OnPreDrawListener() {
+            @Override
+            public boolean onPreDraw() {
+                // The web view invalidates itself as the page loads, so keep checking until it is done
+                if (webView.getProgress() == 100 && webView.getContentHeight() > 0) {
+                    webView.getViewTreeObserver().removeOnPreDrawListener(this);
+                    task.run();
+                }
+                return true;
+            }
+        });
+    }
+
+    /**
+     * Logs a marker now
+     * @param screen The screen name to log the marker for
+     * @param marker The marker
+     */
+    public static void mark(String screen, String marker) {
+        Log.i(LOG_TAG, screen + " " + marker + " " + SystemClock.uptimeMillis());
+    }
+}
@@ -43,14 +43,23 @@ import com.urbanairship.richpush.sample.R.id;
 import com.urbanairship.richpush.sample.R.layout;
 import com.urbanairship.richpush.sample.R.menu;
 import com.urbanairship.richpush.sample.R.string;
+import com.urbanairship.richpush.sample.debug.ScrollFrameStats;
+import com.urbanairship.richpush.sample.debug.ScrollFrameStatsActivity;
+import com.urbanairship.richpush.sample.debug.StartupMarkers;
 import com.urbanairship.richpush.sample.preference.PushPreferencesActivity;
 import com.urbanairship.richpush.sample.view.CustomSlidingPaneLayout;
 import com.urbanairship.richpush.sample.view.CustomViewPager;
 import com.urbanairship.richpush.sample.widget.RichPushWidgetUtils;
 import com.urbanairship.util.UAStringUtil;
 
+import org.json.JSONException;
+
+import java.io.FileDescriptor;
+import java.io.PrintWriter;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * Activity that manages the inbox.
@@ -81,11 +90,13 @@ SlidingPaneLayout.PanelSlideListener {
     private CustomSlidingPaneLayout slidingPaneLayout;
 
     private Button actionSelectionButton;
+    private boolean populatedMarked;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         this.setContentView(R.layout.inbox);
+        StartupMarkers.markFirstFrame(this);
 
         actionBar = getSupportActionBar();
         configureActionBar();
@@ -104,7 +115,10 @@ SlidingPaneLayout.PanelSlideListener {
             this.messagePager.setOnPageChangeListener(new ViewPager.SimpleOnPageChangeListener(){
                 @Override
                 public void onPageSelected(int position) {
-                    messages.get(position).markRead();
+                    RichPushMessage message = messages.get(position);
+                    message.markRead();
+                    inbox.setMessageRead(message.getMessageId(), true);
+
                     // Highlight the current item you are viewing in the inbox
                     inbox.getListView().setItemChecked(position, true);
 
@@ -196,6 +210,7 @@ SlidingPaneLayout.PanelSlideListener {
     @Override
     public void onMessageOpen(RichPushMessage message) {
         message.markRead();
+        inbox.setMessageRead(message.getMessageId(), true);
         showMessage(message.getMessageId());
 
         // If we are in actionMode, update the menu items
@@ -239,11 +254,47 @@ SlidingPaneLayout.PanelSlideListener {
         case R.id.preferences:
             this.startActivity(new Intent(this, PushPreferencesActivity.class));
             break;
+        case R.id.scroll_stats:
+            this.startActivity(new Intent(this, ScrollFrameStatsActivity.class));
+            break;
 
         }
         return true;
     }
 
+    /**
+     * Prints the inbox scroll frame stats when dumped with the <code>scroll-jank</code>
+     * argument: <code>adb shell dumpsys activity top scroll-jank</code>. The
+     * <code>scroll-jank-json</code> argument prints them as a single JSON line and
+     * <code>scroll-jank-reset</code> clears them.
+     */
+    @Override
+    public void dump(String prefix, FileDescriptor fd, PrintWriter writer, String[] args) {
+        super.dump(prefix, fd, writer, args);
+
+        List<String> arguments = args == null ? Arrays.<String>asList() : Arrays.asList(args);
+        ScrollFrameStats stats = ScrollFrameStats.shared();
+
+        if (arguments.contains("scroll-jank")) {
+            for (String line : stats.getReport().split("\n")) {
+                writer.println(prefix + line);
+            }
+        }
+
+        if (arguments.contains("scroll-jank-json")) {
+            try {
+                writer.println(prefix + "ScrollJank: " + stats.toJson());
+            } catch (JSONException e) {
+                writer.println(prefix + "Failed to write scroll jank stats: " + e.getMessage());
+            }
+        }
+
+        if (arguments.contains("scroll-jank-reset")) {
+            stats.clear();
+            writer.println(prefix + "Scroll jank stats cleared");
+        }
+    }
+
     @Override
     public boolean onNavigationItemSelected(int itemPosition, long itemId) {
         String navName = this.navAdapter.getItem(itemPosition);
@@ -301,25 +352,9 @@ SlidingPaneLayout.PanelSlideListener {
     public boolean onPrepareActionMode(ActionMode mode, Menu menu) {
         Logger.debug("onPrepareActionMode");
 
-        boolean selectionContainsRead = false;
-        boolean selectionContainsUnread = false;
-
-        for (String id : inbox.getSelectedMessages()) {
-            RichPushMessage message = richPushInbox.getMessage(id);
-            if (message.isRead()) {
-                selectionContainsRead = true;
-            } else {
-                selectionContainsUnread = true;
-            }
-
-            if (selectionContainsRead && selectionContainsUnread) {
-                break;
-            }
-        }
-
-        // Show them both
-        menu.findItem(R.id.mark_read).setVisible(selectionContainsUnread);
-        menu.findItem(R.id.mark_unread).setVisible(selectionContainsRead);
+        // The inbox fragment keeps count of the selected read and unread messages
+        menu.findItem(R.id.mark_read).setVisible(inbox.getSelectedUnreadCount() > 0);
+        menu.findItem(R.id.mark_unread).setVisible(inbox.getSelectedReadCount() > 0);
 
         // If we have an action selection button update the text
         if (actionSelectionButton != null) {
@@ -443,6 +478,7 @@ SlidingPaneLayout.PanelSlideListener {
         }
 
         message.markRead();
+        inbox.setMessageRead(messageId, true);
 
         if (messagePager != null) {
             this.messagePager.setCurrentItem(messages.indexOf(message));
@@ -458,7 +494,7 @@ SlidingPaneLayout.PanelSlideListener {
      * messages in the inbox fragment
      */
     private void startActionModeIfNecessary() {
-        List<String> checkedIds = inbox.getSelectedMessages();
+        Set<String> checkedIds = inbox.getSelectedMessages();
         if (actionMode != null && checkedIds.isEmpty()) {
             actionMode.finish();
             return;
@@ -505,6 +541,20 @@ SlidingPaneLayout.PanelSlideListener {
         if (messagePager != null) {
             ((MessageFragmentAdapter) messagePager.getAdapter()).setRichPushMessages(messages);
         }
+
+        // Read states in the selection may have changed and deleted messages are no longer selected
+        if (actionMode != null) {
+            startActionModeIfNecessary();
+            if (actionMode != null) {
+                actionMode.invalidate();
+            }
+        }
+
+        // Mark the first time the list draws with messages for the startup benchmark
+        if (!populatedMarked && !messages.isEmpty()) {
+            populatedMarked = true;
+            StartupMarkers.markOnNextDraw(inbox.getListView(), getClass().getSimpleName(), StartupMarkers.INBOX_POPULATED);
+        }
     }
 
     /**
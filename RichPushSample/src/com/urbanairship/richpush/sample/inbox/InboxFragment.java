@@ -11,10 +11,14 @@ import android.widget.ListView;
 
 import com.actionbarsherlock.app.SherlockListFragment;
 import com.urbanairship.richpush.RichPushMessage;
+import com.urbanairship.richpush.sample.debug.ScrollFrameCollector;
 import com.urbanairship.richpush.sample.inbox.RichPushMessageAdapter.ViewBinder;
 
-import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * A list fragment that shows rich push messages.
@@ -27,8 +31,14 @@ public abstract class InboxFragment extends SherlockListFragment {
 
     private OnMessageListener listener;
     private RichPushMessageAdapter adapter;
-    private List<String> selectedMessageIds = new ArrayList<String>();
     private List<RichPushMessage> messages;
+    private ScrollFrameCollector frameCollector;
+
+    // Selected message ids and whether each was read when last seen, with
+    // running counts so the action mode can be prepared without a lookup
+    private Map<String, Boolean> selectedMessages = new LinkedHashMap<String, Boolean>();
+    private int selectedReadCount;
+    private int selectedUnreadCount;
 
 
     @Override
@@ -54,6 +64,20 @@ public abstract class InboxFragment extends SherlockListFragment {
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
         this.setEmptyText(getString(getEmptyListStringId()));
+
+        // Record frame times while the list scrolls
+        frameCollector = new ScrollFrameCollector(getActivity().getClass().getSimpleName());
+        getListView().setOnScrollListener(frameCollector);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+
+        // End the scroll session if we are paused mid fling
+        if (frameCollector != null) {
+            frameCollector.stop();
+        }
     }
 
     @Override
@@ -68,20 +92,59 @@ public abstract class InboxFragment extends SherlockListFragment {
     public void setMessages(List<RichPushMessage> messages) {
         this.messages = messages;
         adapter.setMessages(messages);
+        syncSelection();
+    }
+
+    /**
+     * @return The ids of the selected messages, in the order they were selected
+     */
+    public Set<String> getSelectedMessages() {
+        return selectedMessages.keySet();
     }
 
     /**
-     * @return The list of ids of the selected messages
+     * @return The number of selected messages that are read
      */
-    public List<String> getSelectedMessages() {
-        return selectedMessageIds;
+    public int getSelectedReadCount() {
+        return selectedReadCount;
+    }
+
+    /**
+     * @return The number of selected messages that are unread
+     */
+    public int getSelectedUnreadCount() {
+        return selectedUnreadCount;
+    }
+
+    /**
+     * Updates the read state of a message in the selection counts. Call
+     * after marking a message read or unread.
+     * @param messageId The id of the message
+     * @param isRead <code>true</code> if the message is now read
+     */
+    public void setMessageRead(String messageId, boolean isRead) {
+        Boolean wasRead = selectedMessages.get(messageId);
+        if (wasRead == null || wasRead == isRead) {
+            return;
+        }
+
+        selectedMessages.put(messageId, isRead);
+        if (isRead) {
+            selectedReadCount++;
+            selectedUnreadCount--;
+        } else {
+            selectedReadCount--;
+            selectedUnreadCount++;
+        }
     }
 
     /**
      * Clears the selected messages
      */
     public void clearSelection() {
-        selectedMessageIds.clear();
+        selectedMessages.clear();
+        selectedReadCount = 0;
+        selectedUnreadCount = 0;
         adapter.notifyDataSetChanged();
         listener.onSelectionChanged();
     }
@@ -90,9 +153,11 @@ public abstract class InboxFragment extends SherlockListFragment {
      * Selects all the messages in the inbox
      */
     public void selectAll() {
-        selectedMessageIds.clear();
+        selectedMessages.clear();
+        selectedReadCount = 0;
+        selectedUnreadCount = 0;
         for (RichPushMessage message : messages) {
-            selectedMessageIds.add(message.getMessageId());
+            select(message.getMessageId(), message.isRead());
         }
         adapter.notifyDataSetChanged();
         listener.onSelectionChanged();
@@ -133,14 +198,15 @@ public abstract class InboxFragment extends SherlockListFragment {
 
     /**
      * Sets a message is selected or not
-     * @param messageId The id of the message
+     * @param message The message
      * @param isChecked Boolean indicating if the message is selected or not
      */
-    protected void onMessageSelected(String messageId, boolean isChecked) {
-        if (isChecked && !selectedMessageIds.contains(messageId)) {
-            selectedMessageIds.add(messageId);
-        } else if (!isChecked && selectedMessageIds.contains(messageId)) {
-            selectedMessageIds.remove(messageId);
+    protected void onMessageSelected(RichPushMessage message, boolean isChecked) {
+        String messageId = message.getMessageId();
+        if (isChecked && !selectedMessages.containsKey(messageId)) {
+            select(messageId, message.isRead());
+        } else if (!isChecked && selectedMessages.containsKey(messageId)) {
+            deselect(messageId);
         }
 
         listener.onSelectionChanged();
@@ -152,7 +218,70 @@ public abstract class InboxFragment extends SherlockListFragment {
      * @return <code>true</code> If the message is selected, <code>false</code> otherwise.
      */
     protected boolean isMessageSelected(String messageId) {
-        return selectedMessageIds.contains(messageId);
+        return selectedMessages.containsKey(messageId);
+    }
+
+    private void select(String messageId, boolean isRead) {
+        selectedMessages.put(messageId, isRead);
+        if (isRead) {
+            selectedReadCount++;
+        } else {
+            selectedUnreadCount++;
+        }
+    }
+
+    private void deselect(String messageId) {
+        Boolean wasRead = selectedMessages.remove(messageId);
+        if (wasRead == null) {
+            return;
+        }
+
+        if (wasRead) {
+            selectedReadCount--;
+        } else {
+            selectedUnreadCount--;
+        }
+    }
+
+    /**
+     * Brings the selection up to date after the inbox changes. Read states
+     * are refreshed and deleted messages are dropped from the selection.
+     */
+    private void syncSelection() {
+        if (selectedMessages.isEmpty()) {
+            return;
+        }
+
+        Map<String, Boolean> current = new LinkedHashMap<String, Boolean>();
+        for (RichPushMessage message : messages) {
+            if (selectedMessages.containsKey(message.getMessageId())) {
+                current.put(message.getMessageId(), message.isRead());
+            }
+        }
+
+        // Keep the selection order
+        Iterator<Map.Entry<String, Boolean>> iterator = selectedMessages.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, Boolean> entry = iterator.next();
+            Boolean isRead = current.get(entry.getKey());
+            if (isRead == null) {
+                iterator.remove();
+                if (entry.getValue()) {
+                    selectedReadCount--;
+                } else {
+                    selectedUnreadCount--;
+                }
+            } else if (isRead.booleanValue() != entry.getValue().booleanValue()) {
+                entry.setValue(isRead);
+                if (isRead) {
+                    selectedReadCount++;
+                    selectedUnreadCount--;
+                } else {
+                    selectedReadCount--;
+                    selectedUnreadCount++;
+                }
+            }
+        }
     }
 
     /**
@@ -16,6 +16,7 @@ import com.urbanairship.richpush.RichPushMessage;
 import com.urbanairship.richpush.sample.R;
 import com.urbanairship.richpush.sample.R.id;
 import com.urbanairship.richpush.sample.R.layout;
+import com.urbanairship.richpush.sample.debug.StartupMarkers;
 import com.urbanairship.richpush.sample.widget.RichPushWidgetUtils;
 
 import java.util.List;
@@ -35,6 +36,7 @@ public class MessageActivity extends SherlockFragmentActivity {
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         this.setContentView(R.layout.message);
+        StartupMarkers.markFirstFrame(this);
 
         String messageId = savedInstanceState == null ? this.getIntent().getStringExtra(EXTRA_MESSAGE_ID_KEY) :
             savedInstanceState.getString(EXTRA_MESSAGE_ID_KEY);
@@ -13,6 +13,8 @@ import com.actionbarsherlock.app.SherlockFragment;
 import com.urbanairship.Logger;
 import com.urbanairship.richpush.RichPushManager;
 import com.urbanairship.richpush.RichPushMessage;
+import com.urbanairship.richpush.sample.debug.PushTrace;
+import com.urbanairship.richpush.sample.debug.StartupMarkers;
 import com.urbanairship.widget.RichPushMessageView;
 
 /**
@@ -47,11 +49,18 @@ public class MessageFragment extends SherlockFragment {
     public void onActivityCreated(Bundle savedInstanceState) {
         super.onActivityCreated(savedInstanceState);
 
-        String messageId = getArguments().getString(MESSAGE_ID_KEY);
+        final String messageId = getArguments().getString(MESSAGE_ID_KEY);
         RichPushMessage message = RichPushManager.shared().getRichPushUser().getInbox().getMessage(messageId);
 
         if (message != null) {
             browser.loadRichPushMessage(message);
+            StartupMarkers.runWhenLoaded(browser, new Runnable() {
+                @Override
+                public void run() {
+                    PushTrace.shared().record(PushTrace.MESSAGE_RENDERED, messageId);
+                }
+            });
+            StartupMarkers.markWhenLoaded(browser, getActivity().getClass().getSimpleName(), StartupMarkers.MESSAGE_RENDERED);
         } else {
             Logger.info("Couldn't retrieve message for ID: " + messageId);
         }
@@ -17,6 +17,8 @@ import com.urbanairship.richpush.sample.R;
 import com.urbanairship.richpush.sample.R.id;
 import com.urbanairship.richpush.sample.R.layout;
 import com.urbanairship.richpush.sample.R.string;
+import com.urbanairship.richpush.sample.debug.PushTrace;
+import com.urbanairship.richpush.sample.debug.StartupMarkers;
 import com.urbanairship.richpush.sample.widget.RichPushWidgetUtils;
 import com.urbanairship.widget.RichPushMessageView;
 
@@ -49,7 +51,7 @@ public class RichPushMessageDialogFragment extends DialogFragment {
 
     @Override
     public View onCreateView(LayoutInflater inflater, ViewGroup container, Bundle savedInstanceState) {
-        String messageId = getArguments().getString(MESSAGE_ID_KEY);
+        final String messageId = getArguments().getString(MESSAGE_ID_KEY);
         RichPushMessage message = RichPushManager.shared().getRichPushUser().getInbox().getMessage(messageId);
 
         if (message == null) {
@@ -61,6 +63,12 @@ public class RichPushMessageDialogFragment extends DialogFragment {
 
         RichPushMessageView messageView = (RichPushMessageView) view.findViewById(R.id.message_browser);
         messageView.loadRichPushMessage(message);
+        StartupMarkers.runWhenLoaded(messageView, new Runnable() {
+            @Override
+            public void run() {
+                PushTrace.shared().record(PushTrace.MESSAGE_RENDERED, messageId);
+            }
+        });
         message.markRead();
 
         // Update the widget, this dialog can show a message on any activity
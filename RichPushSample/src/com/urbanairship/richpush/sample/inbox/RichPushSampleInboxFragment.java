@@ -64,7 +64,7 @@ public class RichPushSampleInboxFragment extends InboxFragment {
                 checkBox.setOnClickListener(new OnClickListener() {
                     @Override
                     public void onClick(View view) {
-                        onMessageSelected(message.getMessageId(), checkBox.isChecked());
+                        onMessageSelected(message, checkBox.isChecked());
                     }
                 });
                 view.setFocusable(false);
@@ -6,56 +6,123 @@ package com.urbanairship.richpush.sample.preference;
 
 import android.content.Context;
 import android.preference.DialogPreference;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.util.AttributeSet;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.View.OnClickListener;
 import android.view.ViewGroup;
 import android.view.inputmethod.InputMethodManager;
-import android.widget.ArrayAdapter;
-import android.widget.EditText;
+import android.widget.AutoCompleteTextView;
+import android.widget.BaseAdapter;
+import android.widget.Filter;
+import android.widget.Filterable;
 import android.widget.ImageButton;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import com.urbanairship.push.PushManager;
 import com.urbanairship.richpush.sample.R;
+import com.urbanairship.richpush.sample.registration.RegistrationCoalescer;
 import com.urbanairship.util.UAStringUtil;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
 /**
  * DialogPreference to set the tags
  *
+ * Tags are indexed in prefix tries so the new tag field can autocomplete
+ * from the current tags and the cached catalog of known tags, and the tag
+ * list can be filtered as the user types. Tags that only differ by case are
+ * the same tag, and the trie over the edited tags is the only place that
+ * decides whether a tag was already added.
+ *
  */
 public class AddTagsPreference extends DialogPreference  {
 
+    private static final int MAX_SUGGESTIONS = 20;
+
     private ListView listView;
     private List<String> tags = new ArrayList<String>();
-    private Set<String>  currentTags;
+    private Set<String> currentTags = new LinkedHashSet<String>();
     private TagsAdapter adapter;
 
+    private TagTrie tagIndex = new TagTrie();
+    private TagTrie catalogIndex = new TagTrie();
+    private TagCatalog catalog;
+
+    private final PreferenceRepository.Callback loadCallback = new PreferenceRepository.Callback() {
+        @Override
+        public void onPreferencesLoaded(PreferenceRepository.Snapshot snapshot) {
+            currentTags = new LinkedHashSet<String>(snapshot.getTags());
+            setEnabled(true);
+            notifyChanged();
+        }
+    };
+
     public AddTagsPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
 
-        currentTags = PushManager.shared().getTags();
+        catalog = new TagCatalog(context);
+
+        // Bind from the preference snapshot that is loaded off the main thread,
+        // the preference can not be edited until it is loaded
+        setEnabled(false);
+        PreferenceRepository.shared().get(loadCallback);
+    }
+
+    /**
+     * Stops waiting for the preferences to load, called when the screen is destroyed
+     */
+    void cancelLoad() {
+        PreferenceRepository.shared().cancel(loadCallback);
     }
 
     @Override
     protected View onCreateDialogView() {
         tags.clear();
-        tags.addAll(currentTags);
+        tagIndex.clear();
+        for (String tag : currentTags) {
+            if (tagIndex.add(tag)) {
+                tags.add(tag);
+            }
+        }
+
+        catalogIndex.clear();
+        catalogIndex.addAll(currentTags);
+        catalog.loadInto(catalogIndex);
 
         View view = super.onCreateDialogView();
         listView = (ListView) view.findViewById(R.id.tags_list);
         adapter = new TagsAdapter(getContext(), R.layout.tag_preference_item);
         listView.setAdapter(adapter);
 
-        final EditText editText = (EditText) view.findViewById(R.id.new_tag_text);
+        final AutoCompleteTextView editText = (AutoCompleteTextView) view.findViewById(R.id.new_tag_text);
+        editText.setAdapter(new SuggestionsAdapter(getContext()));
+
+        // Filter the tag list as the user types
+        editText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+                // no-op
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+                // no-op
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                adapter.setConstraint(s.toString());
+            }
+        });
 
         ImageButton button = (ImageButton) view.findViewById(R.id.new_tag_button);
         button.setOnClickListener(new OnClickListener() {
@@ -68,11 +135,12 @@ public class AddTagsPreference extends DialogPreference  {
                 imm.hideSoftInputFromWindow(editText.getWindowToken(), 0);
 
                 if (!UAStringUtil.isEmpty(newTag)) {
-                    if (tags.contains(newTag)) {
+                    if (!tagIndex.add(newTag)) {
                         showDuplicateItemToast();
                     } else {
                         tags.add(0, newTag);
-                        adapter.notifyDataSetChanged();
+                        catalogIndex.add(newTag);
+                        adapter.refresh();
                     }
                 }
             }
@@ -92,7 +160,8 @@ public class AddTagsPreference extends DialogPreference  {
     public void onDialogClosed(boolean positiveResult) {
         if (positiveResult) {
             if (callChangeListener(tags)) {
-                setTags(tags);
+                setTags(new LinkedHashSet<String>(tags));
+                catalog.addTags(new ArrayList<String>(tags));
 
                 notifyChanged();
             }
@@ -120,30 +189,166 @@ public class AddTagsPreference extends DialogPreference  {
         return false;
     }
 
-    private void setTags(List<String> tags) {
-        currentTags.clear();
-        currentTags.addAll(tags);
+    /**
+     * Updates the tags, only queuing a registration update if
+     * any tags were added or removed. The library only sets the full set
+     * of tags, so the update always carries all of them.
+     * @param editedTags The tags from the dialog
+     */
+    private void setTags(Set<String> editedTags) {
+        if (editedTags.equals(currentTags)) {
+            return;
+        }
+
+        currentTags = editedTags;
+        RegistrationCoalescer.shared(getContext()).setTags(currentTags);
 
-        PushManager.shared().setTags(currentTags);
+        PreferenceRepository repository = PreferenceRepository.shared();
+        if (repository.getSnapshot() != null) {
+            repository.update(repository.getSnapshot().withTags(currentTags));
+        }
     }
 
     private void showDuplicateItemToast() {
         Toast.makeText(getContext(), R.string.duplicate_tag_warning, Toast.LENGTH_SHORT).show();
     }
 
-    private class TagsAdapter extends ArrayAdapter<String> {
+    /**
+     * Removes a tag from the edited tags
+     * @param tag The tag to remove
+     */
+    private void removeTag(String tag) {
+        tags.remove(tag);
+        tagIndex.remove(tag);
+        adapter.refresh();
+    }
+
+    /**
+     * Tags matching a filter and the list generation they were filtered from
+     */
+    private static class FilteredTags {
+        final int generation;
+        final List<String> tags;
+
+        FilteredTags(int generation, List<String> tags) {
+            this.generation = generation;
+            this.tags = tags;
+        }
+    }
+
+    /**
+     * View holder for the tag list items
+     */
+    private static class ViewHolder {
+        TextView textView;
+        ImageButton deleteButton;
+    }
+
+    /**
+     * Adapter for the tag list that can be filtered by a tag prefix
+     */
+    private class TagsAdapter extends BaseAdapter implements Filterable {
 
         private int layout;
+        private Context context;
+        private String constraint;
+        private List<String> visibleTags = tags;
 
-        public TagsAdapter(Context context, int layout) {
-            super(context, layout, tags);
+        // Bumped on every refresh so results from an older filter run are discarded
+        private volatile int generation;
+
+        private final OnClickListener deleteListener = new OnClickListener() {
+            @Override
+            public void onClick(View buttonView) {
+                removeTag((String) buttonView.getTag());
+            }
+        };
 
+        private final Filter filter = new Filter() {
+            @Override
+            protected FilterResults performFiltering(CharSequence prefix) {
+                int filterGeneration = generation;
+                FilterResults results = new FilterResults();
+                if (!UAStringUtil.isEmpty(prefix == null ? null : prefix.toString())) {
+                    List<String> matches = tagIndex.startingWith(prefix.toString(), Integer.MAX_VALUE);
+                    results.values = new FilteredTags(filterGeneration, matches);
+                    results.count = matches.size();
+                }
+                return results;
+            }
+
+            @Override
+            protected void publishResults(CharSequence prefix, FilterResults results) {
+                FilteredTags filtered = (FilteredTags) results.values;
+
+                // The tags or the constraint changed while filtering
+                if (filtered == null || filtered.generation != generation
+                        || !prefix.toString().equals(constraint)) {
+                    return;
+                }
+
+                visibleTags = filtered.tags;
+                notifyDataSetChanged();
+            }
+        };
+
+        public TagsAdapter(Context context, int layout) {
+            this.context = context;
             this.layout = layout;
         }
 
+        /**
+         * Filters the list to the tags starting with the constraint
+         * @param constraint The tag prefix, or null to show every tag
+         */
+        void setConstraint(String constraint) {
+            this.constraint = constraint;
+            refresh();
+        }
+
+        /**
+         * Refreshes the list after the tags change
+         */
+        void refresh() {
+            generation++;
+            if (UAStringUtil.isEmpty(constraint)) {
+                visibleTags = tags;
+                notifyDataSetChanged();
+            } else {
+                filter.filter(constraint);
+            }
+        }
+
+        @Override
+        public int getCount() {
+            return visibleTags.size();
+        }
+
+        @Override
+        public String getItem(int position) {
+            return visibleTags.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public Filter getFilter() {
+            return filter;
+        }
+
         private View createView(ViewGroup parent) {
-            LayoutInflater layoutInflater = (LayoutInflater) getContext().getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+            LayoutInflater layoutInflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
             View view = layoutInflater.inflate(layout, parent, false);
+
+            ViewHolder holder = new ViewHolder();
+            holder.textView = (TextView) view.findViewById(R.id.tag_text);
+            holder.deleteButton = (ImageButton) view.findViewById(R.id.delete_tag_button);
+            holder.deleteButton.setOnClickListener(deleteListener);
+            view.setTag(holder);
+
             return view;
         }
 
@@ -152,22 +357,91 @@ public class AddTagsPreference extends DialogPreference  {
 
             // Use either the convertView or create a new view
             View view = convertView == null ? createView(parent) : convertView;
-            final String tag = this.getItem(position);
+            ViewHolder holder = (ViewHolder) view.getTag();
+            String tag = getItem(position);
+
+            holder.textView.setText(tag);
+            holder.deleteButton.setTag(tag);
+
+            return view;
+        }
+    }
+
+    /**
+     * Adapter for the new tag autocomplete suggestions from the tag catalog
+     */
+    private class SuggestionsAdapter extends BaseAdapter implements Filterable {
+
+        private LayoutInflater inflater;
+        private List<String> suggestions = Collections.emptyList();
 
-            TextView textView = (TextView) view.findViewById(R.id.tag_text);
-            textView.setText(tag);
+        private final Filter filter = new Filter() {
+            @Override
+            protected FilterResults performFiltering(CharSequence prefix) {
+                FilterResults results = new FilterResults();
+                if (prefix == null || prefix.length() == 0) {
+                    return results;
+                }
 
+                // Only suggest tags that have not been added yet
+                List<String> matches = new ArrayList<String>();
+                for (String tag : catalogIndex.startingWith(prefix.toString(), MAX_SUGGESTIONS * 2)) {
+                    if (!tagIndex.contains(tag)) {
+                        matches.add(tag);
+                    }
 
-            ImageButton button = (ImageButton) view.findViewById(R.id.delete_tag_button);
-            button.setOnClickListener(new OnClickListener() {
+                    if (matches.size() == MAX_SUGGESTIONS) {
+                        break;
+                    }
+                }
+
+                results.values = matches;
+                results.count = matches.size();
+                return results;
+            }
 
-                @Override
-                public void onClick(View buttonView) {
-                    tags.remove(tag);
-                    TagsAdapter.this.notifyDataSetChanged();
+            @SuppressWarnings("unchecked")
+            @Override
+            protected void publishResults(CharSequence prefix, FilterResults results) {
+                if (results.values == null) {
+                    suggestions = Collections.emptyList();
+                    notifyDataSetInvalidated();
+                } else {
+                    suggestions = (List<String>) results.values;
+                    notifyDataSetChanged();
                 }
-            });
+            }
+        };
+
+        SuggestionsAdapter(Context context) {
+            inflater = (LayoutInflater) context.getSystemService(Context.LAYOUT_INFLATER_SERVICE);
+        }
 
+        @Override
+        public int getCount() {
+            return suggestions.size();
+        }
+
+        @Override
+        public String getItem(int position) {
+            return suggestions.get(position);
+        }
+
+        @Override
+        public long getItemId(int position) {
+            return position;
+        }
+
+        @Override
+        public Filter getFilter() {
+            return filter;
+        }
+
+        @Override
+        public View getView(int position, View convertView, ViewGroup parent) {
+            TextView view = (TextView) (convertView == null ?
+                    inflater.inflate(android.R.layout.simple_dropdown_item_1line, parent, false) : convertView);
+            view.setText(getItem(position));
             return view;
         }
     }
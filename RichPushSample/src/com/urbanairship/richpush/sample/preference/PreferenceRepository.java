@@ -0,0 +1,259 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.preference;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import com.urbanairship.UAirship;
+import com.urbanairship.location.LocationPreferences;
+import com.urbanairship.location.UALocationManager;
+import com.urbanairship.push.PushManager;
+import com.urbanairship.push.PushPreferences;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Loads the push and location preferences once on a background thread and
+ * caches them as an immutable snapshot, so preference screens can bind
+ * without reading from disk on the main thread.
+ *
+ */
+public class PreferenceRepository {
+
+    /**
+     * Receives the preference snapshot on the main thread
+     */
+    public interface Callback {
+        void onPreferencesLoaded(Snapshot snapshot);
+    }
+
+    private static final PreferenceRepository instance = new PreferenceRepository();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Callback> pendingCallbacks = new ArrayList<Callback>();
+
+    private Handler workerQueue;
+    private Snapshot snapshot;
+    private boolean loading;
+
+    private PreferenceRepository() {}
+
+    /**
+     * @return The shared PreferenceRepository
+     */
+    public static PreferenceRepository shared() {
+        return instance;
+    }
+
+    /**
+     * Loads the preferences in the background if they are not already loaded
+     */
+    public synchronized void load() {
+        if (snapshot != null || loading) {
+            return;
+        }
+
+        loading = true;
+        getWorkerQueue().post(new Runnable() {
+            @Override
+            public void run() {
+                Snapshot loaded = Snapshot.load();
+                synchronized (PreferenceRepository.this) {
+                    loading = false;
+                    snapshot = loaded;
+                }
+                deliverPendingCallbacks();
+            }
+        });
+    }
+
+    /**
+     * Reloads the preferences in the background, for example after
+     * they have been changed outside of the repository
+     */
+    public synchronized void reload() {
+        snapshot = null;
+        load();
+    }
+
+    /**
+     * Gets the preference snapshot. The callback is called immediately
+     * if the preferences are loaded, otherwise on the main thread once
+     * they are.
+     *
+     * @param callback The callback
+     */
+    public void get(Callback callback) {
+        Snapshot current;
+        synchronized (this) {
+            current = snapshot;
+            if (current == null) {
+                pendingCallbacks.add(callback);
+                load();
+                return;
+            }
+        }
+
+        callback.onPreferencesLoaded(current);
+    }
+
+    /**
+     * Removes a callback that is waiting for the preferences to load
+     * @param callback The callback
+     */
+    public synchronized void cancel(Callback callback) {
+        pendingCallbacks.remove(callback);
+    }
+
+    /**
+     * @return The cached snapshot, or null if it is not loaded yet
+     */
+    public synchronized Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Replaces the cached snapshot after a preference screen changes a value
+     * @param snapshot The new snapshot
+     */
+    public synchronized void update(Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    private void deliverPendingCallbacks() {
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                List<Callback> callbacks;
+                Snapshot current;
+                synchronized (PreferenceRepository.this) {
+                    current = snapshot;
+                    if (current == null) {
+                        return;
+                    }
+
+                    callbacks = new ArrayList<Callback>(pendingCallbacks);
+                    pendingCallbacks.clear();
+                }
+
+                for (Callback callback : callbacks) {
+                    callback.onPreferencesLoaded(current);
+                }
+            }
+        });
+    }
+
+    private Handler getWorkerQueue() {
+        if (workerQueue == null) {
+            HandlerThread workerThread = new HandlerThread("RichPushSample-Preferences");
+            workerThread.start();
+            workerQueue = new Handler(workerThread.getLooper());
+        }
+        return workerQueue;
+    }
+
+    /**
+     * An immutable snapshot of the push and location preferences
+     *
+     */
+    public static final class Snapshot {
+
+        public final boolean pushEnabled;
+        public final boolean soundEnabled;
+        public final boolean vibrateEnabled;
+        public final boolean quietTimeEnabled;
+        public final boolean locationEnabled;
+        public final boolean backgroundLocationEnabled;
+        public final String alias;
+
+        private final long quietTimeStart;
+        private final long quietTimeEnd;
+        private final Set<String> tags;
+
+        private Snapshot(boolean pushEnabled, boolean soundEnabled, boolean vibrateEnabled,
+                boolean quietTimeEnabled, long quietTimeStart, long quietTimeEnd,
+                boolean locationEnabled, boolean backgroundLocationEnabled,
+                String alias, Set<String> tags) {
+
+            this.pushEnabled = pushEnabled;
+            this.soundEnabled = soundEnabled;
+            this.vibrateEnabled = vibrateEnabled;
+            this.quietTimeEnabled = quietTimeEnabled;
+            this.quietTimeStart = quietTimeStart;
+            this.quietTimeEnd = quietTimeEnd;
+            this.locationEnabled = locationEnabled;
+            this.backgroundLocationEnabled = backgroundLocationEnabled;
+            this.alias = alias;
+            this.tags = Collections.unmodifiableSet(new LinkedHashSet<String>(tags));
+        }
+
+        /**
+         * Reads the preferences. Must not be called on the main thread.
+         * @return The snapshot
+         */
+        static Snapshot load() {
+            PushPreferences pushPrefs = PushManager.shared().getPreferences();
+
+            Date[] interval = pushPrefs.getQuietTimeInterval();
+            long quietTimeStart = interval == null ? -1 : interval[0].getTime();
+            long quietTimeEnd = interval == null ? -1 : interval[1].getTime();
+
+            boolean locationEnabled = false;
+            boolean backgroundLocationEnabled = false;
+            if (UAirship.shared().getAirshipConfigOptions().locationOptions.locationServiceEnabled) {
+                LocationPreferences locPrefs = UALocationManager.shared().getPreferences();
+                locationEnabled = locPrefs.isLocationEnabled();
+                backgroundLocationEnabled = locPrefs.isBackgroundLocationEnabled();
+            }
+
+            return new Snapshot(pushPrefs.isPushEnabled(), pushPrefs.isSoundEnabled(),
+                    pushPrefs.isVibrateEnabled(), pushPrefs.isQuietTimeEnabled(),
+                    quietTimeStart, quietTimeEnd, locationEnabled, backgroundLocationEnabled,
+                    pushPrefs.getAlias(), PushManager.shared().getTags());
+        }
+
+        /**
+         * @return The quiet time interval, or null if a quiet time interval hasn't been set
+         */
+        public Date[] getQuietTimeInterval() {
+            if (quietTimeStart == -1) {
+                return null;
+            }
+            return new Date[] { new Date(quietTimeStart), new Date(quietTimeEnd) };
+        }
+
+        /**
+         * @return An unmodifiable set of the tags
+         */
+        public Set<String> getTags() {
+            return tags;
+        }
+
+        /**
+         * @param alias The new alias
+         * @return A copy of the snapshot with a new alias
+         */
+        public Snapshot withAlias(String alias) {
+            return new Snapshot(pushEnabled, soundEnabled, vibrateEnabled, quietTimeEnabled,
+                    quietTimeStart, quietTimeEnd, locationEnabled, backgroundLocationEnabled, alias, tags);
+        }
+
+        /**
+         * @param tags The new tags
+         * @return A copy of the snapshot with new tags
+         */
+        public Snapshot withTags(Set<String> tags) {
+            return new Snapshot(pushEnabled, soundEnabled, vibrateEnabled, quietTimeEnabled,
+                    quietTimeStart, quietTimeEnd, locationEnabled, backgroundLocationEnabled, alias, tags);
+        }
+    }
+}
@@ -4,7 +4,13 @@
 
 package com.urbanairship.richpush.sample.preference;
 
+import android.annotation.SuppressLint;
+import android.content.pm.ApplicationInfo;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.StrictMode;
+import android.preference.Preference;
+import android.preference.PreferenceGroup;
 
 import com.actionbarsherlock.app.ActionBar;
 import com.actionbarsherlock.app.SherlockPreferenceActivity;
@@ -14,17 +20,40 @@ import com.urbanairship.UAirship;
 import com.urbanairship.preference.UAPreferenceAdapter;
 import com.urbanairship.richpush.sample.R;
 import com.urbanairship.richpush.sample.R.xml;
+import com.urbanairship.richpush.sample.quiettime.QuietTimeManager;
+import com.urbanairship.richpush.sample.registration.RegistrationCoalescer;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 // ActionBarSherlock does not support the new PreferenceFragment, so we fall back to using
 // deprecated methods. See https://github.com/JakeWharton/ActionBarSherlock/issues/411
 @SuppressWarnings("deprecation")
 public class PushPreferencesActivity extends SherlockPreferenceActivity {
 
+    // Must match the key of the push enable preference in push_preferences.xml
+    private static final String PUSH_ENABLE_KEY = "push_preference";
+
+    // Recompiles the quiet time schedule in order, off the main thread
+    private static final Executor preferenceExecutor = Executors.newSingleThreadExecutor();
+
     private UAPreferenceAdapter preferenceAdapter;
 
+    // The thread policy before StrictMode was enabled, a StrictMode.ThreadPolicy
+    // kept as an Object so the activity still loads before Gingerbread
+    private Object previousThreadPolicy;
+
+    private final PreferenceRepository.Callback bindCallback = new PreferenceRepository.Callback() {
+        @Override
+        public void onPreferencesLoaded(PreferenceRepository.Snapshot snapshot) {
+            bindPreferences();
+        }
+    };
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        enableStrictMode();
 
         // Set the actionBar to have up navigation
         ActionBar actionBar = getSupportActionBar();
@@ -33,7 +62,16 @@ public class PushPreferencesActivity extends SherlockPreferenceActivity {
                     ActionBar.DISPLAY_HOME_AS_UP, ActionBar.DISPLAY_HOME_AS_UP);
         }
 
+        // The UAPreferenceAdapter reads every UA preference when it is created and sets them
+        // on the preferences, which has to happen on the main thread. Build the screen once
+        // the repository has loaded the preferences on its worker thread instead of here.
+        PreferenceRepository.shared().get(bindCallback);
+    }
 
+    /**
+     * Adds the preferences to the screen and creates the UAPreferenceAdapter
+     */
+    private void bindPreferences() {
         AirshipConfigOptions options = UAirship.shared().getAirshipConfigOptions();
 
         // Only add the push preferences if the pushServiceEnabled is true
@@ -53,6 +91,19 @@ public class PushPreferencesActivity extends SherlockPreferenceActivity {
 
         // Creates the UAPreferenceAdapter with the entire preference screen
         preferenceAdapter = new UAPreferenceAdapter(getPreferenceScreen());
+
+        // Send push enablement with the alias and tags instead of through the adapter,
+        // this replaces the change listener the adapter set
+        Preference pushPreference = findPreference(PUSH_ENABLE_KEY);
+        if (pushPreference != null) {
+            pushPreference.setOnPreferenceChangeListener(new Preference.OnPreferenceChangeListener() {
+                @Override
+                public boolean onPreferenceChange(Preference preference, Object newValue) {
+                    RegistrationCoalescer.shared(getApplicationContext()).setPushEnabled((Boolean) newValue);
+                    return true;
+                }
+            });
+        }
     }
 
     @Override
@@ -79,7 +130,79 @@ public class PushPreferencesActivity extends SherlockPreferenceActivity {
         // Activity instrumentation for analytic tracking
         UAirship.shared().getAnalytics().activityStopped(this);
 
-        // Apply any changed UA preferences from the preference screen
+        // Nothing could have been changed if the preferences never loaded
+        if (preferenceAdapter == null) {
+            return;
+        }
+
+        // The adapter only tracks the UA preferences that were changed on the screen. Applying
+        // them calls the PushManager and UALocationManager setters, which stay on the main
+        // thread, then the quiet time schedule is recompiled from the preferences in the background
         preferenceAdapter.applyUrbanAirshipPreferences();
+        preferenceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                QuietTimeManager.shared().reload();
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+
+        PreferenceRepository.shared().cancel(bindCallback);
+        if (getPreferenceScreen() != null) {
+            cancelPreferenceLoads(getPreferenceScreen());
+        }
+
+        restoreStrictMode();
+    }
+
+    /**
+     * Stops the preferences on the screen from waiting for the repository
+     * @param group The preference group
+     */
+    private static void cancelPreferenceLoads(PreferenceGroup group) {
+        for (int i = 0; i < group.getPreferenceCount(); i++) {
+            Preference preference = group.getPreference(i);
+            if (preference instanceof PreferenceGroup) {
+                cancelPreferenceLoads((PreferenceGroup) preference);
+            } else if (preference instanceof SetAliasPreference) {
+                ((SetAliasPreference) preference).cancelLoad();
+            } else if (preference instanceof AddTagsPreference) {
+                ((AddTagsPreference) preference).cancelLoad();
+            }
+        }
+    }
+
+    /**
+     * Logs any disk reads or writes on the main thread in debug builds,
+     * until the activity is destroyed. Builds on the current policy, so the
+     * penaltyDeath the instrumentation tests set still applies.
+     */
+    @SuppressLint("NewApi")
+    private void enableStrictMode() {
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        if (debuggable && Build.VERSION.SDK_INT >= 9) {
+            previousThreadPolicy = StrictMode.getThreadPolicy();
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder(
+                    (StrictMode.ThreadPolicy) previousThreadPolicy)
+            .detectDiskReads()
+            .detectDiskWrites()
+            .penaltyLog()
+            .build());
+        }
+    }
+
+    /**
+     * Puts back the thread policy from before {@link #enableStrictMode()}
+     */
+    @SuppressLint("NewApi")
+    private void restoreStrictMode() {
+        if (previousThreadPolicy != null) {
+            StrictMode.setThreadPolicy((StrictMode.ThreadPolicy) previousThreadPolicy);
+            previousThreadPolicy = null;
+        }
     }
 }
@@ -11,7 +11,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.EditText;
 
-import com.urbanairship.push.PushManager;
+import com.urbanairship.richpush.sample.registration.RegistrationCoalescer;
 import com.urbanairship.util.UAStringUtil;
 
 /**
@@ -23,10 +23,29 @@ public class SetAliasPreference extends DialogPreference {
     private EditText editTextView;
     private String currentAlias;
 
+    private final PreferenceRepository.Callback loadCallback = new PreferenceRepository.Callback() {
+        @Override
+        public void onPreferencesLoaded(PreferenceRepository.Snapshot snapshot) {
+            currentAlias = snapshot.alias;
+            setEnabled(true);
+            notifyChanged();
+        }
+    };
+
     public SetAliasPreference(Context context, AttributeSet attrs) {
         super(context, attrs);
 
-        currentAlias = PushManager.shared().getPreferences().getAlias();
+        // Bind from the preference snapshot that is loaded off the main thread,
+        // the preference can not be edited until it is loaded
+        setEnabled(false);
+        PreferenceRepository.shared().get(loadCallback);
+    }
+
+    /**
+     * Stops waiting for the preferences to load, called when the screen is destroyed
+     */
+    void cancelLoad() {
+        PreferenceRepository.shared().cancel(loadCallback);
     }
 
     @Override
@@ -57,7 +76,12 @@ public class SetAliasPreference extends DialogPreference {
 
     private void setAlias(String alias) {
         currentAlias = UAStringUtil.isEmpty(alias) ? null : alias;
-        PushManager.shared().setAlias(currentAlias);
+        RegistrationCoalescer.shared(getContext()).setAlias(currentAlias);
+
+        PreferenceRepository repository = PreferenceRepository.shared();
+        if (repository.getSnapshot() != null) {
+            repository.update(repository.getSnapshot().withAlias(currentAlias));
+        }
     }
 
     @Override
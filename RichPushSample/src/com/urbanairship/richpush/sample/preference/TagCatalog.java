@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.preference;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+/**
+ * A locally cached catalog of every tag the user has set,
+ * used to autocomplete new tags.
+ *
+ * The catalog is read and written on a background thread.
+ *
+ */
+class TagCatalog {
+
+    private static final Executor executor = Executors.newSingleThreadExecutor();
+
+    private static final String PREFERENCES_NAME = "com.urbanairship.richpush.sample.tag_catalog";
+    private static final String TAGS_KEY = "tags";
+    private static final String SEPARATOR = "\n";
+
+    private final SharedPreferences preferences;
+
+    TagCatalog(Context context) {
+        preferences = context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Adds the known tags to an index in the background
+     * @param index The index to add the tags to
+     */
+    void loadInto(final TagTrie index) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                index.addAll(getTags());
+            }
+        });
+    }
+
+    /**
+     * Adds tags to the catalog in the background
+     * @param tags The tags to add
+     */
+    void addTags(final Collection<String> tags) {
+        executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                saveTags(tags);
+            }
+        });
+    }
+
+    private Set<String> getTags() {
+        Set<String> tags = new LinkedHashSet<String>();
+        String stored = preferences.getString(TAGS_KEY, null);
+        if (stored != null) {
+            for (String tag : stored.split(SEPARATOR)) {
+                if (tag.length() > 0) {
+                    tags.add(tag);
+                }
+            }
+        }
+        return tags;
+    }
+
+    private void saveTags(Collection<String> tags) {
+        Set<String> known = getTags();
+        if (!known.addAll(tags)) {
+            return;
+        }
+
+        StringBuilder builder = new StringBuilder();
+        for (String tag : known) {
+            builder.append(tag).append(SEPARATOR);
+        }
+        preferences.edit().putString(TAGS_KEY, builder.toString()).commit();
+    }
+}
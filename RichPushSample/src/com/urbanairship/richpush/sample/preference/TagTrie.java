@@ -0,0 +1,196 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.preference;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A prefix trie over tags for autocompletion and filtering.
+ *
+ * Tags that only differ by case are the same tag, the first one added is
+ * kept. Lookups are case insensitive and return the tags as they were
+ * added, in alphabetical order. A lookup only visits the nodes under the prefix,
+ * so it stays fast with tens of thousands of tags. All methods are
+ * synchronized because filtering runs on a background thread.
+ *
+ */
+public class TagTrie {
+
+    private Node root = new Node();
+    private int size;
+
+    /**
+     * Adds a tag
+     * @param tag The tag
+     * @return <code>true</code> if the tag was added, <code>false</code> if it already exists
+     */
+    public synchronized boolean add(String tag) {
+        Node node = root;
+        String key = normalize(tag);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrCreateChild(key.charAt(i));
+        }
+
+        if (node.tag != null) {
+            return false;
+        }
+
+        node.tag = tag;
+        size++;
+        return true;
+    }
+
+    /**
+     * Adds all the tags
+     * @param tags The tags
+     */
+    public synchronized void addAll(Iterable<String> tags) {
+        for (String tag : tags) {
+            add(tag);
+        }
+    }
+
+    /**
+     * Removes a tag
+     * @param tag The tag
+     * @return <code>true</code> if the tag was removed
+     */
+    public synchronized boolean remove(String tag) {
+        Node node = find(normalize(tag));
+        if (node == null || node.tag == null) {
+            return false;
+        }
+
+        // Empty nodes are left in place, they are cheap and are reused on the next add
+        node.tag = null;
+        size--;
+        return true;
+    }
+
+    /**
+     * @param tag The tag
+     * @return <code>true</code> if the trie contains the tag, ignoring case
+     */
+    public synchronized boolean contains(String tag) {
+        Node node = find(normalize(tag));
+        return node != null && node.tag != null;
+    }
+
+    /**
+     * Removes all the tags
+     */
+    public synchronized void clear() {
+        root = new Node();
+        size = 0;
+    }
+
+    /**
+     * @return The number of tags
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Finds the tags starting with a prefix
+     * @param prefix The prefix, ignoring case
+     * @param limit Maximum number of tags to return
+     * @return The matching tags in alphabetical order
+     */
+    public synchronized List<String> startingWith(String prefix, int limit) {
+        List<String> results = new ArrayList<String>();
+        Node node = find(normalize(prefix));
+        if (node != null) {
+            collect(node, results, limit);
+        }
+        return results;
+    }
+
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.getChild(key.charAt(i));
+        }
+        return node;
+    }
+
+    private static void collect(Node node, List<String> results, int limit) {
+        if (results.size() >= limit) {
+            return;
+        }
+
+        if (node.tag != null) {
+            results.add(node.tag);
+        }
+
+        for (int i = 0; i < node.childCount && results.size() < limit; i++) {
+            collect(node.children[i], results, limit);
+        }
+    }
+
+    private static String normalize(String tag) {
+        return tag == null ? "" : tag.toLowerCase(Locale.US);
+    }
+
+    /**
+     * Trie node with children kept in sorted arrays
+     */
+    private static class Node {
+        private char[] keys = new char[0];
+        private Node[] children = new Node[0];
+        private int childCount;
+        private String tag;
+
+        private Node getChild(char key) {
+            int index = indexOf(key);
+            return index >= 0 ? children[index] : null;
+        }
+
+        private Node getOrCreateChild(char key) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                return children[index];
+            }
+
+            int insertAt = -(index + 1);
+            if (childCount == keys.length) {
+                int capacity = Math.max(2, childCount * 2);
+                char[] newKeys = new char[capacity];
+                Node[] newChildren = new Node[capacity];
+                System.arraycopy(keys, 0, newKeys, 0, childCount);
+                System.arraycopy(children, 0, newChildren, 0, childCount);
+                keys = newKeys;
+                children = newChildren;
+            }
+
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, childCount - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+
+            Node child = new Node();
+            keys[insertAt] = key;
+            children[insertAt] = child;
+            childCount++;
+            return child;
+        }
+
+        private int indexOf(char key) {
+            int low = 0;
+            int high = childCount - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                if (keys[mid] < key) {
+                    low = mid + 1;
+                } else if (keys[mid] > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.preference;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Measures {@link TagTrie} prefix lookups against a linear scan of the same
+ * tags, for the autocomplete and tag list filter in {@link AddTagsPreference}.
+ *
+ * Runs on the JVM with <code>java TagTrieBenchmark [tags]</code> and throws an
+ * AssertionError if the trie and the scan disagree.
+ *
+ */
+public class TagTrieBenchmark {
+
+    /**
+     * Default number of tags
+     */
+    public static final int DEFAULT_TAGS = 10000;
+
+    private static final int LOOKUPS = 2000;
+    private static final int SUGGESTION_LIMIT = 40;
+
+    public static void main(String[] args) {
+        System.out.println(run(args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_TAGS));
+    }
+
+    /**
+     * Runs the benchmark
+     * @param count The number of tags
+     * @return The report
+     */
+    public static String run(int count) {
+        Random random = new Random(42);
+        List<String> tags = new ArrayList<String>(count);
+        for (int i = 0; i < count; i++) {
+            tags.add(randomTag(random));
+        }
+
+        TagTrie trie = new TagTrie();
+        long insertStart = System.nanoTime();
+        trie.addAll(tags);
+        long insertNs = System.nanoTime() - insertStart;
+
+        // Prefixes of one to three characters, as typed into the new tag field
+        String[] prefixes = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            String tag = tags.get(random.nextInt(count));
+            prefixes[i] = tag.substring(0, 1 + random.nextInt(Math.min(3, tag.length())));
+        }
+
+        long[] suggestNs = new long[LOOKUPS];
+        long[] filterNs = new long[LOOKUPS];
+        long[] scanNs = new long[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            long start = System.nanoTime();
+            trie.startingWith(prefixes[i], SUGGESTION_LIMIT);
+            suggestNs[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int matches = trie.startingWith(prefixes[i], Integer.MAX_VALUE).size();
+            filterNs[i] = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            int scanned = scan(tags, prefixes[i]);
+            scanNs[i] = System.nanoTime() - start;
+
+            if (matches != scanned) {
+                throw new AssertionError("Trie found " + matches + " tags starting with " + prefixes[i]
+                        + ", scan found " + scanned);
+            }
+        }
+
+        Arrays.sort(suggestNs);
+        Arrays.sort(filterNs);
+        Arrays.sort(scanNs);
+
+        return String.format(Locale.US, "Tag trie: %d tags (%d unique) inserted in %.1f ms; "
+                + "suggestions median %.1f us p95 %.1f us, full filter median %.1f us p95 %.1f us, "
+                + "linear scan median %.1f us p95 %.1f us",
+                count, trie.size(), insertNs / 1E6,
+                suggestNs[LOOKUPS / 2] / 1E3, suggestNs[LOOKUPS * 95 / 100] / 1E3,
+                filterNs[LOOKUPS / 2] / 1E3, filterNs[LOOKUPS * 95 / 100] / 1E3,
+                scanNs[LOOKUPS / 2] / 1E3, scanNs[LOOKUPS * 95 / 100] / 1E3);
+    }
+
+    /**
+     * Counts the unique tags starting with a prefix, ignoring case, the way
+     * the tag list was filtered before the trie
+     */
+    private static int scan(List<String> tags, String prefix) {
+        String lowerPrefix = prefix.toLowerCase(Locale.US);
+        Set<String> seen = new HashSet<String>();
+        for (String tag : tags) {
+            String lowerTag = tag.toLowerCase(Locale.US);
+            if (lowerTag.startsWith(lowerPrefix)) {
+                seen.add(lowerTag);
+            }
+        }
+        return seen.size();
+    }
+
+    /**
+     * @return A tag of one to three words, with some upper case
+     */
+    private static String randomTag(Random random) {
+        StringBuilder tag = new StringBuilder();
+        int words = 1 + random.nextInt(3);
+        for (int w = 0; w < words; w++) {
+            if (w > 0) {
+                tag.append('_');
+            }
+
+            int length = 3 + random.nextInt(6);
+            for (int i = 0; i < length; i++) {
+                char c = (char) ('a' + random.nextInt(26));
+                tag.append(random.nextInt(10) == 0 ? Character.toUpperCase(c) : c);
+            }
+        }
+        return tag.toString();
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.quiettime;
+
+import android.annotation.SuppressLint;
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.preference.PreferenceManager;
+
+import com.urbanairship.Logger;
+import com.urbanairship.UAirship;
+import com.urbanairship.push.PushManager;
+import com.urbanairship.push.PushPreferences;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.TimeZone;
+
+/**
+ * Manages the compiled quiet time schedule and the notifications
+ * held back while a quiet window is active.
+ *
+ * The schedule combines the Urban Airship quiet time interval, applied
+ * to every day, with any extra windows stored under
+ * <code>QUIET_TIME_WINDOWS_KEY</code>. It is only compiled when the
+ * preferences change, so checking it for each push is cheap.
+ *
+ */
+public class QuietTimeManager {
+
+    public static final String QUIET_TIME_WINDOWS_KEY = "quiet_time_windows_preference";
+
+    private static final String PREFERENCES_NAME = "com.urbanairship.richpush.sample.quiettime";
+    private static final String SUPPRESSED_ALERTS_KEY = "suppressed_alerts";
+
+    private static QuietTimeManager instance;
+
+    private final Context context;
+    private volatile QuietTimeSchedule schedule = QuietTimeSchedule.EMPTY;
+    private volatile TimeZone timeZone = TimeZone.getDefault();
+
+    private QuietTimeManager(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @return The shared QuietTimeManager
+     */
+    public static synchronized QuietTimeManager shared() {
+        if (instance == null) {
+            instance = new QuietTimeManager(UAirship.shared().getApplicationContext());
+            instance.reload();
+        }
+        return instance;
+    }
+
+    /**
+     * Recompiles the quiet time schedule from the current preferences.
+     *
+     * Should be called whenever the quiet time preferences change.
+     */
+    @SuppressWarnings("deprecation")
+    public void reload() {
+        PushPreferences prefs = PushManager.shared().getPreferences();
+        QuietTimeSchedule.Builder builder = new QuietTimeSchedule.Builder();
+
+        if (prefs.isQuietTimeEnabled()) {
+            Date[] interval = prefs.getQuietTimeInterval();
+
+            // This will be null if a quiet time interval hasn't been set
+            if (interval != null) {
+                builder.addWindow(QuietTimeSchedule.EVERY_DAY,
+                        interval[0].getHours() * 60 + interval[0].getMinutes(),
+                        interval[1].getHours() * 60 + interval[1].getMinutes());
+            }
+
+            String windows = PreferenceManager.getDefaultSharedPreferences(context)
+                    .getString(QUIET_TIME_WINDOWS_KEY, null);
+            try {
+                builder.addWindows(windows);
+            } catch (IllegalArgumentException e) {
+                Logger.error("Ignoring invalid quiet time windows: " + e.getMessage());
+            }
+        }
+
+        timeZone = TimeZone.getDefault();
+        schedule = builder.build();
+    }
+
+    /**
+     * Gets the time the current quiet window ends
+     * @param timeMs Time in milliseconds since the epoch
+     * @return The end of the quiet window in milliseconds, or -1 if not in quiet time
+     */
+    public long getQuietEnd(long timeMs) {
+        return schedule.getQuietEnd(timeMs, timeZone);
+    }
+
+    /**
+     * Holds an alert back until the quiet window ends
+     * @param alert The alert message from an Urban Airship push
+     * @param quietEndMs The end of the current quiet window in milliseconds
+     */
+    public synchronized void suppress(String alert, long quietEndMs) {
+        SharedPreferences prefs = getPreferences();
+
+        JSONArray alerts = readAlerts(prefs);
+        alerts.put(alert == null ? "" : alert);
+        // Called while building a notification, so do not wait on disk
+        save(prefs.edit().putString(SUPPRESSED_ALERTS_KEY, alerts.toString()));
+
+        scheduleRelease(quietEndMs);
+    }
+
+    /**
+     * Schedules the suppressed alerts to be released
+     * @param timeMs Time in milliseconds to release the alerts
+     */
+    public void scheduleRelease(long timeMs) {
+        // Replaces any existing alarm, so the summary is released once per window
+        Intent intent = new Intent(context, QuietTimeReceiver.class);
+        PendingIntent pendingIntent = PendingIntent.getBroadcast(context, 0, intent, PendingIntent.FLAG_UPDATE_CURRENT);
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        am.set(AlarmManager.RTC_WAKEUP, timeMs, pendingIntent);
+    }
+
+    /**
+     * Removes and returns the alerts held back during quiet time
+     * @return The suppressed alerts, oldest first
+     */
+    public synchronized List<String> releaseSuppressed() {
+        SharedPreferences prefs = getPreferences();
+
+        JSONArray alerts = readAlerts(prefs);
+        save(prefs.edit().remove(SUPPRESSED_ALERTS_KEY));
+
+        List<String> released = new ArrayList<String>(alerts.length());
+        for (int i = 0; i < alerts.length(); i++) {
+            released.add(alerts.optString(i));
+        }
+        return released;
+    }
+
+    /**
+     * Saves the changes, asynchronously when available. Reads see the
+     * change right away either way.
+     */
+    @SuppressLint("NewApi")
+    private void save(SharedPreferences.Editor editor) {
+        if (Build.VERSION.SDK_INT >= 9) {
+            editor.apply();
+        } else {
+            editor.commit();
+        }
+    }
+
+    private SharedPreferences getPreferences() {
+        return context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE);
+    }
+
+    private JSONArray readAlerts(SharedPreferences prefs) {
+        String stored = prefs.getString(SUPPRESSED_ALERTS_KEY, null);
+        if (stored != null) {
+            try {
+                return new JSONArray(stored);
+            } catch (JSONException e) {
+                Logger.error("Unable to read suppressed alerts: " + e.getMessage());
+            }
+        }
+        return new JSONArray();
+    }
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.quiettime;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+import com.urbanairship.Logger;
+import com.urbanairship.richpush.sample.RichNotificationBuilder;
+
+import java.util.List;
+
+/**
+ * Broadcast receiver that releases the notifications held back
+ * during a quiet window as a single summary notification
+ *
+ */
+public class QuietTimeReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        QuietTimeManager manager = QuietTimeManager.shared();
+
+        // The schedule may have changed since the alarm was set
+        long quietEnd = manager.getQuietEnd(System.currentTimeMillis());
+        if (quietEnd != -1) {
+            manager.scheduleRelease(quietEnd);
+            return;
+        }
+
+        List<String> alerts = manager.releaseSuppressed();
+        Logger.debug("Quiet time ended, releasing " + alerts.size() + " notifications");
+
+        if (!alerts.isEmpty()) {
+            RichNotificationBuilder.showQuietTimeSummary(alerts);
+        }
+    }
+}
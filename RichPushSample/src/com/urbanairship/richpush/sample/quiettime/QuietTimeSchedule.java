@@ -0,0 +1,343 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.quiettime;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * A compiled, immutable set of weekly quiet time windows.
+ *
+ * Windows are stored as minutes into the week (Sunday 00:00 is minute 0) and
+ * merged into sorted, non-overlapping intervals, so checking a time is a binary
+ * search that does not allocate any Calendar or Date objects.
+ *
+ */
+public class QuietTimeSchedule {
+
+    public static final int SUNDAY = 1;
+    public static final int MONDAY = 1 << 1;
+    public static final int TUESDAY = 1 << 2;
+    public static final int WEDNESDAY = 1 << 3;
+    public static final int THURSDAY = 1 << 4;
+    public static final int FRIDAY = 1 << 5;
+    public static final int SATURDAY = 1 << 6;
+    public static final int EVERY_DAY = 0x7F;
+
+    private static final String[] DAY_NAMES = new String[] {
+        "SUN", "MON", "TUE", "WED", "THU", "FRI", "SAT"
+    };
+
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int MINUTES_PER_WEEK = 7 * MINUTES_PER_DAY;
+    private static final long MILLIS_PER_MINUTE = 60 * 1000;
+    private static final long MILLIS_PER_DAY = MINUTES_PER_DAY * MILLIS_PER_MINUTE;
+
+    // 1970-01-01 was a Thursday
+    private static final int EPOCH_DAY_OF_WEEK = 4;
+
+    /**
+     * An empty schedule that is never quiet
+     */
+    public static final QuietTimeSchedule EMPTY = new QuietTimeSchedule(new int[0], new int[0]);
+
+    private final int[] starts;
+    private final int[] ends;
+
+    private QuietTimeSchedule(int[] starts, int[] ends) {
+        this.starts = starts;
+        this.ends = ends;
+    }
+
+    /**
+     * @return <code>true</code> if the schedule has no windows
+     */
+    public boolean isEmpty() {
+        return starts.length == 0;
+    }
+
+    /**
+     * Checks if the time is inside a quiet window
+     * @param timeMs Time in milliseconds since the epoch
+     * @param timeZone Time zone the windows are expressed in
+     * @return <code>true</code> if quiet, <code>false</code> otherwise
+     */
+    public boolean isQuiet(long timeMs, TimeZone timeZone) {
+        return getQuietEnd(timeMs, timeZone) != -1;
+    }
+
+    /**
+     * Gets the time the current quiet window ends
+     * @param timeMs Time in milliseconds since the epoch
+     * @param timeZone Time zone the windows are expressed in
+     * @return The end of the quiet window in milliseconds since the epoch, or -1
+     * if the time is not in a quiet window
+     */
+    public long getQuietEnd(long timeMs, TimeZone timeZone) {
+        if (starts.length == 0) {
+            return -1;
+        }
+
+        long localMs = timeMs + timeZone.getOffset(timeMs);
+        long epochDay = floorDiv(localMs, MILLIS_PER_DAY);
+        long msOfDay = localMs - epochDay * MILLIS_PER_DAY;
+        int dayOfWeek = (int) floorMod(epochDay + EPOCH_DAY_OF_WEEK, 7);
+        int minuteOfWeek = dayOfWeek * MINUTES_PER_DAY + (int) (msOfDay / MILLIS_PER_MINUTE);
+
+        int index = findWindow(minuteOfWeek);
+        if (index < 0) {
+            return -1;
+        }
+
+        int endMinute = ends[index];
+
+        // A window running to the end of the week continues into one starting the next week
+        if (endMinute == MINUTES_PER_WEEK && starts[0] == 0 && index != 0) {
+            endMinute += ends[0];
+        }
+
+        // The window ends at a local wall clock time, so convert it back with the
+        // offset in effect at the end in case a DST change falls inside the window
+        long msIntoMinute = msOfDay % MILLIS_PER_MINUTE;
+        long localEndMs = localMs - msIntoMinute + (endMinute - minuteOfWeek) * MILLIS_PER_MINUTE;
+        return localEndMs - timeZone.getOffset(localEndMs - timeZone.getOffset(timeMs));
+    }
+
+    /**
+     * Finds the window containing the minute of the week
+     * @param minuteOfWeek The minute of the week
+     * @return The window index, or -1 if not found
+     */
+    private int findWindow(int minuteOfWeek) {
+        int low = 0;
+        int high = starts.length - 1;
+        int candidate = -1;
+
+        // Find the last window that starts at or before the minute
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] <= minuteOfWeek) {
+                candidate = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        if (candidate >= 0 && minuteOfWeek < ends[candidate]) {
+            return candidate;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Parses a schedule from a specification such as
+     * <code>MON-FRI 22:00-07:00; SAT,SUN 23:30-09:00</code>
+     *
+     * Windows are separated by semicolons. Days may be listed, given as a range
+     * or omitted to apply to every day. A window that ends before it starts runs
+     * past midnight into the next day.
+     *
+     * @param spec The schedule specification
+     * @return The compiled schedule
+     * @throws IllegalArgumentException if the specification is malformed
+     */
+    public static QuietTimeSchedule parse(String spec) {
+        return new Builder().addWindows(spec).build();
+    }
+
+    private static int parseDays(String days) {
+        int mask = 0;
+        for (String part : days.split(",")) {
+            part = part.trim();
+            int dash = part.indexOf('-');
+            if (dash == -1) {
+                mask |= 1 << parseDay(part);
+                continue;
+            }
+
+            int day = parseDay(part.substring(0, dash));
+            int last = parseDay(part.substring(dash + 1));
+            while (true) {
+                mask |= 1 << day;
+                if (day == last) {
+                    break;
+                }
+                day = (day + 1) % 7;
+            }
+        }
+        return mask;
+    }
+
+    private static int parseDay(String day) {
+        String name = day.trim().toUpperCase(Locale.US);
+        for (int i = 0; i < DAY_NAMES.length; i++) {
+            if (DAY_NAMES[i].equals(name)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("Unknown day in quiet time window: " + day);
+    }
+
+    private static int parseMinuteOfDay(String time) {
+        String[] parts = time.trim().split(":");
+        if (parts.length != 2) {
+            throw new IllegalArgumentException("Invalid quiet time: " + time);
+        }
+
+        try {
+            int hour = Integer.parseInt(parts[0]);
+            int minute = Integer.parseInt(parts[1]);
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59) {
+                throw new IllegalArgumentException("Invalid quiet time: " + time);
+            }
+            return hour * 60 + minute;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid quiet time: " + time);
+        }
+    }
+
+    private static long floorDiv(long x, long y) {
+        long result = x / y;
+        if ((x % y != 0) && ((x < 0) != (y < 0))) {
+            result--;
+        }
+        return result;
+    }
+
+    private static long floorMod(long x, long y) {
+        return x - floorDiv(x, y) * y;
+    }
+
+    /**
+     * Builds a QuietTimeSchedule
+     *
+     */
+    public static class Builder {
+
+        private List<int[]> intervals = new ArrayList<int[]>();
+
+        /**
+         * Adds a quiet window
+         * @param dayMask The days the window starts on, a combination of the day constants
+         * @param startMinuteOfDay Minute of the day the window starts
+         * @param endMinuteOfDay Minute of the day the window ends. If it is not after
+         * the start the window ends on the following day.
+         * @return The builder
+         */
+        public Builder addWindow(int dayMask, int startMinuteOfDay, int endMinuteOfDay) {
+            if (startMinuteOfDay == endMinuteOfDay) {
+                return this;
+            }
+
+            int length = endMinuteOfDay - startMinuteOfDay;
+            if (length < 0) {
+                length += MINUTES_PER_DAY;
+            }
+
+            for (int day = 0; day < 7; day++) {
+                if ((dayMask & (1 << day)) == 0) {
+                    continue;
+                }
+
+                int start = day * MINUTES_PER_DAY + startMinuteOfDay;
+                int end = start + length;
+
+                // Split windows that wrap past the end of the week
+                if (end > MINUTES_PER_WEEK) {
+                    intervals.add(new int[] { start, MINUTES_PER_WEEK });
+                    intervals.add(new int[] { 0, end - MINUTES_PER_WEEK });
+                } else {
+                    intervals.add(new int[] { start, end });
+                }
+            }
+
+            return this;
+        }
+
+        /**
+         * Adds the windows from a specification. See {@link QuietTimeSchedule#parse(String)}.
+         * @param spec The schedule specification
+         * @return The builder
+         * @throws IllegalArgumentException if the specification is malformed
+         */
+        public Builder addWindows(String spec) {
+            if (spec == null) {
+                return this;
+            }
+
+            for (String window : spec.split(";")) {
+                window = window.trim();
+                if (window.length() == 0) {
+                    continue;
+                }
+
+                String days = null;
+                String times = window;
+                int space = window.lastIndexOf(' ');
+                if (space != -1) {
+                    days = window.substring(0, space).trim();
+                    times = window.substring(space + 1);
+                }
+
+                int dash = times.indexOf('-');
+                if (dash == -1) {
+                    throw new IllegalArgumentException("Missing time range in quiet time window: " + window);
+                }
+
+                addWindow(days == null ? EVERY_DAY : parseDays(days),
+                        parseMinuteOfDay(times.substring(0, dash)),
+                        parseMinuteOfDay(times.substring(dash + 1)));
+            }
+
+            return this;
+        }
+
+        /**
+         * Sorts and merges the windows into a schedule
+         * @return The compiled schedule
+         */
+        public QuietTimeSchedule build() {
+            if (intervals.isEmpty()) {
+                return EMPTY;
+            }
+
+            List<int[]> sorted = new ArrayList<int[]>(intervals);
+            Collections.sort(sorted, new Comparator<int[]>() {
+                @Override
+                public int compare(int[] lhs, int[] rhs) {
+                    return lhs[0] < rhs[0] ? -1 : (lhs[0] == rhs[0] ? 0 : 1);
+                }
+            });
+
+            List<int[]> merged = new ArrayList<int[]>();
+            int[] current = new int[] { sorted.get(0)[0], sorted.get(0)[1] };
+            for (int i = 1; i < sorted.size(); i++) {
+                int[] next = sorted.get(i);
+                if (next[0] <= current[1]) {
+                    current[1] = Math.max(current[1], next[1]);
+                } else {
+                    merged.add(current);
+                    current = new int[] { next[0], next[1] };
+                }
+            }
+            merged.add(current);
+
+            int[] starts = new int[merged.size()];
+            int[] ends = new int[merged.size()];
+            for (int i = 0; i < merged.size(); i++) {
+                starts[i] = merged.get(i)[0];
+                ends[i] = merged.get(i)[1];
+            }
+
+            return new QuietTimeSchedule(starts, ends);
+        }
+    }
+}
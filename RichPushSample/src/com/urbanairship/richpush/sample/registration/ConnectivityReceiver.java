@@ -0,0 +1,23 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.registration;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Replays pending registration changes when connectivity returns.
+ *
+ * Only enabled by the RegistrationCoalescer while changes are pending.
+ *
+ */
+public class ConnectivityReceiver extends BroadcastReceiver {
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        RegistrationCoalescer.shared(context).replay();
+    }
+}
@@ -0,0 +1,320 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.registration;
+
+import android.annotation.SuppressLint;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.content.pm.PackageManager;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+
+import com.urbanairship.Logger;
+
+import java.util.LinkedHashSet;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Coalesces alias, tag and push enablement changes into a single
+ * registration update.
+ *
+ * Pending changes are persisted so they survive process death. They are
+ * sent shortly after the last change, and if the device is offline or the
+ * update fails they are replayed when connectivity returns, with an
+ * exponential backoff and random jitter between attempts.
+ *
+ */
+public class RegistrationCoalescer {
+
+    /**
+     * Time to wait for more changes before sending an update
+     */
+    private static final long COALESCE_DELAY_MS = 1000; // 1 second
+
+    private static final long INITIAL_BACKOFF_MS = 5000; // 5 seconds
+    private static final long MAX_BACKOFF_MS = 30 * 60 * 1000; // 30 minutes
+
+    private static final String PREFERENCES_NAME = "com.urbanairship.richpush.sample.pending_registration";
+    private static final String PUSH_ENABLED_KEY = "push_enabled";
+    private static final String ALIAS_CHANGED_KEY = "alias_changed";
+    private static final String ALIAS_KEY = "alias";
+    private static final String TAGS_KEY = "tags";
+    private static final String ATTEMPTS_KEY = "attempts";
+    private static final String SEPARATOR = "\n";
+
+    private static RegistrationCoalescer instance;
+
+    private final Context context;
+    private final SharedPreferences preferences;
+    private final RegistrationEndpoint endpoint;
+    private final Handler workerQueue;
+    private final Random random = new Random();
+    private Boolean connectivityReceiverEnabled;
+
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            flush();
+        }
+    };
+
+    /**
+     * Creates a new RegistrationCoalescer
+     * @param context Application context
+     * @param endpoint The endpoint to send updates to
+     */
+    public RegistrationCoalescer(Context context, RegistrationEndpoint endpoint) {
+        this(context, endpoint, PREFERENCES_NAME);
+    }
+
+    /**
+     * Creates a new RegistrationCoalescer
+     * @param context Application context
+     * @param endpoint The endpoint to send updates to
+     * @param preferencesName Name of the shared preferences the pending changes are stored in
+     */
+    RegistrationCoalescer(Context context, RegistrationEndpoint endpoint, String preferencesName) {
+        this.context = context;
+        this.endpoint = endpoint;
+        this.preferences = context.getSharedPreferences(preferencesName, Context.MODE_PRIVATE);
+
+        HandlerThread workerThread = new HandlerThread("RichPushSample-Registration");
+        workerThread.start();
+        this.workerQueue = new Handler(workerThread.getLooper());
+    }
+
+    /**
+     * @param context Application context
+     * @return The shared RegistrationCoalescer
+     */
+    public static synchronized RegistrationCoalescer shared(Context context) {
+        if (instance == null) {
+            instance = new RegistrationCoalescer(context.getApplicationContext(), new UrbanAirshipEndpoint());
+        }
+        return instance;
+    }
+
+    /**
+     * Sets the alias in the next registration update
+     * @param alias The alias, or null to clear it
+     */
+    public synchronized void setAlias(String alias) {
+        save(preferences.edit()
+                .putBoolean(ALIAS_CHANGED_KEY, true)
+                .putString(ALIAS_KEY, alias));
+
+        scheduleFlush(COALESCE_DELAY_MS);
+    }
+
+    /**
+     * Sets the tags in the next registration update
+     * @param tags The tags
+     */
+    public synchronized void setTags(Set<String> tags) {
+        StringBuilder builder = new StringBuilder();
+        for (String tag : tags) {
+            builder.append(tag).append(SEPARATOR);
+        }
+
+        save(preferences.edit().putString(TAGS_KEY, builder.toString()));
+        scheduleFlush(COALESCE_DELAY_MS);
+    }
+
+    /**
+     * Sets the push enablement in the next registration update
+     * @param enabled <code>true</code> to enable push, <code>false</code> to disable it
+     */
+    public synchronized void setPushEnabled(boolean enabled) {
+        save(preferences.edit().putBoolean(PUSH_ENABLED_KEY, enabled));
+        scheduleFlush(COALESCE_DELAY_MS);
+    }
+
+    /**
+     * @return <code>true</code> if there are changes waiting to be sent
+     */
+    public synchronized boolean hasPendingChanges() {
+        return preferences.contains(PUSH_ENABLED_KEY)
+                || preferences.getBoolean(ALIAS_CHANGED_KEY, false)
+                || preferences.contains(TAGS_KEY);
+    }
+
+    /**
+     * Replays any pending changes. Called on startup and when connectivity returns.
+     */
+    public void replay() {
+        // Check on the worker thread so reading the pending changes does not block the caller
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                if (hasPendingChanges()) {
+                    scheduleFlush(0);
+                }
+            }
+        });
+    }
+
+    private void scheduleFlush(long delayMs) {
+        // Wait for connectivity to replay the changes
+        setConnectivityReceiverEnabled(true);
+
+        workerQueue.removeCallbacks(flushRunnable);
+        workerQueue.postDelayed(flushRunnable, delayMs);
+    }
+
+    /**
+     * Sends the pending changes as a single update
+     */
+    private void flush() {
+        Boolean pushEnabled;
+        boolean aliasChanged;
+        String alias;
+        Set<String> tags;
+        int attempts;
+
+        synchronized (this) {
+            if (!hasPendingChanges()) {
+                setConnectivityReceiverEnabled(false);
+                return;
+            }
+
+            if (!isConnected()) {
+                Logger.debug("Offline, registration update will be sent when connectivity returns");
+                return;
+            }
+
+            pushEnabled = preferences.contains(PUSH_ENABLED_KEY) ? preferences.getBoolean(PUSH_ENABLED_KEY, true) : null;
+            aliasChanged = preferences.getBoolean(ALIAS_CHANGED_KEY, false);
+            alias = preferences.getString(ALIAS_KEY, null);
+            tags = readTags();
+            attempts = preferences.getInt(ATTEMPTS_KEY, 0);
+
+            // Clear the changes being sent, any changes made while sending stay pending
+            preferences.edit()
+            .remove(PUSH_ENABLED_KEY)
+            .remove(ALIAS_CHANGED_KEY)
+            .remove(ALIAS_KEY)
+            .remove(TAGS_KEY)
+            .commit();
+        }
+
+        boolean sent;
+        try {
+            sent = endpoint.update(pushEnabled, aliasChanged, alias, tags);
+        } catch (Exception e) {
+            Logger.error("Failed to send registration update", e);
+            sent = false;
+        }
+
+        synchronized (this) {
+            if (sent) {
+                preferences.edit().remove(ATTEMPTS_KEY).commit();
+                if (!hasPendingChanges()) {
+                    setConnectivityReceiverEnabled(false);
+                }
+                return;
+            }
+
+            restore(pushEnabled, aliasChanged, alias, tags);
+            preferences.edit().putInt(ATTEMPTS_KEY, attempts + 1).commit();
+
+            long delay = getBackoff(attempts);
+            Logger.debug("Registration update failed, retrying in " + delay + "ms");
+            scheduleFlush(delay);
+        }
+    }
+
+    /**
+     * Puts changes that failed to send back, unless newer changes replaced them
+     */
+    private void restore(Boolean pushEnabled, boolean aliasChanged, String alias, Set<String> tags) {
+        SharedPreferences.Editor editor = preferences.edit();
+
+        if (pushEnabled != null && !preferences.contains(PUSH_ENABLED_KEY)) {
+            editor.putBoolean(PUSH_ENABLED_KEY, pushEnabled);
+        }
+
+        if (aliasChanged && !preferences.getBoolean(ALIAS_CHANGED_KEY, false)) {
+            editor.putBoolean(ALIAS_CHANGED_KEY, true).putString(ALIAS_KEY, alias);
+        }
+
+        if (tags != null && !preferences.contains(TAGS_KEY)) {
+            StringBuilder builder = new StringBuilder();
+            for (String tag : tags) {
+                builder.append(tag).append(SEPARATOR);
+            }
+            editor.putString(TAGS_KEY, builder.toString());
+        }
+
+        editor.commit();
+    }
+
+    /**
+     * Gets the exponential backoff with full jitter for an attempt
+     * @param attempts Number of failed attempts
+     * @return The delay in milliseconds
+     */
+    private long getBackoff(int attempts) {
+        long backoff = INITIAL_BACKOFF_MS << Math.min(attempts, 16);
+        backoff = Math.min(backoff, MAX_BACKOFF_MS);
+
+        // Spread retries out so devices do not retry in lock step
+        return backoff / 2 + (long) (random.nextDouble() * (backoff / 2));
+    }
+
+    /**
+     * Saves the changes, asynchronously when available so callers on the
+     * main thread do not wait on disk
+     */
+    @SuppressLint("NewApi")
+    private void save(SharedPreferences.Editor editor) {
+        if (Build.VERSION.SDK_INT >= 9) {
+            editor.apply();
+        } else {
+            editor.commit();
+        }
+    }
+
+    private Set<String> readTags() {
+        String stored = preferences.getString(TAGS_KEY, null);
+        if (stored == null) {
+            return null;
+        }
+
+        Set<String> tags = new LinkedHashSet<String>();
+        for (String tag : stored.split(SEPARATOR)) {
+            if (tag.length() > 0) {
+                tags.add(tag);
+            }
+        }
+        return tags;
+    }
+
+    private boolean isConnected() {
+        ConnectivityManager cm = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        NetworkInfo info = cm.getActiveNetworkInfo();
+        return info != null && info.isConnected();
+    }
+
+    /**
+     * Only listen for connectivity changes while changes are pending
+     */
+    private synchronized void setConnectivityReceiverEnabled(boolean enabled) {
+        if (connectivityReceiverEnabled != null && connectivityReceiverEnabled == enabled) {
+            return;
+        }
+
+        connectivityReceiverEnabled = enabled;
+        ComponentName receiver = new ComponentName(context, ConnectivityReceiver.class);
+        int state = enabled ? PackageManager.COMPONENT_ENABLED_STATE_ENABLED :
+            PackageManager.COMPONENT_ENABLED_STATE_DISABLED;
+
+        context.getPackageManager().setComponentEnabledSetting(receiver, state, PackageManager.DONT_KILL_APP);
+    }
+}
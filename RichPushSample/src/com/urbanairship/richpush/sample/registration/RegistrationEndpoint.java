@@ -0,0 +1,24 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.registration;
+
+import java.util.Set;
+
+/**
+ * Sends a coalesced registration update
+ *
+ */
+public interface RegistrationEndpoint {
+
+    /**
+     * Sends the registration update
+     * @param pushEnabled The push enablement, or null if unchanged
+     * @param aliasChanged <code>true</code> if the alias changed
+     * @param alias The alias
+     * @param tags The tags, or null if unchanged
+     * @return <code>true</code> if the update was sent, <code>false</code> to retry later
+     */
+    boolean update(Boolean pushEnabled, boolean aliasChanged, String alias, Set<String> tags);
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.registration;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.urbanairship.Logger;
+import com.urbanairship.push.PushManager;
+
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sends registration updates through the Urban Airship PushManager.
+ *
+ * The PushManager setters are called on the main thread, like every other
+ * caller in the app. The update fails, and is retried by the
+ * {@link RegistrationCoalescer}, if the setters throw or the main thread
+ * does not run them in time. Once the PushManager has the changes the
+ * library registers them and handles its own network retries.
+ *
+ */
+class UrbanAirshipEndpoint implements RegistrationEndpoint {
+
+    private static final long MAIN_THREAD_TIMEOUT_MS = 10000; // 10 seconds
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    @Override
+    public boolean update(final Boolean pushEnabled, final boolean aliasChanged, final String alias, final Set<String> tags) {
+        final CountDownLatch applied = new CountDownLatch(1);
+        final boolean[] success = new boolean[1];
+
+        Runnable applyRunnable = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    apply(pushEnabled, aliasChanged, alias, tags);
+                    success[0] = true;
+                } catch (RuntimeException e) {
+                    Logger.error("PushManager rejected the registration update", e);
+                } finally {
+                    applied.countDown();
+                }
+            }
+        };
+
+        mainHandler.post(applyRunnable);
+
+        try {
+            if (!applied.await(MAIN_THREAD_TIMEOUT_MS, TimeUnit.MILLISECONDS)) {
+                // The retry sends the update again, so do not apply this one late
+                mainHandler.removeCallbacks(applyRunnable);
+                Logger.debug("Timed out waiting for the main thread to apply the registration update");
+                return false;
+            }
+        } catch (InterruptedException e) {
+            mainHandler.removeCallbacks(applyRunnable);
+            Thread.currentThread().interrupt();
+            return false;
+        }
+
+        // The countdown publishes the result written on the main thread
+        return success[0];
+    }
+
+    private void apply(Boolean pushEnabled, boolean aliasChanged, String alias, Set<String> tags) {
+        if (pushEnabled != null) {
+            if (pushEnabled) {
+                PushManager.enablePush();
+            } else {
+                PushManager.disablePush();
+            }
+        }
+
+        if (aliasChanged || tags != null) {
+            // Send the alias and tags together in a single update
+            PushManager pushManager = PushManager.shared();
+            pushManager.setAliasAndTags(aliasChanged ? alias : pushManager.getPreferences().getAlias(),
+                    tags != null ? tags : pushManager.getTags());
+        }
+    }
+}
@@ -24,22 +24,14 @@ public class RichPushWidgetProvider extends AppWidgetProvider {
     public static String OPEN_MESSAGE_ACTION = "com.urbanairship.richpush.sample.widget.OPEN_MESSAGE";
     public static String REFRESH_ACTION = "com.urbanairship.richpush.sample.widget.REFRESH";
 
-    private static HandlerThread workerThread;
     private static Handler workerQueue;
 
-    public RichPushWidgetProvider() {
-        // Start the worker thread
-        workerThread = new HandlerThread("RichPushSampleInbox-Provider");
-        workerThread.start();
-        workerQueue = new Handler(workerThread.getLooper());
-    }
-
     @Override
     public void onReceive(Context context, Intent intent) {
         String action = intent.getAction();
 
         if (action.equals(REFRESH_ACTION)) {
-            scheduleUpdate(context);
+            updateWidgets(context);
         }
 
         super.onReceive(context, intent);
@@ -47,7 +39,14 @@ public class RichPushWidgetProvider extends AppWidgetProvider {
 
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        // Update each of the widgets with the remote adapter
+        updateLayouts(context, appWidgetManager, appWidgetIds);
+        super.onUpdate(context, appWidgetManager, appWidgetIds);
+    }
+
+    /**
+     * Updates each of the widgets with the remote adapter
+     */
+    private static void updateLayouts(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
         for (int id : appWidgetIds) {
             RemoteViews layout = null;
 
@@ -61,7 +60,6 @@ public class RichPushWidgetProvider extends AppWidgetProvider {
 
             appWidgetManager.updateAppWidget(id, layout);
         }
-        super.onUpdate(context, appWidgetManager, appWidgetIds);
     }
 
     @Override
@@ -75,17 +73,19 @@ public class RichPushWidgetProvider extends AppWidgetProvider {
     }
 
     /**
-     * Adds a runnable to update the widgets in the worker queue
+     * Adds a runnable to update the widgets in the worker queue. Called for
+     * refresh broadcasts and directly for in-process refresh requests.
      * @param context used for creating layouts
      */
-    private void scheduleUpdate(final Context context) {
-        workerQueue.removeMessages(0);
-        workerQueue.post(new Runnable() {
+    static void updateWidgets(final Context context) {
+        Handler queue = getWorkerQueue();
+        queue.removeMessages(0);
+        queue.post(new Runnable() {
             @Override
             public void run() {
                 AppWidgetManager mgr = AppWidgetManager.getInstance(context);
                 ComponentName cn = new ComponentName(context, RichPushWidgetProvider.class);
-                onUpdate(context, mgr, mgr.getAppWidgetIds(cn));
+                updateLayouts(context, mgr, mgr.getAppWidgetIds(cn));
 
                 if (Build.VERSION.SDK_INT >= 11) {
                     mgr.notifyAppWidgetViewDataChanged(mgr.getAppWidgetIds(cn), R.id.message_list);
@@ -93,4 +93,14 @@ public class RichPushWidgetProvider extends AppWidgetProvider {
             }
         });
     }
+
+    private static synchronized Handler getWorkerQueue() {
+        // Started once, a new provider instance is created for every broadcast
+        if (workerQueue == null) {
+            HandlerThread workerThread = new HandlerThread("RichPushSampleInbox-Provider");
+            workerThread.start();
+            workerQueue = new Handler(workerThread.getLooper());
+        }
+        return workerQueue;
+    }
 }
\ No newline at end of file
@@ -9,12 +9,37 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 
+import com.urbanairship.sample.common.EventBus;
+
 /**
  * Utility class to help refresh the rich push inbox widget
  *
  */
 public class RichPushWidgetUtils {
 
+    /**
+     * Held here because the event bus only keeps weak references
+     */
+    private static EventBus.Subscriber<WidgetRefreshEvent> refreshSubscriber;
+
+    /**
+     * Handles immediate refresh requests in-process instead of through a broadcast
+     * @param context Application context
+     */
+    public static synchronized void registerRefreshSubscriber(final Context context) {
+        if (refreshSubscriber != null) {
+            return;
+        }
+
+        refreshSubscriber = new EventBus.Subscriber<WidgetRefreshEvent>() {
+            @Override
+            public void onEvent(WidgetRefreshEvent event) {
+                RichPushWidgetProvider.updateWidgets(context);
+            }
+        };
+        EventBus.shared().subscribe(WidgetRefreshEvent.class, refreshSubscriber, EventBus.DELIVER_POSTING);
+    }
+
     /**
      * Sends a request to the rich push message to refresh
      * @param context Application context
@@ -29,6 +54,11 @@ public class RichPushWidgetUtils {
      * @param delayInMs Delay to wait in milliseconds before sending the request
      */
     public static void refreshWidget(Context context, long delayInMs) {
+        // The update already runs on the provider's worker thread, so post it directly
+        if (delayInMs <= 0 && EventBus.shared().post(new WidgetRefreshEvent()) > 0) {
+            return;
+        }
+
         Intent refreshIntent = new Intent(context, RichPushWidgetProvider.class);
         refreshIntent.setAction(RichPushWidgetProvider.REFRESH_ACTION);
 
@@ -0,0 +1,13 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.widget;
+
+/**
+ * Requests a refresh of the inbox widgets, delivered in-process
+ * through the {@link com.urbanairship.sample.common.EventBus}
+ *
+ */
+public class WidgetRefreshEvent {
+}
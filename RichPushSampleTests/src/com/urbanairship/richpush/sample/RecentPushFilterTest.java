@@ -0,0 +1,130 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Tests that the {@link RecentPushFilter} drops duplicates, evicts the
+ * least recently added ids first and keeps its ids and their order across
+ * a restart.
+ *
+ */
+public class RecentPushFilterTest extends InstrumentationTestCase {
+
+    private static final String PREFERENCES_NAME = "com.urbanairship.richpush.sample.recent_pushes_test";
+
+    private Context context;
+    private final List<RecentPushFilter> filters = new ArrayList<RecentPushFilter>();
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        context = getInstrumentation().getTargetContext();
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        for (RecentPushFilter filter : filters) {
+            filter.quit();
+        }
+        filters.clear();
+
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+        super.tearDown();
+    }
+
+    public void testDuplicates() {
+        RecentPushFilter filter = createFilter();
+        assertFalse("Empty filter contains nothing", filter.contains(messageId(0)));
+
+        assertTrue("New id is not a duplicate", filter.add(messageId(0)));
+        assertTrue("Added id is contained", filter.contains(messageId(0)));
+        assertFalse("Second delivery is a duplicate", filter.add(messageId(0)));
+
+        assertTrue("Missing ids are never dropped", filter.add(null));
+        assertFalse("Missing ids are never contained", filter.contains(null));
+    }
+
+    public void testEvictsOldestFirst() {
+        RecentPushFilter filter = createFilter();
+        fill(filter, 0, RecentPushFilter.MAX_IDS);
+
+        // The first new id past the limit evicts the oldest id only
+        filter.add(messageId(RecentPushFilter.MAX_IDS));
+        assertFalse("Oldest id was evicted", filter.contains(messageId(0)));
+        assertTrue("Second oldest id is kept", filter.contains(messageId(1)));
+        assertTrue("Newest id is kept", filter.contains(messageId(RecentPushFilter.MAX_IDS)));
+
+        // Each later id evicts the next oldest, in the order they were added
+        for (int i = 1; i <= RecentPushFilter.MAX_IDS; i++) {
+            filter.add(messageId(RecentPushFilter.MAX_IDS + i));
+            assertFalse("Id " + i + " was evicted", filter.contains(messageId(i)));
+            if (i < RecentPushFilter.MAX_IDS) {
+                assertTrue("Id " + (i + 1) + " is kept", filter.contains(messageId(i + 1)));
+            }
+        }
+    }
+
+    public void testDuplicateRefreshesRecency() {
+        RecentPushFilter filter = createFilter();
+        fill(filter, 0, RecentPushFilter.MAX_IDS);
+
+        // A redelivery of the oldest id makes it the newest, so the next oldest goes instead
+        assertFalse("Redelivery is a duplicate", filter.add(messageId(0)));
+        filter.add(messageId(RecentPushFilter.MAX_IDS));
+
+        assertTrue("Redelivered id is kept", filter.contains(messageId(0)));
+        assertFalse("Next oldest id was evicted", filter.contains(messageId(1)));
+
+        // Checking an id does not refresh it
+        assertTrue(filter.contains(messageId(2)));
+        filter.add(messageId(RecentPushFilter.MAX_IDS + 1));
+        assertFalse("Checked id was still evicted in order", filter.contains(messageId(2)));
+    }
+
+    public void testSurvivesRestart() {
+        RecentPushFilter filter = createFilter();
+        fill(filter, 0, RecentPushFilter.MAX_IDS);
+        filter.save();
+
+        // A new filter on the same preferences stands in for a process restart
+        RecentPushFilter restarted = createFilter();
+        for (int i = 0; i < RecentPushFilter.MAX_IDS; i++) {
+            assertTrue("Id " + i + " survives a restart", restarted.contains(messageId(i)));
+        }
+
+        // The eviction order is restored too
+        restarted.add(messageId(RecentPushFilter.MAX_IDS));
+        assertFalse("Oldest id is still evicted first", restarted.contains(messageId(0)));
+        assertTrue("Second oldest id is kept", restarted.contains(messageId(1)));
+    }
+
+    private RecentPushFilter createFilter() {
+        RecentPushFilter filter = new RecentPushFilter(context, PREFERENCES_NAME);
+        filters.add(filter);
+        return filter;
+    }
+
+    private static void fill(RecentPushFilter filter, int start, int count) {
+        for (int i = start; i < start + count; i++) {
+            assertTrue("New id " + i + " is not a duplicate", filter.add(messageId(i)));
+        }
+    }
+
+    /**
+     * @return A message id shaped like the ones the API sends
+     */
+    private static String messageId(int index) {
+        return String.format(Locale.US, "%08x-b1e5-11e2-%04x-0024811f%04x", index * 2654435761L & 0xffffffffL, index & 0xffff, index >> 16);
+    }
+}
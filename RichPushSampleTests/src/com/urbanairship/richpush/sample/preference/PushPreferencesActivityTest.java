@@ -0,0 +1,142 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.preference;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.os.StrictMode;
+import android.preference.CheckBoxPreference;
+import android.preference.Preference;
+import android.preference.PreferenceManager;
+import android.test.ActivityInstrumentationTestCase2;
+import android.view.KeyEvent;
+import android.widget.ListView;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives the preference screen with StrictMode set to kill the process on
+ * any disk read or write on the main thread. The activity builds its own
+ * policy on top of this one, so loading, binding, clicking every preference
+ * and closing the screen must all stay off the disk on the main thread.
+ *
+ */
+@SuppressLint("NewApi")
+public class PushPreferencesActivityTest extends ActivityInstrumentationTestCase2<PushPreferencesActivity> {
+
+    private static final long BIND_TIMEOUT_MS = 10000; // 10 seconds
+
+    private StrictMode.ThreadPolicy previousThreadPolicy;
+
+    public PushPreferencesActivityTest() {
+        super(PushPreferencesActivity.class);
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        // Key events select and click the preferences
+        setActivityInitialTouchMode(false);
+
+        // The framework reads the default preferences on the main thread the first time
+        // they are used, load them here so only the app's own disk access is caught
+        PreferenceManager.getDefaultSharedPreferences(getInstrumentation().getTargetContext()).getAll();
+
+        if (Build.VERSION.SDK_INT >= 9) {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    previousThreadPolicy = StrictMode.getThreadPolicy();
+                    StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        super.tearDown();
+
+        if (previousThreadPolicy != null) {
+            getInstrumentation().runOnMainSync(new Runnable() {
+                @Override
+                public void run() {
+                    StrictMode.setThreadPolicy(previousThreadPolicy);
+                }
+            });
+            previousThreadPolicy = null;
+        }
+    }
+
+    public void testClickEveryPreference() throws InterruptedException {
+        PushPreferencesActivity activity = getActivity();
+        awaitBind();
+
+        final ListView list = activity.getListView();
+        int count = list.getCount();
+        assertTrue("Preferences were bound", count > 0);
+
+        for (int i = 0; i < count; i++) {
+            Object item = list.getItemAtPosition(i);
+            if (!(item instanceof Preference) || !((Preference) item).isSelectable()
+                    || !((Preference) item).isEnabled()) {
+                continue;
+            }
+
+            select(list, i);
+            getInstrumentation().sendKeyDownUpSync(KeyEvent.KEYCODE_DPAD_CENTER);
+            getInstrumentation().waitForIdleSync();
+
+            if (item instanceof CheckBoxPreference) {
+                // Put the value back so the test leaves the preferences as it found them
+                select(list, i);
+                getInstrumentation().sendKeyDownUpSync(KeyEvent.KEYCODE_DPAD_CENTER);
+                getInstrumentation().waitForIdleSync();
+            } else if (!activity.hasWindowFocus()) {
+                // Cancel the dialog the preference opened
+                getInstrumentation().sendKeyDownUpSync(KeyEvent.KEYCODE_BACK);
+                getInstrumentation().waitForIdleSync();
+            }
+        }
+
+        // Closing the screen applies the changed preferences
+        activity.finish();
+        getInstrumentation().waitForIdleSync();
+    }
+
+    /**
+     * Waits for the screen to be bound. The activity asks the repository for the
+     * preferences first, so they have been bound once this callback is called.
+     */
+    private void awaitBind() throws InterruptedException {
+        final CountDownLatch bound = new CountDownLatch(1);
+        PreferenceRepository.shared().get(new PreferenceRepository.Callback() {
+            @Override
+            public void onPreferencesLoaded(PreferenceRepository.Snapshot snapshot) {
+                bound.countDown();
+            }
+        });
+
+        assertTrue("Preferences loaded", bound.await(BIND_TIMEOUT_MS, TimeUnit.MILLISECONDS));
+        getInstrumentation().waitForIdleSync();
+    }
+
+    private void select(final ListView list, final int position) {
+        getInstrumentation().runOnMainSync(new Runnable() {
+            @Override
+            public void run() {
+                list.setSelection(position);
+            }
+        });
+        getInstrumentation().waitForIdleSync();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.quiettime;
+
+import junit.framework.TestCase;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Tests {@link QuietTimeSchedule} parsing, window lookups and window ends
+ * across daylight saving changes.
+ *
+ */
+public class QuietTimeScheduleTest extends TestCase {
+
+    private static final TimeZone NEW_YORK = TimeZone.getTimeZone("America/New_York");
+    private static final TimeZone UTC = TimeZone.getTimeZone("UTC");
+
+    /**
+     * Overnight window on weekdays
+     */
+    public void testOvernightWeekdays() {
+        QuietTimeSchedule weekdays = QuietTimeSchedule.parse("MON-FRI 22:00-07:00");
+        assertTrue("Monday 23:00 is quiet", weekdays.isQuiet(time(UTC, 2013, Calendar.JUNE, 3, 23, 0), UTC));
+        assertTrue("Tuesday 06:59 is quiet", weekdays.isQuiet(time(UTC, 2013, Calendar.JUNE, 4, 6, 59), UTC));
+        assertFalse("Tuesday 07:00 is not quiet", weekdays.isQuiet(time(UTC, 2013, Calendar.JUNE, 4, 7, 0), UTC));
+        assertFalse("Saturday 23:00 is not quiet", weekdays.isQuiet(time(UTC, 2013, Calendar.JUNE, 8, 23, 0), UTC));
+        assertTrue("Saturday 06:00 ends Friday's window", weekdays.isQuiet(time(UTC, 2013, Calendar.JUNE, 8, 6, 0), UTC));
+
+        assertEquals("Monday night ends Tuesday 07:00", time(UTC, 2013, Calendar.JUNE, 4, 7, 0),
+                weekdays.getQuietEnd(time(UTC, 2013, Calendar.JUNE, 3, 23, 30), UTC));
+    }
+
+    /**
+     * Windows crossing the end of the week merge with ones starting on Sunday
+     */
+    public void testWindowsMergeAcrossTheWeek() {
+        QuietTimeSchedule weekend = QuietTimeSchedule.parse("SAT 20:00-02:00; SUN 00:00-10:00");
+        assertEquals("Saturday night runs until Sunday 10:00", time(UTC, 2013, Calendar.JUNE, 9, 10, 0),
+                weekend.getQuietEnd(time(UTC, 2013, Calendar.JUNE, 8, 21, 0), UTC));
+    }
+
+    /**
+     * Window ends keep the wall clock time across daylight saving changes
+     */
+    public void testDaylightSaving() {
+        QuietTimeSchedule nightly = QuietTimeSchedule.parse("22:00-07:00");
+
+        // Spring forward, 2013-03-10 02:00 becomes 03:00 in New York
+        assertEquals("Window ends at 07:00 after spring forward", time(NEW_YORK, 2013, Calendar.MARCH, 10, 7, 0),
+                nightly.getQuietEnd(time(NEW_YORK, 2013, Calendar.MARCH, 9, 23, 0), NEW_YORK));
+
+        // Fall back, 2013-11-03 02:00 becomes 01:00 in New York
+        assertEquals("Window ends at 07:00 after fall back", time(NEW_YORK, 2013, Calendar.NOVEMBER, 3, 7, 0),
+                nightly.getQuietEnd(time(NEW_YORK, 2013, Calendar.NOVEMBER, 2, 23, 0), NEW_YORK));
+        assertTrue("06:30 after fall back is quiet",
+                nightly.isQuiet(time(NEW_YORK, 2013, Calendar.NOVEMBER, 3, 6, 30), NEW_YORK));
+    }
+
+    /**
+     * Malformed specifications are rejected
+     */
+    public void testInvalidSchedules() {
+        String[] invalid = new String[] { "MON 22:00", "XYZ 22:00-07:00", "25:00-07:00", "22-07" };
+        for (String spec : invalid) {
+            try {
+                QuietTimeSchedule.parse(spec);
+                fail("Parsed invalid schedule: " + spec);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    public void testEmptySchedule() {
+        assertFalse("Empty schedule is never quiet", QuietTimeSchedule.EMPTY.isQuiet(System.currentTimeMillis(), UTC));
+    }
+
+    private static long time(TimeZone timeZone, int year, int month, int day, int hour, int minute) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.clear();
+        calendar.set(year, month, day, hour, minute);
+        return calendar.getTimeInMillis();
+    }
+}
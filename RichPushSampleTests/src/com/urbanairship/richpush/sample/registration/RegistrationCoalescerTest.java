@@ -0,0 +1,153 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.richpush.sample.registration;
+
+import android.content.Context;
+import android.test.InstrumentationTestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Tests that the {@link RegistrationCoalescer} merges changes into a single
+ * update, retries failed updates with the pending changes, and keeps changes
+ * made while an update was being sent. A stand-in endpoint records the
+ * updates and fails the first ones.
+ *
+ * The coalescer only sends while the device is connected.
+ *
+ */
+public class RegistrationCoalescerTest extends InstrumentationTestCase {
+
+    private static final String PREFERENCES_NAME = "com.urbanairship.richpush.sample.pending_registration_test";
+
+    // Long enough for the coalesce delay and two backoffs
+    private static final long UPDATE_TIMEOUT_MS = 60000; // 1 minute
+
+    private Context context;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        context = getInstrumentation().getTargetContext();
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        context.getSharedPreferences(PREFERENCES_NAME, Context.MODE_PRIVATE).edit().clear().commit();
+        super.tearDown();
+    }
+
+    public void testCoalesceAndRetry() throws InterruptedException {
+        StandInEndpoint endpoint = new StandInEndpoint();
+        RegistrationCoalescer coalescer = new RegistrationCoalescer(context, endpoint, PREFERENCES_NAME);
+        endpoint.coalescer = coalescer;
+
+        // A burst of changes is sent as one update
+        coalescer.setAlias("first");
+        coalescer.setTags(tags("a"));
+        coalescer.setPushEnabled(false);
+        coalescer.setTags(tags("a", "b"));
+
+        // The first attempt fails after the alias changes again, the second throws, the third is sent
+        Update sent = endpoint.awaitUpdate(3, UPDATE_TIMEOUT_MS);
+
+        List<Update> updates = endpoint.getUpdates();
+        assertEquals("Attempts", 3, updates.size());
+
+        Update first = updates.get(0);
+        assertEquals("First attempt has the first alias", "first", first.alias);
+        assertTrue("First attempt changes the alias", first.aliasChanged);
+        assertEquals("Tags were coalesced", tags("a", "b"), first.tags);
+        assertEquals("Push enablement was sent", Boolean.FALSE, first.pushEnabled);
+
+        // The change made during the failed attempt replaces the failed alias
+        assertEquals("Retry has the newer alias", "second", sent.alias);
+        assertTrue("Retry changes the alias", sent.aliasChanged);
+        assertEquals("Retry has the tags that failed to send", tags("a", "b"), sent.tags);
+        assertEquals("Retry has the push enablement that failed to send", Boolean.FALSE, sent.pushEnabled);
+
+        assertFalse("Nothing is pending after the update was sent", coalescer.hasPendingChanges());
+    }
+
+    private static Set<String> tags(String... tags) {
+        return new LinkedHashSet<String>(Arrays.asList(tags));
+    }
+
+    /**
+     * A registration update received by the stand-in endpoint
+     */
+    private static class Update {
+        final Boolean pushEnabled;
+        final boolean aliasChanged;
+        final String alias;
+        final Set<String> tags;
+
+        Update(Boolean pushEnabled, boolean aliasChanged, String alias, Set<String> tags) {
+            this.pushEnabled = pushEnabled;
+            this.aliasChanged = aliasChanged;
+            this.alias = alias;
+            this.tags = tags;
+        }
+    }
+
+    /**
+     * Records the updates, failing the first one and throwing on the second
+     */
+    private static class StandInEndpoint implements RegistrationEndpoint {
+        private final List<Update> updates = new ArrayList<Update>();
+        private RegistrationCoalescer coalescer;
+
+        @Override
+        public boolean update(Boolean pushEnabled, boolean aliasChanged, String alias, Set<String> tags) {
+            int attempt;
+            synchronized (this) {
+                updates.add(new Update(pushEnabled, aliasChanged, alias, tags));
+                attempt = updates.size();
+                notifyAll();
+            }
+
+            if (attempt == 1) {
+                // A change made while the update is being sent
+                coalescer.setAlias("second");
+                return false;
+            }
+
+            if (attempt == 2) {
+                throw new IllegalStateException("Stand-in failure");
+            }
+
+            return true;
+        }
+
+        synchronized List<Update> getUpdates() {
+            return new ArrayList<Update>(updates);
+        }
+
+        /**
+         * Waits for an update attempt
+         * @param attempt The attempt number, starting at 1
+         * @param timeoutMs Maximum time to wait
+         * @return The update
+         * @throws InterruptedException
+         */
+        synchronized Update awaitUpdate(int attempt, long timeoutMs) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMs;
+            while (updates.size() < attempt) {
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    fail("Timed out waiting for attempt " + attempt + ", the device may be offline");
+                }
+                wait(remaining);
+            }
+            return updates.get(attempt - 1);
+        }
+    }
+}
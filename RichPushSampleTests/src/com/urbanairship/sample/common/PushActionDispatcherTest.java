@@ -0,0 +1,102 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.sample.common;
+
+import android.content.Context;
+import android.content.Intent;
+
+import junit.framework.TestCase;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Tests that {@link PushActionDispatcher} runs the handlers for every push
+ * together with the targeted ones in order, and only runs the handlers for
+ * other targets when no targeted handler matches.
+ *
+ */
+public class PushActionDispatcherTest extends TestCase {
+
+    private static final String OPENED = "opened";
+    private static final String RECEIVED = "received";
+
+    private List<String> calls;
+    private PushActionDispatcher<Object> dispatcher;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        calls = new ArrayList<String>();
+        dispatcher = new PushActionDispatcher<Object>();
+        dispatcher.register(OPENED, null, 10, "last for every push", new Recorder(calls, "every-10"));
+        dispatcher.register(OPENED, "home", 5, "home", new Recorder(calls, "home-5"));
+        dispatcher.register(OPENED, null, 0, "first for every push", new Recorder(calls, "every-0"));
+        dispatcher.register(OPENED, PushActionDispatcher.OTHER_TARGETS, 5, "inbox", new Recorder(calls, "inbox-5"));
+        dispatcher.register(RECEIVED, "home", 0, "home only", new Recorder(calls, "received-home"));
+    }
+
+    /**
+     * Targeted handlers run between the handlers for every push, by order
+     */
+    public void testTargetedHandlersRunInOrder() {
+        assertCalls(dispatch(OPENED, "home"), "every-0", "home-5", "every-10");
+    }
+
+    /**
+     * Pushes for other targets, or none, run the other targets handlers instead
+     */
+    public void testOtherTargets() {
+        assertCalls(dispatch(OPENED, "settings"), "every-0", "inbox-5", "every-10");
+        assertCalls(dispatch(OPENED, null), "every-0", "inbox-5", "every-10");
+    }
+
+    /**
+     * Actions with only targeted handlers run nothing for other targets
+     */
+    public void testNoMatchingHandlers() {
+        assertCalls(dispatch(RECEIVED, "home"), "received-home");
+        assertCalls(dispatch(RECEIVED, "settings"));
+        assertCalls(dispatch("unknown", "home"));
+    }
+
+    /**
+     * Registering after a dispatch recompiles the table
+     */
+    public void testRegisterAfterDispatch() {
+        assertCalls(dispatch(RECEIVED, "settings"));
+
+        dispatcher.register(RECEIVED, null, 0, "every received push", new Recorder(calls, "received-every"));
+        assertCalls(dispatch(RECEIVED, "settings"), "received-every");
+    }
+
+    private List<String> dispatch(String action, String target) {
+        calls.clear();
+        int count = dispatcher.dispatch(null, new Intent(action), null, target);
+        assertEquals("Dispatch reported a different number of handlers than it ran", calls.size(), count);
+        return new ArrayList<String>(calls);
+    }
+
+    private static void assertCalls(List<String> calls, String... expected) {
+        assertEquals(Arrays.asList(expected), calls);
+    }
+
+    private static class Recorder implements PushActionDispatcher.ActionHandler<Object> {
+        private final List<String> calls;
+        private final String name;
+
+        Recorder(List<String> calls, String name) {
+            this.calls = calls;
+            this.name = name;
+        }
+
+        @Override
+        public void handle(Context context, Intent intent, Object payload) {
+            calls.add(name);
+        }
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.sample.common;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An in-process, typed event dispatcher for events that never leave the
+ * app, used instead of same-process broadcasts so delivery does not go
+ * through the system.
+ *
+ * Subscribers register for an exact event class and choose where they are
+ * called: on the posting thread, on the main thread, or on a shared
+ * background thread. Subscribers are held weakly so a forgotten
+ * unsubscribe does not leak an activity, which means the subscriber must
+ * be strongly held by its owner, for example in a field.
+ *
+ * Deliveries queued for the main or background thread hold the subscriber
+ * weakly too, and are dropped if the subscriber unsubscribed before they
+ * run. A subscriber that unsubscribes on its delivery thread gets no
+ * further events.
+ *
+ * Shared by the sample applications through the SampleCommon library project.
+ *
+ */
+public class EventBus {
+
+    /**
+     * Deliver on the thread that posts the event
+     */
+    public static final int DELIVER_POSTING = 0;
+
+    /**
+     * Deliver on the main thread, immediately if posted from the main thread
+     */
+    public static final int DELIVER_MAIN = 1;
+
+    /**
+     * Deliver in order on a shared background thread
+     */
+    public static final int DELIVER_BACKGROUND = 2;
+
+    /**
+     * Receives events of one type
+     */
+    public interface Subscriber<E> {
+        void onEvent(E event);
+    }
+
+    private static final EventBus instance = new EventBus();
+
+    private final Map<Class<?>, CopyOnWriteArrayList<Subscription>> subscriptions =
+            new ConcurrentHashMap<Class<?>, CopyOnWriteArrayList<Subscription>>();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private Handler backgroundHandler;
+
+    /**
+     * @return The shared EventBus
+     */
+    public static EventBus shared() {
+        return instance;
+    }
+
+    /**
+     * Subscribes to an event type
+     * @param type The event class
+     * @param subscriber The subscriber, held weakly
+     * @param delivery One of the delivery constants
+     */
+    public <E> void subscribe(Class<E> type, Subscriber<? super E> subscriber, int delivery) {
+        CopyOnWriteArrayList<Subscription> list;
+        synchronized (subscriptions) {
+            list = subscriptions.get(type);
+            if (list == null) {
+                list = new CopyOnWriteArrayList<Subscription>();
+                subscriptions.put(type, list);
+            }
+        }
+
+        for (Subscription subscription : list) {
+            if (subscription.get() == subscriber) {
+                return;
+            }
+        }
+        list.add(new Subscription(subscriber, delivery));
+    }
+
+    /**
+     * Removes a subscriber from an event type
+     * @param type The event class
+     * @param subscriber The subscriber
+     */
+    public void unsubscribe(Class<?> type, Subscriber<?> subscriber) {
+        CopyOnWriteArrayList<Subscription> list = subscriptions.get(type);
+        if (list == null) {
+            return;
+        }
+
+        for (Subscription subscription : list) {
+            Subscriber<?> current = subscription.get();
+            if (current == null || current == subscriber) {
+                subscription.cancelled = true;
+                list.remove(subscription);
+            }
+        }
+    }
+
+    /**
+     * Posts an event to the subscribers of its exact class
+     * @param event The event
+     * @return The number of subscribers the event was delivered or queued to
+     */
+    public int post(final Object event) {
+        CopyOnWriteArrayList<Subscription> list = subscriptions.get(event.getClass());
+        if (list == null) {
+            return 0;
+        }
+
+        int delivered = 0;
+        for (final Subscription subscription : list) {
+            if (subscription.get() == null) {
+                list.remove(subscription);
+                continue;
+            }
+
+            delivered++;
+            switch (subscription.delivery) {
+                case DELIVER_MAIN:
+                    if (Looper.myLooper() == Looper.getMainLooper()) {
+                        deliver(subscription, event);
+                    } else {
+                        mainHandler.post(new Runnable() {
+                            @Override
+                            public void run() {
+                                deliver(subscription, event);
+                            }
+                        });
+                    }
+                    break;
+
+                case DELIVER_BACKGROUND:
+                    getBackgroundHandler().post(new Runnable() {
+                        @Override
+                        public void run() {
+                            deliver(subscription, event);
+                        }
+                    });
+                    break;
+
+                default:
+                    deliver(subscription, event);
+                    break;
+            }
+        }
+        return delivered;
+    }
+
+    /**
+     * Delivers an event unless the subscriber unsubscribed or was collected
+     * since the event was posted
+     */
+    @SuppressWarnings("unchecked")
+    private static void deliver(Subscription subscription, Object event) {
+        Subscriber<Object> subscriber = (Subscriber<Object>) subscription.get();
+        if (subscriber != null && !subscription.cancelled) {
+            subscriber.onEvent(event);
+        }
+    }
+
+    private synchronized Handler getBackgroundHandler() {
+        if (backgroundHandler == null) {
+            HandlerThread thread = new HandlerThread("EventBus-Background");
+            thread.start();
+            backgroundHandler = new Handler(thread.getLooper());
+        }
+        return backgroundHandler;
+    }
+
+    private static class Subscription extends WeakReference<Subscriber<?>> {
+        final int delivery;
+        volatile boolean cancelled;
+
+        Subscription(Subscriber<?> subscriber, int delivery) {
+            super(subscriber);
+            this.delivery = delivery;
+        }
+    }
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.sample.common;
+
+import android.content.Context;
+import android.content.Intent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Routes push intents to the handlers registered for their action and
+ * target, in place of chains of string comparisons in the receivers.
+ *
+ * Handlers registered for a target run when a push names that target.
+ * Handlers registered without a target run for every push with that
+ * action, and handlers registered for {@link #OTHER_TARGETS} run only for
+ * pushes that name no registered target. All the handlers that apply to a
+ * push run together in ascending order. Registrations are compiled into a
+ * lookup table on the first dispatch after they change, so a dispatch is
+ * two hash lookups. Each handler is timed, and its invocation count and
+ * latency are kept.
+ *
+ * The payload type is the app's own parsed push, handed through to the
+ * handlers untouched.
+ *
+ * @param <P> The push payload type
+ */
+public class PushActionDispatcher<P> {
+
+    /**
+     * Handles a push action
+     * @param <P> The push payload type
+     */
+    public interface ActionHandler<P> {
+        /**
+         * @param context Application context
+         * @param intent The push intent
+         * @param payload The push payload, or null if the intent is not a push
+         */
+        void handle(Context context, Intent intent, P payload);
+    }
+
+    /**
+     * Target for handlers that only run when the push names no registered target
+     */
+    public static final String OTHER_TARGETS = "*";
+
+    private static final PushActionDispatcher<Object> instance = new PushActionDispatcher<Object>();
+
+    private final List<Registration<P>> registrations = new ArrayList<Registration<P>>();
+    private volatile Map<String, Map<String, Registration<P>[]>> table;
+
+    /**
+     * Gets the shared PushActionDispatcher. An app only dispatches its own
+     * payload type, so the shared dispatcher is typed for it.
+     *
+     * @return The shared PushActionDispatcher
+     */
+    @SuppressWarnings("unchecked")
+    public static <P> PushActionDispatcher<P> shared() {
+        return (PushActionDispatcher<P>) instance;
+    }
+
+    /**
+     * Registers a handler
+     * @param action The intent action
+     * @param target The target the push names, null to handle every push, or
+     * {@link #OTHER_TARGETS} to handle pushes for targets without handlers
+     * @param order Handlers with a lower order run first
+     * @param name Name used in the stats
+     * @param handler The handler
+     */
+    public synchronized void register(String action, String target, int order, String name, ActionHandler<P> handler) {
+        registrations.add(new Registration<P>(action, target, order, registrations.size(), name, handler));
+        table = null;
+    }
+
+    /**
+     * Removes all the handlers
+     */
+    public synchronized void clear() {
+        registrations.clear();
+        table = null;
+    }
+
+    /**
+     * Runs the handlers for an action and target
+     * @param context Application context
+     * @param intent The push intent
+     * @param payload The push payload, or null if the intent is not a push
+     * @param target The target the push names, or null
+     * @return The number of handlers that ran
+     */
+    public int dispatch(Context context, Intent intent, P payload, String target) {
+        Map<String, Map<String, Registration<P>[]>> current = table;
+        if (current == null) {
+            current = compile();
+        }
+
+        Map<String, Registration<P>[]> targets = current.get(intent.getAction());
+        if (targets == null) {
+            return 0;
+        }
+
+        Registration<P>[] handlers = target == null ? null : targets.get(target);
+        if (handlers == null) {
+            handlers = targets.get(null);
+        }
+        if (handlers == null) {
+            return 0;
+        }
+
+        for (Registration<P> registration : handlers) {
+            long start = System.nanoTime();
+            try {
+                registration.handler.handle(context, intent, payload);
+            } finally {
+                registration.record(System.nanoTime() - start);
+            }
+        }
+        return handlers.length;
+    }
+
+    /**
+     * @return The stats of each handler in registration order
+     */
+    public synchronized List<HandlerStats> getStats() {
+        List<HandlerStats> stats = new ArrayList<HandlerStats>();
+        for (Registration<P> registration : registrations) {
+            stats.add(registration.getStats());
+        }
+        return stats;
+    }
+
+    /**
+     * Builds the lookup table from the registrations
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized Map<String, Map<String, Registration<P>[]>> compile() {
+        if (table != null) {
+            return table;
+        }
+
+        Map<String, Map<String, List<Registration<P>>>> grouped = new HashMap<String, Map<String, List<Registration<P>>>>();
+        for (Registration<P> registration : registrations) {
+            Map<String, List<Registration<P>>> targets = grouped.get(registration.action);
+            if (targets == null) {
+                targets = new HashMap<String, List<Registration<P>>>();
+                grouped.put(registration.action, targets);
+            }
+
+            List<Registration<P>> list = targets.get(registration.target);
+            if (list == null) {
+                list = new ArrayList<Registration<P>>();
+                targets.put(registration.target, list);
+            }
+            list.add(registration);
+        }
+
+        // Every target gets the handlers for every push merged in, and the other
+        // targets are stored under null, which dispatch falls back to
+        Map<String, Map<String, Registration<P>[]>> compiled = new HashMap<String, Map<String, Registration<P>[]>>();
+        for (Map.Entry<String, Map<String, List<Registration<P>>>> action : grouped.entrySet()) {
+            Map<String, List<Registration<P>>> grouping = action.getValue();
+            List<Registration<P>> everyPush = grouping.remove(null);
+            List<Registration<P>> otherTargets = grouping.remove(OTHER_TARGETS);
+            grouping.put(null, otherTargets == null ? new ArrayList<Registration<P>>() : otherTargets);
+
+            Map<String, Registration<P>[]> targets = new HashMap<String, Registration<P>[]>();
+            for (Map.Entry<String, List<Registration<P>>> target : grouping.entrySet()) {
+                List<Registration<P>> list = target.getValue();
+                if (everyPush != null) {
+                    list.addAll(everyPush);
+                }
+
+                if (!list.isEmpty()) {
+                    Collections.sort(list, ORDER);
+                    targets.put(target.getKey(), list.toArray(new Registration[list.size()]));
+                }
+            }
+            compiled.put(action.getKey(), targets);
+        }
+
+        table = compiled;
+        return compiled;
+    }
+
+    private static final Comparator<Registration<?>> ORDER = new Comparator<Registration<?>>() {
+        @Override
+        public int compare(Registration<?> a, Registration<?> b) {
+            if (a.order != b.order) {
+                return a.order < b.order ? -1 : 1;
+            }
+            return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+        }
+    };
+
+    /**
+     * Invocation count and latency of a handler
+     */
+    public static class HandlerStats {
+        public final String name;
+        public final String action;
+        public final String target;
+        public final long invocations;
+        public final long totalNs;
+        public final long maxNs;
+
+        HandlerStats(String name, String action, String target, long invocations, long totalNs, long maxNs) {
+            this.name = name;
+            this.action = action;
+            this.target = target;
+            this.invocations = invocations;
+            this.totalNs = totalNs;
+            this.maxNs = maxNs;
+        }
+
+        /**
+         * @return The average time per invocation in microseconds
+         */
+        public double getAverageMicros() {
+            return invocations == 0 ? 0 : totalNs / 1E3 / invocations;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s [%s %s]: %d invocations, average %.1f us, max %.1f us",
+                    name, action, target == null ? "all" : target, invocations, getAverageMicros(), maxNs / 1E3);
+        }
+    }
+
+    private static class Registration<P> {
+        final String action;
+        final String target;
+        final int order;
+        final int sequence;
+        final String name;
+        final ActionHandler<P> handler;
+
+        private long invocations;
+        private long totalNs;
+        private long maxNs;
+
+        Registration(String action, String target, int order, int sequence, String name, ActionHandler<P> handler) {
+            this.action = action;
+            this.target = target;
+            this.order = order;
+            this.sequence = sequence;
+            this.name = name;
+            this.handler = handler;
+        }
+
+        synchronized void record(long ns) {
+            invocations++;
+            totalNs += ns;
+            maxNs = Math.max(maxNs, ns);
+        }
+
+        synchronized HandlerStats getStats() {
+            return new HandlerStats(name, action, target, invocations, totalNs, maxNs);
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.sample.common;
+
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+
+import com.urbanairship.Logger;
+import com.urbanairship.push.PushManager;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A bounded queue that moves push intent handling off the main thread.
+ *
+ * Intents are handled one at a time on a single worker thread, so handlers
+ * always run in the order the pushes arrived, including per message id.
+ * A received push that is already pending is merged, and new received
+ * pushes are dropped once the queue is full. Every other intent, such as
+ * a notification being opened, is a user action and is always queued,
+ * even past the capacity.
+ *
+ * @param <P> The app's push payload type
+ */
+public class PushIntakeQueue<P> {
+
+    /**
+     * Handles a push intent on the worker thread
+     * @param <P> The app's push payload type
+     */
+    public interface IntakeHandler<P> {
+        /**
+         * Gets the id pending received pushes are merged on. Called on the
+         * thread the push was received on.
+         *
+         * @param payload The push payload
+         * @return The id, or null if the push should never be merged
+         */
+        String getMergeId(P payload);
+
+        /**
+         * @param context Application context
+         * @param intent The push intent
+         * @param payload The push payload parsed at intake, or null if the intent is not a push
+         */
+        void handle(Context context, Intent intent, P payload);
+    }
+
+    private final Handler workerQueue;
+    private final IntakeHandler<P> handler;
+    private final int capacity;
+
+    private final Set<String> pendingKeys = new HashSet<String>();
+    private final Metrics metrics = new Metrics();
+    private int depth;
+
+    /**
+     * Creates a new PushIntakeQueue
+     * @param name Name of the worker thread
+     * @param handler Handler for each push intent
+     * @param capacity Number of pending intents past which received pushes are dropped
+     */
+    public PushIntakeQueue(String name, IntakeHandler<P> handler, int capacity) {
+        HandlerThread workerThread = new HandlerThread(name);
+        workerThread.start();
+
+        this.workerQueue = new Handler(workerThread.getLooper());
+        this.handler = handler;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Hands a push intent off to the worker thread. Must be called from
+     * <code>BroadcastReceiver.onReceive</code>.
+     *
+     * @param receiver The receiver the intent was delivered to
+     * @param context The receiver's context
+     * @param intent The push intent
+     * @param payload The push payload, or null if the intent is not a push
+     * @return <code>true</code> if the intent was queued, <code>false</code> if
+     * it was merged with pending work or dropped
+     */
+    public boolean enqueue(BroadcastReceiver receiver, Context context, final Intent intent, final P payload) {
+        final String key = createKey(intent, payload);
+
+        synchronized (this) {
+            if (key != null && pendingKeys.contains(key)) {
+                metrics.merged++;
+                return false;
+            }
+
+            if (depth >= capacity && isReceive(intent)) {
+                metrics.dropped++;
+                Logger.warn("Push intake queue is full, dropping " + intent.getAction());
+                return false;
+            }
+
+            if (key != null) {
+                pendingKeys.add(key);
+            }
+
+            depth++;
+            metrics.maxDepth = Math.max(metrics.maxDepth, depth);
+        }
+
+        final Context appContext = context.getApplicationContext();
+        final Object pendingResult = goAsync(receiver);
+        final long enqueueTime = SystemClock.elapsedRealtime();
+
+        workerQueue.post(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    handler.handle(appContext, intent, payload);
+                } catch (Exception e) {
+                    Logger.error("Failed to handle push intent " + intent.getAction(), e);
+                } finally {
+                    finish(pendingResult);
+                    onHandled(key, SystemClock.elapsedRealtime() - enqueueTime);
+                }
+            }
+        });
+
+        return true;
+    }
+
+    /**
+     * @return The number of intents waiting or being handled
+     */
+    public synchronized int getDepth() {
+        return depth;
+    }
+
+    /**
+     * @return A snapshot of the queue metrics
+     */
+    public synchronized Metrics getMetrics() {
+        Metrics snapshot = new Metrics();
+        snapshot.handled = metrics.handled;
+        snapshot.merged = metrics.merged;
+        snapshot.dropped = metrics.dropped;
+        snapshot.maxDepth = metrics.maxDepth;
+        snapshot.totalLatencyMs = metrics.totalLatencyMs;
+        snapshot.maxLatencyMs = metrics.maxLatencyMs;
+        return snapshot;
+    }
+
+    private synchronized void onHandled(String key, long latencyMs) {
+        if (key != null) {
+            pendingKeys.remove(key);
+        }
+
+        depth--;
+        metrics.handled++;
+        metrics.totalLatencyMs += latencyMs;
+        metrics.maxLatencyMs = Math.max(metrics.maxLatencyMs, latencyMs);
+    }
+
+    /**
+     * Creates the key used to merge duplicate work
+     * @param intent The push intent
+     * @param payload The push payload, or null
+     * @return The key, or null if the intent can not be merged
+     */
+    private String createKey(Intent intent, P payload) {
+        // Only received pushes are merged, every open has to reach the handlers
+        if (payload == null || !isReceive(intent)) {
+            return null;
+        }
+
+        String id = handler.getMergeId(payload);
+        return id == null ? null : intent.getAction() + ":" + id;
+    }
+
+    /**
+     * @return <code>true</code> if the intent is a received push, the only
+     * intent that can be merged or dropped
+     */
+    private static boolean isReceive(Intent intent) {
+        return PushManager.ACTION_PUSH_RECEIVED.equals(intent.getAction());
+    }
+
+    /**
+     * Keeps the broadcast alive while the worker handles it
+     */
+    @SuppressLint("NewApi")
+    private static Object goAsync(BroadcastReceiver receiver) {
+        if (Build.VERSION.SDK_INT >= 11) {
+            return receiver.goAsync();
+        }
+        return null;
+    }
+
+    @SuppressLint("NewApi")
+    private static void finish(Object pendingResult) {
+        if (pendingResult != null) {
+            ((BroadcastReceiver.PendingResult) pendingResult).finish();
+        }
+    }
+
+    /**
+     * Push intake metrics
+     *
+     */
+    public static class Metrics {
+        public long handled;
+        public long merged;
+        public long dropped;
+        public int maxDepth;
+        public long totalLatencyMs;
+        public long maxLatencyMs;
+
+        /**
+         * @return The average time from intake to handled in milliseconds
+         */
+        public long getAverageLatencyMs() {
+            return handled == 0 ? 0 : totalLatencyMs / handled;
+        }
+
+        @Override
+        public String toString() {
+            return "handled: " + handled + ", merged: " + merged + ", dropped: " + dropped
+                    + ", max depth: " + maxDepth + ", avg latency: " + getAverageLatencyMs()
+                    + "ms, max latency: " + maxLatencyMs + "ms";
+        }
+    }
+}
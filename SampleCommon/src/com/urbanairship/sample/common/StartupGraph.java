@@ -0,0 +1,387 @@
+/*
+ * Copyright 2013 Urban Airship and Contributors
+ */
+
+package com.urbanairship.sample.common;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.MessageQueue;
+import android.os.Process;
+
+import com.urbanairship.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Runs the app's startup work as a graph of named tasks with dependencies.
+ *
+ * Main tasks run on the main thread before {@link #start()} returns,
+ * background tasks run on a small pool as soon as their dependencies are
+ * done, and deferred tasks wait until the main thread first goes idle,
+ * after the first activity has drawn its first frame. A main task may
+ * depend on background tasks, but not on deferred ones. If a task fails
+ * the tasks depending on it are skipped. The time each task waited and
+ * ran is logged once all of them are done.
+ *
+ */
+public class StartupGraph {
+
+    /**
+     * Run on the main thread before the first frame
+     */
+    public static final int MAIN = 0;
+
+    /**
+     * Run on the pool, possibly while the main thread is still starting up
+     */
+    public static final int BACKGROUND = 1;
+
+    /**
+     * Run on the pool after the first frame
+     */
+    public static final int DEFERRED = 2;
+
+    /**
+     * Run on the main thread after the first frame
+     */
+    public static final int DEFERRED_MAIN = 3;
+
+    private static final String[] MODE_NAMES = new String[] { "main", "background", "deferred", "deferred main" };
+
+    private final int poolSize;
+    private final Map<String, Node> nodes = new LinkedHashMap<String, Node>();
+    private final BlockingQueue<Node> mainQueue = new LinkedBlockingQueue<Node>();
+    private final List<Node> waitingForFirstFrame = new ArrayList<Node>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    private ExecutorService pool;
+    private long startNs;
+    private int remaining;
+    private boolean firstFrame;
+
+    /**
+     * Creates a StartupGraph that runs every task on the main thread and
+     * starts no pool, so it only takes main and deferred main tasks
+     */
+    public StartupGraph() {
+        this(0);
+    }
+
+    /**
+     * Creates a new StartupGraph
+     * @param poolSize Number of threads running background and deferred tasks
+     */
+    public StartupGraph(int poolSize) {
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Adds a task
+     * @param name The task name, used by other tasks to depend on it
+     * @param mode One of the mode constants
+     * @param task The task
+     * @param dependencies Names of the tasks that must finish first
+     * @return The graph
+     * @throws IllegalArgumentException if the name is taken, or the task needs
+     * the pool and the graph has none
+     */
+    public synchronized StartupGraph add(String name, int mode, Runnable task, String... dependencies) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate startup task " + name);
+        }
+        if (poolSize == 0 && (mode == BACKGROUND || mode == DEFERRED)) {
+            throw new IllegalArgumentException("Startup task " + name + " needs a pool");
+        }
+        nodes.put(name, new Node(name, mode, task, dependencies));
+        return this;
+    }
+
+    /**
+     * Starts the graph and runs the main tasks. Must be called on the main thread.
+     * @throws IllegalArgumentException if the graph has an unknown dependency, a cycle,
+     * or a main task that depends on a deferred task
+     */
+    public void start() {
+        int mainTasks = 0;
+
+        synchronized (this) {
+            link();
+
+            startNs = System.nanoTime();
+            remaining = nodes.size();
+            if (poolSize > 0) {
+                pool = Executors.newFixedThreadPool(poolSize, new ThreadFactory() {
+                    private int count;
+
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        return new Thread(new Runnable() {
+                            @Override
+                            public void run() {
+                                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                                runnable.run();
+                            }
+                        }, "Startup-" + (++count));
+                    }
+                });
+            }
+
+            for (Node node : nodes.values()) {
+                if (node.mode == MAIN) {
+                    mainTasks++;
+                }
+                if (node.pending == 0) {
+                    schedule(node);
+                }
+            }
+        }
+
+        // The main thread first goes idle once the first activity has been laid out and drawn
+        Looper.myQueue().addIdleHandler(new MessageQueue.IdleHandler() {
+            @Override
+            public boolean queueIdle() {
+                onFirstFrame();
+                return false;
+            }
+        });
+
+        // Run the main tasks here in dependency order, waiting on background tasks they depend on
+        for (int i = 0; i < mainTasks; i++) {
+            Node node;
+            try {
+                node = mainQueue.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while starting up", e);
+            }
+            run(node);
+        }
+    }
+
+    /**
+     * @return The timings of the tasks that have finished, in the order they were added
+     */
+    public synchronized List<Timing> getTimings() {
+        List<Timing> timings = new ArrayList<Timing>();
+        for (Node node : nodes.values()) {
+            if (node.finished) {
+                timings.add(new Timing(node.name, node.mode, node.readyMs, node.startMs,
+                        node.durationMs, node.thread, node.failed));
+            }
+        }
+        return timings;
+    }
+
+    /**
+     * @return The task timings, one per line
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder("Startup tasks:");
+        for (Timing timing : getTimings()) {
+            report.append('\n').append(timing);
+        }
+        return report.toString();
+    }
+
+    /**
+     * Releases the deferred tasks
+     */
+    private synchronized void onFirstFrame() {
+        firstFrame = true;
+        for (Node node : waitingForFirstFrame) {
+            dispatch(node);
+        }
+        waitingForFirstFrame.clear();
+    }
+
+    /**
+     * Resolves the dependencies and checks the graph
+     */
+    private void link() {
+        for (Node node : nodes.values()) {
+            for (String name : node.dependencies) {
+                Node dependency = nodes.get(name);
+                if (dependency == null) {
+                    throw new IllegalArgumentException(node.name + " depends on unknown startup task " + name);
+                }
+                dependency.dependents.add(node);
+                node.pending++;
+            }
+        }
+
+        // Visit the tasks in dependency order to find cycles and main tasks that would wait for the first frame
+        LinkedList<Node> ready = new LinkedList<Node>();
+        Map<Node, Integer> pending = new LinkedHashMap<Node, Integer>();
+        for (Node node : nodes.values()) {
+            pending.put(node, node.pending);
+            node.afterFirstFrame = node.mode == DEFERRED || node.mode == DEFERRED_MAIN;
+            if (node.pending == 0) {
+                ready.add(node);
+            }
+        }
+
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            Node node = ready.removeFirst();
+            visited++;
+
+            if (node.mode == MAIN && node.afterFirstFrame) {
+                throw new IllegalArgumentException("Main startup task " + node.name + " depends on a deferred task");
+            }
+
+            for (Node dependent : node.dependents) {
+                dependent.afterFirstFrame |= node.afterFirstFrame;
+                int count = pending.get(dependent) - 1;
+                pending.put(dependent, count);
+                if (count == 0) {
+                    ready.add(dependent);
+                }
+            }
+        }
+
+        if (visited != nodes.size()) {
+            throw new IllegalArgumentException("Startup tasks have a dependency cycle");
+        }
+    }
+
+    /**
+     * Schedules a task whose dependencies are done
+     */
+    private void schedule(Node node) {
+        node.readyMs = elapsedMs();
+
+        if (node.mode == MAIN) {
+            mainQueue.add(node);
+        } else if (node.mode == BACKGROUND || firstFrame) {
+            dispatch(node);
+        } else {
+            waitingForFirstFrame.add(node);
+        }
+    }
+
+    private void dispatch(final Node node) {
+        Runnable runnable = new Runnable() {
+            @Override
+            public void run() {
+                StartupGraph.this.run(node);
+            }
+        };
+
+        if (node.mode == DEFERRED_MAIN) {
+            mainHandler.post(runnable);
+        } else {
+            pool.execute(runnable);
+        }
+    }
+
+    private void run(Node node) {
+        long start = System.nanoTime();
+        boolean failed = node.skipped;
+
+        if (!failed) {
+            try {
+                node.task.run();
+            } catch (RuntimeException e) {
+                if (node.mode == MAIN) {
+                    throw e;
+                }
+                Logger.error("Startup task " + node.name + " failed", e);
+                failed = true;
+            }
+        }
+
+        long end = System.nanoTime();
+        complete(node, (start - startNs) / 1E6, (end - start) / 1E6, failed);
+    }
+
+    private synchronized void complete(Node node, double startMs, double durationMs, boolean failed) {
+        node.startMs = startMs;
+        node.durationMs = durationMs;
+        node.thread = Thread.currentThread().getName();
+        node.failed = failed;
+        node.finished = true;
+
+        for (Node dependent : node.dependents) {
+            dependent.skipped |= failed;
+            if (--dependent.pending == 0) {
+                schedule(dependent);
+            }
+        }
+
+        if (--remaining == 0) {
+            if (pool != null) {
+                pool.shutdown();
+            }
+            Logger.info(getReport());
+        }
+    }
+
+    private double elapsedMs() {
+        return (System.nanoTime() - startNs) / 1E6;
+    }
+
+    /**
+     * The timing of a finished task, in milliseconds since the graph started
+     */
+    public static class Timing {
+        public final String name;
+        public final int mode;
+        public final double readyMs;
+        public final double startMs;
+        public final double durationMs;
+        public final String thread;
+        public final boolean failed;
+
+        Timing(String name, int mode, double readyMs, double startMs, double durationMs, String thread, boolean failed) {
+            this.name = name;
+            this.mode = mode;
+            this.readyMs = readyMs;
+            this.startMs = startMs;
+            this.durationMs = durationMs;
+            this.thread = thread;
+            this.failed = failed;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s on %s): ready %.1f ms, started %.1f ms, took %.2f ms%s",
+                    name, MODE_NAMES[mode], thread, readyMs, startMs, durationMs, failed ? ", failed" : "");
+        }
+    }
+
+    private static class Node {
+        final String name;
+        final int mode;
+        final Runnable task;
+        final String[] dependencies;
+        final List<Node> dependents = new ArrayList<Node>();
+
+        int pending;
+        boolean afterFirstFrame;
+        boolean skipped;
+
+        boolean finished;
+        boolean failed;
+        double readyMs;
+        double startMs;
+        double durationMs;
+        String thread;
+
+        Node(String name, int mode, Runnable task, String[] dependencies) {
+            this.name = name;
+            this.mode = mode;
+            this.task = task;
+            this.dependencies = dependencies;
+        }
+    }
+}